@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the QSim with agents that stay at home most of the day, while a within-day listener keeps moving the
+ * activity ends of some of them, like within-day replanning or drt do. Apart from the rescheduling, the agents
+ * only do two teleported legs, so the time is dominated by the activity engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ActivityEngineBenchmark {
+
+	private static final double RESCHEDULING_END = 3 * 3600;
+
+	@Param({"100000"})
+	public int numberOfAgents;
+
+	@Param({"10"})
+	public int reschedulesPerSecond;
+
+	@Param({"false", "true"})
+	public boolean usingIndexedActivityEndsQueue;
+
+	private Scenario scenario;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingIndexedActivityEndsQueue(this.usingIndexedActivityEndsQueue);
+		config.qsim().setEndTime(30 * 3600);
+		this.scenario = ScenarioUtils.createScenario(config);
+
+		Network network = this.scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(1), node1, node2, 1000, 10, 3600, 1);
+
+		Random random = new Random(BenchmarkFixtures.SEED);
+		PopulationFactory pf = this.scenario.getPopulation().getFactory();
+		for (int i = 0; i < this.numberOfAgents; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link.getId());
+			home.setEndTime(RESCHEDULING_END + random.nextInt(12 * 3600));
+			plan.addActivity(home);
+			plan.addLeg(createLeg(pf, link));
+			Activity work = pf.createActivityFromLinkId("w", link.getId());
+			work.setMaximumDuration(4 * 3600);
+			plan.addActivity(work);
+			plan.addLeg(createLeg(pf, link));
+			plan.addActivity(pf.createActivityFromLinkId("h", link.getId()));
+			person.addPlan(plan);
+			this.scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(this.scenario).run();
+	}
+
+	private static Leg createLeg(PopulationFactory pf, Link link) {
+		Leg leg = pf.createLeg("other");
+		Route route = pf.getRouteFactories().createRoute(Route.class, link.getId(), link.getId());
+		route.setTravelTime(900);
+		route.setDistance(5000);
+		leg.setRoute(route);
+		return leg;
+	}
+
+	@Benchmark
+	public void runQSim() {
+		QSim qsim = new QSimBuilder(this.scenario.getConfig())
+				.useDefaults()
+				.build(this.scenario, EventsUtils.createEventsManager());
+		qsim.addQueueSimulationListeners(new Rescheduler(this.reschedulesPerSecond));
+		qsim.run();
+	}
+
+	/**
+	 * Moves the end of the first activity of random agents by up to ten minutes, before {@link #RESCHEDULING_END}
+	 * so that the population stays the same.
+	 */
+	private static class Rescheduler implements MobsimBeforeSimStepListener {
+
+		private final int reschedulesPerSecond;
+		private final Random random = new Random(BenchmarkFixtures.SEED);
+		private List<MobsimAgent> agents = null;
+
+		Rescheduler(int reschedulesPerSecond) {
+			this.reschedulesPerSecond = reschedulesPerSecond;
+		}
+
+		@Override
+		public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+			if (e.getSimulationTime() >= RESCHEDULING_END) {
+				return;
+			}
+			QSim qsim = (QSim) e.getQueueSimulation();
+			if (this.agents == null) {
+				this.agents = new ArrayList<>(qsim.getAgents().values());
+			}
+			for (int i = 0; i < this.reschedulesPerSecond; i++) {
+				MobsimAgent agent = this.agents.get(this.random.nextInt(this.agents.size()));
+				Activity activity = (Activity) WithinDayAgentUtils.getCurrentPlanElement(agent);
+				double shift = this.random.nextInt(1200) - 600;
+				activity.setEndTime(Math.max(RESCHEDULING_END, activity.getEndTime().seconds() + shift));
+				WithinDayAgentUtils.resetCaches(agent);
+				WithinDayAgentUtils.rescheduleActivityEnd(agent, qsim);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,186 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reproducible inputs for the JMH micro-benchmarks. All synthetic data is generated from a fixed seed,
+ * all other data is taken from the example scenarios shipped with <code>matsim-examples</code>, so two
+ * runs on different commits always measure the same work.
+ */
+public final class BenchmarkFixtures {
+
+	public static final long SEED = 4711;
+
+	/** value for <code>@Param</code> fields selecting the synthetic grid network */
+	public static final String GRID = "grid";
+	/** value for <code>@Param</code> fields selecting the network of the berlin example scenario */
+	public static final String BERLIN = "berlin";
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Creates a square grid network with <code>size</code> x <code>size</code> nodes. Every pair of neighbouring
+	 * nodes is connected by one link in each direction. Free speeds alternate between two values per row and column
+	 * so that least-cost paths are not trivially unique straight lines.
+	 */
+	public static Network createGridNetwork(int size, double spacing) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * spacing, y * spacing));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					double speed = (y % 5 == 0) ? 22.22 : 13.89;
+					addBidirectional(network, nodes[x][y], nodes[x + 1][y], spacing, speed);
+				}
+				if (y + 1 < size) {
+					double speed = (x % 5 == 0) ? 22.22 : 13.89;
+					addBidirectional(network, nodes[x][y], nodes[x][y + 1], spacing, speed);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void addBidirectional(Network network, Node a, Node b, double length, double freespeed) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, freespeed, 1800, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, freespeed, 1800, 1);
+	}
+
+	/**
+	 * Adds a single corridor of <code>numberOfLinks</code> links with the given flow capacity to the network,
+	 * all links having the same properties. Used to saturate the queue model of the QSim.
+	 */
+	public static void createCorridorNetwork(Network network, int numberOfLinks, double length, double capacity) {
+		Node previous = NetworkUtils.createAndAddNode(network, Id.createNodeId(0), new Coord(0, 0));
+		for (int i = 1; i <= numberOfLinks; i++) {
+			Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * length, 0));
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), previous, node, length, 13.89, capacity, 1);
+			previous = node;
+		}
+	}
+
+	public static Network loadExampleNetwork(String scenarioName, String networkFile) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).parse(getExampleFile(scenarioName, networkFile));
+		return scenario.getNetwork();
+	}
+
+	public static Network loadNetwork(String networkName) {
+		if (GRID.equals(networkName)) {
+			return createGridNetwork(100, 200);
+		}
+		if (BERLIN.equals(networkName)) {
+			return loadExampleNetwork("berlin", "network.xml.gz");
+		}
+		throw new IllegalArgumentException("unknown network fixture: " + networkName);
+	}
+
+	public static URL getExampleFile(String scenarioName, String filename) {
+		return IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL(scenarioName), filename);
+	}
+
+	/**
+	 * Draws <code>count</code> pairs of distinct nodes from the network, using a fixed seed.
+	 * The nodes are ordered by id before sampling so that the result does not depend on map iteration order.
+	 */
+	public static List<Node[]> createOdPairs(Network network, int count) {
+		Node[] nodes = NetworkUtils.getSortedNodes(network);
+		Random random = new Random(SEED);
+		List<Node[]> pairs = new ArrayList<>(count);
+		while (pairs.size() < count) {
+			Node from = nodes[random.nextInt(nodes.length)];
+			Node to = nodes[random.nextInt(nodes.length)];
+			if (from != to) {
+				pairs.add(new Node[] {from, to});
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Creates a stream of <code>count</code> events as the QSim would produce them for car trips on the given network:
+	 * every trip starts with an activity end and a departure, then traverses a number of links and ends with an arrival
+	 * and an activity start. The mix of event types thus resembles the one found in real events files.
+	 */
+	public static List<Event> createEventStream(Network network, int count) {
+		Link[] links = NetworkUtils.getSortedLinks(network);
+		Random random = new Random(SEED);
+		List<Event> events = new ArrayList<>(count);
+		double time = 0;
+		int trip = 0;
+		while (events.size() < count) {
+			Id<Person> personId = Id.createPersonId(trip % 10000);
+			Id<Vehicle> vehicleId = Id.createVehicleId(trip % 10000);
+			Link link = links[random.nextInt(links.length)];
+			events.add(new ActivityEndEvent(time, personId, link.getId(), null, "home"));
+			events.add(new PersonDepartureEvent(time, personId, link.getId(), TransportMode.car));
+			events.add(new VehicleEntersTrafficEvent(time, personId, link.getId(), vehicleId, TransportMode.car, 1.0));
+			int numberOfLinks = 5 + random.nextInt(20);
+			for (int i = 0; i < numberOfLinks; i++) {
+				time += 1;
+				events.add(new LinkLeaveEvent(time, vehicleId, link.getId()));
+				link = links[random.nextInt(links.length)];
+				events.add(new LinkEnterEvent(time, vehicleId, link.getId()));
+			}
+			events.add(new VehicleLeavesTrafficEvent(time, personId, link.getId(), vehicleId, TransportMode.car, 1.0));
+			events.add(new PersonArrivalEvent(time, personId, link.getId(), TransportMode.car));
+			events.add(new ActivityStartEvent(time, personId, link.getId(), null, "work"));
+			trip++;
+		}
+		return events.subList(0, count);
+	}
+
+}
@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JSON result files written by JMH (e.g. by {@link RunMicroBenchmarks}) and prints the relative
+ * change of every benchmark that is contained in both files. Benchmarks are matched by their name and parameters.
+ * <p>
+ * Usage: <code>CompareBenchmarkResults baseline.json candidate.json [maxRegressionPercent]</code>.
+ * The program exits with status 1 if at least one benchmark regressed by more than the given percentage
+ * (default: 10), so it can be used as a gate in automated builds.
+ */
+public final class CompareBenchmarkResults {
+
+	private CompareBenchmarkResults() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CompareBenchmarkResults baseline.json candidate.json [maxRegressionPercent]");
+			System.exit(2);
+		}
+		double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+		Map<String, JsonNode> baseline = readResults(new File(args[0]));
+		Map<String, JsonNode> candidate = readResults(new File(args[1]));
+
+		int regressions = 0;
+		System.out.println(String.format(Locale.ROOT, "%-90s %15s %15s %10s", "benchmark", "baseline", "candidate", "change"));
+		for (Map.Entry<String, JsonNode> e : candidate.entrySet()) {
+			JsonNode base = baseline.get(e.getKey());
+			if (base == null) {
+				System.out.println(String.format(Locale.ROOT, "%-90s %15s %15.3f %10s", e.getKey(), "-", score(e.getValue()), "new"));
+				continue;
+			}
+			double baseScore = score(base);
+			double candScore = score(e.getValue());
+			// for throughput, higher is better; for all time-based modes, lower is better
+			boolean higherIsBetter = "thrpt".equals(e.getValue().get("mode").asText());
+			double change = (candScore - baseScore) / baseScore * 100.0;
+			double regression = higherIsBetter ? -change : change;
+			String marker = regression > maxRegression ? "  <-- regression" : "";
+			if (regression > maxRegression) {
+				regressions++;
+			}
+			System.out.println(String.format(Locale.ROOT, "%-90s %15.3f %15.3f %+9.1f%%%s", e.getKey(), baseScore, candScore, change, marker));
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed by more than " + maxRegression + "%.");
+			System.exit(1);
+		}
+	}
+
+	private static double score(JsonNode result) {
+		return result.get("primaryMetric").get("score").asDouble();
+	}
+
+	private static Map<String, JsonNode> readResults(File file) throws IOException {
+		JsonNode root = new ObjectMapper().readTree(file);
+		Map<String, JsonNode> results = new LinkedHashMap<>();
+		for (JsonNode result : root) {
+			StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+			JsonNode params = result.get("params");
+			if (params != null) {
+				for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+					Map.Entry<String, JsonNode> param = it.next();
+					key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+				}
+			}
+			results.put(key.toString(), result);
+		}
+		return results;
+	}
+
+}
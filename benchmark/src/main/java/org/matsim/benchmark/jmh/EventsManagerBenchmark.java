@@ -0,0 +1,214 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.SingleThreadedEventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the dispatch cost of {@link EventsManagerImpl#processEvent(Event)}. The registered handlers cover
+ * the hard-coded fast path (link and departure events), the generic {@link BasicEventHandler} and a
+ * contrib-style event type that is only reachable through reflection in {@link EventsManagerImpl.DispatchMode#REFLECTIVE}.
+ * With <code>singleThreadedHandlers</code>, all handlers implement {@link SingleThreadedEventHandler} and are thus
+ * not locked in {@link EventsManagerImpl.DispatchMode#GENERATED}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventsManagerBenchmark {
+
+	private static final int NUMBER_OF_EVENTS = 100_000;
+
+	@Param({"REFLECTIVE", "GENERATED"})
+	public EventsManagerImpl.DispatchMode dispatchMode;
+
+	@Param({"false", "true"})
+	public boolean singleThreadedHandlers;
+
+	private EventsManager events;
+	private Event[] eventStream;
+
+	@Setup(Level.Trial)
+	public void setup(Blackhole blackhole) {
+		this.events = new EventsManagerImpl(this.dispatchMode);
+		if (this.singleThreadedHandlers) {
+			this.events.addHandler(new SingleThreadedLinkHandler(blackhole));
+			this.events.addHandler(new SingleThreadedDepartureHandler(blackhole));
+			this.events.addHandler(new SingleThreadedCustomHandler(blackhole));
+			this.events.addHandler(new SingleThreadedBasicHandler(blackhole));
+		} else {
+			this.events.addHandler(new LinkHandler(blackhole));
+			this.events.addHandler(new DepartureHandler(blackhole));
+			this.events.addHandler(new CustomHandler(blackhole));
+			this.events.addHandler((BasicEventHandler) blackhole::consume);
+		}
+
+		List<Event> stream = new ArrayList<>(BenchmarkFixtures.createEventStream(BenchmarkFixtures.createGridNetwork(50, 200), NUMBER_OF_EVENTS));
+		// replace every 10th event by a custom event to exercise the reflective dispatch
+		for (int i = 0; i < stream.size(); i += 10) {
+			stream.set(i, new CustomEvent(stream.get(i).getTime(), Id.createLinkId(i)));
+		}
+		this.eventStream = stream.toArray(new Event[0]);
+		this.events.initProcessing();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public void processEvent() {
+		for (Event event : this.eventStream) {
+			this.events.processEvent(event);
+		}
+	}
+
+	/**
+	 * Stand-in for event types defined in contribs, e.g. emission or DRT events, which are not part of the
+	 * hard-coded fast path in {@link EventsManagerImpl}.
+	 */
+	public static final class CustomEvent extends Event {
+		private final Id<Link> linkId;
+
+		public CustomEvent(double time, Id<Link> linkId) {
+			super(time);
+			this.linkId = linkId;
+		}
+
+		public Id<Link> getLinkId() {
+			return this.linkId;
+		}
+
+		@Override
+		public String getEventType() {
+			return "benchmarkCustom";
+		}
+	}
+
+	public interface CustomEventHandler extends EventHandler {
+		void handleEvent(CustomEvent event);
+	}
+
+	private static class LinkHandler implements LinkEnterEventHandler, LinkLeaveEventHandler {
+		private final Blackhole blackhole;
+
+		LinkHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.blackhole.consume(event.getLinkId());
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			this.blackhole.consume(event.getLinkId());
+		}
+	}
+
+	private static class DepartureHandler implements PersonDepartureEventHandler {
+		private final Blackhole blackhole;
+
+		DepartureHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(PersonDepartureEvent event) {
+			this.blackhole.consume(event.getPersonId());
+		}
+	}
+
+	private static class CustomHandler implements CustomEventHandler {
+		private final Blackhole blackhole;
+
+		CustomHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(CustomEvent event) {
+			this.blackhole.consume(event.getLinkId());
+		}
+	}
+
+	private static final class SingleThreadedLinkHandler extends LinkHandler implements SingleThreadedEventHandler {
+		SingleThreadedLinkHandler(Blackhole blackhole) {
+			super(blackhole);
+		}
+	}
+
+	private static final class SingleThreadedDepartureHandler extends DepartureHandler implements SingleThreadedEventHandler {
+		SingleThreadedDepartureHandler(Blackhole blackhole) {
+			super(blackhole);
+		}
+	}
+
+	private static final class SingleThreadedCustomHandler extends CustomHandler implements SingleThreadedEventHandler {
+		SingleThreadedCustomHandler(Blackhole blackhole) {
+			super(blackhole);
+		}
+	}
+
+	private static final class SingleThreadedBasicHandler implements BasicEventHandler, SingleThreadedEventHandler {
+		private final Blackhole blackhole;
+
+		SingleThreadedBasicHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			this.blackhole.consume(event);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast an events file can be read back, comparing the xml format with the binary format.
+ * The <code>readLinkEnterEvents</code> benchmark reads only one event type for one hour, which the binary
+ * reader can do without decoding the rest of the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventsReaderBenchmark {
+
+	private static final int NUMBER_OF_EVENTS = 500_000;
+
+	@Param({"xml", "binary"})
+	public String format;
+
+	private File directory;
+	private String filename;
+	private EventsManager events;
+	private CountingHandler handler;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.directory = Files.createTempDirectory("events-benchmark").toFile();
+		List<Event> eventStream = BenchmarkFixtures.createEventStream(BenchmarkFixtures.createGridNetwork(50, 200), NUMBER_OF_EVENTS);
+		EventWriter writer;
+		if ("binary".equals(this.format)) {
+			this.filename = new File(this.directory, "events.bin").getPath();
+			writer = new EventWriterBinary(this.filename);
+		} else {
+			this.filename = new File(this.directory, "events.xml.gz").getPath();
+			writer = new EventWriterXML(this.filename);
+		}
+		for (Event event : eventStream) {
+			((BasicEventHandler) writer).handleEvent(event);
+		}
+		writer.closeFile();
+
+		this.events = EventsUtils.createEventsManager();
+		this.handler = new CountingHandler();
+		this.events.addHandler(this.handler);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new File(this.filename).delete();
+		this.directory.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public long readAllEvents() {
+		this.handler.count = 0;
+		new MatsimEventsReader(this.events).readFile(this.filename);
+		return this.handler.count;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public long readLinkEnterEvents() {
+		this.handler.count = 0;
+		if ("binary".equals(this.format)) {
+			EventsUtils.readEvents(this.events, this.filename, 3600.0, 7200.0, LinkEnterEvent.EVENT_TYPE);
+		} else {
+			this.handler.filter = true;
+			new MatsimEventsReader(this.events).readFile(this.filename);
+			this.handler.filter = false;
+		}
+		return this.handler.count;
+	}
+
+	private static final class CountingHandler implements BasicEventHandler {
+		long count = 0;
+		boolean filter = false;
+
+		@Override
+		public void handleEvent(Event event) {
+			if (!this.filter || (event instanceof LinkEnterEvent && event.getTime() >= 3600.0 && event.getTime() <= 7200.0)) {
+				this.count++;
+			}
+		}
+	}
+
+}
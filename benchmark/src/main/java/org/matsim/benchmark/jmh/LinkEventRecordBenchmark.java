@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.LinkEventRecord;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.core.events.handler.SingleThreadedEventHandler;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Passes link enter and link leave events to a handler the way the QSim does: either as new event objects, or with
+ * {@link EventsManager#processLinkEnter} and {@link EventsManager#processLinkLeave} to a {@link LinkEventRecordHandler},
+ * as with <code>qsim.usingLinkEventRecords</code>. Best run with <code>-prof gc</code>, which shows the bytes
+ * allocated per event and the time spent in garbage collection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkEventRecordBenchmark {
+
+	private static final int NUMBER_OF_EVENTS = 100_000;
+
+	@Param({"false", "true"})
+	public boolean usingLinkEventRecords;
+
+	private EventsManager events;
+	private boolean[] enters;
+	private double[] times;
+	private Id<Vehicle>[] vehicleIds;
+	private Id<Link>[] linkIds;
+
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setup(Blackhole blackhole) {
+		this.events = new EventsManagerImpl();
+		this.events.addHandler(new LinkHandler(blackhole));
+
+		List<Event> linkEvents = new ArrayList<>();
+		for (Event event : BenchmarkFixtures.createEventStream(BenchmarkFixtures.createGridNetwork(50, 200), NUMBER_OF_EVENTS * 2)) {
+			if (linkEvents.size() < NUMBER_OF_EVENTS && (event instanceof LinkEnterEvent || event instanceof LinkLeaveEvent)) {
+				linkEvents.add(event);
+			}
+		}
+		// only the contents of the events are kept, the QSim does not have event objects either
+		this.enters = new boolean[NUMBER_OF_EVENTS];
+		this.times = new double[NUMBER_OF_EVENTS];
+		this.vehicleIds = new Id[NUMBER_OF_EVENTS];
+		this.linkIds = new Id[NUMBER_OF_EVENTS];
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			Event event = linkEvents.get(i);
+			this.times[i] = event.getTime();
+			if (event instanceof LinkEnterEvent) {
+				this.enters[i] = true;
+				this.vehicleIds[i] = ((LinkEnterEvent) event).getVehicleId();
+				this.linkIds[i] = ((LinkEnterEvent) event).getLinkId();
+			} else {
+				this.vehicleIds[i] = ((LinkLeaveEvent) event).getVehicleId();
+				this.linkIds[i] = ((LinkLeaveEvent) event).getLinkId();
+			}
+		}
+		this.events.initProcessing();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public void processLinkEvents() {
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			if (this.usingLinkEventRecords) {
+				if (this.enters[i]) {
+					this.events.processLinkEnter(this.times[i], this.vehicleIds[i], this.linkIds[i]);
+				} else {
+					this.events.processLinkLeave(this.times[i], this.vehicleIds[i], this.linkIds[i]);
+				}
+			} else {
+				if (this.enters[i]) {
+					this.events.processEvent(new LinkEnterEvent(this.times[i], this.vehicleIds[i], this.linkIds[i]));
+				} else {
+					this.events.processEvent(new LinkLeaveEvent(this.times[i], this.vehicleIds[i], this.linkIds[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handles link events like a travel time calculator: it only reads their content and does not keep them.
+	 */
+	private static final class LinkHandler implements LinkEnterEventHandler, LinkLeaveEventHandler, LinkEventRecordHandler,
+			SingleThreadedEventHandler {
+		private final Blackhole blackhole;
+
+		LinkHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			consume(event.getTime(), event.getVehicleId(), event.getLinkId());
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			consume(event.getTime(), event.getVehicleId(), event.getLinkId());
+		}
+
+		@Override
+		public void handleRecord(LinkEventRecord record) {
+			consume(record.getTime(), record.getVehicleId(), record.getLinkId());
+		}
+
+		private void consume(double time, Id<Vehicle> vehicleId, Id<Link> linkId) {
+			this.blackhole.consume(time);
+			this.blackhole.consume(vehicleId);
+			this.blackhole.consume(linkId);
+		}
+	}
+
+}
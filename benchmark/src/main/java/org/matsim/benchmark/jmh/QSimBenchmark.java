@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the QSim on a saturated corridor: all agents drive the same route through a bottleneck with half the
+ * capacity of the other links, so queues and spill-back form on every upstream link. Almost all of the time is
+ * spent moving vehicles through <code>QueueWithBuffer</code>, which is package-private and can thus only be
+ * measured through a complete mobsim run. Compares the linked-list queues of the links with the ring buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QSimBenchmark {
+
+	private static final int NUMBER_OF_LINKS = 20;
+	private static final int BOTTLENECK_LINK = 10;
+
+	@Param({"5000"})
+	public int numberOfAgents;
+
+	@Param({"1"})
+	public int numberOfThreads;
+
+	@Param({"false", "true"})
+	public boolean usingRingBufferVehicleQueues;
+
+	private Scenario scenario;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(this.numberOfThreads);
+		config.qsim().setUsingRingBufferVehicleQueues(this.usingRingBufferVehicleQueues);
+		config.qsim().setEndTime(30 * 3600);
+		this.scenario = ScenarioUtils.createScenario(config);
+
+		Network network = this.scenario.getNetwork();
+		BenchmarkFixtures.createCorridorNetwork(network, NUMBER_OF_LINKS, 1000, 1800);
+		network.getLinks().get(Id.createLinkId(BOTTLENECK_LINK)).setCapacity(900);
+
+		List<Id<Link>> routeLinks = new ArrayList<>();
+		for (int i = 2; i < NUMBER_OF_LINKS; i++) {
+			routeLinks.add(Id.createLinkId(i));
+		}
+		Id<Link> startLink = Id.createLinkId(1);
+		Id<Link> endLink = Id.createLinkId(NUMBER_OF_LINKS);
+
+		PopulationFactory pf = this.scenario.getPopulation().getFactory();
+		for (int i = 0; i < this.numberOfAgents; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", startLink);
+			home.setEndTime(6 * 3600 + i * 3600.0 / this.numberOfAgents);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(startLink, routeLinks, endLink));
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", endLink));
+			person.addPlan(plan);
+			this.scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(this.scenario).run();
+	}
+
+	@Benchmark
+	public void runQSim() {
+		new QSimBuilder(this.scenario.getConfig())
+				.useDefaults()
+				.build(this.scenario, EventsUtils.createEventsManager())
+				.run();
+	}
+
+}
@@ -0,0 +1,96 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.ContractionHierarchiesFactory;
+import org.matsim.core.router.FastAStarLandmarksFactory;
+import org.matsim.core.router.FastDijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single least-cost path queries of the array-based routers on a synthetic grid and on the berlin
+ * example network. Each invocation routes the next pair of a fixed list of origin-destination pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+	@Param({"FastDijkstra", "FastAStarLandmarks", "ContractionHierarchies"})
+	public String router;
+
+	@Param({BenchmarkFixtures.GRID, BenchmarkFixtures.BERLIN})
+	public String network;
+
+	private List<Node[]> odPairs;
+	private LeastCostPathCalculator calculator;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Network net = BenchmarkFixtures.loadNetwork(this.network);
+		FreespeedTravelTimeAndDisutility tt = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		this.calculator = createFactory(this.router).createPathCalculator(net, tt, tt);
+		this.odPairs = BenchmarkFixtures.createOdPairs(net, 1000);
+	}
+
+	static LeastCostPathCalculatorFactory createFactory(String router) {
+		switch (router) {
+			case "FastDijkstra":
+				return new FastDijkstraFactory();
+			case "FastAStarLandmarks":
+				return new FastAStarLandmarksFactory(1);
+			case "ContractionHierarchies":
+				return new ContractionHierarchiesFactory(900, 30 * 3600, 1);
+			default:
+				throw new IllegalArgumentException("unknown router: " + router);
+		}
+	}
+
+	@Benchmark
+	public LeastCostPathCalculator.Path calcLeastCostPath() {
+		Node[] od = this.odPairs.get(this.next);
+		this.next = (this.next + 1) % this.odPairs.size();
+		return this.calculator.calcLeastCostPath(od[0], od[1], 8 * 3600, null, null);
+	}
+
+}
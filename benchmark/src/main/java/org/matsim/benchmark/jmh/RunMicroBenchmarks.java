@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH micro-benchmarks of this package and writes the results as JSON, so they can be compared
+ * between two commits with {@link CompareBenchmarkResults}.
+ * <p>
+ * Usage: <code>RunMicroBenchmarks [resultFile [includeRegex...]]</code>. Without arguments, all benchmarks
+ * are run and the results are written to <code>jmh-result.json</code>.
+ * The standard JMH command line (<code>org.openjdk.jmh.Main</code>) can be used as well for finer control.
+ */
+public final class RunMicroBenchmarks {
+
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	private RunMicroBenchmarks() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String resultFile = args.length > 0 ? args[0] : DEFAULT_RESULT_FILE;
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.shouldFailOnError(true);
+		if (args.length > 1) {
+			for (int i = 1; i < args.length; i++) {
+				options.include(args[i]);
+			}
+		} else {
+			options.include(RunMicroBenchmarks.class.getPackage().getName() + ".*");
+		}
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorIntermodalAccessEgress;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorParametersForPerson;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorStopFinder;
+import ch.sbb.matsim.routing.pt.raptor.LeastCostRaptorRouteSelector;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.router.FakeFacility;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SwissRailRaptor#calcRoute} on the transit schedule of the siouxfalls-2014 example scenario.
+ * Origins and destinations are taken from the coordinates of randomly (but reproducibly) drawn stop pairs,
+ * departure times are spread over the day.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SwissRailRaptorBenchmark {
+
+	private SwissRailRaptor raptor;
+	private final List<FakeFacility[]> odPairs = new ArrayList<>();
+	private final List<Double> departureTimes = new ArrayList<>();
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).parse(BenchmarkFixtures.getExampleFile("siouxfalls-2014", "Siouxfalls_network_PT.xml"));
+		new TransitScheduleReader(scenario).readURL(BenchmarkFixtures.getExampleFile("siouxfalls-2014", "Siouxfalls_transitSchedule.xml"));
+
+		SwissRailRaptorData data = SwissRailRaptorData.create(scenario.getTransitSchedule(), RaptorUtils.createStaticConfig(config), scenario.getNetwork());
+		DefaultRaptorStopFinder stopFinder = new DefaultRaptorStopFinder(null, new DefaultRaptorIntermodalAccessEgress(), null);
+		this.raptor = new SwissRailRaptor(data, new DefaultRaptorParametersForPerson(config), new LeastCostRaptorRouteSelector(), stopFinder);
+
+		List<TransitStopFacility> stops = new ArrayList<>(scenario.getTransitSchedule().getFacilities().values());
+		stops.sort((a, b) -> a.getId().compareTo(b.getId()));
+		Random random = new Random(BenchmarkFixtures.SEED);
+		while (this.odPairs.size() < 1000) {
+			TransitStopFacility from = stops.get(random.nextInt(stops.size()));
+			TransitStopFacility to = stops.get(random.nextInt(stops.size()));
+			if (from != to) {
+				this.odPairs.add(new FakeFacility[] {new FakeFacility(from.getCoord()), new FakeFacility(to.getCoord())});
+				this.departureTimes.add(6 * 3600 + random.nextDouble() * 14 * 3600);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<Leg> calcRoute() {
+		int i = this.next;
+		this.next = (this.next + 1) % this.odPairs.size();
+		FakeFacility[] od = this.odPairs.get(i);
+		return this.raptor.calcRoute(od[0], od[1], this.departureTimes.get(i), null);
+	}
+
+}
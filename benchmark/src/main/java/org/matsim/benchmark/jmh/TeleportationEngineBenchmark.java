@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.benchmark.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the QSim with a population in which all legs are teleported, so that the time not spent in the events
+ * manager and the agents is spent in the teleportation engine. Compares the default engine with the one based on
+ * a timing wheel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TeleportationEngineBenchmark {
+
+	private static final int TRIPS_PER_AGENT = 4;
+
+	@Param({"100000"})
+	public int numberOfAgents;
+
+	@Param({"false", "true"})
+	public boolean usingTimeWheelInTeleportation;
+
+	private Scenario scenario;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingTimeWheelInTeleportation(this.usingTimeWheelInTeleportation);
+		config.qsim().setEndTime(30 * 3600);
+		this.scenario = ScenarioUtils.createScenario(config);
+
+		Network network = this.scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(1), node1, node2, 1000, 10, 3600, 1);
+
+		Random random = new Random(BenchmarkFixtures.SEED);
+		PopulationFactory pf = this.scenario.getPopulation().getFactory();
+		for (int i = 0; i < this.numberOfAgents; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link.getId());
+			home.setEndTime(5 * 3600 + random.nextInt(4 * 3600));
+			plan.addActivity(home);
+			for (int trip = 0; trip < TRIPS_PER_AGENT; trip++) {
+				Leg leg = pf.createLeg("walk");
+				Route route = pf.getRouteFactories().createRoute(Route.class, link.getId(), link.getId());
+				route.setTravelTime(60 + random.nextInt(3600));
+				route.setDistance(1000);
+				leg.setRoute(route);
+				plan.addLeg(leg);
+				Activity activity = pf.createActivityFromLinkId(trip == TRIPS_PER_AGENT - 1 ? "h" : "o", link.getId());
+				if (trip < TRIPS_PER_AGENT - 1) {
+					activity.setMaximumDuration(random.nextInt(3 * 3600));
+				}
+				plan.addActivity(activity);
+			}
+			person.addPlan(plan);
+			this.scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(this.scenario).run();
+	}
+
+	@Benchmark
+	public void runQSim() {
+		new QSimBuilder(this.scenario.getConfig())
+				.useDefaults()
+				.build(this.scenario, EventsUtils.createEventsManager())
+				.run();
+	}
+
+}
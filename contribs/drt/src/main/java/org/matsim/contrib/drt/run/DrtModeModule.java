@@ -58,7 +58,7 @@ import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioUtils;
-import org.matsim.core.utils.collections.QuadTrees;
+import org.matsim.core.utils.collections.KDTree;
 import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
 import org.matsim.utils.gis.shp2matsim.ShpGeometryUtils;
 
@@ -111,7 +111,7 @@ public final class DrtModeModule extends AbstractDvrpModeModule {
 			bindModal(AccessEgressFacilityFinder.class).toProvider(modalProvider(
 					getter -> new ClosestAccessEgressFacilityFinder(drtCfg.getMaxWalkDistance(),
 							getter.get(Network.class),
-							QuadTrees.createQuadTree(getter.getModal(DrtStopNetwork.class).getDrtStops().values()))))
+							KDTree.create(getter.getModal(DrtStopNetwork.class).getDrtStops().values()))))
 					.asEagerSingleton();
 		}
 
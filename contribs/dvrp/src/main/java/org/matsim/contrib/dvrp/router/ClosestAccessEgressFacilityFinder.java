@@ -27,7 +27,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.router.DvrpRoutingModule.AccessEgressFacilityFinder;
-import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.collections.SpatialIndex;
 import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.facilities.Facility;
 
@@ -38,13 +38,18 @@ import com.google.common.base.Verify;
  */
 public class ClosestAccessEgressFacilityFinder implements AccessEgressFacilityFinder {
 	private final Network network;
-	private final QuadTree<? extends Facility> facilityQuadTree;
+	private final SpatialIndex<? extends Facility> facilityIndex;
 	private final double maxDistance;
 
+	/**
+	 * @param facilityIndex e.g. a {@link org.matsim.core.utils.collections.KDTree}, which answers the closest facility
+	 *                      queries faster than a {@link org.matsim.core.utils.collections.QuadTree} if the facilities do
+	 *                      not change
+	 */
 	public ClosestAccessEgressFacilityFinder(double maxDistance, Network network,
-			QuadTree<? extends Facility> facilityQuadTree) {
+			SpatialIndex<? extends Facility> facilityIndex) {
 		this.network = network;
-		this.facilityQuadTree = facilityQuadTree;
+		this.facilityIndex = facilityIndex;
 		this.maxDistance = maxDistance;
 	}
 
@@ -63,7 +68,7 @@ public class ClosestAccessEgressFacilityFinder implements AccessEgressFacilityFi
 
 	private Facility findClosestStop(Facility facility) {
 		Coord coord = getFacilityCoord(facility, network);
-		Facility closestStop = facilityQuadTree.getClosest(coord.getX(), coord.getY());
+		Facility closestStop = facilityIndex.getClosest(coord.getX(), coord.getY());
 		double closestStopDistance = CoordUtils.calcEuclideanDistance(coord, closestStop.getCoord());
 		return closestStopDistance > maxDistance ? null : closestStop;
 	}
@@ -0,0 +1,229 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RangeRaptor.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRoute;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRouteStop;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RTransfer;
+
+/**
+ * Range-RAPTOR (rRAPTOR, see Delling et al, Round-Based Public Transit Routing): calculates the earliest arrival at all
+ * stops for every departure time of a time window.
+ *
+ * The departure times are handled from the latest to the earliest one, and the labels of all rounds are kept from one
+ * departure time to the next: departing earlier, one arrives at least as early as with a later departure, so the
+ * labels of the later departures are valid bounds, and only the part of the schedule where the earlier departure
+ * actually arrives earlier is explored again.  A profile with a departure every minute is thus much cheaper than one
+ * search per minute.
+ *
+ * Unlike {@link SwissRailRaptorCore}, this works with times and not with costs, since the costs of a later departure
+ * would not be bounds for an earlier one.  The result per departure time is the earliest arrival at every stop with a
+ * transit vehicle, or at the start stops themselves.  Walking from the last stop to a nearby stop is not included,
+ * as this is usually part of the egress anyway.  The transfer count is the one of the earliest arrival found, which is
+ * not necessarily the least number of transfers with which one arrives at that time.
+ *
+ * This class is <b>NOT</b> thread-safe, but any number of instances can share the same {@link SwissRailRaptorData},
+ * see {@link RaptorTravelTimeMatrix}.
+ */
+public final class RangeRaptor {
+
+    private final SwissRailRaptorData data;
+    private final int maxRounds;
+    private final int countRouteStops;
+    private final TransitStopFacility[] stops;
+    private final int[][] routeStopsPerStop;
+
+    /** the earliest time one can board at a route stop after k transit legs, at [k * countRouteStops + routeStopIndex] */
+    private final double[] boardingTimes;
+    /** the earliest arrival per stop, over all rounds and all departures handled so far */
+    private final double[] arrivalTimes;
+    private final int[] transferCounts;
+    /** the route stop of the earliest arrival per stop, where the transfers start */
+    private final int[] arrivalRouteStops;
+    private final BitSet markedRouteStops;
+    private final BitSet improvedStops;
+
+    /**
+     * @param maxTransfers the maximum number of transfers between transit legs
+     */
+    public RangeRaptor(SwissRailRaptorData data, int maxTransfers) {
+        this.data = data;
+        this.maxRounds = maxTransfers + 1;
+        this.countRouteStops = data.countRouteStops;
+        this.stops = new TransitStopFacility[data.countStops];
+        this.routeStopsPerStop = new int[data.countStops][];
+        for (Map.Entry<TransitStopFacility, Integer> e : data.stopFacilityIndices.entrySet()) {
+            this.stops[e.getValue()] = e.getKey();
+            this.routeStopsPerStop[e.getValue()] = data.routeStopsPerStopFacility.get(e.getKey());
+        }
+        this.boardingTimes = new double[this.maxRounds * this.countRouteStops];
+        this.arrivalTimes = new double[data.countStops];
+        this.transferCounts = new int[data.countStops];
+        this.arrivalRouteStops = new int[data.countStops];
+        this.markedRouteStops = new BitSet(this.countRouteStops);
+        this.improvedStops = new BitSet(data.countStops);
+    }
+
+    public int getStopCount() {
+        return this.stops.length;
+    }
+
+    public TransitStopFacility getStop(int stopIndex) {
+        return this.stops[stopIndex];
+    }
+
+    /**
+     * @return the index of the stop in the arrays passed to the {@link ProfileHandler}, or -1 if no transit route serves the stop
+     */
+    public int getStopIndex(TransitStopFacility stop) {
+        Integer index = this.data.stopFacilityIndices.get(stop);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Calculates the earliest arrivals for departures at <code>earliestDepTime</code>, <code>earliestDepTime + stepSize</code>,
+     * ... up to <code>latestDepTime</code>, and passes them to the handler, starting with the latest departure.
+     */
+    public void calcProfile(Collection<InitialStop> startStops, double earliestDepTime, double latestDepTime, double stepSize, ProfileHandler handler) {
+        Arrays.fill(this.boardingTimes, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.arrivalTimes, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.transferCounts, -1);
+
+        int countDepartures = (int) Math.floor((latestDepTime - earliestDepTime) / stepSize) + 1;
+        for (int departure = countDepartures - 1; departure >= 0; departure--) {
+            double depTime = earliestDepTime + departure * stepSize;
+            this.markedRouteStops.clear();
+            for (InitialStop startStop : startStops) {
+                int stopIndex = getStopIndex(startStop.stop);
+                if (stopIndex < 0) {
+                    continue;
+                }
+                double time = depTime + startStop.accessTime;
+                if (time < this.arrivalTimes[stopIndex]) {
+                    this.arrivalTimes[stopIndex] = time;
+                    this.transferCounts[stopIndex] = 0;
+                }
+                for (int routeStopIndex : this.routeStopsPerStop[stopIndex]) {
+                    setBoardingTime(0, routeStopIndex, time);
+                    // make sure we can transfer even at the start stop, like in calcLeastCostTree
+                    handleTransfers(0, routeStopIndex, time);
+                }
+            }
+
+            for (int round = 1; round <= this.maxRounds && !this.markedRouteStops.isEmpty(); round++) {
+                exploreRoutes(round);
+                if (round < this.maxRounds) {
+                    for (int stopIndex = this.improvedStops.nextSetBit(0); stopIndex >= 0; stopIndex = this.improvedStops.nextSetBit(stopIndex + 1)) {
+                        handleTransfers(round, this.arrivalRouteStops[stopIndex], this.arrivalTimes[stopIndex]);
+                    }
+                }
+            }
+
+            handler.handleDeparture(depTime, this.arrivalTimes, this.transferCounts);
+        }
+    }
+
+    /**
+     * Rides along all routes which can be boarded at a marked route stop, with the earliest vehicle that can be boarded
+     * after <code>round - 1</code> transit legs.
+     */
+    private void exploreRoutes(int round) {
+        this.improvedStops.clear();
+        int boardingOffset = (round - 1) * this.countRouteStops;
+        for (int firstRouteStopIndex = this.markedRouteStops.nextSetBit(0); firstRouteStopIndex >= 0; firstRouteStopIndex = this.markedRouteStops.nextSetBit(firstRouteStopIndex + 1)) {
+            RRoute route = this.data.routes[this.data.routeStops[firstRouteStopIndex].transitRouteIndex];
+            int lastRouteStopIndex = route.indexFirstRouteStop + route.countRouteStops - 1;
+            int departureIndex = -1;
+            for (int routeStopIndex = firstRouteStopIndex; routeStopIndex <= lastRouteStopIndex; routeStopIndex++) {
+                RRouteStop routeStop = this.data.routeStops[routeStopIndex];
+                if (departureIndex >= 0) {
+                    double arrivalTime = this.data.departures[departureIndex] + routeStop.arrivalOffset;
+                    int stopIndex = routeStop.stopFacilityIndex;
+                    if (arrivalTime < this.arrivalTimes[stopIndex]) {
+                        this.arrivalTimes[stopIndex] = arrivalTime;
+                        this.transferCounts[stopIndex] = round - 1;
+                        this.arrivalRouteStops[stopIndex] = routeStopIndex;
+                        this.improvedStops.set(stopIndex);
+                    }
+                }
+                double boardingTime = this.boardingTimes[boardingOffset + routeStopIndex];
+                if (routeStopIndex < lastRouteStopIndex && boardingTime < Double.POSITIVE_INFINITY
+                        && (departureIndex < 0 || boardingTime < this.data.departures[departureIndex] + routeStop.departureOffset)) {
+                    // we might catch an earlier vehicle here
+                    int earlierDepartureIndex = findNextDepartureIndex(route, routeStop, boardingTime);
+                    if (earlierDepartureIndex >= 0 && (departureIndex < 0 || earlierDepartureIndex < departureIndex)) {
+                        departureIndex = earlierDepartureIndex;
+                    }
+                }
+            }
+            firstRouteStopIndex = lastRouteStopIndex; // we've handled this route, so we can skip its route stops
+        }
+        this.markedRouteStops.clear();
+    }
+
+    private void handleTransfers(int round, int fromRouteStopIndex, double arrivalTime) {
+        RRouteStop fromRouteStop = this.data.routeStops[fromRouteStopIndex];
+        int lastTransferIndex = fromRouteStop.indexFirstTransfer + fromRouteStop.countTransfers;
+        for (int transferIndex = fromRouteStop.indexFirstTransfer; transferIndex < lastTransferIndex; transferIndex++) {
+            RTransfer transfer = this.data.transfers[transferIndex];
+            setBoardingTime(round, transfer.toRouteStop, arrivalTime + transfer.transferTime);
+        }
+    }
+
+    private void setBoardingTime(int round, int routeStopIndex, double time) {
+        int index = round * this.countRouteStops + routeStopIndex;
+        if (time < this.boardingTimes[index]) {
+            this.boardingTimes[index] = time;
+            this.markedRouteStops.set(routeStopIndex);
+        }
+    }
+
+    private int findNextDepartureIndex(RRoute route, RRouteStop routeStop, double time) {
+        double depTimeAtRouteStart = time - routeStop.departureOffset;
+        int fromIndex = route.indexFirstDeparture;
+        int toIndex = fromIndex + route.countDepartures;
+        int pos = Arrays.binarySearch(this.data.departures, fromIndex, toIndex, depTimeAtRouteStart);
+        if (pos < 0) {
+            pos = -(pos + 1); // the insertion point, i.e. the next departure
+        }
+        return pos < toIndex ? pos : -1;
+    }
+
+    /**
+     * Gets the result of one departure time.  The arrays are indexed by {@link #getStopIndex(TransitStopFacility)}, and are
+     * re-used for the next departure time, so they must not be modified or kept.
+     */
+    public interface ProfileHandler {
+        /**
+         * @param arrivalTimes the earliest arrival per stop, {@link Double#POSITIVE_INFINITY} if the stop cannot be reached
+         * @param transferCounts the number of transfers per stop, -1 if the stop cannot be reached
+         */
+        void handleDeparture(double departureTime, double[] arrivalTimes, int[] transferCounts);
+    }
+
+}
@@ -0,0 +1,190 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTravelTimeMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Travel times from many origin stops to all stops, averaged over the departures of a time window, e.g. for
+ * accessibility computations or skims.  Calculated with {@link RangeRaptor} in several threads, which all share the
+ * same {@link SwissRailRaptorData}, and stored in primitive arrays with one row per origin and one column per stop.
+ */
+public final class RaptorTravelTimeMatrix {
+
+    private static final Logger log = Logger.getLogger(RaptorTravelTimeMatrix.class);
+
+    private final SwissRailRaptorData data;
+    private final Map<TransitStopFacility, Integer> originIndices;
+    private final int countStops;
+    private final float[] averageTravelTimes;
+    private final float[] minTravelTimes;
+
+    private RaptorTravelTimeMatrix(SwissRailRaptorData data, List<TransitStopFacility> origins) {
+        this.data = data;
+        this.originIndices = new HashMap<>();
+        for (int i = 0; i < origins.size(); i++) {
+            this.originIndices.putIfAbsent(origins.get(i), i);
+        }
+        this.countStops = data.countStops;
+        int size = getMatrixSize(origins.size(), this.countStops);
+        this.averageTravelTimes = new float[size];
+        this.minTravelTimes = new float[size];
+    }
+
+    /**
+     * @return the number of entries of a matrix, which must fit into one array
+     * @throws IllegalArgumentException if there are too many origins and stops
+     */
+    static int getMatrixSize(int originCount, int stopCount) {
+        long size = (long) originCount * stopCount;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many origins and stops for a travel time matrix: " + originCount
+                    + " origins x " + stopCount + " stops.");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Calculates the travel times for departures at the origins every <code>stepSize</code> seconds from
+     * <code>earliestDepTime</code> to <code>latestDepTime</code>.  The travel time of a departure includes the waiting
+     * time at the origin until the first vehicle leaves.
+     */
+    public static RaptorTravelTimeMatrix calculate(SwissRailRaptorData data, List<TransitStopFacility> origins,
+                                                   double earliestDepTime, double latestDepTime, double stepSize,
+                                                   int maxTransfers, int numberOfThreads) {
+        log.info("calculating pt travel times from " + origins.size() + " stops with " + numberOfThreads + " threads...");
+        RaptorTravelTimeMatrix matrix = new RaptorTravelTimeMatrix(data, origins);
+        AtomicInteger nextOrigin = new AtomicInteger(0);
+        AtomicReference<Throwable> exception = new AtomicReference<>();
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            threads[i] = new Thread(() -> {
+                // the raptor and the sums are per thread, the origins are taken one after the other by all threads
+                RangeRaptor raptor = new RangeRaptor(data, maxTransfers);
+                double[] sums = new double[matrix.countStops];
+                int[] counts = new int[matrix.countStops];
+                double[] mins = new double[matrix.countStops];
+                RangeRaptor.ProfileHandler handler = (depTime, arrivalTimes, transferCounts) -> {
+                    for (int stop = 0; stop < arrivalTimes.length; stop++) {
+                        if (arrivalTimes[stop] < Double.POSITIVE_INFINITY) {
+                            double travelTime = arrivalTimes[stop] - depTime;
+                            sums[stop] += travelTime;
+                            counts[stop]++;
+                            if (travelTime < mins[stop]) {
+                                mins[stop] = travelTime;
+                            }
+                        }
+                    }
+                };
+                for (int origin = nextOrigin.getAndIncrement(); origin < origins.size() && exception.get() == null; origin = nextOrigin.getAndIncrement()) {
+                    Arrays.fill(sums, 0.0);
+                    Arrays.fill(counts, 0);
+                    Arrays.fill(mins, Double.POSITIVE_INFINITY);
+                    InitialStop startStop = new InitialStop(origins.get(origin), 0, 0, 0, TransportMode.walk);
+                    raptor.calcProfile(Collections.singletonList(startStop), earliestDepTime, latestDepTime, stepSize, handler);
+                    long offset = (long) origin * matrix.countStops;
+                    for (int stop = 0; stop < matrix.countStops; stop++) {
+                        int index = (int) (offset + stop);
+                        matrix.averageTravelTimes[index] = counts[stop] == 0 ? Float.POSITIVE_INFINITY : (float) (sums[stop] / counts[stop]);
+                        matrix.minTravelTimes[index] = (float) mins[stop];
+                    }
+                }
+            }, "RaptorTravelTimeMatrix-" + i);
+            threads[i].setUncaughtExceptionHandler((thread, e) -> exception.compareAndSet(null, e));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (exception.get() != null) {
+            throw new RuntimeException("Exception while calculating the pt travel times.", exception.get());
+        }
+        log.info("calculating pt travel times done.");
+        return matrix;
+    }
+
+    public int getOriginIndex(TransitStopFacility origin) {
+        Integer index = this.originIndices.get(origin);
+        return index == null ? -1 : index;
+    }
+
+    public int getStopIndex(TransitStopFacility stop) {
+        Integer index = this.data.stopFacilityIndices.get(stop);
+        return index == null ? -1 : index;
+    }
+
+    public int getStopCount() {
+        return this.countStops;
+    }
+
+    /**
+     * @return the travel time averaged over the departures from which the stop can be reached, or
+     * {@link Double#POSITIVE_INFINITY} if it cannot be reached at all
+     */
+    public double getAverageTravelTime(TransitStopFacility origin, TransitStopFacility stop) {
+        return get(this.averageTravelTimes, origin, stop);
+    }
+
+    /**
+     * @return the shortest travel time over all departures, or {@link Double#POSITIVE_INFINITY} if the stop cannot be reached
+     */
+    public double getMinTravelTime(TransitStopFacility origin, TransitStopFacility stop) {
+        return get(this.minTravelTimes, origin, stop);
+    }
+
+    /**
+     * @return the average travel times, at <code>[originIndex * getStopCount() + stopIndex]</code>.  Not a copy, do not modify.
+     */
+    public float[] getAverageTravelTimes() {
+        return this.averageTravelTimes;
+    }
+
+    /**
+     * @return the shortest travel times, at <code>[originIndex * getStopCount() + stopIndex]</code>.  Not a copy, do not modify.
+     */
+    public float[] getMinTravelTimes() {
+        return this.minTravelTimes;
+    }
+
+    private double get(float[] values, TransitStopFacility origin, TransitStopFacility stop) {
+        int originIndex = getOriginIndex(origin);
+        int stopIndex = getStopIndex(stop);
+        if (originIndex < 0 || stopIndex < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return values[(int) ((long) originIndex * this.countStops + stopIndex)];
+    }
+
+}
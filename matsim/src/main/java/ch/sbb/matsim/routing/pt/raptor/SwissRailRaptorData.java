@@ -4,15 +4,25 @@
 
 package ch.sbb.matsim.routing.pt.raptor;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -21,8 +31,10 @@ import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.collections.KDTree;
 import org.matsim.core.utils.collections.QuadTree;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.pt.transitSchedule.TransitScheduleUtils;
 import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
@@ -39,6 +51,9 @@ public class SwissRailRaptorData {
 
     private static final Logger log = Logger.getLogger(SwissRailRaptorData.class);
 
+    private static final int FILE_MAGIC = 0x53525244; // "SRRD"
+    private static final int FILE_VERSION = 1;
+
     final RaptorStaticConfig config;
     final int countStops;
     final int countRouteStops;
@@ -49,12 +64,16 @@ public class SwissRailRaptorData {
     final Map<TransitStopFacility, Integer> stopFacilityIndices;
     final Map<TransitStopFacility, int[]> routeStopsPerStopFacility;
     final QuadTree<TransitStopFacility> stopsQT;
+    final KDTree<TransitStopFacility> stopsIndex; // the same stops as stopsQT, for the fast nearest stop queries
     final Map<String, Map<String, QuadTree<TransitStopFacility>>> stopFilterAttribute2Value2StopsQT;
+    private final long fingerprint; // of the schedule and the static config, see RouteData
+    private final long settingsFingerprint;
 
     private SwissRailRaptorData(RaptorStaticConfig config, int countStops,
                                 RRoute[] routes, double[] departures, RRouteStop[] routeStops,
                                 RTransfer[] transfers, Map<TransitStopFacility, Integer> stopFacilityIndices,
-                                Map<TransitStopFacility, int[]> routeStopsPerStopFacility, QuadTree<TransitStopFacility> stopsQT) {
+                                Map<TransitStopFacility, int[]> routeStopsPerStopFacility, QuadTree<TransitStopFacility> stopsQT,
+                                KDTree<TransitStopFacility> stopsIndex, long fingerprint, long settingsFingerprint) {
         this.config = config;
         this.countStops = countStops;
         this.countRouteStops = routeStops.length;
@@ -65,182 +84,441 @@ public class SwissRailRaptorData {
         this.stopFacilityIndices = stopFacilityIndices;
         this.routeStopsPerStopFacility = routeStopsPerStopFacility;
         this.stopsQT = stopsQT;
+        this.stopsIndex = stopsIndex;
         this.stopFilterAttribute2Value2StopsQT = new HashMap<String, Map<String, QuadTree<TransitStopFacility>>>();
+        this.fingerprint = fingerprint;
+        this.settingsFingerprint = settingsFingerprint;
     }
 
+    /**
+     * Creates the data for the schedule.  The transfers between the stops are calculated with
+     * {@link RaptorStaticConfig#getNumberOfThreads()} threads.
+     */
     public static SwissRailRaptorData create(TransitSchedule schedule, RaptorStaticConfig staticConfig, Network network) {
         log.info("Preparing data for SwissRailRaptor...");
         long startMillis = System.currentTimeMillis();
 
-        int countRoutes = 0;
-        long countRouteStops = 0;
-        long countDepartures = 0;
+        RouteData routeData = new RouteData(schedule, staticConfig, network);
+        RTransfer[][] transfersPerRouteStop = new RTransfer[routeData.routeStops.length][];
+        List<TransitStopFacility> fromStops = new ArrayList<>(routeData.routeStopsPerStopFacility.keySet());
+        calculateRouteStopTransfers(schedule, routeData, fromStops, null, staticConfig, transfersPerRouteStop);
+        SwissRailRaptorData data = routeData.createData(staticConfig, transfersPerRouteStop);
+
+        long endMillis = System.currentTimeMillis();
+        log.info("SwissRailRaptor data preparation done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
+        data.logStatistics();
+        return data;
+    }
+
+    /**
+     * Creates the data for a schedule in which some transit routes were added, removed or changed since
+     * <code>previous</code> was created, e.g. by the replanning of transit lines.  The routes, route stops and
+     * departures are built anew, which is cheap.  Of the transfers, only the ones from or to a route stop of a changed
+     * route are calculated, all others are taken over from <code>previous</code>.
+     * <p></p>
+     * A route counts as unchanged if it is the same object as before and still serves the same stops with the same
+     * offsets and departures.  If the minimal transfer times of the schedule changed, all transfers are calculated
+     * again.  The coordinates of the stop facilities must be the same as for <code>previous</code>.
+     */
+    public static SwissRailRaptorData update(SwissRailRaptorData previous, TransitSchedule schedule, Network network) {
+        log.info("Updating data for SwissRailRaptor...");
+        long startMillis = System.currentTimeMillis();
+
+        RaptorStaticConfig staticConfig = previous.config;
+        RouteData routeData = new RouteData(schedule, staticConfig, network);
+        if (routeData.settingsFingerprint != previous.settingsFingerprint) {
+            log.info("The minimal transfer times changed, all transfers need to be calculated again.");
+            return create(schedule, staticConfig, network);
+        }
 
-        for (TransitLine line : schedule.getTransitLines().values()) {
-            countRoutes += line.getRoutes().size();
-            for (TransitRoute route : line.getRoutes().values()) {
-                countRouteStops += route.getStops().size();
-                countDepartures += route.getDepartures().size();
+        Map<TransitRoute, Integer> previousRouteIndices = new IdentityHashMap<>();
+        for (RRouteStop routeStop : previous.routeStops) {
+            previousRouteIndices.putIfAbsent(routeStop.route, routeStop.transitRouteIndex);
+        }
+        boolean[] changedRouteStops = new boolean[routeData.routeStops.length];
+        int[] newRouteStopIndices = new int[previous.countRouteStops];
+        Arrays.fill(newRouteStopIndices, -1);
+        int countChangedRoutes = 0;
+        for (RRoute route : routeData.routes) {
+            if (route.countRouteStops == 0) {
+                continue;
+            }
+            Integer previousRouteIndex = previousRouteIndices.get(routeData.routeStops[route.indexFirstRouteStop].route);
+            RRoute previousRoute = previousRouteIndex == null ? null : previous.routes[previousRouteIndex];
+            if (previousRoute != null && isSameRoute(previous, previousRoute, routeData, route)) {
+                for (int i = 0; i < route.countRouteStops; i++) {
+                    newRouteStopIndices[previousRoute.indexFirstRouteStop + i] = route.indexFirstRouteStop + i;
+                }
+            } else {
+                Arrays.fill(changedRouteStops, route.indexFirstRouteStop, route.indexFirstRouteStop + route.countRouteStops, true);
+                countChangedRoutes++;
             }
         }
 
-        if (countRouteStops > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many TransitRouteStops: " + countRouteStops);
+        // the transfers between unchanged routes stay the same, only the indices of their route stops may be different
+        RTransfer[][] transfersPerRouteStop = new RTransfer[routeData.routeStops.length][];
+        List<RTransfer> stopTransfers = new ArrayList<>();
+        for (int previousIndex = 0; previousIndex < previous.countRouteStops; previousIndex++) {
+            int fromRouteStopIndex = newRouteStopIndices[previousIndex];
+            if (fromRouteStopIndex < 0) {
+                continue;
+            }
+            RRouteStop previousRouteStop = previous.routeStops[previousIndex];
+            stopTransfers.clear();
+            for (int t = 0; t < previousRouteStop.countTransfers; t++) {
+                RTransfer transfer = previous.transfers[previousRouteStop.indexFirstTransfer + t];
+                int toRouteStopIndex = newRouteStopIndices[transfer.toRouteStop];
+                if (toRouteStopIndex >= 0) {
+                    stopTransfers.add(new RTransfer(fromRouteStopIndex, toRouteStopIndex, transfer.transferTime, transfer.transferDistance));
+                }
+            }
+            transfersPerRouteStop[fromRouteStopIndex] = stopTransfers.toArray(new RTransfer[0]);
+        }
+
+        // transfers from or to a changed route can only start at one of its stops, a stop nearby,
+        // or a stop with a minimal transfer time to one of its stops
+        Set<TransitStopFacility> changedStops = new LinkedHashSet<>();
+        for (int routeStopIndex = 0; routeStopIndex < changedRouteStops.length; routeStopIndex++) {
+            if (changedRouteStops[routeStopIndex]) {
+                changedStops.add(routeData.routeStops[routeStopIndex].routeStop.getStopFacility());
+            }
         }
-        if (countDepartures > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many Departures: " + countDepartures);
+        Set<TransitStopFacility> fromStops = new LinkedHashSet<>();
+        for (TransitStopFacility stop : changedStops) {
+            fromStops.add(stop);
+            fromStops.addAll(routeData.stopsQT.getDisk(stop.getCoord().getX(), stop.getCoord().getY(), staticConfig.getBeelineWalkConnectionDistance()));
         }
+        MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            if (changedStops.contains(schedule.getFacilities().get(iter.getToStopId()))) {
+                fromStops.add(schedule.getFacilities().get(iter.getFromStopId()));
+            }
+        }
+        calculateRouteStopTransfers(schedule, routeData, new ArrayList<>(fromStops), changedRouteStops, staticConfig, transfersPerRouteStop);
+        SwissRailRaptorData data = routeData.createData(staticConfig, transfersPerRouteStop);
 
-        double[] departures = new double[(int) countDepartures];
-        RRoute[] routes = new RRoute[countRoutes];
-        RRouteStop[] routeStops = new RRouteStop[(int) countRouteStops];
+        long endMillis = System.currentTimeMillis();
+        log.info("SwissRailRaptor data update done, " + countChangedRoutes + " of " + routeData.routes.length + " routes changed. Took " + (endMillis - startMillis) / 1000 + " seconds.");
+        data.logStatistics();
+        return data;
+    }
 
-        int indexRoutes = 0;
-        int indexRouteStops = 0;
-        int indexDeparture = 0;
+    /**
+     * Writes the transfers to a file, so that {@link #read(String, TransitSchedule, RaptorStaticConfig, Network)} can
+     * create the data without calculating them again.  The rest of the data refers to the objects of the schedule and
+     * is built from the schedule when reading.
+     */
+    public void write(String filename) {
+        try (DataOutputStream out = new DataOutputStream(IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(this.fingerprint);
+            out.writeInt(this.countRouteStops);
+            // the transfers are ordered by their from route stop, so the counts are enough to know where they start
+            for (RRouteStop routeStop : this.routeStops) {
+                out.writeInt(routeStop.countTransfers);
+            }
+            for (RTransfer transfer : this.transfers) {
+                out.writeInt(transfer.toRouteStop);
+                out.writeDouble(transfer.transferTime);
+                out.writeDouble(transfer.transferDistance);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // enumerate TransitStopFacilities along their usage in transit routes to (hopefully) achieve a better memory locality
-        // well, I'm not even sure how often we'll need the transit stop facilities, likely we'll use RouteStops more often
-        Map<TransitStopFacility, Integer> stopFacilityIndices = new HashMap<>((int) (schedule.getFacilities().size() * 1.5));
-        Map<TransitStopFacility, int[]> routeStopsPerStopFacility = new HashMap<>();
+    /**
+     * Creates the data for the schedule with the transfers from a file written by {@link #write(String)}.  The file
+     * must have been written for the same schedule and static config, otherwise an exception is thrown.
+     */
+    public static SwissRailRaptorData read(String filename, TransitSchedule schedule, RaptorStaticConfig staticConfig, Network network) {
+        log.info("Reading data for SwissRailRaptor from " + filename + "...");
+        long startMillis = System.currentTimeMillis();
 
-        boolean useModeMapping = staticConfig.isUseModeMappingForPassengers();
-        for (TransitLine line : schedule.getTransitLines().values()) {
-            List<TransitRoute> transitRoutes = new ArrayList<>(line.getRoutes().values());
-            transitRoutes.sort(Comparator.comparingDouble(tr -> getEarliestDeparture(tr).getDepartureTime())); // sort routes by earliest departure for additional performance gains
-            for (TransitRoute route : transitRoutes) {
-                int indexFirstDeparture = indexDeparture;
-                String mode = TransportMode.pt;
-                if (useModeMapping) {
-                    mode = staticConfig.getPassengerMode(route.getTransportMode());
-                }
-                RRoute rroute = new RRoute(indexRouteStops, route.getStops().size(), indexFirstDeparture, route.getDepartures().size());
-                routes[indexRoutes] = rroute;
-                NetworkRoute networkRoute = route.getRoute();
-                List<Id<Link>> allLinkIds = new ArrayList<>();
-                allLinkIds.add(networkRoute.getStartLinkId());
-                allLinkIds.addAll(networkRoute.getLinkIds());
-                if (allLinkIds.size() > 1 || networkRoute.getStartLinkId() != networkRoute.getEndLinkId()) {
-                    allLinkIds.add(networkRoute.getEndLinkId());
-                }
-                Iterator<Id<Link>> linkIdIterator = allLinkIds.iterator();
-                Id<Link> currentLinkId = linkIdIterator.next();
-                double distanceAlongRoute = 0.0;
-                for (TransitRouteStop routeStop : route.getStops()) {
-                    while (!routeStop.getStopFacility().getLinkId().equals(currentLinkId)) {
-                        if (linkIdIterator.hasNext()) {
-                            currentLinkId = linkIdIterator.next();
-                            Link link = network.getLinks().get(currentLinkId);
-                            distanceAlongRoute += link.getLength();
-                        } else {
-                            distanceAlongRoute = Double.NaN;
-                            break;
-                        }
-                    }
-                    int stopFacilityIndex = stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
-                    RRouteStop rRouteStop = new RRouteStop(routeStop, line, route, mode, indexRoutes, stopFacilityIndex, distanceAlongRoute);
-                    final int thisRouteStopIndex = indexRouteStops;
-                    routeStops[thisRouteStopIndex] = rRouteStop;
-                    routeStopsPerStopFacility.compute(routeStop.getStopFacility(), (stop, currentRouteStops) -> {
-                        if (currentRouteStops == null) {
-                            return new int[] { thisRouteStopIndex };
-                        }
-                        int[] tmp = new int[currentRouteStops.length + 1];
-                        System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
-                        tmp[currentRouteStops.length] = thisRouteStopIndex;
-                        return tmp;
-                    });
-                    indexRouteStops++;
-                }
-                for (Departure dep : route.getDepartures().values()) {
-                    departures[indexDeparture] = dep.getDepartureTime();
-                    indexDeparture++;
+        RouteData routeData = new RouteData(schedule, staticConfig, network);
+        RTransfer[][] transfersPerRouteStop = new RTransfer[routeData.routeStops.length][];
+        try (DataInputStream in = new DataInputStream(IOUtils.getInputStream(IOUtils.getFileUrl(filename)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new RuntimeException(filename + " is not a SwissRailRaptor data file of version " + FILE_VERSION + ".");
+            }
+            if (in.readLong() != routeData.fingerprint || in.readInt() != routeData.routeStops.length) {
+                throw new RuntimeException(filename + " was written for another transit schedule or static config.");
+            }
+            for (int routeStopIndex = 0; routeStopIndex < transfersPerRouteStop.length; routeStopIndex++) {
+                transfersPerRouteStop[routeStopIndex] = new RTransfer[in.readInt()];
+            }
+            for (int routeStopIndex = 0; routeStopIndex < transfersPerRouteStop.length; routeStopIndex++) {
+                RTransfer[] stopTransfers = transfersPerRouteStop[routeStopIndex];
+                for (int i = 0; i < stopTransfers.length; i++) {
+                    stopTransfers[i] = new RTransfer(routeStopIndex, in.readInt(), in.readDouble(), in.readDouble());
                 }
-                Arrays.sort(departures, indexFirstDeparture, indexDeparture);
-                indexRoutes++;
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        SwissRailRaptorData data = routeData.createData(staticConfig, transfersPerRouteStop);
 
-        // only put used transit stops into the quad tree
-        Set<TransitStopFacility> stops = routeStopsPerStopFacility.keySet();
-        QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(stops);
-        int countStopFacilities = stops.size();
+        long endMillis = System.currentTimeMillis();
+        log.info("SwissRailRaptor data reading done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
+        data.logStatistics();
+        return data;
+    }
+
+    private void logStatistics() {
+        log.info("SwissRailRaptor statistics:  #routes = " + this.routes.length);
+        log.info("SwissRailRaptor statistics:  #departures = " + this.departures.length);
+        log.info("SwissRailRaptor statistics:  #routeStops = " + this.routeStops.length);
+        log.info("SwissRailRaptor statistics:  #stopFacilities = " + this.countStops);
+        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + this.transfers.length);
+    }
 
-        Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeStopsPerStopFacility, routeStops, staticConfig);
-        long countTransfers = 0;
-        for (RTransfer[] transfers : allTransfers.values()) {
-            countTransfers += transfers.length;
+    private static boolean isSameRoute(SwissRailRaptorData previous, RRoute previousRoute, RouteData routeData, RRoute route) {
+        if (previousRoute.countRouteStops != route.countRouteStops || previousRoute.countDepartures != route.countDepartures) {
+            return false;
         }
-        if (countTransfers > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many Transfers: " + countTransfers);
+        for (int i = 0; i < route.countRouteStops; i++) {
+            RRouteStop previousRouteStop = previous.routeStops[previousRoute.indexFirstRouteStop + i];
+            RRouteStop routeStop = routeData.routeStops[route.indexFirstRouteStop + i];
+            if (previousRouteStop.routeStop.getStopFacility() != routeStop.routeStop.getStopFacility()
+                    || previousRouteStop.arrivalOffset != routeStop.arrivalOffset
+                    || previousRouteStop.departureOffset != routeStop.departureOffset) {
+                return false;
+            }
         }
-        RTransfer[] transfers = new RTransfer[(int) countTransfers];
-        int indexTransfer = 0;
-        for (int routeStopIndex = 0; routeStopIndex < routeStops.length; routeStopIndex++) {
-            RTransfer[] stopTransfers = allTransfers.get(routeStopIndex);
-            int transferCount = stopTransfers == null ? 0 : stopTransfers.length;
-            if (transferCount > 0) {
-                RRouteStop routeStop = routeStops[routeStopIndex];
-                routeStop.indexFirstTransfer = indexTransfer;
-                routeStop.countTransfers = transferCount;
-                System.arraycopy(stopTransfers, 0, transfers, indexTransfer, transferCount);
-                indexTransfer += transferCount;
+        for (int i = 0; i < route.countDepartures; i++) {
+            if (previous.departures[previousRoute.indexFirstDeparture + i] != routeData.departures[route.indexFirstDeparture + i]) {
+                return false;
             }
         }
+        return true;
+    }
 
-        SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStopFacilities, routes, departures, routeStops, transfers, stopFacilityIndices, routeStopsPerStopFacility, stopsQT);
+    /**
+     * The routes, route stops and departures of a schedule, i.e. everything but the transfers.
+     */
+    private static final class RouteData {
+        final RRoute[] routes;
+        final double[] departures;
+        final RRouteStop[] routeStops;
+        final Map<TransitStopFacility, Integer> stopFacilityIndices;
+        final Map<TransitStopFacility, int[]> routeStopsPerStopFacility;
+        final QuadTree<TransitStopFacility> stopsQT;
+        final KDTree<TransitStopFacility> stopsIndex;
+        /**
+         * A hash over everything the transfers depend on: the stops and departures of the routes, the coordinates of
+         * the stops, the minimal transfer times and the static config.  It is independent of the JVM, so it can be
+         * used to check whether a file with transfers belongs to a schedule.
+         */
+        final long fingerprint;
+        /**
+         * The part of the fingerprint that does not depend on the routes: the minimal transfer times and the static config.
+         */
+        final long settingsFingerprint;
+
+        RouteData(TransitSchedule schedule, RaptorStaticConfig staticConfig, Network network) {
+            int countRoutes = 0;
+            long countRouteStops = 0;
+            long countDepartures = 0;
+
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                countRoutes += line.getRoutes().size();
+                for (TransitRoute route : line.getRoutes().values()) {
+                    countRouteStops += route.getStops().size();
+                    countDepartures += route.getDepartures().size();
+                }
+            }
 
-        long endMillis = System.currentTimeMillis();
-        log.info("SwissRailRaptor data preparation done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
-        log.info("SwissRailRaptor statistics:  #routes = " + routes.length);
-        log.info("SwissRailRaptor statistics:  #departures = " + departures.length);
-        log.info("SwissRailRaptor statistics:  #routeStops = " + routeStops.length);
-        log.info("SwissRailRaptor statistics:  #stopFacilities = " + countStopFacilities);
-        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + transfers.length);
-        return data;
+            if (countRouteStops > Integer.MAX_VALUE) {
+                throw new RuntimeException("TransitSchedule has too many TransitRouteStops: " + countRouteStops);
+            }
+            if (countDepartures > Integer.MAX_VALUE) {
+                throw new RuntimeException("TransitSchedule has too many Departures: " + countDepartures);
+            }
+
+            double[] departures = new double[(int) countDepartures];
+            RRoute[] routes = new RRoute[countRoutes];
+            RRouteStop[] routeStops = new RRouteStop[(int) countRouteStops];
+
+            int indexRoutes = 0;
+            int indexRouteStops = 0;
+            int indexDeparture = 0;
+            long hash = 17;
+
+            // enumerate TransitStopFacilities along their usage in transit routes to (hopefully) achieve a better memory locality
+            // well, I'm not even sure how often we'll need the transit stop facilities, likely we'll use RouteStops more often
+            Map<TransitStopFacility, Integer> stopFacilityIndices = new HashMap<>((int) (schedule.getFacilities().size() * 1.5));
+            Map<TransitStopFacility, int[]> routeStopsPerStopFacility = new HashMap<>();
+
+            boolean useModeMapping = staticConfig.isUseModeMappingForPassengers();
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                List<TransitRoute> transitRoutes = new ArrayList<>(line.getRoutes().values());
+                transitRoutes.sort(Comparator.comparingDouble(tr -> getEarliestDeparture(tr).getDepartureTime())); // sort routes by earliest departure for additional performance gains
+                for (TransitRoute route : transitRoutes) {
+                    int indexFirstDeparture = indexDeparture;
+                    String mode = TransportMode.pt;
+                    if (useModeMapping) {
+                        mode = staticConfig.getPassengerMode(route.getTransportMode());
+                    }
+                    RRoute rroute = new RRoute(indexRouteStops, route.getStops().size(), indexFirstDeparture, route.getDepartures().size());
+                    routes[indexRoutes] = rroute;
+                    hash = 31 * hash + line.getId().toString().hashCode();
+                    hash = 31 * hash + route.getId().toString().hashCode();
+                    NetworkRoute networkRoute = route.getRoute();
+                    List<Id<Link>> allLinkIds = new ArrayList<>();
+                    allLinkIds.add(networkRoute.getStartLinkId());
+                    allLinkIds.addAll(networkRoute.getLinkIds());
+                    if (allLinkIds.size() > 1 || networkRoute.getStartLinkId() != networkRoute.getEndLinkId()) {
+                        allLinkIds.add(networkRoute.getEndLinkId());
+                    }
+                    Iterator<Id<Link>> linkIdIterator = allLinkIds.iterator();
+                    Id<Link> currentLinkId = linkIdIterator.next();
+                    double distanceAlongRoute = 0.0;
+                    for (TransitRouteStop routeStop : route.getStops()) {
+                        while (!routeStop.getStopFacility().getLinkId().equals(currentLinkId)) {
+                            if (linkIdIterator.hasNext()) {
+                                currentLinkId = linkIdIterator.next();
+                                Link link = network.getLinks().get(currentLinkId);
+                                distanceAlongRoute += link.getLength();
+                            } else {
+                                distanceAlongRoute = Double.NaN;
+                                break;
+                            }
+                        }
+                        int stopFacilityIndex = stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
+                        RRouteStop rRouteStop = new RRouteStop(routeStop, line, route, mode, indexRoutes, stopFacilityIndex, distanceAlongRoute);
+                        final int thisRouteStopIndex = indexRouteStops;
+                        routeStops[thisRouteStopIndex] = rRouteStop;
+                        routeStopsPerStopFacility.compute(routeStop.getStopFacility(), (stop, currentRouteStops) -> {
+                            if (currentRouteStops == null) {
+                                return new int[] { thisRouteStopIndex };
+                            }
+                            int[] tmp = new int[currentRouteStops.length + 1];
+                            System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
+                            tmp[currentRouteStops.length] = thisRouteStopIndex;
+                            return tmp;
+                        });
+                        Coord coord = routeStop.getStopFacility().getCoord();
+                        hash = 31 * hash + routeStop.getStopFacility().getId().toString().hashCode();
+                        hash = 31 * hash + Double.hashCode(coord.getX());
+                        hash = 31 * hash + Double.hashCode(coord.getY());
+                        hash = 31 * hash + Double.hashCode(rRouteStop.arrivalOffset);
+                        hash = 31 * hash + Double.hashCode(rRouteStop.departureOffset);
+                        indexRouteStops++;
+                    }
+                    for (Departure dep : route.getDepartures().values()) {
+                        departures[indexDeparture] = dep.getDepartureTime();
+                        indexDeparture++;
+                    }
+                    Arrays.sort(departures, indexFirstDeparture, indexDeparture);
+                    for (int i = indexFirstDeparture; i < indexDeparture; i++) {
+                        hash = 31 * hash + Double.hashCode(departures[i]);
+                    }
+                    indexRoutes++;
+                }
+            }
+
+            // the order of the minimal transfer times is not defined, so their hashes are summed up
+            long transferTimesHash = 0;
+            MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+            while (iter.hasNext()) {
+                iter.next();
+                long transferTimeHash = iter.getFromStopId().toString().hashCode();
+                transferTimeHash = 31 * transferTimeHash + iter.getToStopId().toString().hashCode();
+                transferTimeHash = 31 * transferTimeHash + Double.hashCode(iter.getSeconds());
+                transferTimesHash += transferTimeHash;
+            }
+            long settingsHash = transferTimesHash;
+            settingsHash = 31 * settingsHash + Double.hashCode(staticConfig.getBeelineWalkConnectionDistance());
+            settingsHash = 31 * settingsHash + Double.hashCode(staticConfig.getBeelineWalkSpeed());
+            settingsHash = 31 * settingsHash + Double.hashCode(staticConfig.getBeelineWalkDistanceFactor());
+            settingsHash = 31 * settingsHash + Double.hashCode(staticConfig.getMinimalTransferTime());
+            settingsHash = 31 * settingsHash + staticConfig.getOptimization().ordinal();
+
+            this.routes = routes;
+            this.departures = departures;
+            this.routeStops = routeStops;
+            this.stopFacilityIndices = stopFacilityIndices;
+            this.routeStopsPerStopFacility = routeStopsPerStopFacility;
+            // only put used transit stops into the quad tree
+            this.stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(routeStopsPerStopFacility.keySet());
+            this.stopsIndex = KDTree.create(routeStopsPerStopFacility.keySet());
+            this.fingerprint = 31 * hash + settingsHash;
+            this.settingsFingerprint = settingsHash;
+        }
+
+        SwissRailRaptorData createData(RaptorStaticConfig staticConfig, RTransfer[][] transfersPerRouteStop) {
+            long countTransfers = 0;
+            for (RTransfer[] stopTransfers : transfersPerRouteStop) {
+                countTransfers += stopTransfers == null ? 0 : stopTransfers.length;
+            }
+            if (countTransfers > Integer.MAX_VALUE) {
+                throw new RuntimeException("TransitSchedule has too many Transfers: " + countTransfers);
+            }
+            RTransfer[] transfers = new RTransfer[(int) countTransfers];
+            int indexTransfer = 0;
+            for (int routeStopIndex = 0; routeStopIndex < this.routeStops.length; routeStopIndex++) {
+                RTransfer[] stopTransfers = transfersPerRouteStop[routeStopIndex];
+                int transferCount = stopTransfers == null ? 0 : stopTransfers.length;
+                if (transferCount > 0) {
+                    RRouteStop routeStop = this.routeStops[routeStopIndex];
+                    routeStop.indexFirstTransfer = indexTransfer;
+                    routeStop.countTransfers = transferCount;
+                    System.arraycopy(stopTransfers, 0, transfers, indexTransfer, transferCount);
+                    indexTransfer += transferCount;
+                }
+            }
+            return new SwissRailRaptorData(staticConfig, this.routeStopsPerStopFacility.size(), this.routes, this.departures, this.routeStops,
+                    transfers, this.stopFacilityIndices, this.routeStopsPerStopFacility, this.stopsQT, this.stopsIndex, this.fingerprint, this.settingsFingerprint);
+        }
     }
 
-    // calculate possible transfers between TransitRouteStops
-    private static Map<Integer, RTransfer[]> calculateRouteStopTransfers(TransitSchedule schedule, QuadTree<TransitStopFacility> stopsQT, Map<TransitStopFacility, int[]> routeStopsPerStopFacility, RRouteStop[] routeStops, RaptorStaticConfig config) {
-        Map<Integer, RTransfer[]> transfers = new HashMap<>(stopsQT.size() * 5);
+    // calculate possible transfers between TransitRouteStops, from the route stops at fromStops.
+    // if changedRouteStops is given, only transfers from or to a changed route stop are calculated.
+    // the transfers are added to transfersPerRouteStop, which is indexed by the from route stop.
+    private static void calculateRouteStopTransfers(TransitSchedule schedule, RouteData routeData, List<TransitStopFacility> fromStops,
+                                                    boolean[] changedRouteStops, RaptorStaticConfig config, RTransfer[][] transfersPerRouteStop) {
         double maxBeelineWalkConnectionDistance = config.getBeelineWalkConnectionDistance();
         double beelineWalkSpeed = config.getBeelineWalkSpeed();
         double beelineDistanceFactor = config.getBeelineWalkDistanceFactor();
         double minimalTransferTime = config.getMinimalTransferTime();
 
-        Map<TransitStopFacility, List<TransitStopFacility>> stopToStopsTransfers = new HashMap<>();
-
-        // first, add transfers based on distance
-        for (TransitStopFacility fromStop : routeStopsPerStopFacility.keySet()) {
-            Coord fromCoord = fromStop.getCoord();
-            Collection<TransitStopFacility> nearbyStops = stopsQT.getDisk(fromCoord.getX(), fromCoord.getY(), maxBeelineWalkConnectionDistance);
-            stopToStopsTransfers.computeIfAbsent(fromStop, stop -> new ArrayList<>(5)).addAll(nearbyStops);
-        }
-
-        // take the transfers from the schedule into account
+        // the transfers from the schedule, which are added to the ones based on distance
+        Map<TransitStopFacility, List<TransitStopFacility>> scheduleTransfers = new HashMap<>();
         MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
         while (iter.hasNext()) {
             iter.next();
-            Id<TransitStopFacility> fromStopId = iter.getFromStopId();
-            TransitStopFacility fromStop = schedule.getFacilities().get(fromStopId);
-            Id<TransitStopFacility> toStopId = iter.getToStopId();
-            TransitStopFacility toStop = schedule.getFacilities().get(toStopId);
-            List<TransitStopFacility> destinationStops = stopToStopsTransfers.computeIfAbsent(fromStop, stop -> new ArrayList<>(5));
-            if (!destinationStops.contains(toStop)) {
-                destinationStops.add(toStop);
-            }
+            TransitStopFacility fromStop = schedule.getFacilities().get(iter.getFromStopId());
+            TransitStopFacility toStop = schedule.getFacilities().get(iter.getToStopId());
+            scheduleTransfers.computeIfAbsent(fromStop, stop -> new ArrayList<>(5)).add(toStop);
         }
 
-        // now calculate the transfers between the route stops
+        // every route stop belongs to exactly one stop facility, so the threads never write to the same route stop
         MinimalTransferTimes mtt = schedule.getMinimalTransferTimes();
-        ArrayList<RTransfer> stopTransfers = new ArrayList<>();
-        for (Map.Entry<TransitStopFacility, List<TransitStopFacility>> e : stopToStopsTransfers.entrySet()) {
-            TransitStopFacility fromStop = e.getKey();
+        runInParallel(fromStops.size(), config.getNumberOfThreads(), index -> {
+            TransitStopFacility fromStop = fromStops.get(index);
+            int[] fromRouteStopIndices = routeData.routeStopsPerStopFacility.get(fromStop);
+            if (fromRouteStopIndices == null) {
+                return; // a stop with minimal transfer times that is not served by any route
+            }
             Coord fromCoord = fromStop.getCoord();
-            int[] fromRouteStopIndices = routeStopsPerStopFacility.get(fromStop);
-            Collection<TransitStopFacility> nearbyStops = e.getValue();
+            List<TransitStopFacility> nearbyStops = new ArrayList<>(routeData.stopsQT.getDisk(fromCoord.getX(), fromCoord.getY(), maxBeelineWalkConnectionDistance));
+            for (TransitStopFacility toStop : scheduleTransfers.getOrDefault(fromStop, Collections.emptyList())) {
+                if (!nearbyStops.contains(toStop)) {
+                    nearbyStops.add(toStop);
+                }
+            }
+
+            List<List<RTransfer>> stopTransfers = new ArrayList<>(fromRouteStopIndices.length);
+            for (int i = 0; i < fromRouteStopIndices.length; i++) {
+                stopTransfers.add(new ArrayList<>());
+            }
             for (TransitStopFacility toStop : nearbyStops) {
-                int[] toRouteStopIndices = routeStopsPerStopFacility.get(toStop);
+                int[] toRouteStopIndices = routeData.routeStopsPerStopFacility.get(toStop);
+                if (toRouteStopIndices == null) {
+                    continue;
+                }
                 double beelineDistance = CoordUtils.calcEuclideanDistance(fromCoord, toStop.getCoord());
                 double transferTime = beelineDistance / beelineWalkSpeed;
                 if (transferTime < minimalTransferTime) {
@@ -249,32 +527,66 @@ public class SwissRailRaptorData {
 
                 transferTime = mtt.get(fromStop.getId(), toStop.getId(), transferTime);
 
-                final double fixedTransferTime = transferTime; // variables must be effective final to be used in lambdas (below)
-
-                for (int fromRouteStopIndex : fromRouteStopIndices) {
-                    RRouteStop fromRouteStop = routeStops[fromRouteStopIndex];
-                    stopTransfers.clear();
+                for (int i = 0; i < fromRouteStopIndices.length; i++) {
+                    int fromRouteStopIndex = fromRouteStopIndices[i];
+                    RRouteStop fromRouteStop = routeData.routeStops[fromRouteStopIndex];
                     for (int toRouteStopIndex : toRouteStopIndices) {
-                        RRouteStop toRouteStop = routeStops[toRouteStopIndex];
+                        if (changedRouteStops != null && !changedRouteStops[fromRouteStopIndex] && !changedRouteStops[toRouteStopIndex]) {
+                            continue;
+                        }
+                        RRouteStop toRouteStop = routeData.routeStops[toRouteStopIndex];
                         if (isUsefulTransfer(fromRouteStop, toRouteStop, maxBeelineWalkConnectionDistance, config.getOptimization())) {
-                            RTransfer newTransfer = new RTransfer(fromRouteStopIndex, toRouteStopIndex, fixedTransferTime, beelineDistance * beelineDistanceFactor);
-                            stopTransfers.add(newTransfer);
+                            stopTransfers.get(i).add(new RTransfer(fromRouteStopIndex, toRouteStopIndex, transferTime, beelineDistance * beelineDistanceFactor));
                         }
                     }
-                    RTransfer[] newTransfers = stopTransfers.toArray(new RTransfer[0]);
-                    transfers.compute(fromRouteStopIndex, (routeStopIndex, currentTransfers) -> {
-                        if (currentTransfers == null) {
-                            return newTransfers;
-                        }
-                        RTransfer[] tmp = new RTransfer[currentTransfers.length + newTransfers.length];
-                        System.arraycopy(currentTransfers, 0, tmp, 0, currentTransfers.length);
-                        System.arraycopy(newTransfers, 0, tmp, currentTransfers.length, newTransfers.length);
-                        return tmp;
-                    });
                 }
             }
+
+            for (int i = 0; i < fromRouteStopIndices.length; i++) {
+                int fromRouteStopIndex = fromRouteStopIndices[i];
+                RTransfer[] currentTransfers = transfersPerRouteStop[fromRouteStopIndex];
+                List<RTransfer> newTransfers = stopTransfers.get(i);
+                if (currentTransfers != null) {
+                    newTransfers.addAll(0, Arrays.asList(currentTransfers));
+                }
+                transfersPerRouteStop[fromRouteStopIndex] = newTransfers.toArray(new RTransfer[0]);
+            }
+        });
+    }
+
+    /**
+     * Calls the task for 0 to count - 1 with several threads.  The threads take the next index as soon as they are
+     * done with the last one, as the work per index can vary a lot.
+     */
+    private static void runInParallel(int count, int numberOfThreads, IntConsumer task) {
+        if (numberOfThreads <= 1 || count <= 1) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        AtomicInteger nextIndex = new AtomicInteger(0);
+        AtomicReference<Throwable> exception = new AtomicReference<>();
+        Thread[] threads = new Thread[Math.min(numberOfThreads, count)];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = nextIndex.getAndIncrement(); i < count && exception.get() == null; i = nextIndex.getAndIncrement()) {
+                    task.accept(i);
+                }
+            }, "SwissRailRaptorData-" + t);
+            threads[t].setUncaughtExceptionHandler((thread, e) -> exception.compareAndSet(null, e));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (exception.get() != null) {
+            throw new RuntimeException("Exception while preparing the data for SwissRailRaptor.", exception.get());
         }
-        return transfers;
     }
 
     private static boolean isUsefulTransfer(RRouteStop fromRouteStop, RRouteStop toRouteStop, double maxBeelineWalkConnectionDistance, RaptorStaticConfig.RaptorOptimization optimization) {
@@ -446,11 +758,15 @@ public class SwissRailRaptorData {
     }
 
     public Collection<TransitStopFacility> findNearbyStops(double x, double y, double distance) {
-        return this.stopsQT.getDisk(x, y, distance);
+        return this.stopsIndex.getDisk(x, y, distance);
     }
 
     public TransitStopFacility findNearestStop(double x, double y) {
-        return this.stopsQT.getClosest(x, y);
+        return this.stopsIndex.getClosest(x, y);
+    }
+
+    public List<TransitStopFacility> findNearestStops(double x, double y, int count, double maxDistance) {
+        return this.stopsIndex.getKNearest(x, y, count, maxDistance);
     }
 
     static final class RRoute {
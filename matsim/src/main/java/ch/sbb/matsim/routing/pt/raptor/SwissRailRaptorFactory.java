@@ -21,7 +21,8 @@ import javax.inject.Singleton;
 @Singleton
 public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
 
-    private SwissRailRaptorData data = null;
+    private volatile SwissRailRaptorData data = null;
+    private SwissRailRaptorData previousData = null; // to update the data after the schedule changed
     private final TransitSchedule schedule;
     private final RaptorStaticConfig raptorConfig;
     private final RaptorParametersForPerson raptorParametersForPerson;
@@ -44,7 +45,7 @@ public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
 //        this.plansConfigGroup = plansConfigGroup;
 
         if (events != null) {
-            events.addHandler((TransitScheduleChangedEventHandler) event -> this.data = null);
+            events.addHandler((TransitScheduleChangedEventHandler) event -> scheduleChanged());
         }
     }
 
@@ -67,8 +68,20 @@ public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
             // prevent doing the work twice.
             return this.data;
         }
-        this.data = SwissRailRaptorData.create(this.schedule, this.raptorConfig, this.network);
+        if (this.previousData == null) {
+            this.data = SwissRailRaptorData.create(this.schedule, this.raptorConfig, this.network);
+        } else {
+            this.data = SwissRailRaptorData.update(this.previousData, this.schedule, this.network);
+            this.previousData = null;
+        }
         return this.data;
     }
 
+    synchronized private void scheduleChanged() {
+        if (this.data != null) {
+            this.previousData = this.data;
+        }
+        this.data = null;
+    }
+
 }
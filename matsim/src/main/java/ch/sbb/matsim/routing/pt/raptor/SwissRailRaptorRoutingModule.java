@@ -17,8 +17,11 @@ import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.ConcurrentRoutingModule;
 import org.matsim.core.router.RoutingModule;
 import org.matsim.facilities.Facility;
+import org.matsim.pt.router.PooledTransitRouter;
+import org.matsim.pt.router.TransitRouter;
 import org.matsim.pt.routes.TransitPassengerRoute;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
@@ -29,14 +32,18 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
  *
  * @author mrieser / SBB
  */
-public class SwissRailRaptorRoutingModule implements RoutingModule {
+public class SwissRailRaptorRoutingModule implements ConcurrentRoutingModule {
 
-    private final SwissRailRaptor raptor;
+    private final TransitRouter raptor;
     private final RoutingModule walkRouter;
     private final TransitSchedule transitSchedule;
     private final Network network;
 
-    public SwissRailRaptorRoutingModule(final SwissRailRaptor raptor,
+    /**
+     * @param raptor a {@link SwissRailRaptor}, or a {@link org.matsim.pt.router.PooledTransitRouter} of them if the
+     *               module is called by several threads
+     */
+    public SwissRailRaptorRoutingModule(final TransitRouter raptor,
                                         final TransitSchedule transitSchedule,
                                         Network network, final RoutingModule walkRouter) {
         if (raptor == null) {
@@ -90,4 +97,9 @@ public class SwissRailRaptorRoutingModule implements RoutingModule {
         return link.getToNode().getCoord();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return this.raptor instanceof PooledTransitRouter && ConcurrentRoutingModule.isThreadSafe(this.walkRouter);
+    }
+
 }
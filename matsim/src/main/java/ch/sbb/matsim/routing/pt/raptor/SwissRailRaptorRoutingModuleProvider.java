@@ -8,6 +8,7 @@ import com.google.inject.name.Named;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.router.RoutingModule;
+import org.matsim.pt.router.PooledTransitRouter;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -20,18 +21,20 @@ import javax.inject.Provider;
  */
 public class SwissRailRaptorRoutingModuleProvider implements Provider<RoutingModule> {
 
-    private final SwissRailRaptor raptor;
+    private final Provider<SwissRailRaptor> raptorProvider;
     private final Scenario scenario;
     private final RoutingModule transitWalkRouter;
 
     @Inject
-    SwissRailRaptorRoutingModuleProvider(SwissRailRaptor raptor, Scenario scenario, @Named(TransportMode.walk) RoutingModule transitWalkRouter) {
-        this.raptor = raptor;
+    SwissRailRaptorRoutingModuleProvider(Provider<SwissRailRaptor> raptorProvider, Scenario scenario, @Named(TransportMode.walk) RoutingModule transitWalkRouter) {
+        this.raptorProvider = raptorProvider;
         this.scenario = scenario;
         this.transitWalkRouter = transitWalkRouter;
     }
 
     public RoutingModule get() {
-        return new SwissRailRaptorRoutingModule(this.raptor, this.scenario.getTransitSchedule(), this.scenario.getNetwork(), this.transitWalkRouter);
+        // the TripRouter may call the module from several threads, so every query borrows a raptor from a pool.
+        // The raptors share the SwissRailRaptorData.
+        return new SwissRailRaptorRoutingModule(new PooledTransitRouter(this.raptorProvider), this.scenario.getTransitSchedule(), this.scenario.getNetwork(), this.transitWalkRouter);
     }
 }
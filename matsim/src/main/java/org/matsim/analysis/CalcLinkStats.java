@@ -22,7 +22,6 @@ package org.matsim.analysis;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.util.TravelTime;
@@ -33,7 +32,7 @@ import javax.inject.Inject;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Calculates the average link volumes and travel times over any number of iterations.
@@ -44,23 +43,21 @@ public class CalcLinkStats {
 
 	private final static Logger log = Logger.getLogger(CalcLinkStats.class);
 
-	private static class LinkData {
-		public final double[][] volumes;
-		public final double[][] ttimes;
-
-		public LinkData(final double[][] linksVolumes, final double[][] linksTTimes) {
-			this.volumes = linksVolumes.clone();
-			this.ttimes = linksTTimes.clone();
-		}
-	}
-
 	private double volScaleFactor = 1.0;
 
 	private int count = 0;
-	private final IdMap<Link, LinkData> linkData;
 	private final int nofHours;
 	private final Network network;
 
+	/*
+	 * The statistics of all links are kept in two arrays, with a row per link: [link][stat][hour].  The links are sorted
+	 * by the index of their id, so the rows are in the same order as the links in the file.
+	 */
+	private Link[] links;
+	private int[] rows; // by the index of the link id, -1 for links that are not in the network
+	private double[] volumes;
+	private double[] ttimes;
+
 	private static final int MIN = 0;
 	private static final int MAX = 1;
 	private static final int SUM = 2;
@@ -69,7 +66,6 @@ public class CalcLinkStats {
 	@Inject
 	public CalcLinkStats(final Network network) {
 		this.network = network;
-		this.linkData = new IdMap<>(Link.class);
 		this.nofHours = 24;
 		reset();
 	}
@@ -85,22 +81,21 @@ public class CalcLinkStats {
 		this.volScaleFactor = vol_scale_factor;
 	}
 
+	/**
+	 * Adds the volumes of the current iteration.  Only the sums, minima and maxima over the iterations are kept, so the
+	 * memory used does not depend on the number of iterations.
+	 */
 	public void addData(final VolumesAnalyzer analyzer, final TravelTime ttimes) {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
 
 		// go through all links
-		for (Id<Link> linkId : this.linkData.keySet()) {
-			
-			// retrieve link from link ID
-			Link link = this.network.getLinks().get(linkId);
-			
-			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
-			
-			// get the destination container for the data from link data (could have gotten this through iterator right away)
-			LinkData data = this.linkData.get(linkId);
-			
+		for (int row = 0; row < this.links.length; row++) {
+			Link link = this.links[row];
+
+			// get the volumes for the link ID from the analyzer
+			double[] volumes = analyzer.getVolumesPerHourForLink(link.getId());
+
 			// prepare the sum variables (for volumes);
 			long sumVolumes = 0; // daily (0-24) sum
 			
@@ -115,47 +110,75 @@ public class CalcLinkStats {
 
 				// the following has something to do with the fact that we are doing this for multiple iterations.  So there are variations.
 				// this collects min and max.  There is, however, no good control over how many iterations this is collected.
+				int vMin = volumeIndex(row, MIN, hour);
+				int vMax = volumeIndex(row, MAX, hour);
+				int tMin = ttimeIndex(row, MIN, hour);
+				int tMax = ttimeIndex(row, MAX, hour);
 				if (this.count == 1) {
-					data.volumes[MIN][hour] = volumes[hour];
-					data.volumes[MAX][hour] = volumes[hour];
-					data.ttimes[MIN][hour] = ttime;
-					data.ttimes[MAX][hour] = ttime;
+					this.volumes[vMin] = volumes[hour];
+					this.volumes[vMax] = volumes[hour];
+					this.ttimes[tMin] = ttime;
+					this.ttimes[tMax] = ttime;
 				} else {
-					if (volumes[hour] < data.volumes[MIN][hour]) data.volumes[MIN][hour] = volumes[hour];
-					if (volumes[hour] > data.volumes[MAX][hour]) data.volumes[MAX][hour] = volumes[hour];
-					if (ttime < data.ttimes[MIN][hour]) data.ttimes[MIN][hour] = ttime;
-					if (ttime > data.ttimes[MAX][hour]) data.ttimes[MAX][hour] = ttime;
+					if (volumes[hour] < this.volumes[vMin]) this.volumes[vMin] = volumes[hour];
+					if (volumes[hour] > this.volumes[vMax]) this.volumes[vMax] = volumes[hour];
+					if (ttime < this.ttimes[tMin]) this.ttimes[tMin] = ttime;
+					if (ttime > this.ttimes[tMax]) this.ttimes[tMax] = ttime;
 				}
 				
 				// this is the regular summing up for each hour
-				data.volumes[SUM][hour] += volumes[hour];
-				data.ttimes[SUM][hour] += volumes[hour] * ttime;
+				this.volumes[volumeIndex(row, SUM, hour)] += volumes[hour];
+				this.ttimes[ttimeIndex(row, SUM, hour)] += volumes[hour] * ttime;
 			}
-			// dataVolumes[.][nofHours] are daily (0-24) values
+			// volumes[.][nofHours] are daily (0-24) values
+			int min = volumeIndex(row, MIN, this.nofHours);
+			int sum = volumeIndex(row, SUM, this.nofHours);
+			int max = volumeIndex(row, MAX, this.nofHours);
 			if (this.count == 1) {
-				data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] = sumVolumes;
-				data.volumes[MAX][this.nofHours] = sumVolumes;
+				this.volumes[min] = sumVolumes;
+				this.volumes[sum] = sumVolumes;
+				this.volumes[max] = sumVolumes;
 			} else {
-				if (sumVolumes < data.volumes[MIN][this.nofHours]) data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] += sumVolumes;
-				if (sumVolumes > data.volumes[MAX][this.nofHours]) data.volumes[MAX][this.nofHours] = sumVolumes;
+				if (sumVolumes < this.volumes[min]) this.volumes[min] = sumVolumes;
+				this.volumes[sum] += sumVolumes;
+				if (sumVolumes > this.volumes[max]) this.volumes[max] = sumVolumes;
 			}
 		}
 	}
 
+	private int volumeIndex(final int row, final int stat, final int hour) {
+		return (row * NOF_STATS + stat) * (this.nofHours + 1) + hour;
+	}
+
+	private int ttimeIndex(final int row, final int stat, final int hour) {
+		return (row * NOF_STATS + stat) * this.nofHours + hour;
+	}
+
+	private int getRow(final Id<Link> linkId) {
+		int index = linkId.index();
+		return index < this.rows.length ? this.rows[index] : -1;
+	}
+
 	public void reset() {
-		this.linkData.clear();
 		this.count = 0;
 		log.info( " resetting `count' to zero.  This info is here since we want to check when this" +
 				" is happening during normal simulation runs.  kai, jan'11") ;
 
 		// initialize our data-table
-		for (Link link : this.network.getLinks().values()) {
-			LinkData data = new LinkData(new double[NOF_STATS][this.nofHours + 1], new double[NOF_STATS][this.nofHours]);
-			this.linkData.put(link.getId(), data);
+		this.rows = new int[Id.getNumberOfIds(Link.class)];
+		Arrays.fill(this.rows, -1);
+		this.links = new Link[this.network.getLinks().size()];
+		int row = 0;
+		for (int index = 0; index < this.rows.length; index++) {
+			Link link = this.network.getLinks().get(Id.get(index, Link.class));
+			if (link != null) {
+				this.rows[index] = row;
+				this.links[row] = link;
+				row++;
+			}
 		}
-
+		this.volumes = new double[row * NOF_STATS * (this.nofHours + 1)];
+		this.ttimes = new double[row * NOF_STATS * this.nofHours];
 	}
 
 	public void writeFile(final String filename) {
@@ -181,57 +204,56 @@ public class CalcLinkStats {
 			out.write("\n");
 
 			// write data
-			for (Map.Entry<Id<Link>, LinkData> entry : this.linkData.entrySet()) {
-				Id<Link> linkId = entry.getKey();
-				LinkData data = entry.getValue();
-				Link link = this.network.getLinks().get(linkId);
+			for (int row = 0; row < this.links.length; row++) {
+				Link link = this.links[row];
+				Id<Link> linkId = link.getId();
 
 				out.write(linkId.toString());
 				out.write("\t"); // origId, no longer supported
 				out.write("\t" + link.getFromNode().getId().toString());
 				out.write("\t" + link.getToNode().getId().toString());
-				out.write("\t" + Double.toString(link.getLength()));
-				out.write("\t" + Double.toString(link.getFreespeed()));
-				out.write("\t" + Double.toString(link.getCapacity()));
+				writeValue(out, link.getLength());
+				writeValue(out, link.getFreespeed());
+				writeValue(out, link.getCapacity());
 
 				// HRS0-1, HRS1-2, ... HRS23-24
 //				int[] sum = {0, 0, 0};
 				for (int i = 0; i < this.nofHours; i++) {
-					out.write("\t" + Double.toString(data.volumes[MIN][i]));
-//					sum[MIN] = sum[MIN] + data.volumes[MIN][i];
-					out.write("\t" + Double.toString((data.volumes[SUM][i]) / this.count));
-//					sum[SUM] = sum[SUM] + data.volumes[SUM][i];
-					out.write("\t" + Double.toString(data.volumes[MAX][i]));
-//					sum[MAX] = sum[MAX] + data.volumes[MAX][i];
+					writeValue(out, this.volumes[volumeIndex(row, MIN, i)]);
+//					sum[MIN] = sum[MIN] + this.volumes[volumeIndex(row, MIN, i)];
+					writeValue(out, (this.volumes[volumeIndex(row, SUM, i)]) / this.count);
+//					sum[SUM] = sum[SUM] + this.volumes[volumeIndex(row, SUM, i)];
+					writeValue(out, this.volumes[volumeIndex(row, MAX, i)]);
+//					sum[MAX] = sum[MAX] + this.volumes[volumeIndex(row, MAX, i)];
 				}
 
 				// HRS0-nofHours
-				out.write("\t" + Double.toString(data.volumes[MIN][this.nofHours]));
-				out.write("\t" + Double.toString((data.volumes[SUM][this.nofHours]) / this.count));
-				out.write("\t" + Double.toString(data.volumes[MAX][this.nofHours]));
+				writeValue(out, this.volumes[volumeIndex(row, MIN, this.nofHours)]);
+				writeValue(out, (this.volumes[volumeIndex(row, SUM, this.nofHours)]) / this.count);
+				writeValue(out, this.volumes[volumeIndex(row, MAX, this.nofHours)]);
 
 				// TRAVELTIME0-1, TRAVELTIME1-2, ... TRAVELTIME23-24
 				for (int i = 0; i < this.nofHours; i++) {
-					String ttimesMin = Double.toString(data.ttimes[MIN][i]);
-					out.write("\t" + ttimesMin);
-					if (data.volumes[SUM][i] == 0) {
+					double ttimesMin = this.ttimes[ttimeIndex(row, MIN, i)];
+					writeValue(out, ttimesMin);
+					if (this.volumes[volumeIndex(row, SUM, i)] == 0) {
 						// nobody traveled along the link in this hour, so we cannot calculate an average
 						// use the value available or the minimum instead (min and max should be the same, =freespeed)
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[ttimeIndex(row, SUM, i)];
 						if (ttsum != 0.0) {
-							out.write("\t" + Double.toString(ttsum));
+							writeValue(out, ttsum);
 						} else {
-							out.write("\t" + ttimesMin);
+							writeValue(out, ttimesMin);
 						}
 					} else {
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[ttimeIndex(row, SUM, i)];
 						if (ttsum == 0) {
-							out.write("\t" + ttimesMin);
+							writeValue(out, ttimesMin);
 						} else {
-							out.write("\t" + Double.toString(ttsum / data.volumes[SUM][i]));
+							writeValue(out, ttsum / this.volumes[volumeIndex(row, SUM, i)]);
 						}
 					}
-					out.write("\t" + Double.toString(data.ttimes[MAX][i]));
+					writeValue(out, this.ttimes[ttimeIndex(row, MAX, i)]);
 				}
 				out.write("\n");
 			}
@@ -250,6 +272,11 @@ public class CalcLinkStats {
 		}
 	}
 
+	private static void writeValue(final BufferedWriter out, final double value) throws IOException {
+		out.write('\t');
+		out.write(Double.toString(value));
+	}
+
 	public void readFile(final String filename) {
 		// start with a clean, empty data structure
 		reset();
@@ -273,64 +300,64 @@ public class CalcLinkStats {
 				String[] parts = StringUtils.explode(line, '\t');
 				if (parts.length == 154) {
 					Id<Link> linkId = Id.create(parts[0], Link.class);
-					LinkData data = this.linkData.get(linkId);
-					if (data == null) {
+					int row = getRow(linkId);
+					if (row < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId.toString());
 					} else {
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[7 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[9 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, MIN, i)] = Double.parseDouble(parts[7 + i*3]);
+							this.volumes[volumeIndex(row, MIN, i)] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, SUM, i)] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[volumeIndex(row, SUM, i)] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, MAX, i)] = Double.parseDouble(parts[9 + i*3]);
+							this.volumes[volumeIndex(row, MAX, i)] *= this.volScaleFactor;
 							baseTTimes = 7 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[ttimeIndex(row, MIN, i)] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[volumeIndex(row, SUM, i)] == 0) {
+								this.ttimes[ttimeIndex(row, SUM, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[ttimeIndex(row, SUM, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[volumeIndex(row, SUM, i)];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[ttimeIndex(row, MAX, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, MIN, this.nofHours)] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, MIN, this.nofHours)] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, SUM, this.nofHours)] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, SUM, this.nofHours)] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, MAX, this.nofHours)] = Double.parseDouble(parts[9 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, MAX, this.nofHours)] *= this.volScaleFactor;
 					}
 				}
 				else if (parts.length == 153) {
 					String linkId = parts[0];
-					LinkData data = this.linkData.get(Id.create(linkId, Link.class));
-					if (data == null) {
+					int row = getRow(Id.create(linkId, Link.class));
+					if (row < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId);
 					} else {
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[6 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Integer.parseInt(parts[7 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, MIN, i)] = Double.parseDouble(parts[6 + i*3]);
+							this.volumes[volumeIndex(row, MIN, i)] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, SUM, i)] = Integer.parseInt(parts[7 + i*3]);
+							this.volumes[volumeIndex(row, SUM, i)] *= this.volScaleFactor;
+							this.volumes[volumeIndex(row, MAX, i)] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[volumeIndex(row, MAX, i)] *= this.volScaleFactor;
 							baseTTimes = 6 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[ttimeIndex(row, MIN, i)] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[volumeIndex(row, SUM, i)] == 0) {
+								this.ttimes[ttimeIndex(row, SUM, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[ttimeIndex(row, SUM, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[volumeIndex(row, SUM, i)];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[ttimeIndex(row, MAX, i)] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, MIN, this.nofHours)] = Double.parseDouble(parts[6 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, MIN, this.nofHours)] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, SUM, this.nofHours)] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, SUM, this.nofHours)] *= this.volScaleFactor;
+						this.volumes[volumeIndex(row, MAX, this.nofHours)] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[volumeIndex(row, MAX, this.nofHours)] *= this.volScaleFactor;
 					}
 				}
 				else {
@@ -357,8 +384,8 @@ public class CalcLinkStats {
 	 * @return if no data is available, an array with length 0 is returned.
 	 */
 	public double[] getAvgLinkVolumes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int row = getRow(linkId);
+		if (row < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
@@ -366,7 +393,7 @@ public class CalcLinkStats {
 		}
 		double[] volumes = new double[this.nofHours];
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[volumeIndex(row, SUM, i)]) / (this.count);
 		}
 		return volumes;
 	}
@@ -380,8 +407,8 @@ public class CalcLinkStats {
 	 */
 	@Deprecated
 	protected double[] getAvgTravelTimes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int row = getRow(linkId);
+		if (row < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
@@ -394,9 +421,9 @@ public class CalcLinkStats {
 		double[] avgTTimes = new double[this.nofHours];
 		
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
-			ttimesMin[i] = (data.ttimes[MIN][i]) / (this.count);
-			ttimesSum[i] = (data.ttimes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[volumeIndex(row, SUM, i)]) / (this.count);
+			ttimesMin[i] = (this.ttimes[ttimeIndex(row, MIN, i)]) / (this.count);
+			ttimesSum[i] = (this.ttimes[ttimeIndex(row, SUM, i)]) / (this.count);
 
 			if (volumes[i] == 0.) {
 				avgTTimes[i] = ttimesMin[i];
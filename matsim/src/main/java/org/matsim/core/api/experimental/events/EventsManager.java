@@ -19,9 +19,14 @@
 
 package org.matsim.core.api.experimental.events;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.events.handler.EventHandler;
 import org.matsim.core.mobsim.framework.Steppable;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * This should be split into two interfaces:
@@ -31,6 +36,22 @@ public interface EventsManager {
 
 	public void processEvent(final Event event);
 
+	/**
+	 * Same as <code>processEvent(new LinkEnterEvent(time, vehicleId, linkId))</code>, but an events manager may pass the
+	 * event to the handlers as a re-used {@link org.matsim.core.events.LinkEventRecord}, and only create the event
+	 * object for the handlers that need one.
+	 */
+	default void processLinkEnter(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		processEvent(new LinkEnterEvent(time, vehicleId, linkId));
+	}
+
+	/**
+	 * @see #processLinkEnter(double, Id, Id)
+	 */
+	default void processLinkLeave(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		processEvent(new LinkLeaveEvent(time, vehicleId, linkId));
+	}
+
 	public void addHandler(final EventHandler handler);
 	
 	public void removeHandler(final EventHandler handler);
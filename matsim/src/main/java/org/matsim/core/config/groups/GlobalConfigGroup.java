@@ -39,6 +39,9 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	@Override public Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_CMT ) ;
+		map.put(USING_WORK_STEALING_IN_REPLANNING, USING_WORK_STEALING_IN_REPLANNING_CMT ) ;
+		map.put(SCENARIO_SNAPSHOT_FILE, SCENARIO_SNAPSHOT_FILE_CMT ) ;
+		map.put(LANDMARKS_CACHE_DIRECTORY, LANDMARKS_CACHE_DIRECTORY_CMT ) ;
 		return map ;
 	}
 
@@ -94,6 +97,26 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 	// ---
+	private boolean usingWorkStealingInReplanning = false;
+	private static final String USING_WORK_STEALING_IN_REPLANNING = "usingWorkStealingInReplanning";
+	private static final String USING_WORK_STEALING_IN_REPLANNING_CMT = "If true, multi-threaded replanning modules that read this setting hand out the plans "
+							     + "in small chunks to idle threads, instead of dealing them out to the threads in advance.  This balances the load better "
+							     + "if some plans take much longer than others, but the results of random modules are then not reproducible.";
+	/**
+	 * @return {@link #USING_WORK_STEALING_IN_REPLANNING_CMT}
+	 */
+	@StringGetter( USING_WORK_STEALING_IN_REPLANNING )
+	public boolean isUsingWorkStealingInReplanning() {
+		return this.usingWorkStealingInReplanning;
+	}
+	/**
+	 * @param usingWorkStealingInReplanning -- {@link #USING_WORK_STEALING_IN_REPLANNING_CMT}
+	 */
+	@StringSetter( USING_WORK_STEALING_IN_REPLANNING )
+	public void setUsingWorkStealingInReplanning(final boolean usingWorkStealingInReplanning) {
+		this.usingWorkStealingInReplanning = usingWorkStealingInReplanning;
+	}
+	// ---
 	private String coordinateSystem = "Atlantis" ;
 	// see https://matsim.atlassian.net/browse/MATSIM-898
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
@@ -116,6 +139,47 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.insistingOnDeprecatedConfigVersion = val ;
 	}
 
+	// ---
+	private String scenarioSnapshotFile = null ;
+	private static final String SCENARIO_SNAPSHOT_FILE = "scenarioSnapshotFile" ;
+	private static final String SCENARIO_SNAPSHOT_FILE_CMT = "binary snapshot of the network, population, facilities, transit schedule and vehicles.  "
+							     + "If set, the scenario is loaded from this file as long as the input files did not change, "
+							     + "otherwise it is loaded from the input files and the snapshot is (re-)written.  Must be a local file.";
+	/**
+	 * @return {@link #SCENARIO_SNAPSHOT_FILE_CMT}
+	 */
+	@StringGetter( SCENARIO_SNAPSHOT_FILE )
+	public String getScenarioSnapshotFile() {
+		return this.scenarioSnapshotFile;
+	}
+	/**
+	 * @param scenarioSnapshotFile -- {@link #SCENARIO_SNAPSHOT_FILE_CMT}
+	 */
+	@StringSetter( SCENARIO_SNAPSHOT_FILE )
+	public void setScenarioSnapshotFile(final String scenarioSnapshotFile) {
+		this.scenarioSnapshotFile = scenarioSnapshotFile;
+	}
+	// ---
+	private String landmarksCacheDirectory = null ;
+	private static final String LANDMARKS_CACHE_DIRECTORY = "landmarksCacheDirectory" ;
+	private static final String LANDMARKS_CACHE_DIRECTORY_CMT = "directory where the (Fast)AStarLandmarks routers store the pre-processed landmark travel times.  "
+							     + "The files are named after a hash of the network, the travel disutility and the landmarks, "
+							     + "so later runs with the same network skip the pre-processing.  Disabled if not set.";
+	/**
+	 * @return {@link #LANDMARKS_CACHE_DIRECTORY_CMT}
+	 */
+	@StringGetter( LANDMARKS_CACHE_DIRECTORY )
+	public String getLandmarksCacheDirectory() {
+		return this.landmarksCacheDirectory;
+	}
+	/**
+	 * @param landmarksCacheDirectory -- {@link #LANDMARKS_CACHE_DIRECTORY_CMT}
+	 */
+	@StringSetter( LANDMARKS_CACHE_DIRECTORY )
+	public void setLandmarksCacheDirectory(final String landmarksCacheDirectory) {
+		this.landmarksCacheDirectory = landmarksCacheDirectory;
+	}
+
     @StringGetter(DEFAULT_DELIMITER)
     public String getDefaultDelimiter() {
         return defaultDelimiter;
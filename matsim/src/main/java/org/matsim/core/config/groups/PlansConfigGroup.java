@@ -38,9 +38,12 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	public abstract static class NetworkRouteType {
 		public static final String LinkNetworkRoute = "LinkNetworkRoute";
 		public static final String CompressedNetworkRoute = "CompressedNetworkRoute";
+		public static final String PackedNetworkRoute = "PackedNetworkRoute";
 	}
 
 	public enum ActivityDurationInterpretation { minOfDurationAndEndTime, tryEndTimeThenDuration, @Deprecated endTimeOnly }
+
+	public enum PopulationStorage { objects, compact }
 	private static final String INPUT_FILE = "inputPlansFile";
 	private static final String INPUT_PERSON_ATTRIBUTES_FILE = "inputPersonAttributesFile";
 	private static final String NETWORK_ROUTE_TYPE = "networkRouteType";
@@ -71,7 +74,11 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 				NETWORK_ROUTE_TYPE,
 				"Defines how routes are stored in memory. Currently supported: " +
 				NetworkRouteType.LinkNetworkRoute + ", " +
-				NetworkRouteType.CompressedNetworkRoute + ".");
+				NetworkRouteType.CompressedNetworkRoute + ", " +
+				NetworkRouteType.PackedNetworkRoute + ".");
+		comments.put(INTERN_NETWORK_ROUTES, "Only used with networkRouteType " + NetworkRouteType.PackedNetworkRoute + ". If true, " +
+				"routes with identical link sequences share one copy of the sequence. Saves memory when many agents use the same " +
+				"routes, at the cost of a hash lookup whenever a route is set. default=false.");
 //		comments.put(
 //				INPUT_PERSON_ATTRIBUTES_FILE,
 //				"Path to a file containing person attributes (required file format: ObjectAttributes).");
@@ -91,6 +98,11 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		comments.put(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES, "(not tested) will remove plan attributes that are presumably not used, such as " +
                 "activityStartTime. default=false. Use with Caution!");
 
+		comments.put(POPULATION_STORAGE, "Defines how plans are stored in memory. " + PopulationStorage.objects + " (default): one object " +
+				"per activity, leg and route. " + PopulationStorage.compact + ": activities, legs and network routes are stored in " +
+				"primitive arrays per plan, which needs considerably less memory. Plan elements are then views that are equal, " +
+				"but not identical, on every access.");
+
 		comments.put( INPUT_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
@@ -164,6 +176,17 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	public void setNetworkRouteType(final String routeType) {
 		this.networkRouteType = routeType;
 	}
+
+	private static final String INTERN_NETWORK_ROUTES = "internNetworkRoutes";
+	private boolean internNetworkRoutes = false;
+	@StringGetter( INTERN_NETWORK_ROUTES )
+	public boolean isInternNetworkRoutes() {
+		return this.internNetworkRoutes;
+	}
+	@StringSetter( INTERN_NETWORK_ROUTES )
+	public void setInternNetworkRoutes(final boolean internNetworkRoutes) {
+		this.internNetworkRoutes = internNetworkRoutes;
+	}
 	// ---
 //	/**
 //	 * @deprecated -- use {@link org.matsim.core.population.PopulationUtils#getSubpopulation(Person, Config)}
@@ -218,6 +241,17 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	}
 
 
+	private static final String POPULATION_STORAGE = "populationStorage";
+	private PopulationStorage populationStorage = PopulationStorage.objects;
+	@StringGetter(POPULATION_STORAGE)
+	public PopulationStorage getPopulationStorage() {
+		return this.populationStorage;
+	}
+	@StringSetter(POPULATION_STORAGE)
+	public void setPopulationStorage(final PopulationStorage populationStorage) {
+		this.populationStorage = populationStorage;
+	}
+
 	@StringGetter( INPUT_CRS )
 	public String getInputCRS() {
 		return inputCRS;
@@ -290,6 +290,29 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
 		map.put(USE_LANES, "Set this parameter to true if lanes should be used, false if not.");
+		map.put(NETWORK_PARTITIONING, "How nodes and their outgoing links are assigned to the runners of the qnetsimengine.  "
+				+ NetworkPartitioning.roundRobin + " (default) deals them out one by one; " + NetworkPartitioning.graphPartitioning
+				+ " splits the network into contiguous regions of similar expected load, which keeps neighbouring links on the same thread.") ;
+		map.put(REBALANCING_NETWORK_PARTITIONS, "Only used with " + NetworkPartitioning.graphPartitioning + ".  If true, the "
+				+ "regions are recomputed at the start of every mobsim, using the time each runner needed in the previous mobsim.") ;
+		map.put(USING_INDEXED_ACTIVITY_ENDS_QUEUE, "If true, the activity engine keeps the activity ends in a heap that can find "
+				+ "the entry of an agent directly, which makes rescheduling activity ends during the mobsim (within-day replanning, "
+				+ "drt, ...) much cheaper.  Gives the same results as the default queue.  Default is false.") ;
+		map.put(USING_TIME_WHEEL_IN_TELEPORTATION, "If true, teleported agents are kept in a timing wheel of one-second slots "
+				+ "instead of a priority queue, which is faster and allocates less if many legs are teleported.  Gives the same "
+				+ "results, apart from the order of the stuck events at the end of the simulation.  Default is false.") ;
+		map.put(USING_RING_BUFFER_VEHICLE_QUEUES, "If true, the links keep their vehicles, buffers and holes in growable circular "
+				+ "arrays instead of linked lists, which avoids an allocation for every vehicle that enters a link.  The queue of "
+				+ LinkDynamics.PassingQ + " and " + LinkDynamics.SeepageQ + " stays a priority queue.  Gives the same results.  "
+				+ "Default is false.") ;
+		map.put(USING_SLEEPING_LINKS, "If true, a link on which all vehicles are still driving at free speed is not moved again "
+				+ "before the first of them can leave the link, unless a vehicle departs on it.  Only used with "
+				+ TrafficDynamics.queue + " traffic dynamics, " + LinkDynamics.FIFO + " link dynamics, fast capacity update and "
+				+ "without lanes; otherwise the links are moved in every time step as before.  Gives the same results.  "
+				+ "Default is false.") ;
+		map.put(USING_LINK_EVENT_RECORDS, "If true, link enter and link leave events are passed to the events manager as "
+				+ "reusable records, and event objects are only created for the event handlers which cannot handle such records.  "
+				+ "Gives the same results.  Default is false.") ;
 		{	
 			StringBuilder stb = new StringBuilder() ;
 			for ( VehiclesSource src : VehiclesSource.values() ) {
@@ -545,6 +568,84 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	public void setUsingThreadpool( boolean val ) {
 		this.usingThreadpool = val ;
 	}
+	// ---
+	public enum NetworkPartitioning { roundRobin, graphPartitioning }
+	private static final String NETWORK_PARTITIONING = "networkPartitioning" ;
+	private NetworkPartitioning networkPartitioning = NetworkPartitioning.roundRobin ;
+	@StringGetter(NETWORK_PARTITIONING)
+	public NetworkPartitioning getNetworkPartitioning() {
+		return this.networkPartitioning ;
+	}
+	@StringSetter(NETWORK_PARTITIONING)
+	public void setNetworkPartitioning( NetworkPartitioning val ) {
+		this.networkPartitioning = val ;
+	}
+	// ---
+	private static final String REBALANCING_NETWORK_PARTITIONS = "rebalancingNetworkPartitions" ;
+	private boolean rebalancingNetworkPartitions = false ;
+	@StringGetter(REBALANCING_NETWORK_PARTITIONS)
+	public boolean isRebalancingNetworkPartitions() {
+		return this.rebalancingNetworkPartitions ;
+	}
+	@StringSetter(REBALANCING_NETWORK_PARTITIONS)
+	public void setRebalancingNetworkPartitions( boolean val ) {
+		this.rebalancingNetworkPartitions = val ;
+	}
+	// ---
+	private static final String USING_INDEXED_ACTIVITY_ENDS_QUEUE = "usingIndexedActivityEndsQueue" ;
+	private boolean usingIndexedActivityEndsQueue = false ;
+	@StringGetter(USING_INDEXED_ACTIVITY_ENDS_QUEUE)
+	public boolean isUsingIndexedActivityEndsQueue() {
+		return this.usingIndexedActivityEndsQueue ;
+	}
+	@StringSetter(USING_INDEXED_ACTIVITY_ENDS_QUEUE)
+	public void setUsingIndexedActivityEndsQueue( boolean val ) {
+		this.usingIndexedActivityEndsQueue = val ;
+	}
+	// ---
+	private static final String USING_TIME_WHEEL_IN_TELEPORTATION = "usingTimeWheelInTeleportation" ;
+	private boolean usingTimeWheelInTeleportation = false ;
+	@StringGetter(USING_TIME_WHEEL_IN_TELEPORTATION)
+	public boolean isUsingTimeWheelInTeleportation() {
+		return this.usingTimeWheelInTeleportation ;
+	}
+	@StringSetter(USING_TIME_WHEEL_IN_TELEPORTATION)
+	public void setUsingTimeWheelInTeleportation( boolean val ) {
+		this.usingTimeWheelInTeleportation = val ;
+	}
+	// ---
+	private static final String USING_RING_BUFFER_VEHICLE_QUEUES = "usingRingBufferVehicleQueues" ;
+	private boolean usingRingBufferVehicleQueues = false ;
+	@StringGetter(USING_RING_BUFFER_VEHICLE_QUEUES)
+	public boolean isUsingRingBufferVehicleQueues() {
+		return this.usingRingBufferVehicleQueues ;
+	}
+	@StringSetter(USING_RING_BUFFER_VEHICLE_QUEUES)
+	public void setUsingRingBufferVehicleQueues( boolean val ) {
+		this.usingRingBufferVehicleQueues = val ;
+	}
+	// ---
+	private static final String USING_SLEEPING_LINKS = "usingSleepingLinks" ;
+	private boolean usingSleepingLinks = false ;
+	@StringGetter(USING_SLEEPING_LINKS)
+	public boolean isUsingSleepingLinks() {
+		return this.usingSleepingLinks ;
+	}
+	@StringSetter(USING_SLEEPING_LINKS)
+	public void setUsingSleepingLinks( boolean val ) {
+		this.usingSleepingLinks = val ;
+	}
+	// ---
+	private static final String USING_LINK_EVENT_RECORDS = "usingLinkEventRecords" ;
+	private boolean usingLinkEventRecords = false ;
+	@StringGetter(USING_LINK_EVENT_RECORDS)
+	public boolean isUsingLinkEventRecords() {
+		return this.usingLinkEventRecords ;
+	}
+	@StringSetter(USING_LINK_EVENT_RECORDS)
+	public void setUsingLinkEventRecords( boolean val ) {
+		this.usingLinkEventRecords = val ;
+	}
 
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
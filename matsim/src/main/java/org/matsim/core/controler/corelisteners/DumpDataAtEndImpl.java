@@ -155,6 +155,9 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 					case json:
 						file = Controler.DefaultFiles.eventsJson;
 						break;
+					case binary:
+						file = Controler.DefaultFiles.eventsBinary;
+						break;
 					default:
 						continue;
 				}
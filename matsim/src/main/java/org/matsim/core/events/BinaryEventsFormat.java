@@ -0,0 +1,83 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+/**
+ * Constants describing the binary, column-oriented events file format written by
+ * {@link org.matsim.core.events.algorithms.EventWriterBinary} and read by {@link EventsReaderBinary}.
+ *
+ * <p>All numbers are stored big-endian. The file has the following layout:</p>
+ * <pre>
+ * header:   int MAGIC, int VERSION
+ * chunk*:   zstd-compressed chunk data, see below
+ * footer:   int dictionaryLength, int compressedDictionaryLength, byte[] zstd-compressed dictionary
+ *           int chunkCount
+ *           per chunk: long offset, int compressedLength, int length, int eventCount,
+ *                      double minTime, double maxTime, int typeCount, int[] type (dictionary index)
+ * trailer:  long footerOffset, int MAGIC
+ * </pre>
+ *
+ * <p>The dictionary contains every string used in the file (event types, attribute names and non-numeric
+ * attribute values like ids or modes), each stored as <code>int length, byte[] utf-8</code>. All other
+ * parts of the file refer to strings only by their index in the dictionary.</p>
+ *
+ * <p>A chunk holds up to a few ten thousand consecutive events. Inside a chunk, the events are grouped into
+ * one block per event type, every block storing its attributes column by column:</p>
+ * <pre>
+ * int eventCount, int typeCount, int[typeCount] type (dictionary index)
+ * byte[eventCount] type of each event (index into the chunk's types)
+ * double[eventCount] time of each event
+ * per type: int rowCount, int columnCount,
+ *           per column: int name (dictionary index), byte kind,
+ *                       KIND_DOUBLE: double[rowCount]
+ *                       KIND_STRING: int[rowCount] (dictionary index, or ABSENT or NULL)
+ * </pre>
+ *
+ * <p>The i-th event of a given type in a chunk is stored in the i-th row of that type's block. The chunk index in
+ * the footer allows a reader to skip chunks that do not contain any requested event type or lie outside a
+ * requested time window without decompressing them.</p>
+ */
+public final class BinaryEventsFormat {
+
+	public static final int MAGIC = 0x4d455642; // "MEVB"
+	public static final int VERSION = 1;
+
+	public static final String FILE_EXTENSION = ".bin";
+
+	public static final byte KIND_DOUBLE = 1;
+	public static final byte KIND_STRING = 2;
+
+	/** marks a row in a string column where the event does not have the column's attribute */
+	public static final int ABSENT = -1;
+	/** marks a row in a string column where the event has the column's attribute, but with value <code>null</code> */
+	public static final int NULL = -2;
+
+	/** the type of each event is stored as a single byte per chunk */
+	public static final int MAX_TYPES_PER_CHUNK = 256;
+
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	public static final int TRAILER_SIZE = 12;
+
+	private BinaryEventsFormat() {
+	}
+
+}
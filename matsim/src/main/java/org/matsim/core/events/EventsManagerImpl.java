@@ -20,9 +20,14 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +35,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
@@ -55,6 +61,7 @@ import org.matsim.api.core.v01.events.handler.PersonMoneyEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
 import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
@@ -64,7 +71,10 @@ import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityE
 import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.core.events.handler.SingleThreadedEventHandler;
 import org.matsim.core.utils.misc.ClassUtils;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * EventHandling
@@ -75,9 +85,18 @@ import org.matsim.core.utils.misc.ClassUtils;
  * <li>ready to go, just implement the interface somewhere and add a
  * HandlerObject with a call to <code>Events.addHandler(HandlerObject)</code></li>
  * <li>(optional) add an appropriate line in callHandlerFast() for speeding
- * up execution!</li>
+ * up execution! This is only relevant for {@link DispatchMode#REFLECTIVE}.</li>
  * </ol>
  *
+ * With {@link DispatchMode#GENERATED} (the default), a small invoker class is generated with
+ * {@link LambdaMetafactory} for every handler interface when the first handler implementing it is
+ * registered, so all event types are dispatched without reflection. Handlers implementing
+ * {@link SingleThreadedEventHandler} are additionally called without locking them.
+ *
+ * Handlers implementing {@link LinkEventRecordHandler} get link enter and link leave events as re-used records. If
+ * these events are passed in with {@link #processLinkEnter} and {@link #processLinkLeave}, the event objects are
+ * only created if some other handler needs them.
+ *
  * @author dstrippgen
  * @author mrieser
  */
@@ -85,14 +104,37 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private static final Logger log = Logger.getLogger(EventsManagerImpl.class);
 
+	public enum DispatchMode {
+		/** calls the handlers of well-known event types directly and all others through {@link Method#invoke} */
+		REFLECTIVE,
+		/** calls all handlers through invokers generated when the handler is registered */
+		GENERATED
+	}
+
+	/**
+	 * The event types handled by {@link #callHandlerFast}. Exceptions thrown by handlers of these types
+	 * are passed on unchanged, while all others are wrapped into a {@link RuntimeException}.
+	 */
+	private static final Set<Class<?>> FAST_EVENT_CLASSES = Set.of(LinkLeaveEvent.class, LinkEnterEvent.class,
+			VehicleEntersTrafficEvent.class, PersonArrivalEvent.class, PersonDepartureEvent.class, ActivityEndEvent.class,
+			ActivityStartEvent.class, TransitDriverStartsEvent.class, PersonStuckEvent.class, PersonMoneyEvent.class,
+			AgentWaitingForPtEvent.class, PersonEntersVehicleEvent.class, PersonLeavesVehicleEvent.class,
+			VehicleDepartsAtFacilityEvent.class, VehicleArrivesAtFacilityEvent.class, Event.class);
+
+	/*package*/ interface HandlerInvoker {
+		void invoke(EventHandler handler, Event event);
+	}
+
 	static private class HandlerData {
 
 		protected Class<?> eventklass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
 		protected Method method;
-		protected HandlerData(final Class<?> eventklass, final Method method) {
+		protected HandlerInvoker invoker;
+		protected HandlerData(final Class<?> eventklass, final Method method, final HandlerInvoker invoker) {
 			this.eventklass = eventklass;
 			this.method = method;
+			this.invoker = invoker;
 		}
 		protected void removeHandler(final EventHandler handler) {
 			this.handlerList.remove(handler);
@@ -103,21 +145,41 @@ public final class EventsManagerImpl implements EventsManager {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
 		protected final Method method;
+		protected final HandlerInvoker invoker;
+		protected final boolean lockHandler;
+		protected final boolean wrapExceptions;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method, final HandlerInvoker invoker) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
 			this.method = method;
+			// the invoker is generated for the first interface registered for an event class, another handler might implement a different one
+			this.invoker = (invoker != null && method.getDeclaringClass().isInstance(eventHandler)) ? invoker : null;
+			this.lockHandler = this.invoker == null || !(eventHandler instanceof SingleThreadedEventHandler);
+			this.wrapExceptions = !FAST_EVENT_CLASSES.contains(eventClass);
 		}
 	}
 
+	private final DispatchMode dispatchMode;
+
 	private final List<HandlerData> handlerData = new ArrayList<HandlerData>();
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
 
+	private volatile LinkEventRecordHandler[] recordHandlers = new LinkEventRecordHandler[0];
+	private final ThreadLocal<LinkEventRecord> records = ThreadLocal.withInitial(LinkEventRecord::new);
+
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	public EventsManagerImpl() {
+		this(DispatchMode.GENERATED);
+	}
+
+	public EventsManagerImpl(final DispatchMode dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
 	private HandlerData findHandler(final Class<?> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventklass == evklass) {
@@ -129,12 +191,116 @@ public final class EventsManagerImpl implements EventsManager {
 
 	@Override
 	public void processEvent(final Event event) {
+		countEvent();
+		if (this.recordHandlers.length > 0) {
+			if (event.getClass() == LinkEnterEvent.class) {
+				LinkEventRecord record = borrowRecord();
+				record.set((LinkEnterEvent) event);
+				try {
+					callRecordHandlers(record);
+				} finally {
+					record.inUse = false;
+				}
+			} else if (event.getClass() == LinkLeaveEvent.class) {
+				LinkEventRecord record = borrowRecord();
+				record.set((LinkLeaveEvent) event);
+				try {
+					callRecordHandlers(record);
+				} finally {
+					record.inUse = false;
+				}
+			}
+		}
+		callHandlers(getHandlersForClass(event.getClass()), event);
+	}
+
+	@Override
+	public void processLinkEnter(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		if (this.recordHandlers.length == 0) {
+			processEvent(new LinkEnterEvent(time, vehicleId, linkId));
+			return;
+		}
+		LinkEventRecord record = borrowRecord();
+		record.set(LinkEventRecord.Type.LINK_ENTER, time, vehicleId, linkId);
+		try {
+			processLinkEventRecord(record);
+		} finally {
+			record.inUse = false;
+		}
+	}
+
+	@Override
+	public void processLinkLeave(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		if (this.recordHandlers.length == 0) {
+			processEvent(new LinkLeaveEvent(time, vehicleId, linkId));
+			return;
+		}
+		LinkEventRecord record = borrowRecord();
+		record.set(LinkEventRecord.Type.LINK_LEAVE, time, vehicleId, linkId);
+		try {
+			processLinkEventRecord(record);
+		} finally {
+			record.inUse = false;
+		}
+	}
+
+	/**
+	 * Passes the record to the {@link LinkEventRecordHandler}s, and the event created from it to all other handlers of
+	 * the event type.  The event is only created if there is such a handler.
+	 */
+	/*package*/ void processLinkEventRecord(final LinkEventRecord record) {
+		countEvent();
+		callRecordHandlers(record);
+		HandlerInfo[] handlers = getHandlersForClass(record.getEventClass());
+		if (handlers.length > 0) {
+			callHandlers(handlers, record.toEvent());
+		}
+	}
+
+	/**
+	 * @return the record of the current thread, or a new one if a handler creates a link event while handling one
+	 */
+	private LinkEventRecord borrowRecord() {
+		LinkEventRecord record = this.records.get();
+		if (record.inUse) {
+			record = new LinkEventRecord();
+		}
+		record.inUse = true;
+		return record;
+	}
+
+	private void countEvent() {
 		this.counter++;
 		if (this.counter == this.nextCounterMsg) {
 			this.nextCounterMsg *= 4;
 			log.info(" event # " + this.counter);
 		}
-		for (HandlerInfo info : getHandlersForClass( event.getClass() )) {
+	}
+
+	private void callRecordHandlers(final LinkEventRecord record) {
+		for (LinkEventRecordHandler handler : this.recordHandlers) {
+			if (handler instanceof SingleThreadedEventHandler) {
+				handler.handleRecord(record);
+			} else {
+				synchronized(handler) {
+					handler.handleRecord(record);
+				}
+			}
+		}
+	}
+
+	private static void callHandlers(final HandlerInfo[] handlers, final Event event) {
+		for (HandlerInfo info : handlers) {
+			if (info.invoker != null) {
+				if (info.lockHandler) {
+					synchronized(info.eventHandler) {
+						callHandlerGenerated(info, event);
+					}
+				} else {
+					callHandlerGenerated(info, event);
+				}
+				continue;
+			}
 			synchronized(info.eventHandler) {
 				if (callHandlerFast(info.eventClass, event, info.eventHandler )) {
 					continue;
@@ -150,6 +316,17 @@ public final class EventsManagerImpl implements EventsManager {
 		}
 	}
 
+	private static void callHandlerGenerated(final HandlerInfo info, final Event event) {
+		if (!info.wrapExceptions) {
+			info.invoker.invoke(info.eventHandler, event);
+			return;
+		}
+		try {
+			info.invoker.invoke(info.eventHandler, event);
+		} catch (RuntimeException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+		}
+	}
 
 	@Override
 	public void addHandler (final EventHandler handler) {
@@ -166,6 +343,12 @@ public final class EventsManagerImpl implements EventsManager {
 			}
 			test = test.getSuperclass();
 		}
+		if (handler instanceof LinkEventRecordHandler) {
+			LinkEventRecordHandler[] handlers = Arrays.copyOf(this.recordHandlers, this.recordHandlers.length + 1);
+			handlers[handlers.length - 1] = (LinkEventRecordHandler) handler;
+			this.recordHandlers = handlers;
+			log.info("  handles link events as records");
+		}
 		this.cacheHandlers.clear();
 		log.info("");
 	}
@@ -176,6 +359,9 @@ public final class EventsManagerImpl implements EventsManager {
 		for (HandlerData handlerList : this.handlerData) {
 			handlerList.removeHandler(handler);
 		}
+		List<LinkEventRecordHandler> handlers = new ArrayList<>(Arrays.asList(this.recordHandlers));
+		handlers.remove(handler);
+		this.recordHandlers = handlers.toArray(new LinkEventRecordHandler[0]);
 		this.cacheHandlers.clear();
 	}
 
@@ -194,6 +380,14 @@ public final class EventsManagerImpl implements EventsManager {
 				}
 			}
 		}
+		// (a record handler does not necessarily handle any event type)
+		for (EventHandler handler : this.recordHandlers) {
+			if (!resetHandlers.contains(handler)) {
+				log.info("  " + handler.getClass().getName());
+				handler.reset(iteration);
+				resetHandlers.add(handler);
+			}
+		}
 	}
 
 	@Override
@@ -221,7 +415,8 @@ public final class EventsManagerImpl implements EventsManager {
 					log.info("    > " + eventClass.getName());
 					HandlerData dat = findHandler(eventClass);
 					if (dat == null) {
-						dat = new HandlerData(eventClass, method);
+						HandlerInvoker invoker = this.dispatchMode == DispatchMode.GENERATED ? createInvoker(method) : null;
+						dat = new HandlerData(eventClass, method, invoker);
 						this.handlerData.add(dat);
 					}
 					dat.handlerList.add(handler);
@@ -238,12 +433,16 @@ public final class EventsManagerImpl implements EventsManager {
 		}
 
 		ArrayList<HandlerInfo> info = new ArrayList<HandlerInfo>();
+		// the record handlers get link enter and link leave events as records only
+		boolean skipRecordHandlers = eventClass == LinkEnterEvent.class || eventClass == LinkLeaveEvent.class;
 		// first search in class-hierarchy
 		while (klass != Object.class) {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					if (!(skipRecordHandlers && handler instanceof LinkEventRecordHandler)) {
+						info.add(new HandlerInfo(klass, handler, dat.method, dat.invoker));
+					}
 				}
 			}
 			klass = klass.getSuperclass();
@@ -253,7 +452,9 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					if (!(skipRecordHandlers && handler instanceof LinkEventRecordHandler)) {
+						info.add(new HandlerInfo(intfc, handler, dat.method, dat.invoker));
+					}
 				}
 			}
 		}
@@ -263,6 +464,41 @@ public final class EventsManagerImpl implements EventsManager {
 		return cache;
 	}
 
+	/**
+	 * Generates an implementation of {@link HandlerInvoker} that calls the given <code>handleEvent</code> method
+	 * directly, i.e. with an <code>invokeinterface</code> instruction instead of reflection. Returns <code>null</code>
+	 * if this is not possible, e.g. because the handler interface is not accessible from this class or was loaded by
+	 * a class loader this class cannot see. In that case, the handler is called through reflection.
+	 */
+	private static HandlerInvoker createInvoker(final Method method) {
+		Class<?> handlerInterface = method.getDeclaringClass();
+		Class<?> eventClass = method.getParameterTypes()[0];
+		if (!EventHandler.class.isAssignableFrom(handlerInterface) || !Event.class.isAssignableFrom(eventClass)
+				|| !isVisible(handlerInterface) || !isVisible(eventClass)) {
+			return null;
+		}
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			CallSite site = LambdaMetafactory.metafactory(lookup, "invoke",
+					MethodType.methodType(HandlerInvoker.class),
+					MethodType.methodType(void.class, EventHandler.class, Event.class),
+					lookup.unreflect(method),
+					MethodType.methodType(void.class, handlerInterface, eventClass));
+			return (HandlerInvoker) site.getTarget().invoke();
+		} catch (Throwable e) {
+			log.warn("could not generate invoker for " + method + ", falling back to reflection: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static boolean isVisible(final Class<?> klass) {
+		try {
+			return Class.forName(klass.getName(), false, EventsManagerImpl.class.getClassLoader()) == klass;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
 	// this method is purely for performance reasons and need not be implemented
 	private static boolean callHandlerFast( final Class<?> klass, final Event ev, final EventHandler handler ) {
 		if (klass == LinkLeaveEvent.class) {
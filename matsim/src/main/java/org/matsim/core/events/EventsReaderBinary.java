@@ -0,0 +1,540 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import com.github.luben.zstd.Zstd;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.events.MatsimEventsReader.CustomEventMapper;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.Attributes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads events files in the binary format described in {@link BinaryEventsFormat}.
+ *
+ * The file is memory-mapped, so only the chunks that are actually needed are read from disk. Reading can be
+ * restricted to a set of event types and to a time window, in which case chunks not containing any
+ * matching event are skipped without decompressing them, and the attributes of other event types are
+ * not decoded at all.
+ *
+ * The most frequent event types are created directly from the decoded columns, resolving each id only once
+ * per file. All other event types, including custom event mappers, are handled by {@link EventsReaderXMLv1}
+ * so they are guaranteed to be the same as when reading an xml file.
+ *
+ * @see org.matsim.core.events.algorithms.EventWriterBinary
+ */
+public final class EventsReaderBinary {
+
+	private final static Logger log = Logger.getLogger(EventsReaderBinary.class);
+
+	private final EventsManager events;
+	private final EventsReaderXMLv1 delegate;
+
+	private Set<String> eventTypes = null;
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+
+	private String[] strings;
+	private String[] internedStrings;
+	private Id<Link>[] linkIds;
+	private Id<Person>[] personIds;
+	private Id<Vehicle>[] vehicleIds;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+		this.delegate = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper<?> cem) {
+		this.delegate.addCustomEventMapper(eventType, cem);
+	}
+
+	/**
+	 * Only events of the given types are passed to the events manager.
+	 *
+	 * @param eventTypes the event types to read, <code>null</code> to read all events.
+	 */
+	public void setEventTypes(final Collection<String> eventTypes) {
+		this.eventTypes = eventTypes == null ? null : new HashSet<>(eventTypes);
+	}
+
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt;= toTime</code> are passed to the events manager.
+	 */
+	public void setTimeWindow(final double fromTime, final double toTime) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+	}
+
+	public void readFile(final String filename) {
+		readFile(Paths.get(filename));
+	}
+
+	public void readFile(final Path path) {
+		log.info("starting to read binary events from " + path + " ...");
+		long eventCount = 0;
+		int chunksRead = 0;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 8 + BinaryEventsFormat.TRAILER_SIZE) {
+				throw new UncheckedIOException("File is too short to be a binary events file: " + path);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+			if (header.getInt() != BinaryEventsFormat.MAGIC) {
+				throw new UncheckedIOException("File is not a binary events file: " + path);
+			}
+			int version = header.getInt();
+			if (version != BinaryEventsFormat.VERSION) {
+				throw new UncheckedIOException("Unsupported version " + version + " of binary events file " + path);
+			}
+			MappedByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - BinaryEventsFormat.TRAILER_SIZE, BinaryEventsFormat.TRAILER_SIZE);
+			long footerOffset = trailer.getLong();
+			if (trailer.getInt() != BinaryEventsFormat.MAGIC) {
+				throw new UncheckedIOException("Binary events file is incomplete, it was probably not closed correctly: " + path);
+			}
+			MappedByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - BinaryEventsFormat.TRAILER_SIZE - footerOffset);
+			readDictionary(footer);
+			boolean[] acceptedTypes = new boolean[this.strings.length];
+			for (int i = 0; i < this.strings.length; i++) {
+				acceptedTypes[i] = this.eventTypes == null || this.eventTypes.contains(this.strings[i]);
+			}
+
+			int chunkCount = footer.getInt();
+			for (int c = 0; c < chunkCount; c++) {
+				long offset = footer.getLong();
+				int compressedLength = footer.getInt();
+				int length = footer.getInt();
+				footer.getInt(); // number of events in the chunk, not needed here
+				double minTime = footer.getDouble();
+				double maxTime = footer.getDouble();
+				int typeCount = footer.getInt();
+				boolean containsAcceptedType = false;
+				for (int t = 0; t < typeCount; t++) {
+					containsAcceptedType |= acceptedTypes[footer.getInt()];
+				}
+				if (!containsAcceptedType || maxTime < this.fromTime || minTime > this.toTime) {
+					continue;
+				}
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, compressedLength);
+				byte[] compressed = new byte[compressedLength];
+				mapped.get(compressed);
+				ByteBuffer data = ByteBuffer.wrap(Zstd.decompress(compressed, length));
+				eventCount += readChunk(data, acceptedTypes);
+				chunksRead++;
+			}
+			log.info("read " + eventCount + " events from " + chunksRead + " of " + chunkCount + " chunks.");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.strings = null;
+			this.internedStrings = null;
+			this.linkIds = null;
+			this.personIds = null;
+			this.vehicleIds = null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readDictionary(final ByteBuffer footer) {
+		int length = footer.getInt();
+		int compressedLength = footer.getInt();
+		byte[] compressed = new byte[compressedLength];
+		footer.get(compressed);
+		ByteBuffer dictionary = ByteBuffer.wrap(Zstd.decompress(compressed, length));
+		int count = dictionary.getInt();
+		this.strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			int stringLength = dictionary.getInt();
+			this.strings[i] = new String(dictionary.array(), dictionary.position(), stringLength, StandardCharsets.UTF_8);
+			dictionary.position(dictionary.position() + stringLength);
+		}
+		this.internedStrings = new String[count];
+		this.linkIds = (Id<Link>[]) new Id<?>[count];
+		this.personIds = (Id<Person>[]) new Id<?>[count];
+		this.vehicleIds = (Id<Vehicle>[]) new Id<?>[count];
+	}
+
+	private int readChunk(final ByteBuffer data, final boolean[] acceptedTypes) {
+		int eventCount = data.getInt();
+		int typeCount = data.getInt();
+		int[] types = new int[typeCount];
+		for (int t = 0; t < typeCount; t++) {
+			types[t] = data.getInt();
+		}
+		int typesOffset = data.position();
+		int timesOffset = typesOffset + eventCount;
+		data.position(timesOffset + eventCount * 8);
+
+		TypeBlock[] blocks = new TypeBlock[typeCount];
+		for (int t = 0; t < typeCount; t++) {
+			int rowCount = data.getInt();
+			int columnCount = data.getInt();
+			String[] keys = new String[columnCount];
+			byte[] kinds = new byte[columnCount];
+			int[] offsets = new int[columnCount];
+			for (int c = 0; c < columnCount; c++) {
+				keys[c] = this.strings[data.getInt()];
+				kinds[c] = data.get();
+				offsets[c] = data.position();
+				data.position(offsets[c] + rowCount * (kinds[c] == BinaryEventsFormat.KIND_DOUBLE ? 8 : 4));
+			}
+			if (acceptedTypes[types[t]]) {
+				blocks[t] = new TypeBlock(data, this.strings[types[t]], keys, kinds, offsets);
+			}
+		}
+
+		int[] rows = new int[typeCount];
+		int processed = 0;
+		for (int i = 0; i < eventCount; i++) {
+			int t = data.get(typesOffset + i) & 0xff;
+			int row = rows[t]++;
+			TypeBlock block = blocks[t];
+			if (block == null) {
+				continue;
+			}
+			double time = data.getDouble(timesOffset + i * 8);
+			if (time < this.fromTime || time > this.toTime) {
+				continue;
+			}
+			block.process(time, row);
+			processed++;
+		}
+		return processed;
+	}
+
+	private String getString(final int index) {
+		return index < 0 ? null : this.strings[index];
+	}
+
+	private String getInternedString(final int index) {
+		if (index < 0) {
+			return null;
+		}
+		String s = this.internedStrings[index];
+		if (s == null) {
+			s = this.strings[index].intern();
+			this.internedStrings[index] = s;
+		}
+		return s;
+	}
+
+	private Id<Link> getLinkId(final int index) {
+		Id<Link> id = this.linkIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Link.class);
+			this.linkIds[index] = id;
+		}
+		return id;
+	}
+
+	private Id<Person> getPersonId(final int index) {
+		Id<Person> id = this.personIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Person.class);
+			this.personIds[index] = id;
+		}
+		return id;
+	}
+
+	private Id<Vehicle> getVehicleId(final int index) {
+		Id<Vehicle> id = this.vehicleIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Vehicle.class);
+			this.vehicleIds[index] = id;
+		}
+		return id;
+	}
+
+	private static final int GENERIC = 0;
+	private static final int LINK_ENTER = 1;
+	private static final int LINK_LEAVE = 2;
+	private static final int VEHICLE_ENTERS_TRAFFIC = 3;
+	private static final int VEHICLE_LEAVES_TRAFFIC = 4;
+	private static final int PERSON_DEPARTURE = 5;
+	private static final int PERSON_ARRIVAL = 6;
+	private static final int PERSON_ENTERS_VEHICLE = 7;
+	private static final int PERSON_LEAVES_VEHICLE = 8;
+
+	/**
+	 * The columns of one event type in a chunk. Also serves as flyweight {@link Attributes} of the current row
+	 * for the event types that are handled by the xml reader.
+	 */
+	private final class TypeBlock implements Attributes {
+
+		private final ByteBuffer data;
+		private final String type;
+		private final String[] keys;
+		private final byte[] kinds;
+		private final int[] offsets;
+		private final int kind;
+
+		private final int person;
+		private final int vehicle;
+		private final int link;
+		private final int mode;
+		private final int position;
+
+		private double time;
+		private int row;
+		private final int[] present;
+		private int presentCount;
+
+		TypeBlock(final ByteBuffer data, final String type, final String[] keys, final byte[] kinds, final int[] offsets) {
+			this.data = data;
+			this.type = type;
+			this.keys = keys;
+			this.kinds = kinds;
+			this.offsets = offsets;
+			this.present = new int[keys.length];
+
+			this.person = stringColumn(HasPersonId.ATTRIBUTE_PERSON);
+			this.vehicle = stringColumn(LinkEnterEvent.ATTRIBUTE_VEHICLE);
+			this.link = stringColumn(LinkEnterEvent.ATTRIBUTE_LINK);
+			this.position = doubleColumn(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION);
+			if (VehicleEntersTrafficEvent.EVENT_TYPE.equals(type) || VehicleLeavesTrafficEvent.EVENT_TYPE.equals(type)) {
+				this.mode = stringColumn(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE);
+			} else {
+				this.mode = stringColumn(PersonDepartureEvent.ATTRIBUTE_LEGMODE);
+			}
+
+			int kind = GENERIC;
+			if (LinkEnterEvent.EVENT_TYPE.equals(type)) {
+				kind = LINK_ENTER;
+			} else if (LinkLeaveEvent.EVENT_TYPE.equals(type)) {
+				kind = LINK_LEAVE;
+			} else if (VehicleEntersTrafficEvent.EVENT_TYPE.equals(type) && this.position >= 0) {
+				kind = VEHICLE_ENTERS_TRAFFIC;
+			} else if (VehicleLeavesTrafficEvent.EVENT_TYPE.equals(type) && this.position >= 0) {
+				kind = VEHICLE_LEAVES_TRAFFIC;
+			} else if (PersonDepartureEvent.EVENT_TYPE.equals(type)) {
+				kind = PERSON_DEPARTURE;
+			} else if (PersonArrivalEvent.EVENT_TYPE.equals(type)) {
+				kind = PERSON_ARRIVAL;
+			} else if (PersonEntersVehicleEvent.EVENT_TYPE.equals(type)) {
+				kind = PERSON_ENTERS_VEHICLE;
+			} else if (PersonLeavesVehicleEvent.EVENT_TYPE.equals(type)) {
+				kind = PERSON_LEAVES_VEHICLE;
+			}
+			this.kind = kind;
+		}
+
+		private int stringColumn(final String key) {
+			int column = Arrays.asList(this.keys).indexOf(key);
+			return column >= 0 && this.kinds[column] == BinaryEventsFormat.KIND_STRING ? column : -1;
+		}
+
+		private int doubleColumn(final String key) {
+			int column = Arrays.asList(this.keys).indexOf(key);
+			return column >= 0 && this.kinds[column] == BinaryEventsFormat.KIND_DOUBLE ? column : -1;
+		}
+
+		private int ref(final int column, final int row) {
+			return column < 0 ? BinaryEventsFormat.ABSENT : this.data.getInt(this.offsets[column] + row * 4);
+		}
+
+		void process(final double time, final int row) {
+			int person = ref(this.person, row);
+			int vehicle = ref(this.vehicle, row);
+			int link = ref(this.link, row);
+			Event event = null;
+			switch (this.kind) {
+				case LINK_ENTER:
+					if (vehicle >= 0 && link >= 0) {
+						event = new LinkEnterEvent(time, getVehicleId(vehicle), getLinkId(link));
+					}
+					break;
+				case LINK_LEAVE:
+					if (vehicle >= 0 && link >= 0) {
+						event = new LinkLeaveEvent(time, getVehicleId(vehicle), getLinkId(link));
+					}
+					break;
+				case VEHICLE_ENTERS_TRAFFIC:
+					if (person >= 0 && vehicle >= 0 && link >= 0) {
+						event = new VehicleEntersTrafficEvent(time, getPersonId(person), getLinkId(link), getVehicleId(vehicle),
+								getString(ref(this.mode, row)), this.data.getDouble(this.offsets[this.position] + row * 8));
+					}
+					break;
+				case VEHICLE_LEAVES_TRAFFIC:
+					if (person >= 0 && link >= 0 && vehicle != BinaryEventsFormat.NULL) {
+						event = new VehicleLeavesTrafficEvent(time, getPersonId(person), getLinkId(link), vehicle < 0 ? null : getVehicleId(vehicle),
+								getString(ref(this.mode, row)), this.data.getDouble(this.offsets[this.position] + row * 8));
+					}
+					break;
+				case PERSON_DEPARTURE:
+					if (person >= 0 && link >= 0) {
+						event = new PersonDepartureEvent(time, getPersonId(person), getLinkId(link), getInternedString(ref(this.mode, row)));
+					}
+					break;
+				case PERSON_ARRIVAL:
+					if (person >= 0 && link >= 0) {
+						event = new PersonArrivalEvent(time, getPersonId(person), getLinkId(link), getInternedString(ref(this.mode, row)));
+					}
+					break;
+				case PERSON_ENTERS_VEHICLE:
+					if (person >= 0 && vehicle >= 0) {
+						event = new PersonEntersVehicleEvent(time, getPersonId(person), getVehicleId(vehicle));
+					}
+					break;
+				case PERSON_LEAVES_VEHICLE:
+					if (person >= 0 && vehicle >= 0) {
+						event = new PersonLeavesVehicleEvent(time, getPersonId(person), getVehicleId(vehicle));
+					}
+					break;
+				default:
+					break;
+			}
+			if (event != null) {
+				EventsReaderBinary.this.events.processEvent(event);
+			} else {
+				setRow(time, row);
+				EventsReaderBinary.this.delegate.startTag(EventsReaderXMLv1.EVENT, this, null);
+			}
+		}
+
+		private void setRow(final double time, final int row) {
+			this.time = time;
+			this.row = row;
+			this.presentCount = 0;
+			for (int c = 0; c < this.keys.length; c++) {
+				if (this.kinds[c] == BinaryEventsFormat.KIND_DOUBLE || ref(c, row) != BinaryEventsFormat.ABSENT) {
+					this.present[this.presentCount++] = c;
+				}
+			}
+		}
+
+		// Attributes of the current row: index 0 is the time, 1 the type, followed by all present columns
+
+		@Override
+		public int getLength() {
+			return 2 + this.presentCount;
+		}
+
+		@Override
+		public String getURI(final int index) {
+			return "";
+		}
+
+		@Override
+		public String getLocalName(final int index) {
+			return getQName(index);
+		}
+
+		@Override
+		public String getQName(final int index) {
+			if (index == 0) {
+				return Event.ATTRIBUTE_TIME;
+			}
+			if (index == 1) {
+				return Event.ATTRIBUTE_TYPE;
+			}
+			if (index < 0 || index >= getLength()) {
+				return null;
+			}
+			return this.keys[this.present[index - 2]];
+		}
+
+		@Override
+		public String getType(final int index) {
+			return index < 0 || index >= getLength() ? null : "CDATA";
+		}
+
+		@Override
+		public String getValue(final int index) {
+			if (index == 0) {
+				return Double.toString(this.time);
+			}
+			if (index == 1) {
+				return this.type;
+			}
+			if (index < 0 || index >= getLength()) {
+				return null;
+			}
+			int column = this.present[index - 2];
+			if (this.kinds[column] == BinaryEventsFormat.KIND_DOUBLE) {
+				return Double.toString(this.data.getDouble(this.offsets[column] + this.row * 8));
+			}
+			return getString(ref(column, this.row));
+		}
+
+		@Override
+		public int getIndex(final String uri, final String localName) {
+			return getIndex(localName);
+		}
+
+		@Override
+		public int getIndex(final String qName) {
+			for (int i = 0; i < getLength(); i++) {
+				if (getQName(i).equals(qName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public String getType(final String uri, final String localName) {
+			return getType(getIndex(localName));
+		}
+
+		@Override
+		public String getType(final String qName) {
+			return getType(getIndex(qName));
+		}
+
+		@Override
+		public String getValue(final String uri, final String localName) {
+			return getValue(getIndex(localName));
+		}
+
+		@Override
+		public String getValue(final String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+
+}
@@ -26,6 +26,8 @@ import org.matsim.core.config.Config;
 import org.matsim.core.controler.Injector;
 import org.matsim.utils.eventsfilecomparison.EventsFileComparator;
 
+import java.util.Arrays;
+
 public final class EventsUtils {
 
 	private EventsUtils(){
@@ -44,7 +46,7 @@ public final class EventsUtils {
 	}
 
 	/**
-	 * The SimStepParallelEventsManagerImpl can handle events from multiple threads.
+	 * The SimStepParallelEventsManagerImpl and the RingBufferEventsManager can handle events from multiple threads.
 	 * The (Parallel)EventsMangerImpl cannot, therefore it has to be wrapped into a
 	 * SynchronizedEventsManagerImpl.
 	 */
@@ -53,6 +55,8 @@ public final class EventsUtils {
 			return events;
 		} else if (events instanceof ParallelEventsManager) {
 			return events;
+		} else if (events instanceof RingBufferEventsManager) {
+			return events;
 		}
 		else if (events instanceof SynchronizedEventsManagerImpl) {
 			return events;
@@ -65,6 +69,15 @@ public final class EventsUtils {
 		new MatsimEventsReader(events).readFile(filename) ;
 	}
 
+	/**
+	 * Reads only the events of the given types within the given time window from a binary events file.
+	 *
+	 * @see EventsReaderBinary
+	 */
+	public static void readEvents( EventsManager events, String filename, double fromTime, double toTime, String... eventTypes ) {
+		new MatsimEventsReader(events).readFile(filename, fromTime, toTime, eventTypes.length == 0 ? null : Arrays.asList(eventTypes)) ;
+	}
+
 	public static EventsFileComparator.Result compareEventsFiles( String filename1, String filename2 ) {
 		EventsFileComparator.Result result = EventsFileComparator.compare( filename1, filename2 );
 		return result ;
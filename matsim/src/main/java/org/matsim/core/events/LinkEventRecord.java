@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEventRecord.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The content of a {@link LinkEnterEvent} or {@link LinkLeaveEvent}, in a mutable object which the events manager
+ * re-uses for the next link event once all {@link LinkEventRecordHandler}s have seen it.  So handlers must not keep a
+ * reference to a record; {@link #toEvent()} gives an immutable event that may be kept.
+ *
+ * @see org.matsim.core.api.experimental.events.EventsManager#processLinkEnter(double, Id, Id)
+ */
+public final class LinkEventRecord {
+
+	public enum Type { LINK_ENTER, LINK_LEAVE }
+
+	private Type type;
+	private double time;
+	private Id<Vehicle> vehicleId;
+	private Id<Link> linkId;
+	private Event event = null;
+
+	/** set while the record is passed to the handlers, so that a handler that creates a link event does not overwrite it */
+	boolean inUse = false;
+
+	LinkEventRecord() {
+	}
+
+	void set(final Type type, final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		this.type = type;
+		this.time = time;
+		this.vehicleId = vehicleId;
+		this.linkId = linkId;
+		this.event = null;
+	}
+
+	void set(final LinkEnterEvent event) {
+		set(Type.LINK_ENTER, event.getTime(), event.getVehicleId(), event.getLinkId());
+		this.event = event;
+	}
+
+	void set(final LinkLeaveEvent event) {
+		set(Type.LINK_LEAVE, event.getTime(), event.getVehicleId(), event.getLinkId());
+		this.event = event;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	public double getTime() {
+		return this.time;
+	}
+
+	public Id<Vehicle> getVehicleId() {
+		return this.vehicleId;
+	}
+
+	public Id<Link> getLinkId() {
+		return this.linkId;
+	}
+
+	Class<? extends Event> getEventClass() {
+		return this.type == Type.LINK_ENTER ? LinkEnterEvent.class : LinkLeaveEvent.class;
+	}
+
+	/**
+	 * @return the event with the content of this record.  It is only created once per record, and may be kept.
+	 */
+	public Event toEvent() {
+		Event event = this.event;
+		if (event == null) {
+			// the events are immutable, so if two threads get here at the same time, both create an equal event
+			event = this.type == Type.LINK_ENTER ? new LinkEnterEvent(this.time, this.vehicleId, this.linkId)
+					: new LinkLeaveEvent(this.time, this.vehicleId, this.linkId);
+			this.event = event;
+		}
+		return event;
+	}
+
+	@Override
+	public String toString() {
+		return "LinkEventRecord[" + this.type + ", time=" + this.time + ", vehicle=" + this.vehicleId + ", link=" + this.linkId + "]";
+	}
+
+}
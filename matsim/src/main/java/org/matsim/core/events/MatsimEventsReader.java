@@ -31,7 +31,11 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -48,13 +52,15 @@ public final class MatsimEventsReader implements MatsimReader {
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
 	private final EventsManager events;
 
-	private final Map<String, CustomEventMapper> customEventMappers = new LinkedHashMap<>();
+	private final Map<String, CustomEventMapper<?>> customEventMappers = new LinkedHashMap<>();
+
+	private boolean parallelParsing = false;
 
 	public interface CustomEventMapper<T extends Event> {
 		T apply(GenericEvent event);
 	}
 
-	public void addCustomEventMapper(String eventType, CustomEventMapper mapper) {
+	public void addCustomEventMapper(String eventType, CustomEventMapper<?> mapper) {
 		this.customEventMappers.put(eventType, mapper);
 	}
 
@@ -67,6 +73,14 @@ public final class MatsimEventsReader implements MatsimReader {
 		this.events = events;
 	}
 
+	/**
+	 * Parses xml events files in a pipeline of threads, see {@link MatsimXmlParser#setParallelParsing(boolean)}.
+	 * The events are still passed to the events manager by the calling thread, in the order of the file.
+	 */
+	public void setParallelParsing(final boolean parallelParsing) {
+		this.parallelParsing = parallelParsing;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -76,13 +90,15 @@ public final class MatsimEventsReader implements MatsimReader {
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz") || lcFilename.endsWith(".xml.zst")) {
-			new XmlEventsReader(this.events, this.customEventMappers).readFile(filename );
+			createXmlReader().readFile(filename );
 		} else if (lcFilename.endsWith(".ndjson") || lcFilename.endsWith(".ndjson.gz") || lcFilename.endsWith(".ndjson.zst")) {
 			EventsReaderJson reader = new EventsReaderJson(this.events);
-			for (Map.Entry<String, CustomEventMapper> entry : this.customEventMappers.entrySet()) {
+			for (Map.Entry<String, CustomEventMapper<?>> entry : this.customEventMappers.entrySet()) {
 				reader.addCustomEventMapper(entry.getKey(), entry.getValue());
 			}
 			reader.parse(filename);
+		} else if (lcFilename.endsWith(BinaryEventsFormat.FILE_EXTENSION)) {
+			createBinaryReader().readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -92,19 +108,21 @@ public final class MatsimEventsReader implements MatsimReader {
 
 	@Deprecated // use readStream(InputStream, EventsFileFormat)
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events, this.customEventMappers).parse(stream );
+		createXmlReader().parse(stream );
 	}
 
 	public void readStream(final InputStream stream, final ControlerConfigGroup.EventsFileFormat format) {
 		switch (format) {
 			case xml:
-				new XmlEventsReader(this.events, this.customEventMappers).parse(stream);
+				createXmlReader().parse(stream);
 				break;
 			case pb:
 				throw new UnsupportedOperationException("PB (Protobuf) is currently not supported to read from a stream");
+			case binary:
+				throw new UnsupportedOperationException("Binary events files are memory-mapped and can only be read from a file");
 			case json:
 				EventsReaderJson reader = new EventsReaderJson(this.events);
-				for (Map.Entry<String, CustomEventMapper> entry : this.customEventMappers.entrySet()) {
+				for (Map.Entry<String, CustomEventMapper<?>> entry : this.customEventMappers.entrySet()) {
 					reader.addCustomEventMapper(entry.getKey(), entry.getValue());
 				}
 				reader.parse(stream);
@@ -115,14 +133,51 @@ public final class MatsimEventsReader implements MatsimReader {
 	@Override
 	public void readURL( final URL url ) {
 		if (url.getFile().contains(".xml")) {
-			new XmlEventsReader( this.events, this.customEventMappers).readURL( url );
+			createXmlReader().readURL( url );
 		} else if (url.getFile().contains(".ndjson")) {
 			EventsReaderJson reader = new EventsReaderJson(this.events);
-			for (Map.Entry<String, CustomEventMapper> entry : this.customEventMappers.entrySet()) {
+			for (Map.Entry<String, CustomEventMapper<?>> entry : this.customEventMappers.entrySet()) {
 				reader.addCustomEventMapper(entry.getKey(), entry.getValue());
 			}
 			reader.parse(url);
+		} else if (url.getFile().endsWith(BinaryEventsFormat.FILE_EXTENSION)) {
+			try {
+				createBinaryReader().readFile(Paths.get(url.toURI()));
+			} catch (URISyntaxException | FileSystemNotFoundException e) {
+				throw new UnsupportedOperationException("Binary events files are memory-mapped and can only be read from a local file: " + url, e);
+			}
+		}
+	}
+
+	/**
+	 * Reads only the events of the given types within the given time window. This is only supported for binary
+	 * events files, where the reader can skip all other events without decoding them.
+	 *
+	 * @param eventTypes the event types to read, <code>null</code> to read all events.
+	 */
+	public void readFile(final String filename, final double fromTime, final double toTime, final Collection<String> eventTypes) {
+		if (!filename.toLowerCase(Locale.ROOT).endsWith(BinaryEventsFormat.FILE_EXTENSION)) {
+			throw new IllegalArgumentException("Filtered reading is only supported for binary events files, but got " + filename);
+		}
+		EventsReaderBinary reader = createBinaryReader();
+		reader.setTimeWindow(fromTime, toTime);
+		reader.setEventTypes(eventTypes);
+		reader.readFile(filename);
+	}
+
+	private XmlEventsReader createXmlReader() {
+		XmlEventsReader reader = new XmlEventsReader(this.events, this.customEventMappers);
+		// characters are ignored, so the content of tags can be tokenized in parallel
+		reader.setParallelParsing(this.parallelParsing);
+		return reader;
+	}
+
+	private EventsReaderBinary createBinaryReader() {
+		EventsReaderBinary reader = new EventsReaderBinary(this.events);
+		for (Map.Entry<String, CustomEventMapper<?>> entry : this.customEventMappers.entrySet()) {
+			reader.addCustomEventMapper(entry.getKey(), entry.getValue());
 		}
+		return reader;
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -131,9 +186,9 @@ public final class MatsimEventsReader implements MatsimReader {
 		private final static String EVENTS_V1 = "events_v1.dtd";
 		private MatsimXmlEventsParser delegate = null;
 
-		private final Map<String, CustomEventMapper> map ;
+		private final Map<String, CustomEventMapper<?>> map ;
 
-		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper> map ) {
+		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper<?>> map ) {
 			this.events = events;
 			this.map = map;
 			this.setValidating(false); // events-files have no DTD, thus they cannot validate
@@ -167,7 +222,7 @@ public final class MatsimEventsReader implements MatsimReader {
 			// Currently the only events-type is v1
 			if (EVENTS_V1.equals(doctype)) {
 				this.delegate = new EventsReaderXMLv1(this.events);
-				for( Map.Entry<String, CustomEventMapper> entry : this.map.entrySet() ){
+				for( Map.Entry<String, CustomEventMapper<?>> entry : this.map.entrySet() ){
 					this.delegate.addCustomEventMapper( entry.getKey(),entry.getValue() );
 				}
 				log.info("using events_v1-reader.");
@@ -0,0 +1,432 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * An events manager that passes events to the event handlers through a pre-allocated ring buffer, similar to the
+ * LMAX Disruptor.
+ * <p>
+ * Any number of threads may call {@link #processEvent(Event)} concurrently. A producer claims the next slot of the
+ * ring buffer with a compare-and-set, writes the event into it and publishes the slot. There is no lock
+ * and no queue node per event. The event handlers are distributed over a number of handler groups, each of which
+ * is served by its own consumer thread. Every consumer reads all published events in the order of their slots and
+ * processes them in batches, so all handlers see the events in the same order. If a producer runs into a slot that
+ * has not yet been processed by all consumers, it waits (backpressure); the number and duration of these waits is
+ * recorded and logged at the end of every iteration.
+ * <p>
+ * If <code>syncOnSimSteps</code> is set, {@link #afterSimStep(double)} blocks until all events of the time step,
+ * including events created by event handlers while processing them, have been processed by all handler groups.
+ * Thus, every handler sees all events of a time step before any event of the next time step.
+ * <p>
+ * Event handlers may create events themselves. If the ring buffer is full and the slot needed is still occupied
+ * by an event not yet processed by the handler's own group, this would block forever. This case is detected
+ * and results in an exception.
+ */
+public final class RingBufferEventsManager implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferEventsManager.class);
+
+	/** upper limit of the number of events a consumer processes before publishing its progress */
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private final boolean syncOnSimSteps;
+	private final int bufferSize;
+	private final int indexMask;
+	private final int indexShift;
+
+	/** the events, or <code>null</code> if the slot contains a link event record */
+	private final Event[] entries;
+	/** a pre-allocated record per slot, for the link events passed in without an event object */
+	private final LinkEventRecord[] records;
+	/** contains for every slot the lap (sequence / bufferSize) of the event last published into it */
+	private final AtomicIntegerArray available;
+	/** the next sequence to be claimed by a producer */
+	private final AtomicLong claimSequence = new AtomicLong(0);
+	/** cached minimum of the consumer sequences, may be outdated but never larger than the actual minimum */
+	private volatile long gatingSequenceCache = 0;
+
+	private final EventsManagerImpl[] groups;
+	private Consumer[] consumers = new Consumer[0];
+	private int handlerCount = 0;
+
+	private volatile boolean parallelMode = false;
+	private volatile boolean stopped = false;
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	private final LongAdder producerWaitCount = new LongAdder();
+	private final LongAdder producerWaitNanos = new LongAdder();
+
+	@Inject
+	RingBufferEventsManager(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1,
+				config.getRingBufferSize(),
+				config.getSynchronizeOnSimSteps() != null ? config.getSynchronizeOnSimSteps() : true);
+	}
+
+	/**
+	 * @param numberOfGroups the number of handler groups, i.e. of consumer threads
+	 * @param bufferSize the number of slots in the ring buffer, must be a power of 2
+	 * @param syncOnSimSteps whether all events of a time step are processed before the next time step may start
+	 */
+	public RingBufferEventsManager(int numberOfGroups, int bufferSize, boolean syncOnSimSteps) {
+		if (numberOfGroups < 1) {
+			throw new IllegalArgumentException("at least one handler group is required, got " + numberOfGroups);
+		}
+		if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+			throw new IllegalArgumentException("buffer size must be a power of 2, got " + bufferSize);
+		}
+		this.syncOnSimSteps = syncOnSimSteps;
+		this.bufferSize = bufferSize;
+		this.indexMask = bufferSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+		this.entries = new Event[bufferSize];
+		this.records = new LinkEventRecord[bufferSize];
+		for (int i = 0; i < bufferSize; i++) {
+			this.records[i] = new LinkEventRecord();
+		}
+		this.available = new AtomicIntegerArray(bufferSize);
+		for (int i = 0; i < bufferSize; i++) {
+			this.available.set(i, -1);
+		}
+		this.groups = new EventsManagerImpl[numberOfGroups];
+		for (int i = 0; i < numberOfGroups; i++) {
+			this.groups[i] = new EventsManagerImpl();
+		}
+		log.info("number of handler groups=" + numberOfGroups + ", ring buffer size=" + bufferSize);
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (!this.parallelMode) {
+			for (EventsManagerImpl group : this.groups) {
+				group.processEvent(event);
+			}
+			return;
+		}
+
+		long sequence = claim();
+		int index = (int) sequence & this.indexMask;
+		this.entries[index] = event;
+		this.available.lazySet(index, (int) (sequence >>> this.indexShift));
+	}
+
+	@Override
+	public void processLinkEnter(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		processLinkEvent(LinkEventRecord.Type.LINK_ENTER, time, vehicleId, linkId);
+	}
+
+	@Override
+	public void processLinkLeave(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		processLinkEvent(LinkEventRecord.Type.LINK_LEAVE, time, vehicleId, linkId);
+	}
+
+	/**
+	 * Writes the link event into the record of the next slot instead of creating an event object. The record is only
+	 * overwritten one lap later, when all handler groups have processed it. A handler group creates the event object
+	 * only if it has handlers which need one, see {@link EventsManagerImpl#processLinkEventRecord(LinkEventRecord)}.
+	 */
+	private void processLinkEvent(final LinkEventRecord.Type type, final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		if (!this.parallelMode) {
+			LinkEventRecord record = new LinkEventRecord();
+			record.set(type, time, vehicleId, linkId);
+			for (EventsManagerImpl group : this.groups) {
+				group.processLinkEventRecord(record);
+			}
+			return;
+		}
+
+		long sequence = claim();
+		int index = (int) sequence & this.indexMask;
+		this.records[index].set(type, time, vehicleId, linkId);
+		this.entries[index] = null;
+		this.available.lazySet(index, (int) (sequence >>> this.indexShift));
+	}
+
+	/**
+	 * Claims the next slot. A slot is only claimed once all consumers have processed the event that occupied it
+	 * one lap earlier, so a waiting producer never blocks the consumers with a claimed but unpublished slot.
+	 */
+	private long claim() {
+		int attempt = 0;
+		long waitStart = 0;
+		while (true) {
+			long current = this.claimSequence.get();
+			long wrapPoint = current - this.bufferSize;
+			if (wrapPoint >= this.gatingSequenceCache) {
+				long gatingSequence = minimumConsumerSequence();
+				if (wrapPoint >= gatingSequence) {
+					Thread thread = Thread.currentThread();
+					if (thread instanceof Consumer && ((Consumer) thread).sequence.get() <= wrapPoint) {
+						throw new RuntimeException("The ring buffer of the events manager is full while an event handler creates new events. "
+								+ "This would block forever. Increase the ring buffer size.");
+					}
+					if (attempt == 0) {
+						this.producerWaitCount.increment();
+						waitStart = System.nanoTime();
+					}
+					backOff(attempt++);
+					continue;
+				}
+				this.gatingSequenceCache = gatingSequence;
+			}
+			if (this.claimSequence.compareAndSet(current, current + 1)) {
+				if (attempt > 0) {
+					this.producerWaitNanos.add(System.nanoTime() - waitStart);
+				}
+				return current;
+			}
+		}
+	}
+
+	private long minimumConsumerSequence() {
+		long min = Long.MAX_VALUE;
+		for (Consumer consumer : this.consumers) {
+			min = Math.min(min, consumer.sequence.get());
+		}
+		return min;
+	}
+
+	private boolean isAvailable(long sequence) {
+		return this.available.get((int) sequence & this.indexMask) == (int) (sequence >>> this.indexShift);
+	}
+
+	private static void backOff(int attempt) {
+		if (attempt < 100) {
+			Thread.onSpinWait();
+		} else if (attempt < 200) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(10_000);
+		}
+	}
+
+	@Override
+	public synchronized void addHandler(final EventHandler handler) {
+		this.groups[this.handlerCount % this.groups.length].addHandler(handler);
+		this.handlerCount++;
+	}
+
+	@Override
+	public synchronized void removeHandler(final EventHandler handler) {
+		for (EventsManagerImpl group : this.groups) {
+			group.removeHandler(handler);
+		}
+	}
+
+	@Override
+	public synchronized void resetHandlers(int iteration) {
+		for (EventsManagerImpl group : this.groups) {
+			group.resetHandlers(iteration);
+		}
+	}
+
+	@Override
+	public void initProcessing() {
+		this.hadException.set(null);
+		this.producerWaitCount.reset();
+		this.producerWaitNanos.reset();
+		this.stopped = false;
+
+		long start = this.claimSequence.get();
+		this.gatingSequenceCache = start;
+		Consumer[] newConsumers = new Consumer[this.groups.length];
+		for (int i = 0; i < this.groups.length; i++) {
+			this.groups[i].initProcessing();
+			newConsumers[i] = new Consumer(this.groups[i], start, i);
+		}
+		this.consumers = newConsumers;
+		this.parallelMode = true;
+		for (Consumer consumer : newConsumers) {
+			consumer.start();
+		}
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		if (!this.parallelMode || !this.syncOnSimSteps || this.hadException.get() != null) {
+			return;
+		}
+		waitUntilAllEventsProcessed();
+	}
+
+	/**
+	 * Waits until the consumers have processed all claimed events. The claim sequence is read again after the
+	 * consumer sequences, as an event handler might have created a new event in the meantime.
+	 */
+	private void waitUntilAllEventsProcessed() {
+		int attempt = 0;
+		while (true) {
+			long claimed = this.claimSequence.get();
+			if (minimumConsumerSequence() >= claimed && this.claimSequence.get() == claimed) {
+				return;
+			}
+			if (this.hadException.get() != null) {
+				return;
+			}
+			backOff(attempt++);
+		}
+	}
+
+	@Override
+	public void finishProcessing() {
+		if (this.parallelMode) {
+			waitUntilAllEventsProcessed();
+			this.stopped = true;
+			for (Consumer consumer : this.consumers) {
+				try {
+					consumer.join();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			this.parallelMode = false;
+			Arrays.fill(this.entries, null);
+			logStatistics();
+		}
+		for (EventsManagerImpl group : this.groups) {
+			group.finishProcessing();
+		}
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	private void logStatistics() {
+		log.info("ring buffer statistics: producer waits=" + getProducerWaitCount()
+				+ ", producer wait time=" + (getProducerWaitNanos() / 1_000_000) + "ms");
+		for (Consumer consumer : this.consumers) {
+			log.info("  handler group " + consumer.groupIndex + ": events=" + consumer.processedEvents
+					+ ", batches=" + consumer.batches + ", max backlog=" + consumer.maxBacklog);
+		}
+	}
+
+	/**
+	 * @return the number of times a producer had to wait for a free slot in the ring buffer in the current or last iteration
+	 */
+	public long getProducerWaitCount() {
+		return this.producerWaitCount.sum();
+	}
+
+	/**
+	 * @return the total time producers waited for free slots in the ring buffer in the current or last iteration
+	 */
+	public long getProducerWaitNanos() {
+		return this.producerWaitNanos.sum();
+	}
+
+	/**
+	 * @return the largest number of events that were waiting for a handler group in the current or last iteration
+	 */
+	public long getMaxBacklog() {
+		long max = 0;
+		for (Consumer consumer : this.consumers) {
+			max = Math.max(max, consumer.maxBacklog);
+		}
+		return max;
+	}
+
+	private final class Consumer extends Thread {
+
+		private final EventsManagerImpl events;
+		private final int groupIndex;
+		/** the next sequence to be processed by this consumer, i.e. all events before have been processed */
+		private final AtomicLong sequence;
+
+		// statistics, only written by the consumer thread itself
+		private volatile long processedEvents = 0;
+		private volatile long batches = 0;
+		private volatile long maxBacklog = 0;
+
+		Consumer(EventsManagerImpl events, long start, int groupIndex) {
+			super("RingBufferEvents-" + groupIndex);
+			this.events = events;
+			this.groupIndex = groupIndex;
+			this.sequence = new AtomicLong(start);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			long next = this.sequence.get();
+			int attempt = 0;
+			while (true) {
+				if (!isAvailable(next)) {
+					if (stopped && next >= claimSequence.get()) {
+						break;
+					}
+					backOff(attempt++);
+					continue;
+				}
+				attempt = 0;
+				long last = next;
+				while (last - next + 1 < MAX_BATCH_SIZE && isAvailable(last + 1)) {
+					last++;
+				}
+				long backlog = claimSequence.get() - next;
+				if (backlog > this.maxBacklog) {
+					this.maxBacklog = backlog;
+				}
+				for (long s = next; s <= last; s++) {
+					int index = (int) s & indexMask;
+					Event event = entries[index];
+					if (hadException.get() == null) {
+						try {
+							if (event == null) {
+								this.events.processLinkEventRecord(records[index]);
+							} else {
+								this.events.processEvent(event);
+							}
+						} catch (Throwable e) {
+							// keep on consuming, otherwise the producers would block forever
+							log.error("Thread " + getName() + " got an exception while handling events.", e);
+							hadException.compareAndSet(null, e);
+						}
+					}
+				}
+				this.processedEvents += last - next + 1;
+				this.batches++;
+				next = last + 1;
+				this.sequence.lazySet(next);
+			}
+		}
+	}
+
+}
@@ -20,9 +20,12 @@
 
 package org.matsim.core.events;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.handler.EventHandler;
+import org.matsim.vehicles.Vehicle;
 
 
 /**
@@ -54,6 +57,16 @@ class SynchronizedEventsManagerImpl implements EventsManager {
 	public synchronized void processEvent(Event event) {
 		this.delegate.processEvent(event);
 	}
+
+	@Override
+	public synchronized void processLinkEnter(double time, Id<Vehicle> vehicleId, Id<Link> linkId) {
+		this.delegate.processLinkEnter(time, vehicleId, linkId);
+	}
+
+	@Override
+	public synchronized void processLinkLeave(double time, Id<Vehicle> vehicleId, Id<Link> linkId) {
+		this.delegate.processLinkLeave(time, vehicleId, linkId);
+	}
 	
 	@Override
 	public void removeHandler(EventHandler handler) {
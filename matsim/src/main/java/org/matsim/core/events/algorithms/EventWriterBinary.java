@@ -0,0 +1,499 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import com.github.luben.zstd.Zstd;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasFacilityId;
+import org.matsim.api.core.v01.events.HasLinkId;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.api.internal.HasVehicleId;
+import org.matsim.core.events.BinaryEventsFormat;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events in the binary, column-oriented format described in {@link BinaryEventsFormat}.
+ *
+ * Events are collected in chunks of a fixed number of events. When a chunk is full, the attributes of its events
+ * are written column by column per event type, with all strings replaced by their index in a file-wide
+ * dictionary, and the chunk is compressed on its own. Attributes whose values are all plain numbers are stored
+ * as doubles. The dictionary and an index of all chunks are written when the file is closed.
+ *
+ * The columns of the core event types (link, traffic, departure, arrival, vehicle boarding and activity events) are
+ * filled directly from the fields of the events, resolving every id to its dictionary index only once. Only for all
+ * other event types, {@link Event#getAttributes()} is called and its values are converted.
+ *
+ * @see org.matsim.core.events.EventsReaderBinary
+ */
+public final class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	// what a column holds in a row
+	private static final byte EMPTY_ROW = 0;
+	private static final byte REF_ROW = 1;
+	private static final byte NUMBER_ROW = 2;
+
+	private static final int COMPRESSION_LEVEL = 3;
+
+	private final OutputStream out;
+	private final int chunkSize;
+	private long position = 0;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final IdRefs linkRefs = new IdRefs();
+	private final IdRefs personRefs = new IdRefs();
+	private final IdRefs vehicleRefs = new IdRefs();
+	private final IdRefs facilityRefs = new IdRefs();
+
+	private final ByteArrayOutputStream chunkIndexBytes = new ByteArrayOutputStream();
+	private final DataOutputStream chunkIndex = new DataOutputStream(this.chunkIndexBytes);
+	private int chunkCount = 0;
+
+	private final ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream(1 << 20);
+	private final DataOutputStream chunk = new DataOutputStream(this.chunkBytes);
+
+	private final Map<String, TypeBlock> blocks = new LinkedHashMap<>();
+	private final byte[] eventTypes;
+	private final double[] times;
+	private int eventCount = 0;
+
+	public EventWriterBinary(final String filename) {
+		this(openFile(filename), BinaryEventsFormat.DEFAULT_CHUNK_SIZE);
+	}
+
+	public EventWriterBinary(final OutputStream stream) {
+		this(stream, BinaryEventsFormat.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize the maximum number of events per chunk. Larger chunks compress better, smaller chunks
+	 * 		allow readers to skip more data when reading only a time window.
+	 */
+	public EventWriterBinary(final OutputStream stream, final int chunkSize) {
+		this.out = stream;
+		this.chunkSize = chunkSize;
+		this.eventTypes = new byte[chunkSize];
+		this.times = new double[chunkSize];
+		try {
+			DataOutputStream header = new DataOutputStream(this.out);
+			header.writeInt(BinaryEventsFormat.MAGIC);
+			header.writeInt(BinaryEventsFormat.VERSION);
+			this.position = 8;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static OutputStream openFile(final String filename) {
+		try {
+			return new BufferedOutputStream(new FileOutputStream(filename), 1 << 20);
+		} catch (FileNotFoundException e) {
+			throw new UncheckedIOException("Could not open file " + filename, e);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		String type = event.getEventType();
+		TypeBlock block = this.blocks.get(type);
+		if (block == null) {
+			if (this.blocks.size() == BinaryEventsFormat.MAX_TYPES_PER_CHUNK) {
+				writeChunk();
+			}
+			block = new TypeBlock(type, this.blocks.size());
+			this.blocks.put(type, block);
+		}
+		int row = block.rowCount++;
+		if (!writeCoreEvent(event, block, row)) {
+			for (Map.Entry<String, String> e : event.getAttributes().entrySet()) {
+				String key = e.getKey();
+				if (Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key)) {
+					continue;
+				}
+				block.getColumn(key).setString(row, e.getValue());
+			}
+		}
+		this.eventTypes[this.eventCount] = (byte) block.index;
+		this.times[this.eventCount] = event.getTime();
+		this.eventCount++;
+		if (this.eventCount == this.chunkSize) {
+			writeChunk();
+		}
+	}
+
+	/**
+	 * Fills the columns of the core event types from their fields, with the same attributes as
+	 * {@link Event#getAttributes()} would return. Subclasses, which might add attributes, are not handled here.
+	 *
+	 * @return <code>false</code> if the event has to be written from its attributes.
+	 */
+	private boolean writeCoreEvent(final Event event, final TypeBlock block, final int row) {
+		Class<?> eventClass = event.getClass();
+		if (eventClass == LinkEnterEvent.class || eventClass == LinkLeaveEvent.class) {
+			Id<?> linkId = ((HasLinkId) event).getLinkId();
+			Id<?> vehicleId = eventClass == LinkEnterEvent.class ? ((LinkEnterEvent) event).getVehicleId() : ((LinkLeaveEvent) event).getVehicleId();
+			if (linkId == null || vehicleId == null) {
+				return false;
+			}
+			block.getColumn(HasLinkId.ATTRIBUTE_LINK).setRef(row, this.linkRefs.get(linkId));
+			block.getColumn(HasVehicleId.ATTRIBUTE_VEHICLE).setRef(row, this.vehicleRefs.get(vehicleId));
+			return true;
+		}
+		if (eventClass == VehicleEntersTrafficEvent.class) {
+			VehicleEntersTrafficEvent e = (VehicleEntersTrafficEvent) event;
+			setIdIfPresent(block, row, HasPersonId.ATTRIBUTE_PERSON, e.getPersonId(), this.personRefs);
+			setIdIfPresent(block, row, HasLinkId.ATTRIBUTE_LINK, e.getLinkId(), this.linkRefs);
+			setIdIfPresent(block, row, HasVehicleId.ATTRIBUTE_VEHICLE, e.getVehicleId(), this.vehicleRefs);
+			setStringIfPresent(block, row, VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE, e.getNetworkMode());
+			block.getColumn(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION).setNumber(row, e.getRelativePositionOnLink());
+			return true;
+		}
+		if (eventClass == VehicleLeavesTrafficEvent.class) {
+			VehicleLeavesTrafficEvent e = (VehicleLeavesTrafficEvent) event;
+			if (e.getPersonId() == null) {
+				return false;
+			}
+			block.getColumn(HasPersonId.ATTRIBUTE_PERSON).setRef(row, this.personRefs.get(e.getPersonId()));
+			setId(block, row, HasLinkId.ATTRIBUTE_LINK, e.getLinkId(), this.linkRefs);
+			setIdIfPresent(block, row, HasVehicleId.ATTRIBUTE_VEHICLE, e.getVehicleId(), this.vehicleRefs);
+			setStringIfPresent(block, row, VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE, e.getNetworkMode());
+			block.getColumn(VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION).setNumber(row, e.getRelativePositionOnLink());
+			return true;
+		}
+		if (eventClass == PersonDepartureEvent.class || eventClass == PersonArrivalEvent.class) {
+			Id<?> personId = ((HasPersonId) event).getPersonId();
+			if (personId == null) {
+				return false;
+			}
+			boolean departure = eventClass == PersonDepartureEvent.class;
+			block.getColumn(HasPersonId.ATTRIBUTE_PERSON).setRef(row, this.personRefs.get(personId));
+			setId(block, row, HasLinkId.ATTRIBUTE_LINK, departure ? ((PersonDepartureEvent) event).getLinkId() : ((PersonArrivalEvent) event).getLinkId(), this.linkRefs);
+			setStringIfPresent(block, row, PersonDepartureEvent.ATTRIBUTE_LEGMODE, departure ? ((PersonDepartureEvent) event).getLegMode() : ((PersonArrivalEvent) event).getLegMode());
+			return true;
+		}
+		if (eventClass == PersonEntersVehicleEvent.class || eventClass == PersonLeavesVehicleEvent.class) {
+			Id<?> personId = ((HasPersonId) event).getPersonId();
+			Id<?> vehicleId = eventClass == PersonEntersVehicleEvent.class ? ((PersonEntersVehicleEvent) event).getVehicleId() : ((PersonLeavesVehicleEvent) event).getVehicleId();
+			if (personId == null || vehicleId == null) {
+				return false;
+			}
+			block.getColumn(HasPersonId.ATTRIBUTE_PERSON).setRef(row, this.personRefs.get(personId));
+			block.getColumn(HasVehicleId.ATTRIBUTE_VEHICLE).setRef(row, this.vehicleRefs.get(vehicleId));
+			return true;
+		}
+		if (eventClass == ActivityStartEvent.class || eventClass == ActivityEndEvent.class) {
+			boolean start = eventClass == ActivityStartEvent.class;
+			setIdIfPresent(block, row, HasPersonId.ATTRIBUTE_PERSON, ((HasPersonId) event).getPersonId(), this.personRefs);
+			setIdIfPresent(block, row, HasFacilityId.ATTRIBUTE_FACILITY, ((HasFacilityId) event).getFacilityId(), this.facilityRefs);
+			setIdIfPresent(block, row, HasLinkId.ATTRIBUTE_LINK, ((HasLinkId) event).getLinkId(), this.linkRefs);
+			Coord coord = start ? ((ActivityStartEvent) event).getCoord() : null;
+			if (coord != null) {
+				block.getColumn(Event.ATTRIBUTE_X).setNumber(row, coord.getX());
+				block.getColumn(Event.ATTRIBUTE_Y).setNumber(row, coord.getY());
+			}
+			String actType = start ? ((ActivityStartEvent) event).getActType() : ((ActivityEndEvent) event).getActType();
+			block.getColumn(ActivityStartEvent.ATTRIBUTE_ACTTYPE).setString(row, actType);
+			return true;
+		}
+		return false;
+	}
+
+	private static void setId(final TypeBlock block, final int row, final String key, final Id<?> id, final IdRefs refs) {
+		block.getColumn(key).setRef(row, id == null ? BinaryEventsFormat.NULL : refs.get(id));
+	}
+
+	private static void setIdIfPresent(final TypeBlock block, final int row, final String key, final Id<?> id, final IdRefs refs) {
+		if (id != null) {
+			block.getColumn(key).setRef(row, refs.get(id));
+		}
+	}
+
+	private void setStringIfPresent(final TypeBlock block, final int row, final String key, final String value) {
+		if (value != null) {
+			block.getColumn(key).setRef(row, getStringIndex(value));
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		if (this.eventCount > 0) {
+			writeChunk();
+		}
+		try {
+			long footerOffset = this.position;
+			DataOutputStream footer = new DataOutputStream(this.out);
+
+			ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+			DataOutputStream dictionaryData = new DataOutputStream(dictionaryBytes);
+			dictionaryData.writeInt(this.strings.size());
+			for (String s : this.strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				dictionaryData.writeInt(bytes.length);
+				dictionaryData.write(bytes);
+			}
+			byte[] uncompressed = dictionaryBytes.toByteArray();
+			byte[] compressed = Zstd.compress(uncompressed, COMPRESSION_LEVEL);
+			footer.writeInt(uncompressed.length);
+			footer.writeInt(compressed.length);
+			footer.write(compressed);
+
+			footer.writeInt(this.chunkCount);
+			this.chunkIndexBytes.writeTo(footer);
+
+			footer.writeLong(footerOffset);
+			footer.writeInt(BinaryEventsFormat.MAGIC);
+			footer.flush();
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	private void writeChunk() {
+		try {
+			this.chunkBytes.reset();
+			DataOutputStream data = this.chunk;
+			data.writeInt(this.eventCount);
+			data.writeInt(this.blocks.size());
+			for (TypeBlock block : this.blocks.values()) {
+				data.writeInt(getStringIndex(block.type));
+			}
+			data.write(this.eventTypes, 0, this.eventCount);
+			double minTime = Double.POSITIVE_INFINITY;
+			double maxTime = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < this.eventCount; i++) {
+				double time = this.times[i];
+				data.writeDouble(time);
+				minTime = Math.min(minTime, time);
+				maxTime = Math.max(maxTime, time);
+			}
+			for (TypeBlock block : this.blocks.values()) {
+				block.write(data);
+			}
+			data.flush();
+
+			byte[] uncompressed = this.chunkBytes.toByteArray();
+			byte[] compressed = Zstd.compress(uncompressed, COMPRESSION_LEVEL);
+			this.out.write(compressed);
+
+			this.chunkIndex.writeLong(this.position);
+			this.chunkIndex.writeInt(compressed.length);
+			this.chunkIndex.writeInt(uncompressed.length);
+			this.chunkIndex.writeInt(this.eventCount);
+			this.chunkIndex.writeDouble(minTime);
+			this.chunkIndex.writeDouble(maxTime);
+			this.chunkIndex.writeInt(this.blocks.size());
+			for (TypeBlock block : this.blocks.values()) {
+				this.chunkIndex.writeInt(getStringIndex(block.type));
+			}
+			this.chunkCount++;
+			this.position += compressed.length;
+
+			this.blocks.clear();
+			this.eventCount = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int getStringIndex(final String s) {
+		Integer index = this.dictionary.get(s);
+		if (index == null) {
+			index = this.strings.size();
+			this.strings.add(s);
+			this.dictionary.put(s, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @return <code>true</code> if the value can be stored as double and be converted back to exactly the same string.
+	 */
+	private static boolean isNumber(final String value) {
+		if (value.isEmpty()) {
+			return false;
+		}
+		char c = value.charAt(0);
+		if (c != '-' && (c < '0' || c > '9')) {
+			return false;
+		}
+		try {
+			return Double.toString(Double.parseDouble(value)).equals(value);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private final class TypeBlock {
+		final String type;
+		final int index;
+		int rowCount = 0;
+		private final Map<String, Column> columns = new LinkedHashMap<>();
+
+		TypeBlock(final String type, final int index) {
+			this.type = type;
+			this.index = index;
+		}
+
+		Column getColumn(final String key) {
+			Column column = this.columns.get(key);
+			if (column == null) {
+				column = new Column(key);
+				this.columns.put(key, column);
+			}
+			return column;
+		}
+
+		void write(final DataOutputStream data) throws IOException {
+			data.writeInt(this.rowCount);
+			data.writeInt(this.columns.size());
+			for (Column column : this.columns.values()) {
+				data.writeInt(getStringIndex(column.key));
+				column.write(data, this.rowCount);
+			}
+		}
+	}
+
+	/**
+	 * The values of one attribute in a chunk. Rows hold either a dictionary index (or {@link BinaryEventsFormat#NULL})
+	 * or a number; the column is written as doubles if all rows hold numbers.
+	 */
+	private final class Column {
+		final String key;
+		byte[] kinds = new byte[16];
+		int[] refs = new int[16];
+		double[] numbers = new double[16];
+
+		Column(final String key) {
+			this.key = key;
+		}
+
+		void setString(final int row, final String value) {
+			if (value == null) {
+				setRef(row, BinaryEventsFormat.NULL);
+			} else if (isNumber(value)) {
+				setNumber(row, Double.parseDouble(value));
+			} else {
+				setRef(row, getStringIndex(value));
+			}
+		}
+
+		void setRef(final int row, final int ref) {
+			ensureCapacity(row);
+			this.kinds[row] = REF_ROW;
+			this.refs[row] = ref;
+		}
+
+		void setNumber(final int row, final double value) {
+			ensureCapacity(row);
+			this.kinds[row] = NUMBER_ROW;
+			this.numbers[row] = value;
+		}
+
+		private void ensureCapacity(final int row) {
+			if (row >= this.kinds.length) {
+				int capacity = Math.max(row + 1, this.kinds.length * 2);
+				this.kinds = Arrays.copyOf(this.kinds, capacity);
+				this.refs = Arrays.copyOf(this.refs, capacity);
+				this.numbers = Arrays.copyOf(this.numbers, capacity);
+			}
+		}
+
+		void write(final DataOutputStream data, final int rowCount) throws IOException {
+			boolean numeric = true;
+			for (int row = 0; row < rowCount && numeric; row++) {
+				numeric = row < this.kinds.length && this.kinds[row] == NUMBER_ROW;
+			}
+			if (numeric) {
+				data.writeByte(BinaryEventsFormat.KIND_DOUBLE);
+				for (int row = 0; row < rowCount; row++) {
+					data.writeDouble(this.numbers[row]);
+				}
+			} else {
+				data.writeByte(BinaryEventsFormat.KIND_STRING);
+				for (int row = 0; row < rowCount; row++) {
+					byte kind = row < this.kinds.length ? this.kinds[row] : EMPTY_ROW;
+					if (kind == REF_ROW) {
+						data.writeInt(this.refs[row]);
+					} else if (kind == NUMBER_ROW) {
+						// the same string as in the attributes of the event
+						data.writeInt(getStringIndex(Double.toString(this.numbers[row])));
+					} else {
+						data.writeInt(BinaryEventsFormat.ABSENT);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dictionary indices of the ids of one type, by {@link Id#index()}.
+	 */
+	private final class IdRefs {
+		private int[] refs = new int[0];
+
+		int get(final Id<?> id) {
+			int index = id.index();
+			if (index >= this.refs.length) {
+				this.refs = Arrays.copyOf(this.refs, Math.max(index + 1, this.refs.length * 2));
+			}
+			int ref = this.refs[index] - 1;
+			if (ref < 0) {
+				ref = getStringIndex(id.toString());
+				this.refs[index] = ref + 1;
+			}
+			return ref;
+		}
+	}
+
+}
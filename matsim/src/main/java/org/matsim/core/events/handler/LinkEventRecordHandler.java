@@ -0,0 +1,38 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEventRecordHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+import org.matsim.core.events.LinkEventRecord;
+
+/**
+ * An event handler that gets link enter and link leave events as {@link LinkEventRecord}s, so that no event object
+ * needs to be created for it.  The record is re-used afterwards and must not be kept.
+ * <p>
+ * {@link org.matsim.core.events.EventsManagerImpl} passes all link enter and link leave events to such a handler as
+ * records, and never as events, also if it implements e.g. {@link org.matsim.api.core.v01.events.handler.LinkEnterEventHandler}
+ * or {@link BasicEventHandler}.  Other events managers might not know records, so a handler should implement the
+ * handler interfaces of the events as well.
+ */
+public interface LinkEventRecordHandler extends EventHandler {
+
+	void handleRecord(LinkEventRecord record);
+
+}
@@ -0,0 +1,32 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SingleThreadedEventHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+/**
+ * Marker interface for event handlers that do not need to be locked by the events manager.
+ * <p>
+ * By default, {@link org.matsim.core.events.EventsManagerImpl} synchronizes on every handler before passing
+ * an event to it. A handler implementing this interface declares that it is only ever registered once, is thus
+ * called by one thread at a time, and does not share mutable state with other threads while events are being
+ * processed. The events manager then calls it without acquiring its monitor.
+ */
+public interface SingleThreadedEventHandler extends EventHandler {
+}
@@ -19,7 +19,12 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -31,6 +36,7 @@ import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
 
@@ -39,9 +45,24 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 
 	private final EventsManager eventsManager;
 
-	@Inject
 	ActivityEngineDefaultImpl( EventsManager eventsManager ) {
+		this( eventsManager, false );
+	}
+
+	@Inject
+	ActivityEngineDefaultImpl( EventsManager eventsManager, QSimConfigGroup qsimConfig ) {
+		this( eventsManager, qsimConfig.isUsingIndexedActivityEndsQueue() );
+	}
+
+	private ActivityEngineDefaultImpl( EventsManager eventsManager, boolean usingIndexedQueue ) {
 		this.eventsManager = eventsManager;
+		if ( usingIndexedQueue ) {
+			this.indexedActivityEnds = new IndexedActivityEndsQueue();
+			this.activityEndsList = this.indexedActivityEnds;
+		} else {
+			this.indexedActivityEnds = null;
+			this.activityEndsList = new PriorityBlockingQueue<>(500, AGENT_ENTRY_COMPARATOR);
+		}
 	}
 
 //	public ActivityEngineDefaultImpl( EventsManager eventsManager, AgentCounter agentCounter ) {
@@ -64,15 +85,10 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 		}
 		private final MobsimAgent agent;
 		private final double activityEndTime;
+		private int heapPosition; // only used by the indexed queue
 	}
 
-	private InternalInterface internalInterface;
-
-	/**
-	 * This list needs to be a "blocking" queue since this is needed for
-	 * thread-safety in the parallel qsim. cdobler, oct'10
-	 */
-	private final Queue<AgentEntry> activityEndsList = new PriorityBlockingQueue<>(500, (e0, e1) -> {
+	private static final Comparator<AgentEntry> AGENT_ENTRY_COMPARATOR = (e0, e1) -> {
 		int cmp = Double.compare(e0.activityEndTime, e1.activityEndTime);
 		if (cmp == 0) {
 			// Both depart at the same time -> let the one with the larger id be first (=smaller)
@@ -87,7 +103,20 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 			return e1.agent.getId().compareTo(e0.agent.getId());
 		}
 		return cmp;
-	});
+	};
+
+	private InternalInterface internalInterface;
+
+	/**
+	 * This list needs to be a "blocking" queue since this is needed for
+	 * thread-safety in the parallel qsim. cdobler, oct'10
+	 */
+	private final Queue<AgentEntry> activityEndsList;
+
+	/**
+	 * The same object as {@link #activityEndsList} if the indexed queue is used, <code>null</code> otherwise.
+	 */
+	private final IndexedActivityEndsQueue indexedActivityEnds;
 	
 	// See handleActivity for the reason for this.
 	private boolean beforeFirstSimStep = true;
@@ -216,6 +245,9 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 	}
 
 	private AgentEntry removeAgentFromQueue(MobsimAgent agent) {
+		if (indexedActivityEnds != null) {
+			return indexedActivityEnds.remove(agent);
+		}
 		Iterator<AgentEntry> iterator = activityEndsList.iterator();
 		while (iterator.hasNext()) {
 			AgentEntry entry = iterator.next();
@@ -235,4 +267,145 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 		}
 	}
 
+	/**
+	 * Binary heap of the activity ends that also knows the heap position of every agent, so that the entry of an
+	 * agent is found and removed in O(log n) instead of walking through the whole queue.  The agents are looked up
+	 * by the index of their id; further agents with the same id, which should not exist, go into a map.  The
+	 * order is the same as the one of the {@link PriorityBlockingQueue}, so both queues give the same results.
+	 * <p></p>
+	 * All methods are synchronized, which makes the queue thread-safe in the same way as the blocking queue.
+	 */
+	private static final class IndexedActivityEndsQueue extends AbstractQueue<AgentEntry> {
+
+		private AgentEntry[] heap = new AgentEntry[500];
+		private int size = 0;
+		private AgentEntry[] entryByIdIndex = new AgentEntry[500];
+		private final Map<MobsimAgent, AgentEntry> otherEntries = new IdentityHashMap<>();
+
+		@Override
+		public synchronized boolean offer(AgentEntry entry) {
+			int index = entry.agent.getId().index();
+			if (index >= entryByIdIndex.length) {
+				entryByIdIndex = Arrays.copyOf(entryByIdIndex, Math.max(index + 1, 2 * entryByIdIndex.length));
+			}
+			AgentEntry existing = entryByIdIndex[index];
+			if (existing == null) {
+				entryByIdIndex[index] = entry;
+			} else if (existing.agent == entry.agent || otherEntries.containsKey(entry.agent)) {
+				throw new IllegalStateException("agent " + entry.agent.getId() + " is already in the activity ends queue");
+			} else {
+				otherEntries.put(entry.agent, entry);
+			}
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, 2 * size);
+			}
+			siftUp(size++, entry);
+			return true;
+		}
+
+		@Override
+		public synchronized AgentEntry poll() {
+			if (size == 0) {
+				return null;
+			}
+			AgentEntry entry = heap[0];
+			removeAt(0);
+			return entry;
+		}
+
+		@Override
+		public synchronized AgentEntry peek() {
+			return size == 0 ? null : heap[0];
+		}
+
+		/**
+		 * Removes the entry of the agent, if there is one, and returns it.
+		 */
+		synchronized AgentEntry remove(MobsimAgent agent) {
+			int index = agent.getId().index();
+			AgentEntry entry = index < entryByIdIndex.length ? entryByIdIndex[index] : null;
+			if (entry == null || entry.agent != agent) {
+				entry = otherEntries.get(agent);
+				if (entry == null) {
+					return null;
+				}
+			}
+			removeAt(entry.heapPosition);
+			return entry;
+		}
+
+		@Override
+		public synchronized int size() {
+			return size;
+		}
+
+		@Override
+		public synchronized void clear() {
+			Arrays.fill(heap, 0, size, null);
+			Arrays.fill(entryByIdIndex, null);
+			otherEntries.clear();
+			size = 0;
+		}
+
+		/**
+		 * Iterates over a snapshot of the queue, in no particular order.
+		 */
+		@Override
+		public synchronized Iterator<AgentEntry> iterator() {
+			return Arrays.asList(Arrays.copyOf(heap, size)).iterator();
+		}
+
+		private void removeAt(int position) {
+			AgentEntry entry = heap[position];
+			int index = entry.agent.getId().index();
+			if (entryByIdIndex[index] == entry) {
+				entryByIdIndex[index] = null;
+			} else {
+				otherEntries.remove(entry.agent);
+			}
+			AgentEntry last = heap[--size];
+			heap[size] = null;
+			if (position < size) {
+				siftDown(position, last);
+				if (heap[position] == last) {
+					siftUp(position, last);
+				}
+			}
+		}
+
+		private void siftUp(int position, AgentEntry entry) {
+			while (position > 0) {
+				int parent = (position - 1) >>> 1;
+				if (AGENT_ENTRY_COMPARATOR.compare(heap[parent], entry) <= 0) {
+					break;
+				}
+				place(position, heap[parent]);
+				position = parent;
+			}
+			place(position, entry);
+		}
+
+		private void siftDown(int position, AgentEntry entry) {
+			int half = size >>> 1;
+			while (position < half) {
+				int child = 2 * position + 1;
+				int right = child + 1;
+				if (right < size && AGENT_ENTRY_COMPARATOR.compare(heap[right], heap[child]) < 0) {
+					child = right;
+				}
+				if (AGENT_ENTRY_COMPARATOR.compare(entry, heap[child]) <= 0) {
+					break;
+				}
+				place(position, heap[child]);
+				position = child;
+			}
+			place(position, entry);
+		}
+
+		private void place(int position, AgentEntry entry) {
+			heap[position] = entry;
+			entry.heapPosition = position;
+		}
+	}
+
 }
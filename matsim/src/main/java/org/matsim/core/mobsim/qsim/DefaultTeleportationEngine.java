@@ -165,7 +165,7 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 		this.internalInterface = internalInterface;
 	}
 
-	private static Double travelTimeCheck(Double travelTime, Double speed, Facility dpfac, Facility arfac) {
+	static Double travelTimeCheck(Double travelTime, Double speed, Facility dpfac, Facility arfac) {
 		if ( speed==null ) {
 			// if we don't have a bushwhacking speed, the only thing we can do is trust the router
 			return travelTime ;
@@ -26,7 +26,12 @@ public class TeleportationModule extends AbstractQSimModule {
 
 	@Override
 	protected void configureQSim() {
-		bind(DefaultTeleportationEngine.class).asEagerSingleton();
-		addNamedComponent(DefaultTeleportationEngine.class, COMPONENT_NAME);
+		if (getConfig().qsim().isUsingTimeWheelInTeleportation()) {
+			bind(TimeWheelTeleportationEngine.class).asEagerSingleton();
+			addQSimComponentBinding(COMPONENT_NAME).to(TimeWheelTeleportationEngine.class);
+		} else {
+			bind(DefaultTeleportationEngine.class).asEagerSingleton();
+			addQSimComponentBinding(COMPONENT_NAME).to(DefaultTeleportationEngine.class);
+		}
 	}
 }
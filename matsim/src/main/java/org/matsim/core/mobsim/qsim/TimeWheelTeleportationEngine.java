@@ -0,0 +1,332 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TimeWheelTeleportationEngine.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.TeleportationVisData;
+
+/**
+ * Teleportation engine that keeps the teleported agents in a hierarchical timing wheel of one-second slots instead of
+ * a priority queue. Selected with {@link QSimConfigGroup#setUsingTimeWheelInTeleportation(boolean)}.
+ *
+ * <p>The wheel has three levels of 256 slots each, covering 256 seconds, about 18 hours, and about 194 days; later
+ * arrivals wait in an overflow slot. Slots store agents and arrival times in arrays that are reused, so a teleported
+ * leg does not allocate anything. The slots of the lowest level are kept sorted in the same order as the queue of
+ * the {@link DefaultTeleportationEngine} (by arrival time, then by descending agent id), so both engines produce the
+ * same events, except for the order of the stuck events at the end of the simulation.</p>
+ *
+ * <p>Positions for visualization are only recorded once {@link #addAgentSnapshotInfo(Collection)} has been called,
+ * i.e. once a visualizer asks for them. Agents that departed before that are not shown until their next
+ * teleported leg.</p>
+ */
+public final class TimeWheelTeleportationEngine implements TeleportationEngine {
+	private static final Logger log = Logger.getLogger( TimeWheelTeleportationEngine.class ) ;
+
+	private static final int SLOT_BITS = 8;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 3;
+
+	private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+	private final Slot overflow = new Slot();
+	private final Slot cascading = new Slot();
+	/**
+	 * The second of the lowest-level slot that is processed next; all earlier slots are empty.
+	 */
+	private long currentSecond = Long.MIN_VALUE;
+	private int size = 0;
+
+	private LinkedHashMap<Id<Person>, TeleportationVisData> teleportationData = null;
+	private InternalInterface internalInterface;
+	private final Scenario scenario;
+	private final EventsManager eventsManager;
+
+	private final boolean withTravelTimeCheck ;
+
+	@Inject
+	public TimeWheelTeleportationEngine(Scenario scenario, EventsManager eventsManager) {
+		this.scenario = scenario;
+		this.eventsManager = eventsManager;
+
+		withTravelTimeCheck = scenario.getConfig().qsim().isUsingTravelTimeCheckInTeleportation() ;
+
+		for (Slot[] level : wheel) {
+			for (int i = 0; i < SLOTS; i++) {
+				level[i] = new Slot();
+			}
+		}
+	}
+
+	@Override
+	public boolean handleDeparture(double now, MobsimAgent agent, Id<Link> linkId) {
+		if ( agent.getExpectedTravelTime().isUndefined() ) {
+			Logger.getLogger( this.getClass() ).info( "mode: " + agent.getMode() );
+			throw new RuntimeException("teleportation does not work when travel time is undefined.  There is also really no magic fix for this,"
+					+ " since we cannot guess travel times for arbitrary modes and arbitrary landscapes.  kai/mz, apr'15 & feb'16") ;
+		}
+
+		double travelTime = agent.getExpectedTravelTime().seconds() ;
+		if ( withTravelTimeCheck ) {
+			Double speed = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get( agent.getMode() ) ;
+			travelTime = DefaultTeleportationEngine.travelTimeCheck(travelTime, speed, agent.getCurrentFacility(), agent.getDestinationFacility());
+		}
+
+		if (currentSecond == Long.MIN_VALUE) {
+			currentSecond = (long) Math.floor(now);
+		}
+		insert(agent, now + travelTime);
+		size++;
+
+		// === below here is only visualization, no dynamics ===
+		if (teleportationData != null) {
+			Link currLink = this.scenario.getNetwork().getLinks().get(linkId);
+			Link destLink = this.scenario.getNetwork().getLinks().get(agent.getDestinationLinkId());
+			Coord fromCoord = currLink.getToNode().getCoord();
+			Coord toCoord = destLink.getToNode().getCoord();
+			teleportationData.put(agent.getId(), new TeleportationVisData(now, agent.getId(), fromCoord, toCoord, travelTime));
+		}
+
+		return true;
+	}
+
+	@Override
+	public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> snapshotList) {
+		if (teleportationData == null) {
+			log.info("recording positions of teleported agents from now on.");
+			teleportationData = new LinkedHashMap<>();
+		}
+		double time = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		for (TeleportationVisData teleportationVisData : teleportationData.values()) {
+			teleportationVisData.updatePosition(time);
+			snapshotList.add(teleportationVisData);
+		}
+		return snapshotList;
+	}
+
+	@Override
+	public void doSimStep(double time) {
+		if (size == 0) {
+			return;
+		}
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		long target = (long) Math.floor(now);
+		while (true) {
+			handleArrivals(wheel[0][(int) (currentSecond & MASK)], now);
+			if (currentSecond >= target || size == 0) {
+				break;
+			}
+			currentSecond++;
+			if ((currentSecond & MASK) == 0) {
+				cascade(1);
+			}
+		}
+		if (currentSecond < target) {
+			// nothing left in the wheel, so the slots in between can be skipped
+			currentSecond = target;
+		}
+	}
+
+	/**
+	 * Hands out the agents of the slot that have arrived by <code>now</code>, in the order of the slot. Agents that
+	 * are added to the same slot in the meantime, e.g. after an activity of zero duration, are handled in their turn.
+	 */
+	private void handleArrivals(Slot slot, double now) {
+		while (slot.head < slot.size && slot.times[slot.head] <= now) {
+			MobsimAgent personAgent = slot.agents[slot.head];
+			slot.agents[slot.head] = null;
+			slot.head++;
+			size--;
+			personAgent.notifyArrivalOnLinkByNonNetworkMode(personAgent.getDestinationLinkId());
+			double distance = personAgent.getExpectedTravelDistance();
+			this.eventsManager.processEvent(new TeleportationArrivalEvent(now, personAgent.getId(), distance, personAgent.getMode()));
+			personAgent.endLegAndComputeNextState(now);
+			if (teleportationData != null) {
+				teleportationData.remove(personAgent.getId());
+			}
+			internalInterface.arrangeNextAgentState(personAgent);
+		}
+		if (slot.head == slot.size) {
+			slot.head = 0;
+			slot.size = 0;
+		}
+	}
+
+	/**
+	 * Moves the slot of the given level that starts at {@link #currentSecond} down to the lower levels; cascades
+	 * the next higher level first if that one wraps around as well.
+	 */
+	private void cascade(int level) {
+		Slot slot;
+		if (level == LEVELS) {
+			slot = overflow;
+		} else {
+			if (((currentSecond >>> (SLOT_BITS * level)) & MASK) == 0) {
+				cascade(level + 1);
+			}
+			slot = wheel[level][(int) ((currentSecond >>> (SLOT_BITS * level)) & MASK)];
+		}
+		if (slot.size == slot.head) {
+			return;
+		}
+		// copy first, since entries of the overflow slot may be put back into it
+		cascading.clear();
+		for (int i = slot.head; i < slot.size; i++) {
+			cascading.append(slot.agents[i], slot.times[i]);
+		}
+		slot.clear();
+		for (int i = 0; i < cascading.size; i++) {
+			insert(cascading.agents[i], cascading.times[i]);
+		}
+		cascading.clear();
+	}
+
+	private void insert(MobsimAgent agent, double arrivalTime) {
+		long second = Math.max(currentSecond, (long) Math.floor(arrivalTime));
+		long delta = second - currentSecond;
+		if (delta < SLOTS) {
+			wheel[0][(int) (second & MASK)].insertSorted(agent, arrivalTime);
+			return;
+		}
+		for (int level = 1; level < LEVELS; level++) {
+			if (delta < 1L << (SLOT_BITS * (level + 1))) {
+				wheel[level][(int) ((second >>> (SLOT_BITS * level)) & MASK)].append(agent, arrivalTime);
+				return;
+			}
+		}
+		overflow.append(agent, arrivalTime);
+	}
+
+	@Override
+	public void onPrepareSim() {
+
+	}
+
+	@Override
+	public void afterSim() {
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		for (Slot[] level : wheel) {
+			for (Slot slot : level) {
+				handleStuckAgents(slot, now);
+			}
+		}
+		handleStuckAgents(overflow, now);
+		size = 0;
+	}
+
+	private void handleStuckAgents(Slot slot, double now) {
+		for (int i = slot.head; i < slot.size; i++) {
+			MobsimAgent agent = slot.agents[i];
+			eventsManager.processEvent(new PersonStuckEvent(now, agent.getId(), agent.getDestinationLinkId(), agent.getMode()));
+		}
+		slot.clear();
+	}
+
+	@Override
+	public void setInternalInterface(InternalInterface internalInterface) {
+		this.internalInterface = internalInterface;
+	}
+
+	/**
+	 * Agents and their arrival times, in the range <code>[head, size)</code> of the arrays.
+	 */
+	private static final class Slot {
+
+		private MobsimAgent[] agents = new MobsimAgent[4];
+		private double[] times = new double[4];
+		private int head = 0;
+		private int size = 0;
+
+		void append(MobsimAgent agent, double time) {
+			ensureCapacity();
+			agents[size] = agent;
+			times[size] = time;
+			size++;
+		}
+
+		/**
+		 * Inserts the agent behind all agents that arrive earlier, or at the same time with a larger id.
+		 */
+		void insertSorted(MobsimAgent agent, double time) {
+			ensureCapacity();
+			int low = head;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				// cmp <= 0 means that the new agent goes behind the one in the middle
+				int cmp = Double.compare(times[middle], time);
+				if (cmp == 0) {
+					cmp = agent.getId().compareTo(agents[middle].getId());
+				}
+				if (cmp <= 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			System.arraycopy(agents, low, agents, low + 1, size - low);
+			System.arraycopy(times, low, times, low + 1, size - low);
+			agents[low] = agent;
+			times[low] = time;
+			size++;
+		}
+
+		private void ensureCapacity() {
+			if (size < agents.length) {
+				return;
+			}
+			if (head > 0) {
+				System.arraycopy(agents, head, agents, 0, size - head);
+				System.arraycopy(times, head, times, 0, size - head);
+				Arrays.fill(agents, size - head, size, null);
+				size -= head;
+				head = 0;
+			} else {
+				agents = Arrays.copyOf(agents, 2 * agents.length);
+				times = Arrays.copyOf(times, 2 * times.length);
+			}
+		}
+
+		void clear() {
+			Arrays.fill(agents, head, size, null);
+			head = 0;
+			size = 0;
+		}
+
+	}
+
+}
@@ -107,6 +107,17 @@ abstract class AbstractQLink implements QLinkI {
 
 	private boolean active = false;
 
+	/**
+	 * If larger than the current time, the link is active, but not moved until then; see {@link #sleepUntil(double)}.
+	 */
+	private double sleepingUntil = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Set by the runner when the link is activated, so that a link that wakes up can be put back to its old place among
+	 * the active links.
+	 */
+	private long activationNumber = 0;
+
 	private TransitQLink transitQLink;
 	
 	private final QNodeI toQNode ;
@@ -145,6 +156,40 @@ abstract class AbstractQLink implements QLinkI {
 		}
 		// This is a bit involved since we do not want to ask the registry in every time step if the link is already active.
 	}
+
+	/**
+	 * Keeps the link active, but tells its runner that it does not need to be moved before the given time.  Needs to be
+	 * called from {@link #doSimStep()}, which then needs to return false.  The link is woken up earlier if a vehicle
+	 * departs on it.
+	 */
+	final void sleepUntil(double wakeUpTime) {
+		this.sleepingUntil = wakeUpTime;
+		netElementActivationRegistry.registerLinkAsSleeping(this, wakeUpTime);
+	}
+
+	private void wakeUpLink() {
+		if (this.sleepingUntil != Double.NEGATIVE_INFINITY) {
+			this.sleepingUntil = Double.NEGATIVE_INFINITY;
+			netElementActivationRegistry.wakeUpLink(this);
+		}
+	}
+
+	final double getSleepingUntil() {
+		return this.sleepingUntil;
+	}
+
+	final void setSleepingUntil(double sleepingUntil) {
+		this.sleepingUntil = sleepingUntil;
+	}
+
+	final long getActivationNumber() {
+		return this.activationNumber;
+	}
+
+	final void setActivationNumber(long activationNumber) {
+		this.activationNumber = activationNumber;
+	}
+
 	private static int wrnCnt = 0 ;
 	
 	public final void addParkedVehicle(MobsimVehicle vehicle, boolean isInitial) {
@@ -199,6 +244,7 @@ abstract class AbstractQLink implements QLinkI {
 		this.waitingList.add(vehicle);
 		vehicle.setCurrentLink(this.getLink());
 		this.activateLink();
+		this.wakeUpLink();
 		vehicleHandler.handleVehicleDeparture(vehicle, link);
 	}
 
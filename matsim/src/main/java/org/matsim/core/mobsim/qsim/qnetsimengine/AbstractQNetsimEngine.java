@@ -35,6 +35,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetworkPartitioning;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
 import org.matsim.core.gbl.Gbl;
@@ -90,9 +91,13 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 	private double infoTime = 0;
 	private List<A> engines;
 	private InternalInterface internalInterface = null;
+	private final QNetworkPartitioning partitioning;
+	private long numberOfMovedLinks = 0;
+	private long numberOfSkippedLinks = 0;
 	
-	AbstractQNetsimEngine(final QSim sim, QNetworkFactory netsimNetworkFactory) {
+	AbstractQNetsimEngine(final QSim sim, QNetworkFactory netsimNetworkFactory, QNetworkPartitioning partitioning) {
 		this.qsim = sim;
+		this.partitioning = partitioning;
 
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qSimConfigGroup = config.qsim();
@@ -186,6 +191,25 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 
 		finishMultiThreading();
 
+		QSimConfigGroup qsimConfig = this.qsim.getScenario().getConfig().qsim();
+		this.numberOfMovedLinks = 0;
+		this.numberOfSkippedLinks = 0;
+		for (AbstractQNetsimEngineRunner engine : this.getQnetsimEngineRunner()) {
+			this.numberOfMovedLinks += engine.getNumberOfMovedLinks();
+			this.numberOfSkippedLinks += engine.getNumberOfSkippedLinks();
+		}
+		if (qsimConfig.isUsingSleepingLinks()) {
+			log.info("sleeping links: " + this.numberOfSkippedLinks + " of " + (this.numberOfMovedLinks + this.numberOfSkippedLinks)
+					+ " link visits skipped.");
+		}
+		if (qsimConfig.getNetworkPartitioning() == NetworkPartitioning.graphPartitioning && qsimConfig.isRebalancingNetworkPartitions()) {
+			long[] runTimes = new long[this.engines.size()];
+			for (int i = 0; i < runTimes.length; i++) {
+				runTimes[i] = this.engines.get(i).getBusyTime();
+			}
+			this.partitioning.setRunTimes(runTimes);
+		}
+
 		/* Reset vehicles on ALL links. We cannot iterate only over the active links
 		 * (this.simLinksArray), because there may be links that have vehicles only
 		 * in the buffer (such links are *not* active, as the buffer gets emptied
@@ -196,6 +220,21 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 		}
 	}
 
+	/**
+	 * @return how often links were skipped since they were sleeping, see {@link QSimConfigGroup#isUsingSleepingLinks()};
+	 * available after the simulation
+	 */
+	/*package*/ final long getNumberOfSkippedLinks() {
+		return this.numberOfSkippedLinks;
+	}
+
+	/**
+	 * @return how often links were moved, available after the simulation
+	 */
+	/*package*/ final long getNumberOfMovedLinks() {
+		return this.numberOfMovedLinks;
+	}
+
 	/** 
 	 * do everything to finish multithreading {@link #afterSim()}, e.g. shut down a threadpool
 	 */
@@ -389,9 +428,16 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 		int nodes[] = new int[this.engines.size()];
 		int links[] = new int[this.engines.size()];
 
+		int[] regions = null;
+		QSimConfigGroup qsimConfig = this.qsim.getScenario().getConfig().qsim();
+		if (qsimConfig.getNetworkPartitioning() == NetworkPartitioning.graphPartitioning && this.engines.size() > 1) {
+			regions = this.partitioning.partition(this.network.getNetwork(), this.qsim.getScenario().getPopulation(),
+					this.engines.size(), qsimConfig.isRebalancingNetworkPartitions());
+		}
+
 		int roundRobin = 0;
 		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.engines.size();
+			int i = regions == null ? roundRobin % this.engines.size() : regions[node.getNode().getId().index()];
 			if( node instanceof AbstractQNode){
 				((AbstractQNode) node).setNetElementActivationRegistry(this.engines.get(i));
 			}
@@ -20,6 +20,8 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,6 +60,19 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	 */
 	private final List<QLinkI> linksList = new LinkedList<>();
 
+	/*
+	 * Links that are active, but do not need to be moved before some later time step, see
+	 * QSimConfigGroup.isUsingSleepingLinks().  When they wake up, they are put back into the linksList at the position
+	 * where they would be if they had not been sleeping, so that the order of the events does not change.  The
+	 * linksList is sorted by activation number for this.
+	 */
+	private final SleepingLinksQueue sleepingLinks = new SleepingLinksQueue();
+	private final List<AbstractQLink> wokenLinks = new ArrayList<>();
+	private int numberOfSleepingLinks = 0;
+	private long activationCounter = 0;
+	private long numberOfMovedLinks = 0;
+	private long numberOfSkippedLinks = 0;
+
 	/*
 	 * Ensure that nodes and links are only activate during times where we expect it.
 	 * Otherwise this could result in unpredictable behavior. Therefore we throw
@@ -72,6 +87,8 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
+	/* time spent moving nodes and links, used to rebalance the network regions of the runners */
+	private long busyTime = 0;
 	{	
 		if (QSim.analyzeRunTimes) runTimes = new long[QNetsimEngineWithThreadpool.numObservedTimeSteps];
 		else runTimes = null;
@@ -84,6 +101,7 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	public abstract void afterSim() ;
 
 	protected void moveNodes() {
+		long start = System.nanoTime();
 		boolean remainsActive;
 		this.lockNodes = true;
 		QNodeI node;
@@ -94,12 +112,20 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 			if (!remainsActive) simNodes.remove();
 		}
 		this.lockNodes = false;
+		this.busyTime += System.nanoTime() - start;
 	}
 	
 	protected final void moveLinks() {
+		long start = System.nanoTime();
 		boolean remainsActive;
 		lockLinks = true;
 		QLinkI link;
+		this.numberOfSleepingLinks -= this.sleepingLinks.wakeUpLinks(time, this.wokenLinks);
+		if (!this.wokenLinks.isEmpty()) {
+			insertWokenLinks();
+		}
+		this.numberOfMovedLinks += this.linksList.size();
+		this.numberOfSkippedLinks += this.numberOfSleepingLinks;
 		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
 		while (simLinks.hasNext()) {
 			link = simLinks.next();
@@ -109,6 +135,44 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 			if (!remainsActive) simLinks.remove();
 		}
 		lockLinks = false;
+		this.busyTime += System.nanoTime() - start;
+	}
+
+	private void insertWokenLinks() {
+		this.wokenLinks.sort(Comparator.comparingLong(AbstractQLink::getActivationNumber));
+		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
+		for (AbstractQLink wokenLink : this.wokenLinks) {
+			while (simLinks.hasNext()) {
+				if (getActivationNumber(simLinks.next()) > wokenLink.getActivationNumber()) {
+					simLinks.previous();
+					break;
+				}
+			}
+			simLinks.add(wokenLink);
+		}
+		this.wokenLinks.clear();
+	}
+
+	private static long getActivationNumber(QLinkI link) {
+		return link instanceof AbstractQLink ? ((AbstractQLink) link).getActivationNumber() : 0;
+	}
+
+	/*package*/ final long getBusyTime() {
+		return this.busyTime;
+	}
+
+	/**
+	 * @return how often a link was moved, summed over all time steps
+	 */
+	/*package*/ final long getNumberOfMovedLinks() {
+		return this.numberOfMovedLinks;
+	}
+
+	/**
+	 * @return how often a link was not moved because it was sleeping, summed over all time steps
+	 */
+	/*package*/ final long getNumberOfSkippedLinks() {
+		return this.numberOfSkippedLinks;
 	}
 
 	/*
@@ -118,13 +182,38 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	 */
 	@Override
 	protected final void registerLinkAsActive(QLinkI link) {
-		if (!lockLinks) linksList.add(link);
+		if (!lockLinks) {
+			if (link instanceof AbstractQLink) {
+				((AbstractQLink) link).setActivationNumber(++this.activationCounter);
+			}
+			linksList.add(link);
+		}
 		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
 	}
 
+	/*
+	 * Called from within the doSimStep() of the link, which then returns false so that the link is removed from the
+	 * linksList.
+	 */
+	@Override
+	final void registerLinkAsSleeping(AbstractQLink link, double wakeUpTime) {
+		this.sleepingLinks.add(link, wakeUpTime);
+		this.numberOfSleepingLinks++;
+	}
+
+	/*
+	 * Called when a vehicle departs on a sleeping link, which normally happens while links are NOT moved.  If it happens
+	 * while they are moved (e.g. a leg directly following another leg), the link is moved again from the next time step on.
+	 */
+	@Override
+	final void wakeUpLink(AbstractQLink link) {
+		this.wokenLinks.add(link);
+		this.numberOfSleepingLinks--;
+	}
+
 	@Override
 	public final int getNumberOfSimulatedLinks() {
-		return this.linksList.size();
+		return this.linksList.size() + this.numberOfSleepingLinks;
 	}
 
 	/*
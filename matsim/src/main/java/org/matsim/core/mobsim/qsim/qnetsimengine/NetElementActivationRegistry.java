@@ -30,5 +30,17 @@ abstract class NetElementActivationRegistry {
 	
 	abstract void registerLinkAsActive(final QLinkI link);
 
+	/**
+	 * The link stays active, but is only moved again from the given time on, or after {@link #wakeUpLink(AbstractQLink)}.
+	 * Only the engine runners support sleeping links; they are not used otherwise.
+	 */
+	void registerLinkAsSleeping(final AbstractQLink link, final double wakeUpTime) {
+		throw new UnsupportedOperationException("sleeping links are not supported by " + getClass().getName());
+	}
+
+	void wakeUpLink(final AbstractQLink link) {
+		// nothing to do if links never sleep
+	}
+
 	abstract int getNumberOfSimulatedLinks();
 } 
\ No newline at end of file
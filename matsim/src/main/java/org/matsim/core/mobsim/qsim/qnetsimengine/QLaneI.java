@@ -100,4 +100,13 @@ public interface QLaneI extends Identifiable<Lane> {
 	void initBeforeSimStep();
 	// yyyy could you please explain why this here was added.  Why can't the same thing be done at the beginning of "doSimStep"?  kai, nov'18
 
+	/**
+	 * The earliest time at which {@link #doSimStep()} may do anything again, provided that nothing is added to the lane in
+	 * the meantime, or {@link Double#NEGATIVE_INFINITY} if the lane needs to be moved in every time step.  Used to let
+	 * links sleep, see {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingSleepingLinks()}.
+	 */
+	default double getEarliestTimeOfNextChange() {
+		return Double.NEGATIVE_INFINITY;
+	}
+
 }
@@ -137,6 +137,14 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 			this.moveWaitToRoad();
 		}
 		this.setActive(this.checkForActivity());
+		if ( isActive() && this.getWaitingList().isEmpty() && this.getTransitQLink().getTransitVehicleStopQueue().isEmpty() ) {
+			double wakeUpTime = qlane.getEarliestTimeOfNextChange() ;
+			if ( wakeUpTime > now + context.qsimConfig.getTimeStepSize() ) {
+				// nothing will happen here in the next time step(s), so there is no need to come back before wakeUpTime.
+				this.sleepUntil( wakeUpTime ) ;
+				return false ;
+			}
+		}
 		return isActive();
 		// yy seems to me that for symmetry there should be something like
 		// 			netElementActivationRegistry.registerLinkAsActive(this);
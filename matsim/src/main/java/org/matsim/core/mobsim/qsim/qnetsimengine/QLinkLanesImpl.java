@@ -200,7 +200,11 @@ public final class QLinkLanesImpl extends AbstractQLink {
 			// (lane.getLaneData().getCapacityVehiclesPerHour()/3600.0));
 
 			QueueWithBuffer.Builder builder = new QueueWithBuffer.Builder( context ) ;
-			builder.setVehicleQueue(new FIFOVehicleQ());
+			if ( !context.qsimConfig.isUsingRingBufferVehicleQueues() ) {
+				builder.setVehicleQueue(new FIFOVehicleQ());
+			} else {
+				builder.setVehicleQueue(null); // FIFO as well, sized from the storage capacity of the lane
+			}
 			builder.setLaneId(laneId);
 			builder.setLength(lane.getLength());
 			builder.setEffectiveNumberOfLanes(lane.getLaneData().getNumberOfRepresentedLanes());
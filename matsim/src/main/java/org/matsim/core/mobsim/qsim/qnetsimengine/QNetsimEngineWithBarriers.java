@@ -48,9 +48,13 @@ final class QNetsimEngineWithBarriers extends AbstractQNetsimEngine<QNetsimEngin
 		this(sim, null);
 	}
 
-	@Inject
 	public QNetsimEngineWithBarriers(final QSim sim, QNetworkFactory netsimNetworkFactory) {
-		super(sim, netsimNetworkFactory);
+		this(sim, netsimNetworkFactory, new QNetworkPartitioning());
+	}
+
+	@Inject
+	QNetsimEngineWithBarriers(final QSim sim, QNetworkFactory netsimNetworkFactory, QNetworkPartitioning partitioning) {
+		super(sim, netsimNetworkFactory, partitioning);
 	}
 
 	@Override
@@ -52,9 +52,13 @@ final class QNetsimEngineWithThreadpool extends AbstractQNetsimEngine<QNetsimEng
 		this(sim, null);
 	}
 
-	@Inject
 	public QNetsimEngineWithThreadpool(final QSim sim, QNetworkFactory netsimNetworkFactory) {
-		super(sim, netsimNetworkFactory);
+		this(sim, netsimNetworkFactory, new QNetworkPartitioning());
+	}
+
+	@Inject
+	QNetsimEngineWithThreadpool(final QSim sim, QNetworkFactory netsimNetworkFactory, QNetworkPartitioning partitioning) {
+		super(sim, netsimNetworkFactory, partitioning);
 		this.numOfRunners = this.numOfThreads;
 	}
 
@@ -0,0 +1,463 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkPartitioning.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.groups.QSimConfigGroup.NetworkPartitioning;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * Splits the network into one region per {@link AbstractQNetsimEngineRunner}, see
+ * {@link NetworkPartitioning#graphPartitioning}. Regions are found by recursive bisection: each bisection grows
+ * one half breadth-first from a peripheral node until it holds its share of the expected load, and then moves
+ * boundary nodes to the side where most of their neighbours are, as long as the balance allows. A node always
+ * belongs to the same region as its outgoing links, as these are activated by the node.
+ *
+ * <p>The expected load of a node is derived from the selected plans: every network route adds the free speed
+ * travel times of its links to the from nodes of these links. As this class is a singleton of the controler, the
+ * loads are kept between iterations, and can be corrected with the time each runner needed in the last
+ * mobsim, see {@link #setRunTimes(long[])}.</p>
+ */
+@Singleton
+final class QNetworkPartitioning {
+
+	private static final Logger log = Logger.getLogger(QNetworkPartitioning.class);
+
+	/** maximal deviation of a bisection from its target load, relative to the load of both halves */
+	private static final double IMBALANCE = 0.02;
+	private static final int REFINEMENT_PASSES = 8;
+
+	/* expected load and region of the nodes in the last partitioning, by node id index */
+	private double[] loads = null;
+	private int[] regions = null;
+	private long[] runTimes = null;
+
+	/**
+	 * @return the region of every node of the network, by the index of its id
+	 */
+	synchronized int[] partition(final Network network, final Population population, final int numberOfRegions,
+			final boolean rebalance) {
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Graph graph = new Graph(nodes);
+		double[] nodeLoads;
+		if (rebalance && this.loads != null && this.runTimes != null && this.runTimes.length == numberOfRegions) {
+			nodeLoads = rebalancedLoads(nodes);
+		} else {
+			nodeLoads = expectedLoads(network, population, graph);
+		}
+
+		int[] partition = new Bisection(graph, nodeLoads).run(numberOfRegions);
+
+		int cutLinks = 0;
+		for (Link link : network.getLinks().values()) {
+			if (partition[graph.getIndex(link.getFromNode())] != partition[graph.getIndex(link.getToNode())]) {
+				cutLinks++;
+			}
+		}
+		log.info("partitioned network into " + numberOfRegions + " regions; " + cutLinks + " of "
+				+ network.getLinks().size() + " links connect different regions.");
+
+		this.loads = new double[Id.getNumberOfIds(Node.class)];
+		this.regions = new int[this.loads.length];
+		for (int i = 0; i < nodes.length; i++) {
+			this.loads[nodes[i].getId().index()] = nodeLoads[i];
+			this.regions[nodes[i].getId().index()] = partition[i];
+		}
+		this.runTimes = null;
+		return this.regions;
+	}
+
+	/**
+	 * Sets the time each region needed in the last mobsim, in the same unit for all regions.
+	 */
+	synchronized void setRunTimes(final long[] runTimes) {
+		this.runTimes = runTimes.clone();
+	}
+
+	/**
+	 * Scales the loads of the nodes of every region by how much more or less time the region needed per unit of
+	 * expected load than the average. Only half of the correction is applied, so that the regions do not oscillate.
+	 */
+	private double[] rebalancedLoads(final Node[] nodes) {
+		int numberOfRegions = this.runTimes.length;
+		double[] regionLoads = new double[numberOfRegions];
+		double totalLoad = 0;
+		double totalTime = 0;
+		for (Node node : nodes) {
+			int index = node.getId().index();
+			if (index < this.loads.length) {
+				regionLoads[this.regions[index]] += this.loads[index];
+				totalLoad += this.loads[index];
+			}
+		}
+		for (long runTime : this.runTimes) {
+			totalTime += runTime;
+		}
+		double[] factors = new double[numberOfRegions];
+		for (int r = 0; r < numberOfRegions; r++) {
+			double timePerLoad = regionLoads[r] > 0 ? this.runTimes[r] / regionLoads[r] : 0;
+			double ratio = totalTime > 0 ? timePerLoad / (totalTime / totalLoad) : 1;
+			factors[r] = 0.5 + 0.5 * ratio;
+		}
+		double[] nodeLoads = new double[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			int index = nodes[i].getId().index();
+			nodeLoads[i] = index < this.loads.length && this.loads[index] > 0
+					? this.loads[index] * factors[this.regions[index]] : 1.0;
+		}
+		log.info("rebalancing network regions with factors " + Arrays.toString(factors));
+		return nodeLoads;
+	}
+
+	/**
+	 * Every node and link costs one unit even when it is never used. Routes add the number of time steps a vehicle
+	 * is expected to spend on a link to the from node of the link, and one unit to its to node, which moves the
+	 * vehicle out of the buffer.
+	 */
+	private static double[] expectedLoads(final Network network, final Population population, final Graph graph) {
+		double[] linkUses = new double[Id.getNumberOfIds(Link.class)];
+		for (Person person : population.getPersons().values()) {
+			Plan plan = person.getSelectedPlan();
+			if (plan == null) {
+				continue;
+			}
+			for (PlanElement pe : plan.getPlanElements()) {
+				if (pe instanceof Leg && ((Leg) pe).getRoute() instanceof NetworkRoute) {
+					NetworkRoute route = (NetworkRoute) ((Leg) pe).getRoute();
+					for (Id<Link> linkId : route.getLinkIds()) {
+						linkUses[linkId.index()]++;
+					}
+					linkUses[route.getEndLinkId().index()]++;
+				}
+			}
+		}
+		double[] nodeLoads = new double[graph.size()];
+		Arrays.fill(nodeLoads, 1.0);
+		for (Link link : network.getLinks().values()) {
+			double uses = linkUses[link.getId().index()];
+			double timeSteps = Math.max(1.0, link.getLength() / link.getFreespeed());
+			nodeLoads[graph.getIndex(link.getFromNode())] += 1.0 + uses * timeSteps;
+			nodeLoads[graph.getIndex(link.getToNode())] += uses;
+		}
+		return nodeLoads;
+	}
+
+	/**
+	 * The undirected graph of the network in compressed sparse row format, one edge per link and direction.
+	 */
+	private static final class Graph {
+
+		final int[] first;
+		final int[] adjacent;
+		private final int[] indexById;
+
+		Graph(final Node[] nodes) {
+			this.indexById = new int[Id.getNumberOfIds(Node.class)];
+			for (int i = 0; i < nodes.length; i++) {
+				this.indexById[nodes[i].getId().index()] = i;
+			}
+			this.first = new int[nodes.length + 1];
+			for (int i = 0; i < nodes.length; i++) {
+				this.first[i + 1] = this.first[i] + nodes[i].getOutLinks().size() + nodes[i].getInLinks().size();
+			}
+			this.adjacent = new int[this.first[nodes.length]];
+			for (int i = 0; i < nodes.length; i++) {
+				int e = this.first[i];
+				for (Link link : nodes[i].getOutLinks().values()) {
+					this.adjacent[e++] = getIndex(link.getToNode());
+				}
+				for (Link link : nodes[i].getInLinks().values()) {
+					this.adjacent[e++] = getIndex(link.getFromNode());
+				}
+			}
+		}
+
+		int getIndex(final Node node) {
+			return this.indexById[node.getId().index()];
+		}
+
+		int size() {
+			return this.first.length - 1;
+		}
+
+	}
+
+	private static final class Bisection {
+
+		private final Graph graph;
+		private final double[] loads;
+		private final int[] regions;
+		/* the bisection a node currently takes part in, nodes of other bisections are ignored */
+		private final int[] subset;
+		private final boolean[] left;
+		private final int[] visited;
+		private final int[] queue;
+		private int stamp = 0;
+
+		Bisection(final Graph graph, final double[] loads) {
+			this.graph = graph;
+			this.loads = loads;
+			int n = graph.size();
+			this.regions = new int[n];
+			this.subset = new int[n];
+			this.left = new boolean[n];
+			this.visited = new int[n];
+			this.queue = new int[n];
+		}
+
+		int[] run(final int numberOfRegions) {
+			int[] nodes = new int[this.graph.size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = i;
+			}
+			split(nodes, numberOfRegions, 0);
+			mergeFragments(numberOfRegions);
+			return this.regions;
+		}
+
+		/**
+		 * Bisections may leave small parts of a region that are not connected to the rest of it. Each such fragment
+		 * is given to the region it shares most edges with, unless it is the largest part of its own region or too
+		 * large to be moved without unbalancing the regions.
+		 */
+		private void mergeFragments(final int numberOfRegions) {
+			int n = this.graph.size();
+			int[] fragment = new int[n];
+			Arrays.fill(fragment, -1);
+			int[] fragmentStart = new int[n + 1];
+			double[] fragmentLoad = new double[n];
+			int fragments = 0;
+			int tail = 0;
+			for (int start = 0; start < n; start++) {
+				if (fragment[start] >= 0) {
+					continue;
+				}
+				// the queue ends up holding the nodes of all fragments, one after the other
+				fragmentStart[fragments] = tail;
+				fragment[start] = fragments;
+				this.queue[tail++] = start;
+				for (int head = fragmentStart[fragments]; head < tail; head++) {
+					int node = this.queue[head];
+					fragmentLoad[fragments] += this.loads[node];
+					for (int e = this.graph.first[node]; e < this.graph.first[node + 1]; e++) {
+						int m = this.graph.adjacent[e];
+						if (fragment[m] < 0 && this.regions[m] == this.regions[node]) {
+							fragment[m] = fragments;
+							this.queue[tail++] = m;
+						}
+					}
+				}
+				fragments++;
+			}
+			fragmentStart[fragments] = tail;
+
+			double maxFragmentLoad = 0;
+			for (int f = 0; f < fragments; f++) {
+				maxFragmentLoad += fragmentLoad[f];
+			}
+			maxFragmentLoad *= IMBALANCE / numberOfRegions;
+			int[] largest = new int[numberOfRegions];
+			Arrays.fill(largest, -1);
+			for (int f = 0; f < fragments; f++) {
+				int region = this.regions[this.queue[fragmentStart[f]]];
+				if (largest[region] < 0 || fragmentLoad[f] > fragmentLoad[largest[region]]) {
+					largest[region] = f;
+				}
+			}
+			int[] sharedEdges = new int[numberOfRegions];
+			for (int f = 0; f < fragments; f++) {
+				int region = this.regions[this.queue[fragmentStart[f]]];
+				if (largest[region] == f || fragmentLoad[f] > maxFragmentLoad) {
+					continue;
+				}
+				Arrays.fill(sharedEdges, 0);
+				for (int i = fragmentStart[f]; i < fragmentStart[f + 1]; i++) {
+					int node = this.queue[i];
+					for (int e = this.graph.first[node]; e < this.graph.first[node + 1]; e++) {
+						sharedEdges[this.regions[this.graph.adjacent[e]]]++;
+					}
+				}
+				sharedEdges[region] = 0;
+				int best = region;
+				for (int r = 0; r < numberOfRegions; r++) {
+					if (sharedEdges[r] > sharedEdges[best]) {
+						best = r;
+					}
+				}
+				for (int i = fragmentStart[f]; i < fragmentStart[f + 1]; i++) {
+					this.regions[this.queue[i]] = best;
+				}
+			}
+		}
+
+		private void split(final int[] nodes, final int numberOfRegions, final int firstRegion) {
+			if (numberOfRegions == 1 || nodes.length == 0) {
+				for (int node : nodes) {
+					this.regions[node] = firstRegion;
+				}
+				return;
+			}
+			int leftRegions = numberOfRegions / 2;
+			int subsetId = ++this.stamp;
+			double total = 0;
+			for (int node : nodes) {
+				this.subset[node] = subsetId;
+				this.left[node] = false;
+				total += this.loads[node];
+			}
+			double target = total * leftRegions / numberOfRegions;
+			double leftLoad = grow(nodes, subsetId, target);
+			refine(nodes, subsetId, leftLoad, target, total * IMBALANCE);
+
+			int leftCount = 0;
+			for (int node : nodes) {
+				if (this.left[node]) {
+					leftCount++;
+				}
+			}
+			int[] leftNodes = new int[leftCount];
+			int[] rightNodes = new int[nodes.length - leftCount];
+			int l = 0;
+			int r = 0;
+			for (int node : nodes) {
+				if (this.left[node]) {
+					leftNodes[l++] = node;
+				} else {
+					rightNodes[r++] = node;
+				}
+			}
+			split(leftNodes, leftRegions, firstRegion);
+			split(rightNodes, numberOfRegions - leftRegions, firstRegion + leftRegions);
+		}
+
+		/**
+		 * Adds nodes to the left half in breadth-first order, starting from a peripheral node, until it holds the
+		 * target load. Continues in the next component if a component is exhausted.
+		 *
+		 * @return the load of the left half
+		 */
+		private double grow(final int[] nodes, final int subsetId, final double target) {
+			int start = findPeripheralNode(findPeripheralNode(nodes[0], subsetId), subsetId);
+			int visitId = ++this.stamp;
+			double load = 0;
+			int head = 0;
+			int tail = 0;
+			int next = 0;
+			this.visited[start] = visitId;
+			this.queue[tail++] = start;
+			// leave at least one node for the other half
+			while (load < target && head < nodes.length - 1) {
+				if (head == tail) {
+					while (this.visited[nodes[next]] == visitId) {
+						next++;
+					}
+					this.visited[nodes[next]] = visitId;
+					this.queue[tail++] = nodes[next];
+				}
+				int node = this.queue[head++];
+				this.left[node] = true;
+				load += this.loads[node];
+				for (int e = this.graph.first[node]; e < this.graph.first[node + 1]; e++) {
+					int m = this.graph.adjacent[e];
+					if (this.subset[m] == subsetId && this.visited[m] != visitId) {
+						this.visited[m] = visitId;
+						this.queue[tail++] = m;
+					}
+				}
+			}
+			return load;
+		}
+
+		/**
+		 * @return the node reached last by a breadth-first search from <code>start</code>
+		 */
+		private int findPeripheralNode(final int start, final int subsetId) {
+			int visitId = ++this.stamp;
+			int head = 0;
+			int tail = 0;
+			this.visited[start] = visitId;
+			this.queue[tail++] = start;
+			int last = start;
+			while (head < tail) {
+				last = this.queue[head++];
+				for (int e = this.graph.first[last]; e < this.graph.first[last + 1]; e++) {
+					int m = this.graph.adjacent[e];
+					if (this.subset[m] == subsetId && this.visited[m] != visitId) {
+						this.visited[m] = visitId;
+						this.queue[tail++] = m;
+					}
+				}
+			}
+			return last;
+		}
+
+		/**
+		 * Moves nodes with more neighbours on the other side than on their own to the other side, as long as the
+		 * load of the left half stays within the tolerance around its target.
+		 */
+		private void refine(final int[] nodes, final int subsetId, double leftLoad, final double target,
+				final double tolerance) {
+			for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+				int moved = 0;
+				for (int node : nodes) {
+					int own = 0;
+					int other = 0;
+					for (int e = this.graph.first[node]; e < this.graph.first[node + 1]; e++) {
+						int m = this.graph.adjacent[e];
+						if (this.subset[m] == subsetId && m != node) {
+							if (this.left[m] == this.left[node]) {
+								own++;
+							} else {
+								other++;
+							}
+						}
+					}
+					if (other > own) {
+						double newLeftLoad = this.left[node] ? leftLoad - this.loads[node] : leftLoad + this.loads[node];
+						if (Math.abs(newLeftLoad - target) <= Math.max(tolerance, Math.abs(leftLoad - target))) {
+							this.left[node] = !this.left[node];
+							leftLoad = newLeftLoad;
+							moved++;
+						}
+					}
+				}
+				if (moved == 0) {
+					break;
+				}
+			}
+		}
+
+	}
+
+}
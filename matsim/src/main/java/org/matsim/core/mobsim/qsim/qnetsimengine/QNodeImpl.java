@@ -420,7 +420,7 @@ final class QNodeImpl extends AbstractQNode {
 	private void moveVehicleFromInlinkToAbort(final QVehicle veh, final QLaneI fromLane, final double now, Id<Link> currentLinkId) {
 		fromLane.popFirstVehicle();
 		// -->
-		this.context.getEventsManager().processEvent(new LinkLeaveEvent(now, veh.getId(), currentLinkId));
+		processLinkLeave(now, veh, currentLinkId);
 		// <--
 		
 		// first treat the passengers:
@@ -447,17 +447,33 @@ final class QNodeImpl extends AbstractQNode {
 		fromLane.popFirstVehicle();
 		// -->
 		//		network.simEngine.getMobsim().getEventsManager().processEvent(new LaneLeaveEvent(now, veh.getId(), currentLinkId, fromLane.getId()));
-		this.context.getEventsManager().processEvent(new LinkLeaveEvent(now, veh.getId(), currentLinkId));
+		processLinkLeave(now, veh, currentLinkId);
 		// <--
 		
 		veh.getDriver().notifyMoveOverNode( nextLinkId );
 		
 		// -->
-		this.context.getEventsManager().processEvent(new LinkEnterEvent(now, veh.getId(), nextLinkId ));
+		processLinkEnter(now, veh, nextLinkId);
 		// <--
 		nextQueueLane.addFromUpstream(veh);
 	}
 	
+	private void processLinkLeave(final double now, final QVehicle veh, final Id<Link> linkId) {
+		if (this.context.qsimConfig.isUsingLinkEventRecords()) {
+			this.context.getEventsManager().processLinkLeave(now, veh.getId(), linkId);
+		} else {
+			this.context.getEventsManager().processEvent(new LinkLeaveEvent(now, veh.getId(), linkId));
+		}
+	}
+
+	private void processLinkEnter(final double now, final QVehicle veh, final Id<Link> linkId) {
+		if (this.context.qsimConfig.isUsingLinkEventRecords()) {
+			this.context.getEventsManager().processLinkEnter(now, veh.getId(), linkId);
+		} else {
+			this.context.getEventsManager().processEvent(new LinkEnterEvent(now, veh.getId(), linkId));
+		}
+	}
+
 	private boolean vehicleIsStuck(final QLaneI fromLaneBuffer, final double now) {
 		//		final double stuckTime = network.simEngine.getStuckTime();
 		final double stuckTime = this.context.qsimConfig.getStuckTime() ;
@@ -50,6 +50,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.flow_efficiency.FlowEfficiencyC
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.RingBufferVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
@@ -77,7 +78,10 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private static final Logger log = Logger.getLogger( QueueWithBuffer.class ) ;
 
 	static final class Builder implements LaneFactory {
-		private VehicleQ<QVehicle> vehicleQueue = new FIFOVehicleQ() ;
+		/**
+		 * null means that the lane creates a {@link RingBufferVehicleQ} that is sized from its storage capacity.
+		 */
+		private VehicleQ<QVehicle> vehicleQueue = null ;
 		private Id<Lane> id = null ;
 		private Double length = null ;
 		private Double effectiveNumberOfLanes = null ;
@@ -89,6 +93,8 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			if (context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.PassingQ ||
 						context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.SeepageQ) {
 				this.vehicleQueue = new PassingVehicleQ() ;
+			} else if (!context.qsimConfig.isUsingRingBufferVehicleQueues()) {
+				this.vehicleQueue = new FIFOVehicleQ() ;
 			}
 		}
 		void setVehicleQueue(VehicleQ<QVehicle> vehicleQueue) { this.vehicleQueue = vehicleQueue; }
@@ -150,7 +156,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private double flowCapacityPerTimeStep;
 	private double remainingHolesStorageCapacity = 0.0 ;
 
-	private final Queue<QueueWithBuffer.Hole> holes = new LinkedList<>();
+	private final Queue<QueueWithBuffer.Hole> holes;
 
 	/** the last time-step the front-most vehicle in the buffer was moved. Used for detecting dead-locks. */
 	private double bufferLastMovedTime = Double.NEGATIVE_INFINITY ;
@@ -165,7 +171,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	/**
 	 * Holds all vehicles that are ready to cross the outgoing intersection
 	 */
-	private final Queue<QVehicle> buffer = new LinkedList<>() ;
+	private final Queue<QVehicle> buffer;
 	/**
 	 * null if the link is not signalized
 	 */
@@ -193,6 +199,18 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	
 	private final FlowEfficiencyCalculator flowEfficiencyCalculator;
 
+	/**
+	 * true if nothing happens on the lane between the link exit times of its vehicles, so that the link can sleep in
+	 * between.  This is not the case e.g. with holes, with slow capacity update, or if vehicles can pass each other.
+	 */
+	private final boolean sleepingPossible;
+
+	/**
+	 * Upper bound for the initial size of the ring buffers, so that long links do not reserve memory for vehicles that
+	 * (almost) never are there.  The ring buffers grow if needed.
+	 */
+	private static final int MAX_INITIAL_RING_BUFFER_CAPACITY = 64;
+
 	private QueueWithBuffer(AbstractQLink.QLinkInternalInterface qlink, final VehicleQ<QVehicle> vehicleQueue, Id<Lane> laneId,
 							double length, double effectiveNumberOfLanes, double flowCapacity_s, final NetsimEngineContext context,
 							FlowEfficiencyCalculator flowEfficiencyCalculator) {
@@ -206,7 +224,6 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		this.qLink = qlink;
 		this.id = laneId ;
 		this.context = context ;
-		this.vehQueue = vehicleQueue ;
 		this.length = length;
 		this.unscaledFlowCapacity_s = flowCapacity_s ;
 		this.effectiveNumberOfLanes = effectiveNumberOfLanes;
@@ -218,9 +235,30 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		this.calculateFlowCapacity();
 		this.calculateStorageCapacity();
 
+		if ( context.qsimConfig.isUsingRingBufferVehicleQueues() ) {
+			this.vehQueue = vehicleQueue != null ? vehicleQueue : new RingBufferVehicleQ<>( initialRingBufferCapacity( storageCapacity ) ) ;
+			this.buffer = new RingBufferVehicleQ<>( initialRingBufferCapacity( getBufferStorageCapacity() + 1 ) ) ;
+			this.holes = new RingBufferVehicleQ<>( initialRingBufferCapacity( storageCapacity ) ) ;
+		} else {
+			this.vehQueue = vehicleQueue != null ? vehicleQueue : new FIFOVehicleQ() ;
+			this.buffer = new LinkedList<>() ;
+			this.holes = new LinkedList<>() ;
+		}
+
+		this.sleepingPossible = context.qsimConfig.isUsingSleepingLinks()
+				&& context.qsimConfig.isUsingFastCapacityUpdate()
+				&& context.qsimConfig.getTrafficDynamics() == TrafficDynamics.queue
+				&& context.qsimConfig.getLinkDynamics() == LinkDynamics.FIFO
+				&& !context.qsimConfig.isUseLanes()
+				&& ( this.vehQueue instanceof FIFOVehicleQ || this.vehQueue instanceof RingBufferVehicleQ ) ;
+
 		flowcap_accumulate.setValue(flowCapacityPerTimeStep);
 	}
 
+	private static int initialRingBufferCapacity( double numberOfVehicles ) {
+		return (int) Math.min( Math.ceil( numberOfVehicles ), MAX_INITIAL_RING_BUFFER_CAPACITY ) ;
+	}
+
 	@Override
 	public final void addFromWait(final QVehicle veh) {
 		//To protect against calling addToBuffer() without calling hasFlowCapacityLeft() first.
@@ -593,6 +631,15 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		}
 	}
 
+	@Override
+	public final double getEarliestTimeOfNextChange() {
+		if ( !this.sleepingPossible || this.vehQueue.isEmpty() ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		// vehicles that are added from upstream queue up behind the first one, so nothing can happen before it wants to leave:
+		return this.vehQueue.peek().getEarliestLinkExitTime() ;
+	}
+
 	@Override
 	public final void setSignalStateAllTurningMoves( final SignalGroupState state) {
 		qSignalizedItem.setSignalStateAllTurningMoves(state);
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SleepingLinksQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sleeping links of a runner, in a binary heap ordered by their wake-up time.  Links and times are kept in two
+ * arrays, so that putting a link to sleep does not allocate anything.
+ * <p></p>
+ * A link that is woken up early (see {@link AbstractQLink#sleepUntil(double)}) is not removed from the heap; its entry
+ * is recognized as outdated since its wake-up time no longer matches the one of the link.
+ */
+final class SleepingLinksQueue {
+
+	private AbstractQLink[] links = new AbstractQLink[64];
+	private double[] times = new double[64];
+	private int size = 0;
+
+	void add(AbstractQLink link, double wakeUpTime) {
+		if (size == links.length) {
+			links = Arrays.copyOf(links, 2 * size);
+			times = Arrays.copyOf(times, 2 * size);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (times[parent] <= wakeUpTime) {
+				break;
+			}
+			links[i] = links[parent];
+			times[i] = times[parent];
+			i = parent;
+		}
+		links[i] = link;
+		times[i] = wakeUpTime;
+	}
+
+	/**
+	 * Adds all links that are due at the given time and have not been woken up yet to the list, and marks them as awake.
+	 *
+	 * @return the number of links that were woken up
+	 */
+	int wakeUpLinks(double now, List<AbstractQLink> wokenLinks) {
+		int cnt = 0;
+		while (size > 0 && times[0] <= now) {
+			AbstractQLink link = links[0];
+			double time = times[0];
+			removeFirst();
+			if (link.getSleepingUntil() == time) {
+				link.setSleepingUntil(Double.NEGATIVE_INFINITY);
+				wokenLinks.add(link);
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	private void removeFirst() {
+		size--;
+		AbstractQLink lastLink = links[size];
+		double lastTime = times[size];
+		links[size] = null;
+		if (size == 0) {
+			return;
+		}
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && times[child + 1] < times[child]) {
+				child++;
+			}
+			if (lastTime <= times[child]) {
+				break;
+			}
+			links[i] = links[child];
+			times[i] = times[child];
+			i = child;
+		}
+		links[i] = lastLink;
+		times[i] = lastTime;
+	}
+
+	void clear() {
+		Arrays.fill(links, 0, size, null);
+		size = 0;
+	}
+
+}
@@ -0,0 +1,196 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue in a growable circular array.  Behaves like {@link FIFOVehicleQ}, but does not allocate a list node for
+ * every element that is added, which matters since the queues of the links are filled and emptied for every vehicle
+ * that passes.  The array only grows, so once a link has seen its typical number of vehicles, it does not allocate
+ * anything anymore.
+ * <p></p>
+ * Generic since the same structure is used for the buffer and the holes of the
+ * {@link org.matsim.core.mobsim.qsim.qnetsimengine.QLaneI}s.
+ */
+public final class RingBufferVehicleQ<E> extends AbstractQueue<E> implements VehicleQ<E> {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 8;
+
+	private Object[] elements;
+	/**
+	 * index of the first element
+	 */
+	private int head = 0;
+	private int size = 0;
+	private int modCount = 0;
+
+	public RingBufferVehicleQ() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public RingBufferVehicleQ(int initialCapacity) {
+		this.elements = new Object[Math.max(initialCapacity, 1)];
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (size == elements.length) {
+			grow();
+		}
+		elements[index(size)] = e;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void addFirst(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (size == elements.length) {
+			grow();
+		}
+		head = head == 0 ? elements.length - 1 : head - 1;
+		elements[head] = e;
+		size++;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E peek() {
+		return (E) elements[head]; // null if empty, since removed slots are cleared
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E poll() {
+		if (size == 0) {
+			return null;
+		}
+		E e = (E) elements[head];
+		elements[head] = null;
+		head = index(1);
+		size--;
+		modCount++;
+		return e;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			elements[index(i)] = null;
+		}
+		head = 0;
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Itr();
+	}
+
+	private int index(int position) {
+		int i = head + position;
+		return i < elements.length ? i : i - elements.length;
+	}
+
+	private void grow() {
+		Object[] newElements = new Object[2 * elements.length];
+		int firstPart = Math.min(size, elements.length - head);
+		System.arraycopy(elements, head, newElements, 0, firstPart);
+		System.arraycopy(elements, 0, newElements, firstPart, size - firstPart);
+		elements = newElements;
+		head = 0;
+	}
+
+	/**
+	 * Removes the element at the given position (counted from the head) by moving all later elements one position
+	 * forward.
+	 */
+	private void removeAt(int position) {
+		for (int i = position; i < size - 1; i++) {
+			elements[index(i)] = elements[index(i + 1)];
+		}
+		elements[index(size - 1)] = null;
+		size--;
+		modCount++;
+	}
+
+	private final class Itr implements Iterator<E> {
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public E next() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next++;
+			return (E) elements[index(last)];
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactActivity.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * {@link Activity} view of a slot of a {@link CompactPlan}.
+ */
+/* deliberately package */ final class CompactActivity extends CompactPlanElement implements Activity {
+
+	CompactActivity(final CompactPlan plan, final int slot) {
+		super(plan, slot);
+	}
+
+	@Override
+	public OptionalTime getEndTime() {
+		return this.plan.getTime(this.slot, CompactPlan.ACT_END_TIME);
+	}
+
+	@Override
+	public void setEndTime(final double seconds) {
+		this.plan.setTime(this.slot, CompactPlan.ACT_END_TIME, OptionalTime.defined(seconds));
+	}
+
+	@Override
+	public void setEndTimeUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.ACT_END_TIME, Double.NaN);
+	}
+
+	@Override
+	public OptionalTime getStartTime() {
+		return this.plan.getTime(this.slot, CompactPlan.ACT_START_TIME);
+	}
+
+	@Override
+	public void setStartTime(final double seconds) {
+		this.plan.setTime(this.slot, CompactPlan.ACT_START_TIME, OptionalTime.defined(seconds));
+	}
+
+	@Override
+	public void setStartTimeUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.ACT_START_TIME, Double.NaN);
+	}
+
+	@Override
+	public OptionalTime getMaximumDuration() {
+		return this.plan.getTime(this.slot, CompactPlan.ACT_MAXIMUM_DURATION);
+	}
+
+	@Override
+	public void setMaximumDuration(final double seconds) {
+		this.plan.setTime(this.slot, CompactPlan.ACT_MAXIMUM_DURATION, OptionalTime.defined(seconds));
+	}
+
+	@Override
+	public void setMaximumDurationUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.ACT_MAXIMUM_DURATION, Double.NaN);
+	}
+
+	@Override
+	public String getType() {
+		return this.plan.getString(this.slot);
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.plan.setString(this.slot, type.intern());
+	}
+
+	@Override
+	public Coord getCoord() {
+		return this.plan.getCoord(this.slot);
+	}
+
+	@Override
+	public void setCoord(final Coord coord) {
+		this.plan.setCoord(this.slot, coord);
+	}
+
+	@Override
+	public Id<Link> getLinkId() {
+		return this.plan.getId(this.slot, CompactPlan.ACT_LINK, Link.class);
+	}
+
+	@Override
+	public void setLinkId(final Id<Link> linkId) {
+		this.plan.setId(this.slot, CompactPlan.ACT_LINK, linkId);
+	}
+
+	@Override
+	public Id<ActivityFacility> getFacilityId() {
+		return this.plan.getId(this.slot, CompactPlan.ACT_FACILITY, ActivityFacility.class);
+	}
+
+	@Override
+	public void setFacilityId(final Id<ActivityFacility> facilityId) {
+		this.plan.setId(this.slot, CompactPlan.ACT_FACILITY, facilityId);
+	}
+
+	@Override
+	public String toString() {
+		return "act [type="
+				+ this.getType()
+				+ "]"
+				+ "[coord="
+				+ this.getCoord()
+				+ "]"
+				+ "[linkId="
+				+ this.getLinkId()
+				+ "]"
+				+ "[startTime="
+				+ Time.writeTime(getStartTime())
+				+ "]"
+				+ "[endTime="
+				+ Time.writeTime(getEndTime())
+				+ "]"
+				+ "[duration="
+				+ Time.writeTime(getMaximumDuration())
+				+ "]"
+				+ "[facilityId="
+				+ this.getFacilityId() + "]" ;
+	}
+
+}
@@ -0,0 +1,130 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactLeg.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * {@link Leg} view of a slot of a {@link CompactPlan}. Packed network routes are returned as
+ * {@link CompactNetworkRoute} views, which are kept like the leg views, all other routes as the objects that
+ * were set.
+ */
+/* deliberately package */ final class CompactLeg extends CompactPlanElement implements Leg {
+
+	private CompactNetworkRoute routeView = null;
+
+	CompactLeg(final CompactPlan plan, final int slot) {
+		super(plan, slot);
+	}
+
+	@Override
+	public String getMode() {
+		return this.plan.getString(this.slot);
+	}
+
+	@Override
+	public void setMode(final String mode) {
+		this.plan.setString(this.slot, mode);
+		// same as in LegImpl, but without creating empty attributes:
+		if (this.plan.getExistingAttributes(this.slot) != null) {
+			TripStructureUtils.setRoutingMode(this, null);
+		}
+	}
+
+	@Override
+	public Route getRoute() {
+		if (this.plan.hasFlag(this.slot, CompactPlan.PACKED_ROUTE)) {
+			// the leg is re-bound when it is moved into a plan
+			if (this.routeView == null || this.routeView.plan != this.plan || this.routeView.slot != this.slot) {
+				this.routeView = new CompactNetworkRoute(this.plan, this.slot);
+			}
+			return this.routeView;
+		}
+		return this.plan.getRouteObject(this.slot);
+	}
+
+	@Override
+	public void setRoute(final Route route) {
+		if (route instanceof CompactNetworkRoute && ((CompactNetworkRoute) route).plan == this.plan
+				&& ((CompactNetworkRoute) route).slot == this.slot) {
+			return;
+		}
+		this.plan.setRouteObject(this.slot, route);
+	}
+
+	@Override
+	public OptionalTime getDepartureTime() {
+		return this.plan.getTime(this.slot, CompactPlan.LEG_DEPARTURE_TIME);
+	}
+
+	@Override
+	public void setDepartureTime(final double seconds) {
+		this.plan.setTime(this.slot, CompactPlan.LEG_DEPARTURE_TIME, OptionalTime.defined(seconds));
+	}
+
+	@Override
+	public void setDepartureTimeUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.LEG_DEPARTURE_TIME, Double.NaN);
+	}
+
+	@Override
+	public OptionalTime getTravelTime() {
+		return this.plan.getTime(this.slot, CompactPlan.LEG_TRAVEL_TIME);
+	}
+
+	@Override
+	public void setTravelTime(final double seconds) {
+		this.plan.setTime(this.slot, CompactPlan.LEG_TRAVEL_TIME, OptionalTime.defined(seconds));
+	}
+
+	@Override
+	public void setTravelTimeUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.LEG_TRAVEL_TIME, Double.NaN);
+	}
+
+	@Override
+	public String toString() {
+		OptionalTime depTime = getDepartureTime();
+		OptionalTime travTime = getTravelTime();
+		return "leg [mode="
+				+ this.getMode()
+				+ "]"
+				+ "[depTime="
+				+ Time.writeTime(depTime)
+				+ "]"
+				+ "[travTime="
+				+ Time.writeTime(travTime)
+				+ "]"
+				+ "[arrTime="
+				+ (depTime.isDefined() && travTime.isDefined()?
+				Time.writeTime(depTime.seconds() + travTime.seconds()) :
+				Time.writeTime(OptionalTime.undefined()))
+				+ "]"
+				+ "[route="
+				+ this.getRoute()
+				+ "]";
+	}
+
+}
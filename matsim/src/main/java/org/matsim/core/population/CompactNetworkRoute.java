@@ -0,0 +1,199 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactNetworkRoute.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * {@link NetworkRoute} view of the packed route of a leg in a {@link CompactPlan}. The link ids are read from the
+ * {@link org.matsim.core.population.routes.PackedLinkSequence} of the leg on every access. {@link #clone()} returns an independent route object.
+ */
+/* deliberately package */ final class CompactNetworkRoute implements NetworkRoute {
+
+	final CompactPlan plan;
+	final int slot;
+
+	CompactNetworkRoute(final CompactPlan plan, final int slot) {
+		this.plan = plan;
+		this.slot = slot;
+	}
+
+	@Override
+	public double getDistance() {
+		return this.plan.getDouble(this.slot, CompactPlan.ROUTE_DISTANCE);
+	}
+
+	@Override
+	public void setDistance(final double distance) {
+		this.plan.setDouble(this.slot, CompactPlan.ROUTE_DISTANCE, distance);
+	}
+
+	@Override
+	public OptionalTime getTravelTime() {
+		return this.plan.getTime(this.slot, CompactPlan.ROUTE_TRAVEL_TIME);
+	}
+
+	@Override
+	public void setTravelTime(final double travelTime) {
+		this.plan.setTime(this.slot, CompactPlan.ROUTE_TRAVEL_TIME, OptionalTime.defined(travelTime));
+	}
+
+	@Override
+	public void setTravelTimeUndefined() {
+		this.plan.setDouble(this.slot, CompactPlan.ROUTE_TRAVEL_TIME, Double.NaN);
+	}
+
+	@Override
+	public double getTravelCost() {
+		return this.plan.getDouble(this.slot, CompactPlan.ROUTE_TRAVEL_COST);
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		this.plan.setDouble(this.slot, CompactPlan.ROUTE_TRAVEL_COST, travelCost);
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return this.plan.getId(this.slot, CompactPlan.ROUTE_START_LINK, Link.class);
+	}
+
+	@Override
+	public void setStartLinkId(final Id<Link> linkId) {
+		this.plan.setId(this.slot, CompactPlan.ROUTE_START_LINK, linkId);
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return this.plan.getId(this.slot, CompactPlan.ROUTE_END_LINK, Link.class);
+	}
+
+	@Override
+	public void setEndLinkId(final Id<Link> linkId) {
+		this.plan.setId(this.slot, CompactPlan.ROUTE_END_LINK, linkId);
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return this.plan.getId(this.slot, CompactPlan.ROUTE_VEHICLE, Vehicle.class);
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		this.plan.setId(this.slot, CompactPlan.ROUTE_VEHICLE, vehicleId);
+	}
+
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		return this.plan.getLinkIds(this.slot);
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> linkIds, final Id<Link> endLinkId) {
+		setStartLinkId(startLinkId);
+		setEndLinkId(endLinkId);
+		this.plan.setLinkIds(this.slot, linkIds);
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		return clone().getSubRoute(fromLinkId, toLinkId);
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder desc = new StringBuilder(100);
+		desc.append(this.getStartLinkId().toString());
+		List<Id<Link>> linkIds = this.getLinkIds();
+		for (Id<Link> linkId : linkIds) {
+			desc.append(" ");
+			desc.append(linkId.toString());
+		}
+		// If the start links equals the end link additionally check if its is a round trip.
+		if (!this.getEndLinkId().equals(this.getStartLinkId()) || linkIds.size() > 0) {
+			desc.append(" ");
+			desc.append(this.getEndLinkId().toString());
+		}
+		return desc.toString();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		List<Id<Link>> linkIds = NetworkUtils.getLinkIds(routeDescription);
+		Id<Link> startLinkId = getStartLinkId();
+		Id<Link> endLinkId = getEndLinkId();
+		if (linkIds.size() > 0) {
+			startLinkId = linkIds.remove(0);
+		}
+		if (linkIds.size() > 0) {
+			endLinkId = linkIds.remove(linkIds.size() - 1);
+		}
+		this.setLinkIds(startLinkId, linkIds, endLinkId);
+	}
+
+	@Override
+	public String getRouteType() {
+		return CompactPlan.NETWORK_ROUTE_TYPE;
+	}
+
+	@Override
+	public NetworkRoute clone() {
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(getStartLinkId(), getLinkIds(), getEndLinkId());
+		route.setDistance(getDistance());
+		getTravelTime().ifDefined(route::setTravelTime);
+		route.setTravelCost(getTravelCost());
+		route.setVehicleId(getVehicleId());
+		return route;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof CompactNetworkRoute)) {
+			return false;
+		}
+		CompactNetworkRoute other = (CompactNetworkRoute) obj;
+		return other.plan == this.plan && other.slot == this.slot;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(this.plan) + this.slot;
+	}
+
+	@Override
+	public String toString() {
+		return " startLinkId=" + getStartLinkId()
+				+ " endLinkId=" + getEndLinkId()
+				+ " travTime=" + getTravelTime()
+				+ " dist=" + getDistance()
+				+ " linkIds=" + getLinkIds()
+				+ " travelCost=" + getTravelCost();
+	}
+
+}
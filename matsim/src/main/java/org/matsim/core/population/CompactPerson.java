@@ -0,0 +1,195 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPerson.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.replanning.selectors.RandomPlanSelector;
+import org.matsim.core.scenario.Lockable;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+/**
+ * Implementation of {@link Person} for the {@link CompactPopulation}. It behaves like {@link PersonImpl}, but
+ * copies of the selected plan are {@link CompactPlan}s.
+ */
+/* deliberately package */ final class CompactPerson implements Person, Lockable {
+
+	private final List<Plan> plans = new ArrayList<>(6);
+	private Id<Person> id;
+
+	private Plan selectedPlan = null;
+
+	private Map<String, Object> customAttributes = null;
+	private boolean locked;
+
+	private final Attributes attributes = new Attributes();
+
+	/* deliberately package */ CompactPerson(final Id<Person> id) {
+		this.id = id;
+	}
+
+	/**
+	 * Creates a copy of the person with packed copies of all its plans.
+	 */
+	static CompactPerson copyOf(final Person person) {
+		CompactPerson copy = new CompactPerson(person.getId());
+		AttributesUtils.copyTo(person.getAttributes(), copy.attributes);
+		Map<String, Object> customAttributes = person.getCustomAttributes();
+		if (!customAttributes.isEmpty()) {
+			copy.getCustomAttributes().putAll(customAttributes);
+		}
+		for (Plan plan : person.getPlans()) {
+			CompactPlan planCopy = CompactPlan.copyOf(plan);
+			planCopy.setPerson(copy);
+			copy.plans.add(planCopy);
+			if (plan == person.getSelectedPlan()) {
+				copy.selectedPlan = planCopy;
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Packs all plan elements and routes that are still kept as objects, and replaces plans of other
+	 * implementations by packed copies.
+	 */
+	void packPlans() {
+		for (int i = 0; i < this.plans.size(); i++) {
+			Plan plan = this.plans.get(i);
+			if (plan instanceof CompactPlan) {
+				((CompactPlan) plan).packObjects();
+			} else {
+				CompactPlan planCopy = CompactPlan.copyOf(plan);
+				planCopy.setPerson(this);
+				this.plans.set(i, planCopy);
+				if (plan == this.selectedPlan) {
+					this.selectedPlan = planCopy;
+				}
+			}
+		}
+	}
+
+	@Override
+	public final Plan getSelectedPlan() {
+		return this.selectedPlan;
+	}
+
+	@Override
+	public boolean addPlan(final Plan plan) {
+		plan.setPerson(this);
+		// Make sure there is a selected plan if there is at least one plan
+		if (this.selectedPlan == null) this.selectedPlan = plan;
+		return this.plans.add(plan);
+	}
+
+	@Override
+	public final void setSelectedPlan(final Plan selectedPlan) {
+		if (selectedPlan != null && !plans.contains( selectedPlan )) {
+			throw new IllegalStateException("The plan to be set as selected is not null nor stored in the person's plans");
+		}
+		this.selectedPlan = selectedPlan;
+	}
+
+	@Override
+	public Plan createCopyOfSelectedPlanAndMakeSelected() {
+		Plan oldPlan = this.getSelectedPlan();
+		if (oldPlan == null) {
+			return null;
+		}
+		CompactPlan newPlan = CompactPlan.copyOf(oldPlan);
+		newPlan.setPerson(oldPlan.getPerson());
+		this.getPlans().add(newPlan);
+		this.setSelectedPlan(newPlan);
+		return newPlan;
+	}
+
+	@Override
+	public Id<Person> getId() {
+		return this.id;
+	}
+
+	/* deliberately package */ void changeId(final Id<Person> newId) {
+		// see PersonImpl.changeId
+		try {
+			testForLocked() ;
+		} catch ( Exception ee ) {
+			Logger.getLogger(getClass()).warn("cannot change person id while in population.  remove the person, change Id, re-add.");
+			throw ee ;
+		}
+		this.id = newId;
+	}
+
+	@Override
+	public final String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append("[id=").append(this.getId()).append("]");
+		b.append("[nof_plans=").append(this.getPlans() == null ? "null" : this.getPlans().size()).append("]");
+		return b.toString();
+	}
+
+	@Override
+	public boolean removePlan(final Plan plan) {
+		boolean result = this.getPlans().remove(plan);
+		if ((this.getSelectedPlan() == plan) && result) {
+			this.setSelectedPlan(new RandomPlanSelector<Plan, Person>().selectPlan(this));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Plan> getPlans() {
+		return this.plans;
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customAttributes == null) {
+			this.customAttributes = new HashMap<>();
+		}
+		return this.customAttributes;
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		return attributes;
+	}
+
+	@Override
+	public final void setLocked() {
+		this.locked = true ;
+		// we are not locking anything in the plans
+	}
+
+	private void testForLocked() {
+		if ( this.locked ) {
+			throw new RuntimeException("too late to do this") ;
+		}
+	}
+
+}
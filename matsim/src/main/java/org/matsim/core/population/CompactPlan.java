@@ -0,0 +1,657 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlan.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.PackedLinkSequence;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+/**
+ * Implementation of {@link Plan} that stores its activities and legs in primitive arrays instead of one object per
+ * plan element. Every element occupies a <i>slot</i> with a fixed number of int and double columns: ids are stored
+ * by their {@link Id#index()}, times as seconds with <code>NaN</code> standing for undefined, coordinates as plain
+ * doubles, and the links of network routes as an immutable {@link PackedLinkSequence}, which is shared by the
+ * copies of the route.
+ *
+ * <p>{@link #getPlanElements()} returns flyweight views ({@link CompactActivity}, {@link CompactLeg}) that read
+ * and write the slot they are bound to. A view is created on first access and kept for its slot, so repeated
+ * accesses return the same object, as with any other plan. Slots are never reused within a plan, so a view stays
+ * valid as long as the plan exists, also if elements are inserted before it.</p>
+ *
+ * <p>Elements enter the arrays when they are inserted into the plan: activities and legs created by a
+ * {@link CompactPopulationFactory} are detached views which are moved into the plan and re-bound to it, so
+ * references held by the caller remain valid. Views of elements that are already part of a plan, other
+ * implementations of {@link PlanElement}, and routes set on legs are kept as objects, so that the element is
+ * shared like with any other plan, and the caller may still modify it; they are packed when the plan is copied
+ * or its person is added to a {@link CompactPopulation}.</p>
+ *
+ * <p>Removed elements are not reclaimed before the plan is copied. Plans are
+ * typically copied before they are modified by replanning, so this keeps the garbage per plan small.</p>
+ */
+/* deliberately package */ final class CompactPlan implements Plan {
+
+	static final int KIND_ACTIVITY = 1;
+	static final int KIND_LEG = 2;
+	static final int KIND_OBJECT = 3;
+	private static final int KIND_MASK = 3;
+	private static final int LISTED = 4;
+	static final int HAS_COORD = 8;
+	static final int PACKED_ROUTE = 16;
+
+	private static final int INTS = 3;
+	private static final int DOUBLES = 6;
+	private static final int OBJECTS = 2;
+
+	// int columns of activities
+	static final int ACT_LINK = 0;
+	static final int ACT_FACILITY = 1;
+	// double columns of activities
+	static final int ACT_START_TIME = 0;
+	static final int ACT_END_TIME = 1;
+	static final int ACT_MAXIMUM_DURATION = 2;
+	static final int ACT_X = 3;
+	static final int ACT_Y = 4;
+	static final int ACT_Z = 5;
+
+	// int columns of legs
+	static final int ROUTE_START_LINK = 0;
+	static final int ROUTE_END_LINK = 1;
+	static final int ROUTE_VEHICLE = 2;
+	// double columns of legs
+	static final int LEG_DEPARTURE_TIME = 0;
+	static final int LEG_TRAVEL_TIME = 1;
+	static final int ROUTE_DISTANCE = 2;
+	static final int ROUTE_TRAVEL_TIME = 3;
+	static final int ROUTE_TRAVEL_COST = 4;
+
+	// object columns
+	private static final int ATTRIBUTES = 0;
+	/** the element kept as object, the route of a leg kept as object, or the link sequence of a packed route */
+	private static final int OBJECT = 1;
+
+	/** the route type of the network routes that are packed, other routes are kept as objects */
+	static final String NETWORK_ROUTE_TYPE = "links";
+
+	private byte[] flags;
+	private String[] strings;
+	private int[] ints;
+	private double[] doubles;
+	private Object[] objects = null;
+	/** the views handed out so far, by slot; created on first access */
+	private CompactPlanElement[] views = null;
+	private int slotCount = 0;
+
+	private int[] order;
+	private int size = 0;
+
+	private final List<PlanElement> elements = new Elements();
+
+	private Double score = null;
+	private Person person = null;
+	private String type = null;
+	private Map<String, Object> customAttributes = null;
+	private Attributes attributes = null;
+
+	/* deliberately package */ CompactPlan() {
+		this(8);
+	}
+
+	private CompactPlan(final int capacity) {
+		this.flags = new byte[capacity];
+		this.strings = new String[capacity];
+		this.ints = new int[capacity * INTS];
+		this.doubles = new double[capacity * DOUBLES];
+		this.order = new int[capacity];
+	}
+
+	/**
+	 * Creates an activity that is not part of any plan yet. It is moved into the first plan it is added to.
+	 */
+	static CompactActivity createDetachedActivity(final String type) {
+		CompactPlan holder = new CompactPlan(1);
+		CompactActivity activity = new CompactActivity(holder, holder.newSlot(KIND_ACTIVITY));
+		activity.setType(type);
+		return activity;
+	}
+
+	/**
+	 * Creates a leg that is not part of any plan yet. It is moved into the first plan it is added to.
+	 */
+	static CompactLeg createDetachedLeg(final String mode) {
+		CompactPlan holder = new CompactPlan(1);
+		int slot = holder.newSlot(KIND_LEG);
+		holder.strings[slot] = mode;
+		return new CompactLeg(holder, slot);
+	}
+
+	/**
+	 * Creates a packed copy of the plan, including score, type and attributes, but without person.
+	 */
+	static CompactPlan copyOf(final Plan plan) {
+		List<PlanElement> planElements = plan.getPlanElements();
+		CompactPlan copy = new CompactPlan(Math.max(1, planElements.size()));
+		for (PlanElement pe : planElements) {
+			copy.order[copy.size++] = copy.importElement(pe);
+		}
+		for (int i = 0; i < copy.size; i++) {
+			copy.flags[copy.order[i]] |= LISTED;
+		}
+		copy.score = plan.getScore();
+		copy.type = plan.getType();
+		if (!plan.getAttributes().isEmpty()) {
+			AttributesUtils.copyTo(plan.getAttributes(), copy.getAttributes());
+		}
+		return copy;
+	}
+
+	/**
+	 * Replaces all elements that are kept as objects by packed copies, see {@link #importElement(PlanElement)}.
+	 */
+	void packObjects() {
+		for (int i = 0; i < this.size; i++) {
+			int slot = this.order[i];
+			if ((this.flags[slot] & KIND_MASK) == KIND_OBJECT) {
+				PlanElement pe = (PlanElement) getObject(slot, OBJECT);
+				if (pe instanceof Activity || pe instanceof Leg) {
+					int packed = importElement(pe);
+					this.flags[slot] &= ~LISTED;
+					this.flags[packed] |= LISTED;
+					this.order[i] = packed;
+					setObject(slot, OBJECT, null);
+				}
+			} else if ((this.flags[slot] & KIND_MASK) == KIND_LEG && (this.flags[slot] & PACKED_ROUTE) == 0) {
+				Object route = getObject(slot, OBJECT);
+				if (route != null) {
+					packRoute(slot, (Route) route, true);
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// slots
+
+	private int newSlot(final int kind) {
+		if (this.slotCount == this.flags.length) {
+			int capacity = this.slotCount + (this.slotCount >> 1) + 1;
+			this.flags = Arrays.copyOf(this.flags, capacity);
+			this.strings = Arrays.copyOf(this.strings, capacity);
+			this.ints = Arrays.copyOf(this.ints, capacity * INTS);
+			this.doubles = Arrays.copyOf(this.doubles, capacity * DOUBLES);
+			if (this.objects != null) {
+				this.objects = Arrays.copyOf(this.objects, capacity * OBJECTS);
+			}
+			if (this.views != null) {
+				this.views = Arrays.copyOf(this.views, capacity);
+			}
+		}
+		int slot = this.slotCount++;
+		this.flags[slot] = (byte) kind;
+		Arrays.fill(this.ints, slot * INTS, slot * INTS + INTS, -1);
+		Arrays.fill(this.doubles, slot * DOUBLES, slot * DOUBLES + DOUBLES, Double.NaN);
+		if (kind == KIND_ACTIVITY) {
+			this.doubles[slot * DOUBLES + ACT_Z] = Double.NEGATIVE_INFINITY;
+		}
+		return slot;
+	}
+
+	private boolean isListed(final int slot) {
+		return (this.flags[slot] & LISTED) != 0;
+	}
+
+	/**
+	 * Finds or creates the slot for an element that is inserted into this plan.
+	 */
+	private int adopt(final PlanElement pe) {
+		if (pe instanceof CompactPlanElement) {
+			CompactPlanElement element = (CompactPlanElement) pe;
+			CompactPlan source = element.plan;
+			if (source == this && !isListed(element.slot)) {
+				return element.slot;
+			}
+			if (!source.isListed(element.slot)) {
+				int slot = copySlot(source, element.slot, true);
+				if (source.views != null) {
+					source.views[element.slot] = null;
+				}
+				element.plan = this;
+				element.slot = slot;
+				setView(slot, element);
+				return slot;
+			}
+			// the element is part of a plan, so it cannot be moved; the view is kept to preserve its identity
+		}
+		int slot = newSlot(KIND_OBJECT);
+		setObject(slot, OBJECT, pe);
+		return slot;
+	}
+
+	/**
+	 * Creates a packed copy of the element in a new slot.
+	 */
+	private int importElement(final PlanElement pe) {
+		if (pe instanceof CompactPlanElement) {
+			CompactPlanElement element = (CompactPlanElement) pe;
+			return copySlot(element.plan, element.slot, false);
+		}
+		if (pe instanceof Activity) {
+			Activity act = (Activity) pe;
+			int slot = newSlot(KIND_ACTIVITY);
+			this.strings[slot] = act.getType();
+			setId(slot, ACT_LINK, act.getLinkId());
+			setId(slot, ACT_FACILITY, act.getFacilityId());
+			setTime(slot, ACT_START_TIME, act.getStartTime());
+			setTime(slot, ACT_END_TIME, act.getEndTime());
+			setTime(slot, ACT_MAXIMUM_DURATION, act.getMaximumDuration());
+			setCoord(slot, act.getCoord());
+			copyAttributes(act.getAttributes(), slot);
+			return slot;
+		}
+		if (pe instanceof Leg) {
+			Leg leg = (Leg) pe;
+			int slot = newSlot(KIND_LEG);
+			this.strings[slot] = leg.getMode();
+			setTime(slot, LEG_DEPARTURE_TIME, leg.getDepartureTime());
+			setTime(slot, LEG_TRAVEL_TIME, leg.getTravelTime());
+			if (leg.getRoute() != null) {
+				packRoute(slot, leg.getRoute(), false);
+			}
+			copyAttributes(leg.getAttributes(), slot);
+			return slot;
+		}
+		int slot = newSlot(KIND_OBJECT);
+		setObject(slot, OBJECT, pe);
+		return slot;
+	}
+
+	private int copySlot(final CompactPlan source, final int sourceSlot, final boolean move) {
+		int kind = source.flags[sourceSlot] & KIND_MASK;
+		int slot = newSlot(kind);
+		this.flags[slot] = (byte) (source.flags[sourceSlot] & ~LISTED);
+		this.strings[slot] = source.strings[sourceSlot];
+		System.arraycopy(source.ints, sourceSlot * INTS, this.ints, slot * INTS, INTS);
+		System.arraycopy(source.doubles, sourceSlot * DOUBLES, this.doubles, slot * DOUBLES, DOUBLES);
+		Attributes sourceAttributes = (Attributes) source.getObject(sourceSlot, ATTRIBUTES);
+		if (move && sourceAttributes != null) {
+			setObject(slot, ATTRIBUTES, sourceAttributes);
+		} else if (sourceAttributes != null) {
+			copyAttributes(sourceAttributes, slot);
+		}
+		Object object = source.getObject(sourceSlot, OBJECT);
+		if (object instanceof Route) {
+			packRoute(slot, (Route) object, move);
+		} else if (object != null) {
+			// an element kept as object, or an immutable link sequence
+			setObject(slot, OBJECT, object);
+		}
+		return slot;
+	}
+
+	private void copyAttributes(final Attributes from, final int slot) {
+		if (!from.isEmpty()) {
+			AttributesUtils.copyTo(from, getAttributes(slot));
+		}
+	}
+
+	/**
+	 * Stores a network route in the columns of the leg, other routes as objects. Routes that are not packed are
+	 * cloned unless <code>keep</code> is set, as the route would otherwise be shared between two legs.
+	 */
+	private void packRoute(final int slot, final Route route, final boolean keep) {
+		if (route instanceof NetworkRoute && NETWORK_ROUTE_TYPE.equals(route.getRouteType())) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			setId(slot, ROUTE_START_LINK, networkRoute.getStartLinkId());
+			setId(slot, ROUTE_END_LINK, networkRoute.getEndLinkId());
+			setId(slot, ROUTE_VEHICLE, networkRoute.getVehicleId());
+			setDouble(slot, ROUTE_DISTANCE, networkRoute.getDistance());
+			setTime(slot, ROUTE_TRAVEL_TIME, networkRoute.getTravelTime());
+			setDouble(slot, ROUTE_TRAVEL_COST, networkRoute.getTravelCost());
+			// shares the sequence of compact and packed routes
+			setLinkIds(slot, networkRoute.getLinkIds());
+			this.flags[slot] |= PACKED_ROUTE;
+		} else {
+			this.flags[slot] &= ~PACKED_ROUTE;
+			setObject(slot, OBJECT, keep ? route : route.clone());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// column access for the views
+
+	int getInt(final int slot, final int column) {
+		return this.ints[slot * INTS + column];
+	}
+
+	void setInt(final int slot, final int column, final int value) {
+		this.ints[slot * INTS + column] = value;
+	}
+
+	double getDouble(final int slot, final int column) {
+		return this.doubles[slot * DOUBLES + column];
+	}
+
+	void setDouble(final int slot, final int column, final double value) {
+		this.doubles[slot * DOUBLES + column] = value;
+	}
+
+	OptionalTime getTime(final int slot, final int column) {
+		double seconds = this.doubles[slot * DOUBLES + column];
+		return Double.isNaN(seconds) ? OptionalTime.undefined() : OptionalTime.defined(seconds);
+	}
+
+	void setTime(final int slot, final int column, final OptionalTime time) {
+		this.doubles[slot * DOUBLES + column] = time.isDefined() ? time.seconds() : Double.NaN;
+	}
+
+	<T> Id<T> getId(final int slot, final int column, final Class<T> type) {
+		int index = this.ints[slot * INTS + column];
+		return index < 0 ? null : Id.get(index, type);
+	}
+
+	void setId(final int slot, final int column, final Id<?> id) {
+		this.ints[slot * INTS + column] = id == null ? -1 : id.index();
+	}
+
+	String getString(final int slot) {
+		return this.strings[slot];
+	}
+
+	void setString(final int slot, final String value) {
+		this.strings[slot] = value;
+	}
+
+	boolean hasFlag(final int slot, final int flag) {
+		return (this.flags[slot] & flag) != 0;
+	}
+
+	void setFlag(final int slot, final int flag, final boolean value) {
+		if (value) {
+			this.flags[slot] |= flag;
+		} else {
+			this.flags[slot] &= ~flag;
+		}
+	}
+
+	Coord getCoord(final int slot) {
+		if (!hasFlag(slot, HAS_COORD)) {
+			return null;
+		}
+		int offset = slot * DOUBLES;
+		double z = this.doubles[offset + ACT_Z];
+		if (z == Double.NEGATIVE_INFINITY) {
+			return new Coord(this.doubles[offset + ACT_X], this.doubles[offset + ACT_Y]);
+		}
+		return new Coord(this.doubles[offset + ACT_X], this.doubles[offset + ACT_Y], z);
+	}
+
+	void setCoord(final int slot, final Coord coord) {
+		int offset = slot * DOUBLES;
+		setFlag(slot, HAS_COORD, coord != null);
+		this.doubles[offset + ACT_X] = coord == null ? Double.NaN : coord.getX();
+		this.doubles[offset + ACT_Y] = coord == null ? Double.NaN : coord.getY();
+		this.doubles[offset + ACT_Z] = coord != null && coord.hasZ() ? coord.getZ() : Double.NEGATIVE_INFINITY;
+	}
+
+	Attributes getAttributes(final int slot) {
+		Attributes attributes = (Attributes) getObject(slot, ATTRIBUTES);
+		if (attributes == null) {
+			attributes = new Attributes();
+			setObject(slot, ATTRIBUTES, attributes);
+		}
+		return attributes;
+	}
+
+	/**
+	 * @return the attributes of the element, or <code>null</code> if none were created yet.
+	 */
+	Attributes getExistingAttributes(final int slot) {
+		return (Attributes) getObject(slot, ATTRIBUTES);
+	}
+
+	Route getRouteObject(final int slot) {
+		return (Route) getObject(slot, OBJECT);
+	}
+
+	void setRouteObject(final int slot, final Route route) {
+		setFlag(slot, PACKED_ROUTE, false);
+		setObject(slot, OBJECT, route);
+	}
+
+	private Object getObject(final int slot, final int column) {
+		return this.objects == null ? null : this.objects[slot * OBJECTS + column];
+	}
+
+	private void setObject(final int slot, final int column, final Object value) {
+		if (this.objects == null) {
+			if (value == null) {
+				return;
+			}
+			this.objects = new Object[this.flags.length * OBJECTS];
+		}
+		this.objects[slot * OBJECTS + column] = value;
+	}
+
+	// ------------------------------------------------------------------------
+	// packed link sequences
+
+	PackedLinkSequence getLinkIds(final int slot) {
+		Object links = getObject(slot, OBJECT);
+		return links == null ? PackedLinkSequence.EMPTY : (PackedLinkSequence) links;
+	}
+
+	/**
+	 * Stores the link sequence of a packed route.
+	 */
+	void setLinkIds(final int slot, final List<Id<Link>> linkIds) {
+		PackedLinkSequence links = PackedLinkSequence.of(linkIds);
+		setObject(slot, OBJECT, links == PackedLinkSequence.EMPTY ? null : links);
+	}
+
+	// ------------------------------------------------------------------------
+	// Plan
+
+	private PlanElement view(final int slot) {
+		int kind = this.flags[slot] & KIND_MASK;
+		if (kind == KIND_OBJECT) {
+			return (PlanElement) getObject(slot, OBJECT);
+		}
+		CompactPlanElement view = this.views == null ? null : this.views[slot];
+		if (view == null) {
+			view = kind == KIND_ACTIVITY ? new CompactActivity(this, slot) : new CompactLeg(this, slot);
+			setView(slot, view);
+		}
+		return view;
+	}
+
+	private void setView(final int slot, final CompactPlanElement view) {
+		if (this.views == null) {
+			this.views = new CompactPlanElement[this.flags.length];
+		}
+		this.views[slot] = view;
+	}
+
+	@Override
+	public final List<PlanElement> getPlanElements() {
+		return this.elements;
+	}
+
+	@Override
+	public final void addLeg(final Leg leg) {
+		this.elements.add(leg);
+	}
+
+	@Override
+	public final void addActivity(final Activity act) {
+		this.elements.add(act);
+	}
+
+	@Override
+	public final Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public final Double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.score = score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public final Attributes getAttributes() {
+		if (this.attributes == null) {
+			this.attributes = new Attributes();
+		}
+		return this.attributes;
+	}
+
+	@Override
+	public final Map<String, Object> getCustomAttributes() {
+		if (this.customAttributes == null) {
+			this.customAttributes = new HashMap<>();
+		}
+		return this.customAttributes;
+	}
+
+	@Override
+	public final String toString() {
+		String scoreString = "undefined";
+		if (this.getScore() != null) {
+			scoreString = this.getScore().toString();
+		}
+		String personIdString = "undefined" ;
+		if ( this.getPerson() != null ) {
+			personIdString = this.getPerson().getId().toString() ;
+		}
+
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + getPlanElements().size() + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" ;
+	}
+
+	private final class Elements extends AbstractList<PlanElement> implements RandomAccess {
+
+		@Override
+		public PlanElement get(final int index) {
+			checkIndex(index, size);
+			return view(order[index]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public PlanElement set(final int index, final PlanElement element) {
+			checkIndex(index, size);
+			int previous = order[index];
+			if (element instanceof CompactPlanElement && ((CompactPlanElement) element).plan == CompactPlan.this
+					&& ((CompactPlanElement) element).slot == previous) {
+				return element;
+			}
+			int slot = adopt(element);
+			flags[previous] &= ~LISTED;
+			flags[slot] |= LISTED;
+			order[index] = slot;
+			return view(previous);
+		}
+
+		@Override
+		public void add(final int index, final PlanElement element) {
+			checkIndex(index, size + 1);
+			int slot = adopt(element);
+			if (size == order.length) {
+				order = Arrays.copyOf(order, size + (size >> 1) + 1);
+			}
+			System.arraycopy(order, index, order, index + 1, size - index);
+			order[index] = slot;
+			flags[slot] |= LISTED;
+			size++;
+			modCount++;
+		}
+
+		@Override
+		public PlanElement remove(final int index) {
+			checkIndex(index, size);
+			int slot = order[index];
+			System.arraycopy(order, index + 1, order, index, size - index - 1);
+			size--;
+			flags[slot] &= ~LISTED;
+			modCount++;
+			return view(slot);
+		}
+
+		@Override
+		protected void removeRange(final int fromIndex, final int toIndex) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				flags[order[i]] &= ~LISTED;
+			}
+			System.arraycopy(order, toIndex, order, fromIndex, size - toIndex);
+			size -= toIndex - fromIndex;
+			modCount++;
+		}
+
+		private void checkIndex(final int index, final int bound) {
+			if (index < 0 || index >= bound) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+	}
+
+}
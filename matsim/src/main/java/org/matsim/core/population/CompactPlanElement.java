@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanElement.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * Flyweight view of a plan element stored in a {@link CompactPlan}. The view is bound to a slot of a plan; it is
+ * re-bound when a detached element is moved into a plan. Two views are equal if they are bound to the same slot.
+ */
+/* deliberately package */ abstract class CompactPlanElement implements PlanElement {
+
+	CompactPlan plan;
+	int slot;
+
+	CompactPlanElement(final CompactPlan plan, final int slot) {
+		this.plan = plan;
+		this.slot = slot;
+	}
+
+	@Override
+	public final Attributes getAttributes() {
+		return this.plan.getAttributes(this.slot);
+	}
+
+	@Override
+	public final boolean equals(final Object obj) {
+		if (!(obj instanceof CompactPlanElement)) {
+			return false;
+		}
+		CompactPlanElement other = (CompactPlanElement) obj;
+		return other.plan == this.plan && other.slot == this.slot;
+	}
+
+	@Override
+	public final int hashCode() {
+		return 31 * System.identityHashCode(this.plan) + this.slot;
+	}
+
+}
@@ -0,0 +1,61 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulation.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.population.routes.RouteFactories;
+
+/**
+ * Population that stores the plans of its persons in {@link CompactPlan}s, i.e. in primitive arrays instead of one
+ * object per activity, leg and route. Selected with {@link PlansConfigGroup.PopulationStorage#compact}.
+ *
+ * <p>Persons of other implementations are copied when they are added, so the population contains only
+ * {@link CompactPerson}s; the person object passed to {@link #addPerson(Person)} must not be modified afterwards.
+ * This is how the population readers hand over their persons. Plan elements and routes of added persons that
+ * are still kept as objects are packed at the same time.</p>
+ *
+ * <p>The plan elements are flyweight views: they implement the usual interfaces, but two calls to
+ * <code>plan.getPlanElements().get(i)</code> return equal, not identical objects. Code comparing plan elements
+ * by identity does not work with this population.</p>
+ */
+/* deliberately package */ final class CompactPopulation extends PopulationImpl {
+
+	CompactPopulation(final RouteFactories routeFactory) {
+		super(new CompactPopulationFactory(routeFactory));
+	}
+
+	@Override
+	public void addPerson(final Person p) {
+		if (this.getPersons().containsKey(p.getId())) {
+			throw new IllegalArgumentException("Person with id = " + p.getId() + " already exists.");
+		}
+		CompactPerson person;
+		if (p instanceof CompactPerson) {
+			person = (CompactPerson) p;
+			person.packPlans();
+		} else {
+			person = CompactPerson.copyOf(p);
+		}
+		super.addPerson(person);
+	}
+
+}
@@ -61,6 +61,7 @@ import org.matsim.core.population.io.StreamingPopulationReader;
 import org.matsim.core.population.routes.CompressedNetworkRouteFactory;
 import org.matsim.core.population.routes.LinkNetworkRouteFactory;
 import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.PackedNetworkRouteFactory;
 import org.matsim.core.population.routes.RouteFactories;
 import org.matsim.core.population.routes.RouteFactory;
 import org.matsim.core.population.routes.RouteUtils;
@@ -133,10 +134,15 @@ public final class PopulationUtils {
 			factory = new LinkNetworkRouteFactory();
 		} else if (PlansConfigGroup.NetworkRouteType.CompressedNetworkRoute.equals(networkRouteType) && network != null) {
 			factory = new CompressedNetworkRouteFactory(network);
+		} else if (PlansConfigGroup.NetworkRouteType.PackedNetworkRoute.equals(networkRouteType)) {
+			factory = new PackedNetworkRouteFactory(plansConfigGroup.isInternNetworkRoutes());
 		} else {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
 		routeFactory.setRouteFactory(NetworkRoute.class, factory);
+		if (plansConfigGroup.getPopulationStorage() == PlansConfigGroup.PopulationStorage.compact) {
+			return new CompactPopulation(routeFactory);
+		}
 		return new PopulationImpl(new PopulationFactoryImpl(routeFactory));
 	}
 
@@ -1078,6 +1084,8 @@ public final class PopulationUtils {
 	public static void changePersonId( Person person, Id<Person> id ) {
 		if ( person instanceof PersonImpl ) {
 			((PersonImpl) person).changeId(id);
+		} else if ( person instanceof CompactPerson ) {
+			((CompactPerson) person).changeId(id);
 		} else {
 			throw new RuntimeException("wrong implementation of interface Person") ;
 		}
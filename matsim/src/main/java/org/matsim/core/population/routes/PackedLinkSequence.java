@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedLinkSequence.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Immutable list of link ids, stored as the {@link Id#index()} of each link. Sequences with the same links are
+ * equal, so they can be shared between routes by an interner.
+ *
+ * @see PackedNetworkRouteImpl
+ * @see org.matsim.core.population.CompactPlan
+ */
+public final class PackedLinkSequence extends AbstractList<Id<Link>> implements RandomAccess {
+
+	public static final PackedLinkSequence EMPTY = new PackedLinkSequence(new int[0]);
+
+	private final int[] links;
+	private final int hash;
+
+	private PackedLinkSequence(final int[] links) {
+		this.links = links;
+		this.hash = hashCode(links);
+	}
+
+	/**
+	 * The same as {@link List#hashCode()} of the link ids, since a sequence is equal to any list of the same ids.
+	 */
+	private static int hashCode(final int[] links) {
+		int hash = 1;
+		for (int link : links) {
+			hash = 31 * hash + Id.get(link, Link.class).hashCode();
+		}
+		return hash;
+	}
+
+	public static PackedLinkSequence of(final List<Id<Link>> linkIds) {
+		if (linkIds == null || linkIds.isEmpty()) {
+			return EMPTY;
+		}
+		if (linkIds instanceof PackedLinkSequence) {
+			return (PackedLinkSequence) linkIds;
+		}
+		int[] links = new int[linkIds.size()];
+		int i = 0;
+		for (Id<Link> linkId : linkIds) {
+			links[i++] = linkId.index();
+		}
+		return new PackedLinkSequence(links);
+	}
+
+	@Override
+	public Id<Link> get(final int index) {
+		return Id.get(this.links[index], Link.class);
+	}
+
+	@Override
+	public int size() {
+		return this.links.length;
+	}
+
+	public int indexAt(final int index) {
+		return this.links[index];
+	}
+
+	@Override
+	public PackedLinkSequence subList(final int fromIndex, final int toIndex) {
+		Objects.checkFromToIndex(fromIndex, toIndex, this.links.length);
+		if (fromIndex == 0 && toIndex == this.links.length) {
+			return this;
+		}
+		if (fromIndex == toIndex) {
+			return EMPTY;
+		}
+		return new PackedLinkSequence(Arrays.copyOfRange(this.links, fromIndex, toIndex));
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof PackedLinkSequence) {
+			PackedLinkSequence other = (PackedLinkSequence) o;
+			return other.hash == this.hash && Arrays.equals(other.links, this.links);
+		}
+		return super.equals(o);
+	}
+
+}
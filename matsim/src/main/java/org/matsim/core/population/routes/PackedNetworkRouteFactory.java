@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedNetworkRouteFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Creates network routes that store their links as packed link indices instead of {@link Id} references, see
+ * {@link PackedNetworkRouteImpl}. The routes are written exactly like other network routes.
+ *
+ * <p>If interning is enabled, routes with identical link sequences created by this factory share one copy of the
+ * sequence. The interner only keeps weak references, so sequences no longer used by any route, e.g. after
+ * re-routing, are garbage collected.</p>
+ */
+public final class PackedNetworkRouteFactory implements RouteFactory {
+
+	private final Interner<PackedLinkSequence> interner;
+
+	public PackedNetworkRouteFactory() {
+		this(false);
+	}
+
+	public PackedNetworkRouteFactory(final boolean internLinkSequences) {
+		this.interner = internLinkSequences ? Interners.newWeakInterner() : null;
+	}
+
+	@Override
+	public Route createRoute(final Id<Link> startLinkId, final Id<Link> endLinkId) {
+		return new PackedNetworkRouteImpl(startLinkId, endLinkId, this.interner);
+	}
+
+	@Override
+	public String getCreatedRouteType() {
+		return LinkNetworkRouteImpl.ROUTE_TYPE;
+	}
+
+}
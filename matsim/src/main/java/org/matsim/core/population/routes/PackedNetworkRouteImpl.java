@@ -0,0 +1,189 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedNetworkRouteImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+import com.google.common.collect.Interner;
+
+/**
+ * Implementation of {@link NetworkRoute} which stores the links of the route as a packed array of link indices
+ * (see {@link Id#index()}) instead of a list of {@link Id} references. The link sequence is immutable, so clones
+ * and sub-routes share it, and with an interner routes with identical links share a single sequence.
+ *
+ * @see PackedNetworkRouteFactory
+ */
+final class PackedNetworkRouteImpl extends AbstractRoute implements NetworkRoute {
+
+	private final Interner<PackedLinkSequence> interner;
+	private PackedLinkSequence route = PackedLinkSequence.EMPTY;
+	private double travelCost = Double.NaN;
+	private Id<Vehicle> vehicleId = null;
+
+	/**
+	 * @param interner used to share identical link sequences between routes, may be <code>null</code>
+	 */
+	PackedNetworkRouteImpl(final Id<Link> startLinkId, final Id<Link> endLinkId, final Interner<PackedLinkSequence> interner) {
+		super(startLinkId, endLinkId);
+		this.interner = interner;
+	}
+
+	@Override
+	public PackedNetworkRouteImpl clone() {
+		// the link sequence is immutable and can be shared
+		return (PackedNetworkRouteImpl) super.clone();
+	}
+
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		return this.route;
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		// same logic as in LinkNetworkRouteImpl, but comparing link indices
+		final int fromIndexOfLink = fromLinkId.index();
+		final int toIndexOfLink = toLinkId.index();
+		final int n = this.route.size();
+		int fromIndex = -1;
+		int toIndex = -1;
+
+		if (fromLinkId.equals(this.getStartLinkId())) {
+			fromIndex = 0;
+		} else {
+			for (int i = 0; (i < n) && (fromIndex < 0); i++) {
+				if (this.route.indexAt(i) == fromIndexOfLink) {
+					fromIndex = i + 1;
+				}
+			}
+			if (fromIndex < 0 && fromLinkId.equals(this.getEndLinkId())) {
+				fromIndex = n;
+			}
+			if (fromIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because fromLinkId is not part of the route.");
+			}
+		}
+
+		if (fromLinkId.equals(toLinkId)) {
+			toIndex = fromIndex - 1;
+		} else {
+			for (int i = fromIndex; (i < n) && (toIndex < 0); i++) {
+				if (this.route.indexAt(i) == fromIndexOfLink) {
+					fromIndex = i + 1; // in case of a loop, cut it short
+				}
+				if (this.route.indexAt(i) == toIndexOfLink) {
+					toIndex = i;
+				}
+			}
+			if (toIndex < 0 && toLinkId.equals(this.getEndLinkId())) {
+				toIndex = n;
+			}
+			if (toIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because toLinkId is not part of the route.");
+			}
+		}
+		PackedNetworkRouteImpl ret = new PackedNetworkRouteImpl(fromLinkId, toLinkId, this.interner);
+		if (toIndex > fromIndex) {
+			ret.setLinkIds(fromLinkId, this.route.subList(fromIndex, toIndex), toLinkId);
+		}
+		return ret;
+	}
+
+	@Override
+	public double getTravelCost() {
+		return this.travelCost;
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		this.travelCost = travelCost;
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> srcRoute, final Id<Link> endLinkId) {
+		setStartLinkId(startLinkId);
+		setEndLinkId(endLinkId);
+		PackedLinkSequence sequence = PackedLinkSequence.of(srcRoute);
+		if (this.interner != null && sequence != PackedLinkSequence.EMPTY) {
+			sequence = this.interner.intern(sequence);
+		}
+		this.route = sequence;
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return this.vehicleId;
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		this.vehicleId = vehicleId;
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder desc = new StringBuilder(100);
+		desc.append(this.getStartLinkId().toString());
+		for (Id<Link> linkId : this.route) {
+			desc.append(" ");
+			desc.append(linkId.toString());
+		}
+		// If the start links equals the end link additionally check if its is a round trip.
+		if (!this.getEndLinkId().equals(this.getStartLinkId()) || this.route.size() > 0) {
+			desc.append(" ");
+			desc.append(this.getEndLinkId().toString());
+		}
+		return desc.toString();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		List<Id<Link>> linkIds = NetworkUtils.getLinkIds(routeDescription);
+		Id<Link> startLinkId = getStartLinkId();
+		Id<Link> endLinkId = getEndLinkId();
+		if (linkIds.size() > 0) {
+			startLinkId = linkIds.remove(0);
+		}
+		if (linkIds.size() > 0) {
+			endLinkId = linkIds.remove(linkIds.size() - 1);
+		}
+		this.setLinkIds(startLinkId, linkIds, endLinkId);
+	}
+
+	@Override
+	public String getRouteType() {
+		return LinkNetworkRouteImpl.ROUTE_TYPE;
+	}
+
+	@Override
+	public String toString() {
+		String str = super.toString();
+		str += " linkIds=" + this.getLinkIds() ;
+		str += " travelCost=" + this.getTravelCost() ;
+		return str ;
+	}
+
+}
@@ -21,6 +21,7 @@ package org.matsim.core.replanning;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.BasicPlan;
 import org.matsim.api.core.v01.population.HasPlansAndId;
+import org.matsim.core.replanning.modules.AbstractMultithreadedModule;
 import org.matsim.core.replanning.modules.GenericPlanStrategyModule;
 import org.matsim.core.replanning.selectors.PlanSelector;
 import org.matsim.core.replanning.selectors.RandomUnscoredPlanSelector;
@@ -126,6 +127,20 @@ public class GenericPlanStrategyImpl<T extends BasicPlan, I> implements GenericP
 		this.counter = 0;
 	}
 
+	/**
+	 * Stops the threads that the multi-threaded modules keep between iterations.
+	 */
+	public void shutdown() {
+		if (this.firstModule instanceof AbstractMultithreadedModule) {
+			((AbstractMultithreadedModule) this.firstModule).shutdown();
+		}
+		for (GenericPlanStrategyModule<T> module : this.modules) {
+			if (module instanceof AbstractMultithreadedModule) {
+				((AbstractMultithreadedModule) module).shutdown();
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder name = new StringBuilder(20);
@@ -225,6 +225,17 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 
 	}
 
+	/**
+	 * Stops the threads that the strategies keep between iterations, see {@link GenericPlanStrategyImpl#shutdown()}.
+	 */
+	public final void shutdown() {
+		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
+			if (strategy instanceof GenericPlanStrategyImpl) {
+				((GenericPlanStrategyImpl<PL, AG>) strategy).shutdown();
+			}
+		}
+	}
+
 	private Collection<GenericPlanStrategy<PL, AG>> distinctStrategies() {
 		// Leaving out duplicate strategies in different subpopulations
 		Collection<GenericPlanStrategy<PL, AG>> strategies = new LinkedHashSet<>();
@@ -199,6 +199,13 @@ public class StrategyManager implements MatsimManager {
 		// left empty for inheritance
 	}
 
+	/**
+	 * Stops the threads that the strategies keep between iterations.  Called at the end of the run.
+	 */
+	public final void shutdown() {
+		delegate.shutdown();
+	}
+
 
 	/**
 	 * chooses a (weight-influenced) random strategy
@@ -32,6 +32,8 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.groups.StrategyConfigGroup;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.replanning.modules.ExternalModule;
 import org.matsim.core.replanning.selectors.RandomPlanSelector;
 import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule;
@@ -50,6 +52,7 @@ public class StrategyManagerModule extends AbstractModule {
 		
 		bind(StrategyManager.class).in(Singleton.class);
 		bind(ReplanningContext.class).to(ReplanningContextImpl.class).asEagerSingleton();
+		addControlerListenerBinding().to(StrategyManagerShutdownListener.class);
 		
 		MapBinder<StrategyConfigGroup.StrategySettings, PlanStrategy> planStrategyMapBinder = MapBinder.newMapBinder(binder(), StrategyConfigGroup.StrategySettings.class, PlanStrategy.class);
 		// (this will bind a Map that has StrategySettings as key, and PlanStrategy as value.  Not sure why StrategySettings as key, and not just the name, but possibly this is mean to allow adding
@@ -90,6 +93,24 @@ public class StrategyManagerModule extends AbstractModule {
 		}
 	}
 	
+	/**
+	 * Stops the threads of the strategy modules at the end of the run.
+	 */
+	static class StrategyManagerShutdownListener implements ShutdownListener {
+
+		private final StrategyManager strategyManager;
+
+		@Inject
+		StrategyManagerShutdownListener(StrategyManager strategyManager) {
+			this.strategyManager = strategyManager;
+		}
+
+		@Override
+		public void notifyShutdown(ShutdownEvent event) {
+			this.strategyManager.shutdown();
+		}
+	}
+
 	/**
 	 * If plan strategy comes from some external executable.  E.g. some external router that is not in Java.
 	 */
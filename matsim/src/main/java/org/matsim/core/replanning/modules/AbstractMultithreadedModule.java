@@ -29,8 +29,16 @@ import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -54,11 +62,20 @@ import java.util.concurrent.atomic.AtomicReference;
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
  * </ul>
+ * <p></p>
+ * Alternatively, with {@link GlobalConfigGroup#isUsingWorkStealingInReplanning()}, the plans are handled in small
+ * chunks in a {@link ForkJoinPool}, so that a thread which is done with its plans takes over plans of the others,
+ * and one slow plan does not stall a whole share of the plans.  The pool and the plan algorithms are kept and used again
+ * in later iterations, so getPlanAlgoInstance() is only called until there are enough instances; an instance is used by
+ * one thread at a time.  They are released with {@link #shutdown()}, which the {@link org.matsim.core.replanning.StrategyManager}
+ * calls at the end of the run.  Since it is not fixed any more which instance handles which plan, runs with random plan
+ * algorithms are not reproducible in this mode.
  *
  * @author mrieser
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
 	private final int numOfThreads;
+	private final boolean usingWorkStealing;
 
 	private PlanAlgoThread[] algothreads = null;
 	private Thread[] threads = null;
@@ -72,6 +89,15 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	private ReplanningContext replanningContext;
 
+	private static final int CHUNK_SIZE = 16;
+
+	/* for the work stealing mode: */
+	private List<Plan> plans = null;
+	private ForkJoinPool pool = null;
+	private final Queue<PlanAlgorithm> idleAlgos = new ConcurrentLinkedQueue<>();
+	private final Map<Thread, long[]> threadStatistics = new ConcurrentHashMap<>();
+	private Counter counter = null;
+
 	static final private Logger log = Logger.getLogger(AbstractMultithreadedModule.class);
 
 	/**
@@ -83,11 +109,16 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.isUsingWorkStealingInReplanning());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, false);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final boolean usingWorkStealing) {
 		this.numOfThreads = numOfThreads;
+		this.usingWorkStealing = usingWorkStealing;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -105,6 +136,8 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		if (this.numOfThreads == 0) {
 			// it seems, no threads are desired :(
 			this.directAlgo = getPlanAlgoInstance();
+		} else if (this.usingWorkStealing) {
+			initWorkStealing();
 		} else {
 			initThreads();
 		}
@@ -118,7 +151,11 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	@Override
 	public final void handlePlan(final Plan plan) {
 		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+			if (this.plans != null) {
+				this.plans.add(plan);
+			} else {
+				this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+			}
 			this.count++;
 		} else {
 			this.directAlgo.run(plan);
@@ -136,7 +173,9 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	public final void finishReplanning() {
 		this.beforeFinishReplanningHook();
 		
-		if (this.directAlgo == null) {
+		if (this.plans != null) {
+			runWorkStealing();
+		} else if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
 			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
 
@@ -162,6 +201,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		// reset
 		this.algothreads = null;
 		this.threads = null;
+		this.plans = null;
 		this.replanningContext = null;
 		this.count = 0;
 		
@@ -193,6 +233,108 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		}
 	}
 
+	private void initWorkStealing() {
+		if (this.plans != null) {
+			throw new RuntimeException("replanning is already prepared");
+		}
+		this.hadException.set(null);
+		this.plans = new ArrayList<>();
+		// (only in the first iteration; afterwards, the instances of the last iteration are there)
+		while (this.idleAlgos.size() < this.numOfThreads) {
+			this.idleAlgos.add(getPlanAlgoInstance());
+		}
+		if (this.name == null) {
+			this.name = this.idleAlgos.peek().getClass().getSimpleName();
+		}
+		this.counter = new Counter("[" + this.name + "] handled plan # ");
+	}
+
+	private void runWorkStealing() {
+		log.info("[" + this.name + "] handling " + this.count + " plans in chunks of " + CHUNK_SIZE + " with " + this.numOfThreads + " threads");
+		if (this.pool == null) {
+			this.pool = new ForkJoinPool(this.numOfThreads);
+		}
+		this.threadStatistics.clear();
+		long start = System.nanoTime();
+		this.pool.invoke(new PlansChunk(0, this.plans.size()));
+		long duration = System.nanoTime() - start;
+
+		StringBuilder utilisation = new StringBuilder();
+		for (Map.Entry<Thread, long[]> e : this.threadStatistics.entrySet()) {
+			utilisation.append(String.format(Locale.US, " %s: %d plans, %.0f%%;", e.getKey().getName(), e.getValue()[1],
+					100. * e.getValue()[0] / Math.max(duration, 1)));
+		}
+		log.info("[" + this.name + "] all plans handled in " + (duration / 1000000) + " ms. Utilisation of the threads:" + utilisation);
+		this.threadStatistics.clear();
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Some plans could not be handled.", throwable);
+		}
+	}
+
+	/**
+	 * Splits the plans in halves until the chunks are small enough.  The chunks that are not yet handled stay in the
+	 * queues of the pool, where idle threads can take them from.
+	 */
+	private final class PlansChunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		PlansChunk(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > CHUNK_SIZE) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new PlansChunk(this.from, middle), new PlansChunk(middle, this.to));
+				return;
+			}
+			if (hadException.get() != null) {
+				return;
+			}
+			// an instance is only used by one thread at a time; the queue makes the state of the last user visible
+			PlanAlgorithm algo = idleAlgos.poll();
+			if (algo == null) {
+				// (can happen if the pool adds a spare thread while a worker waits for a stolen chunk)
+				synchronized (AbstractMultithreadedModule.this) {
+					algo = getPlanAlgoInstance();
+				}
+			}
+			long start = System.nanoTime();
+			try {
+				for (int i = this.from; i < this.to; i++) {
+					algo.run(plans.get(i));
+					counter.incCounter();
+				}
+			} catch (Throwable e) {
+				log.error("Thread " + Thread.currentThread().getName() + " could not handle a plan. Will stop after the other threads finished.", e);
+				hadException.compareAndSet(null, e);
+			} finally {
+				idleAlgos.add(algo);
+				long[] statistics = threadStatistics.computeIfAbsent(Thread.currentThread(), t -> new long[2]);
+				statistics[0] += System.nanoTime() - start;
+				statistics[1] += this.to - this.from;
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads of the work-stealing mode and releases the plan algorithms.  Both are created again if the module
+	 * is used afterwards.
+	 */
+	public final void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+		this.idleAlgos.clear();
+	}
+
 	/* package (for a test) */ final int getNumOfThreads() {
 		return numOfThreads;
 	}
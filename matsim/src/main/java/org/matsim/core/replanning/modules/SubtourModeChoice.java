@@ -66,11 +66,11 @@ public class SubtourModeChoice extends AbstractMultithreadedModule {
 	public SubtourModeChoice(Provider<TripRouter> tripRouterProvider, GlobalConfigGroup globalConfigGroup,
 							 SubtourModeChoiceConfigGroup subtourModeChoiceConfigGroup) {
 		this(globalConfigGroup.getNumberOfThreads(),
+				globalConfigGroup.isUsingWorkStealingInReplanning(),
 				subtourModeChoiceConfigGroup.getModes(),
 				subtourModeChoiceConfigGroup.getChainBasedModes(),
 				subtourModeChoiceConfigGroup.considerCarAvailability(),
-				subtourModeChoiceConfigGroup.getProbaForRandomSingleTripMode(),
-				tripRouterProvider
+				subtourModeChoiceConfigGroup.getProbaForRandomSingleTripMode()
 		);
 		this.setBehavior( subtourModeChoiceConfigGroup.getBehavior() );
 	}
@@ -96,7 +96,17 @@ public class SubtourModeChoice extends AbstractMultithreadedModule {
 			final String[] chainBasedModes,
 			final boolean considerCarAvailability,
 			double probaForChangeSingleTripMode) {
-		super(numberOfThreads);
+		this(numberOfThreads, false, modes, chainBasedModes, considerCarAvailability, probaForChangeSingleTripMode);
+	}
+
+	private SubtourModeChoice(
+			final int numberOfThreads,
+			final boolean usingWorkStealing,
+			final String[] modes,
+			final String[] chainBasedModes,
+			final boolean considerCarAvailability,
+			double probaForChangeSingleTripMode) {
+		super(numberOfThreads, usingWorkStealing);
 		this.modes = modes.clone();
 		this.chainBasedModes = chainBasedModes.clone();
 		this.permissibleModesCalculator =
@@ -20,6 +20,7 @@
 
 package org.matsim.core.router;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,14 +44,23 @@ public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 	private final Map<Network, PreProcessLandmarks> preProcessData = new HashMap<>();
 
 	private final int nThreads;
+	private final File cacheDirectory;
 	
 	@Inject
 	public AStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup) {
-		this(globalConfigGroup.getNumberOfThreads());
+		this(globalConfigGroup.getNumberOfThreads(), FastAStarLandmarksFactory.toFile(globalConfigGroup.getLandmarksCacheDirectory()));
 	}
 
 	public AStarLandmarksFactory(int numberOfThreads) {
+		this(numberOfThreads, null);
+	}
+
+	/**
+	 * @param cacheDirectory where the landmark travel times are cached between runs, may be <code>null</code>
+	 */
+	public AStarLandmarksFactory(int numberOfThreads, File cacheDirectory) {
 		this.nThreads = numberOfThreads;
+		this.cacheDirectory = cacheDirectory;
 	}
 
 	@Override
@@ -59,6 +69,7 @@ public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 		if (preProcessLandmarks == null) {
 			preProcessLandmarks = new PreProcessLandmarks(travelCosts);
 			preProcessLandmarks.setNumberOfThreads(nThreads);
+			preProcessLandmarks.setCacheDirectory(cacheDirectory);
 			preProcessLandmarks.run(network);
 			this.preProcessData.put(network, preProcessLandmarks);
 		}
@@ -66,4 +77,4 @@ public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 		final double overdoFactor = 1.0;
 		return new AStarLandmarks(network, preProcessLandmarks, travelCosts, travelTimes, overdoFactor);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConcurrentRoutingModule.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router;
+
+/**
+ * A {@link RoutingModule} that says whether it may be called by several threads at the same time.  The
+ * {@link TripRouter} only calls the other routing modules, and the modules that are not thread-safe, one thread at a
+ * time.
+ * <p></p>
+ * Whether a module is thread-safe often depends on the routers it was created with, e.g. a network routing module is
+ * thread-safe with a {@link org.matsim.core.router.util.PooledLeastCostPathCalculator}, but not with a plain Dijkstra.
+ */
+public interface ConcurrentRoutingModule extends RoutingModule {
+
+	/**
+	 * @return <code>true</code> if {@link #calcRoute} may be called by several threads at the same time
+	 */
+	boolean isThreadSafe();
+
+	/**
+	 * @return <code>true</code> if the module declares itself thread-safe
+	 */
+	static boolean isThreadSafe(final RoutingModule module) {
+		return module instanceof ConcurrentRoutingModule && ((ConcurrentRoutingModule) module).isThreadSafe();
+	}
+
+}
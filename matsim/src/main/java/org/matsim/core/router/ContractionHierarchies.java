@@ -0,0 +1,360 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Least cost path calculator on a customizable contraction hierarchy. A query runs a bidirectional Dijkstra on the
+ * upward edges of the hierarchy, using the weights of the time bin of the departure time, and unpacks the shortcuts
+ * of the best path into links.
+ *
+ * <p>The path is optimal with respect to the travel disutility at the start of that time bin, evaluated without
+ * person and vehicle. Travel time and cost of the returned path are then computed link by link with the actual
+ * travel time and disutility, like in {@link Dijkstra}. Person-dependent travel disutilities, e.g. with routing
+ * randomness, are therefore not supported.</p>
+ *
+ * <p>Instances are not thread-safe; create one calculator per thread with {@link ContractionHierarchiesFactory}.</p>
+ *
+ * @see ContractionHierarchy
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchy hierarchy;
+	private final ContractionHierarchy.Metric metric;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+
+	private final Search forward;
+	private final Search backward;
+	private final int[] unpackStack;
+
+	ContractionHierarchies(final ContractionHierarchy hierarchy, final ContractionHierarchy.Metric metric,
+			final TravelDisutility travelDisutility, final TravelTime travelTime) {
+		this.hierarchy = hierarchy;
+		this.metric = metric;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		int n = hierarchy.nodes.length;
+		this.forward = new Search(n);
+		this.backward = new Search(n);
+		this.unpackStack = new int[2 * Math.max(1, n)];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int source = this.hierarchy.getRank(fromNode);
+		int target = this.hierarchy.getRank(toNode);
+		if (source < 0 || target < 0) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "
+					+ getClass().getSimpleName() + ": Validity check for the from node " + fromNode.getId() + ": " + (source >= 0)
+					+ "; for the to node " + toNode.getId() + ": " + (target >= 0));
+		}
+		if (source == target) {
+			return new Path(Collections.singletonList(fromNode), Collections.emptyList(), 0, 0);
+		}
+
+		int bin = this.metric.getTimeBin(starttime);
+		float[] up = this.metric.up[bin];
+		float[] down = this.metric.down[bin];
+		long[] prunedUp = this.metric.prunedUp[bin];
+		long[] prunedDown = this.metric.prunedDown[bin];
+
+		this.forward.reset();
+		this.backward.reset();
+		this.forward.reach(source, 0, -1, -1);
+		this.backward.reach(target, 0, -1, -1);
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		boolean forwardTurn = true;
+		while (true) {
+			boolean forwardDone = this.forward.isEmpty() || this.forward.peekKey() >= best;
+			boolean backwardDone = this.backward.isEmpty() || this.backward.peekKey() >= best;
+			if (forwardDone && backwardDone) {
+				break;
+			}
+			Search search;
+			Search other;
+			float[] weights;
+			long[] pruned;
+			if ((forwardTurn && !forwardDone) || backwardDone) {
+				search = this.forward;
+				other = this.backward;
+				weights = up;
+				pruned = prunedUp;
+			} else {
+				search = this.backward;
+				other = this.forward;
+				weights = down;
+				pruned = prunedDown;
+			}
+			forwardTurn = !forwardTurn;
+
+			int node = search.poll();
+			double cost = search.cost[node];
+			if (other.isReached(node) && cost + other.cost[node] < best) {
+				best = cost + other.cost[node];
+				meeting = node;
+			}
+			for (int e = this.hierarchy.upFirst[node], last = this.hierarchy.upFirst[node + 1]; e < last; e++) {
+				float weight = weights[e];
+				if (weight == Float.POSITIVE_INFINITY || (pruned[e >>> 6] & (1L << e)) != 0) {
+					continue;
+				}
+				int head = this.hierarchy.upHead[e];
+				double newCost = cost + weight;
+				if (!search.isReached(head) || newCost < search.cost[head]) {
+					search.reach(head, newCost, node, e);
+				}
+				if (other.isReached(head) && newCost + other.cost[head] < best) {
+					best = newCost + other.cost[head];
+					meeting = head;
+				}
+			}
+		}
+
+		if (meeting < 0) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". This will now return null.");
+			return null;
+		}
+
+		List<Link> links = new ArrayList<>();
+		// forward part, collected from the meeting node back to the source
+		List<Link> forwardLinks = new ArrayList<>();
+		for (int node = meeting; node != source; node = this.forward.parent[node]) {
+			int e = this.forward.parentEdge[node];
+			int size = forwardLinks.size();
+			unpack(e, true, bin, forwardLinks);
+			Collections.reverse(forwardLinks.subList(size, forwardLinks.size()));
+		}
+		Collections.reverse(forwardLinks);
+		links.addAll(forwardLinks);
+		// backward part, from the meeting node to the target
+		for (int node = meeting; node != target; node = this.backward.parent[node]) {
+			unpack(this.backward.parentEdge[node], false, bin, links);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	/**
+	 * Appends the links of an edge in the given direction, i.e. from the lower to the higher node if
+	 * <code>upward</code>. A shortcut is replaced by a lower triangle whose two edges sum up to its weight.
+	 */
+	private void unpack(final int edge, final boolean upward, final int bin, final List<Link> links) {
+		ContractionHierarchy ch = this.hierarchy;
+		float[] up = this.metric.up[bin];
+		float[] down = this.metric.down[bin];
+		float[] linkWeights = this.metric.linkWeights[bin];
+		int[] stack = this.unpackStack;
+		int top = 0;
+		stack[top++] = upward ? edge : ~edge;
+		while (top > 0) {
+			int entry = stack[--top];
+			boolean isUp = entry >= 0;
+			int e = isUp ? entry : ~entry;
+			float weight = isUp ? up[e] : down[e];
+
+			int[] firsts = isUp ? ch.upLinkFirst : ch.downLinkFirst;
+			int[] edgeLinks = isUp ? ch.upLinks : ch.downLinks;
+			int original = -1;
+			for (int i = firsts[e]; i < firsts[e + 1]; i++) {
+				if (linkWeights[edgeLinks[i]] == weight) {
+					original = edgeLinks[i];
+					break;
+				}
+			}
+			if (original >= 0) {
+				links.add(ch.links[original]);
+				continue;
+			}
+
+			int low = lowNode(e);
+			int high = ch.upHead[e];
+			boolean found = false;
+			for (int i = ch.downFirst[low]; i < ch.downFirst[low + 1] && !found; i++) {
+				int middle = ch.downTail[i];
+				int lowEdge = ch.downEdge[i];
+				int highEdge = ch.findEdge(middle, high);
+				if (highEdge < 0) {
+					continue;
+				}
+				if (isUp && down[lowEdge] + up[highEdge] == weight) {
+					// low -> middle -> high; pushed in reverse order
+					stack[top++] = highEdge;
+					stack[top++] = ~lowEdge;
+					found = true;
+				} else if (!isUp && down[highEdge] + up[lowEdge] == weight) {
+					// high -> middle -> low
+					stack[top++] = lowEdge;
+					stack[top++] = ~highEdge;
+					found = true;
+				}
+			}
+			if (!found) {
+				throw new IllegalStateException("Cannot unpack edge " + e + " of the contraction hierarchy.");
+			}
+		}
+	}
+
+	private int lowNode(final int edge) {
+		int[] upFirst = this.hierarchy.upFirst;
+		int low = Arrays.binarySearch(upFirst, edge);
+		if (low < 0) {
+			return -low - 2;
+		}
+		// upFirst may contain the same value several times for nodes without upward edges
+		while (upFirst[low + 1] == edge) {
+			low++;
+		}
+		return low;
+	}
+
+	/**
+	 * State of one search direction: costs, parents and an indexed binary heap of the reached, unsettled nodes.
+	 */
+	private static final class Search {
+
+		final double[] cost;
+		final int[] parent;
+		final int[] parentEdge;
+		private final int[] heap;
+		private final int[] heapPosition;
+		private final int[] reached;
+		private int reachedCount = 0;
+		private int heapSize = 0;
+
+		Search(final int n) {
+			this.cost = new double[n];
+			this.parent = new int[n];
+			this.parentEdge = new int[n];
+			this.heap = new int[n];
+			this.heapPosition = new int[n];
+			this.reached = new int[n];
+			Arrays.fill(this.heapPosition, -1);
+		}
+
+		void reset() {
+			for (int i = 0; i < this.reachedCount; i++) {
+				this.heapPosition[this.reached[i]] = -1;
+			}
+			this.reachedCount = 0;
+			this.heapSize = 0;
+		}
+
+		boolean isReached(final int node) {
+			return this.heapPosition[node] != -1;
+		}
+
+		boolean isEmpty() {
+			return this.heapSize == 0;
+		}
+
+		double peekKey() {
+			return this.cost[this.heap[0]];
+		}
+
+		void reach(final int node, final double newCost, final int parentNode, final int edge) {
+			int position = this.heapPosition[node];
+			if (position == -1) {
+				this.reached[this.reachedCount++] = node;
+				position = this.heapSize++;
+			} else if (position == -2) {
+				return; // already settled
+			}
+			this.cost[node] = newCost;
+			this.parent[node] = parentNode;
+			this.parentEdge[node] = edge;
+			siftUp(position, node);
+		}
+
+		int poll() {
+			int node = this.heap[0];
+			this.heapPosition[node] = -2;
+			int lastNode = this.heap[--this.heapSize];
+			if (this.heapSize > 0) {
+				siftDown(0, lastNode);
+			}
+			return node;
+		}
+
+		private void siftUp(int position, final int node) {
+			double key = this.cost[node];
+			while (position > 0) {
+				int parentPosition = (position - 1) >>> 1;
+				int parentNode = this.heap[parentPosition];
+				if (this.cost[parentNode] <= key) {
+					break;
+				}
+				this.heap[position] = parentNode;
+				this.heapPosition[parentNode] = position;
+				position = parentPosition;
+			}
+			this.heap[position] = node;
+			this.heapPosition[node] = position;
+		}
+
+		private void siftDown(int position, final int node) {
+			double key = this.cost[node];
+			int half = this.heapSize >>> 1;
+			while (position < half) {
+				int child = 2 * position + 1;
+				int right = child + 1;
+				if (right < this.heapSize && this.cost[this.heap[right]] < this.cost[this.heap[child]]) {
+					child = right;
+				}
+				if (key <= this.cost[this.heap[child]]) {
+					break;
+				}
+				this.heap[position] = this.heap[child];
+				this.heapPosition[this.heap[child]] = position;
+				position = child;
+			}
+			this.heap[position] = node;
+			this.heapPosition[node] = position;
+		}
+
+	}
+
+}
@@ -0,0 +1,213 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies} calculators. The contraction hierarchy of a network is built once. Its
+ * weights are customized once per iteration for every combination of network, travel time and travel disutility
+ * factory (or travel disutility instance, if the calculator is created with one), using one set of weights per time
+ * bin of the travel time calculator. All calculators created in the same iteration with the same travel disutility
+ * factory share these weights, so a pool of calculators is customized only once.
+ *
+ * <p>The weights are computed without person and vehicle. A travel disutility that needs a person, like the
+ * {@link org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutility} with routing randomness, is
+ * therefore not customized; a {@link FastDijkstra} is returned for it instead.</p>
+ *
+ * <p>When used in the controler, the factory must be registered as controler listener, so that the weights are
+ * customized again with the travel times of the last iteration, and the threads of the customization are stopped at
+ * the end; see {@link LeastCostPathCalculatorModule}.</p>
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener, ShutdownListener {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchiesFactory.class);
+
+	private final double timeBinSize;
+	private final int numberOfTimeBins;
+	private final int numberOfThreads;
+	private final Map<Network, ContractionHierarchy> hierarchies = new IdentityHashMap<>();
+	private final Map<MetricKey, ContractionHierarchy.Metric> metrics = new HashMap<>();
+	private final LeastCostPathCalculatorFactory personDependentFactory = new FastDijkstraFactory();
+	private ForkJoinPool customizationPool = null;
+	private boolean warnedAboutPersonDependentDisutility = false;
+
+	@Inject
+	public ContractionHierarchiesFactory(final Config config) {
+		this(config.travelTimeCalculator().getTraveltimeBinSize(), config.travelTimeCalculator().getMaxTime(),
+				config.global().getNumberOfThreads());
+	}
+
+	/**
+	 * @param timeBinSize the duration of the time bins, in seconds
+	 * @param maxTime the end of the last time bin; later departures use the weights of the last time bin
+	 * @param numberOfThreads the number of threads used to customize the time bins
+	 */
+	public ContractionHierarchiesFactory(final double timeBinSize, final double maxTime, final int numberOfThreads) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = (int) (maxTime / timeBinSize) + 1;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts,
+			final TravelTime travelTimes) {
+		return createPathCalculator(network, travelCosts, travelTimes, travelCosts);
+	}
+
+	/**
+	 * Every calculator gets its own travel disutility, but the weights are only customized for the first calculator
+	 * with the given travel disutility factory.
+	 */
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutilityFactory travelCostsFactory,
+			final TravelTime travelTimes) {
+		return createPathCalculator(network, travelCostsFactory.createTravelDisutility(travelTimes), travelTimes, travelCostsFactory);
+	}
+
+	private LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts,
+			final TravelTime travelTimes, final Object travelCostsKey) {
+		MetricKey key = new MetricKey(network, travelTimes, travelCostsKey);
+		ContractionHierarchy.Metric metric = this.metrics.get(key);
+		if (metric == null) {
+			if (isPersonDependent(network, travelCosts)) {
+				if (!this.warnedAboutPersonDependentDisutility) {
+					log.warn("The travel disutility " + travelCosts.getClass().getName() + " cannot be evaluated without a person, "
+							+ "e.g. because of routing randomness, so contraction hierarchies cannot be customized for it. "
+							+ "Falling back to FastDijkstra; set routingRandomness to 0 to use contraction hierarchies.");
+					this.warnedAboutPersonDependentDisutility = true;
+				}
+				return this.personDependentFactory.createPathCalculator(network, travelCosts, travelTimes);
+			}
+			if (this.customizationPool == null) {
+				this.customizationPool = new ForkJoinPool(Math.max(1, this.numberOfThreads));
+			}
+			ContractionHierarchy hierarchy = this.hierarchies.computeIfAbsent(network, ContractionHierarchy::new);
+			metric = hierarchy.customize(travelCosts, this.timeBinSize, this.numberOfTimeBins, this.customizationPool);
+			this.metrics.put(key, metric);
+		}
+		return new ContractionHierarchies(this.hierarchies.get(network), metric, travelCosts, travelTimes);
+	}
+
+	/**
+	 * The customized weights are computed without person, which throws an exception for travel disutilities that
+	 * need one. Only the first link is tried, since such a travel disutility fails for every link.
+	 */
+	private static boolean isPersonDependent(final Network network, final TravelDisutility travelCosts) {
+		for (Link link : network.getLinks().values()) {
+			try {
+				travelCosts.getLinkTravelDisutility(link, 0, null, null);
+			} catch (RuntimeException e) {
+				return true;
+			}
+			break;
+		}
+		return false;
+	}
+
+	/*package*/ synchronized int getNumberOfMetrics() {
+		return this.metrics.size();
+	}
+
+	/**
+	 * Discards the customized weights, so they are computed again with the current travel times.
+	 */
+	public synchronized void reset() {
+		this.metrics.clear();
+	}
+
+	/**
+	 * Stops the threads that customize the weights. They are started again if another calculator is created.
+	 */
+	public synchronized void shutdown() {
+		if (this.customizationPool != null) {
+			this.customizationPool.shutdown();
+			this.customizationPool = null;
+		}
+	}
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		reset();
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		shutdown();
+	}
+
+	/**
+	 * Customized weights are shared by the calculators with the same network, travel time and travel disutility factory
+	 * or instance. Two instances of the same travel disutility class may be configured differently, e.g. per mode.
+	 */
+	private static final class MetricKey {
+
+		private final Network network;
+		private final TravelTime travelTime;
+		private final Object travelDisutility;
+
+		MetricKey(final Network network, final TravelTime travelTime, final Object travelDisutility) {
+			this.network = network;
+			this.travelTime = travelTime;
+			this.travelDisutility = travelDisutility;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof MetricKey)) {
+				return false;
+			}
+			MetricKey other = (MetricKey) o;
+			return other.network == this.network && other.travelTime == this.travelTime
+					&& other.travelDisutility == this.travelDisutility;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(this.network), System.identityHashCode(this.travelTime),
+					System.identityHashCode(this.travelDisutility));
+		}
+
+	}
+
+}
@@ -0,0 +1,557 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchy.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Metric-independent part of a customizable contraction hierarchy of a network.
+ *
+ * <p>The nodes are ordered by geometric nested dissection: the network is recursively split along the x or y axis,
+ * and the nodes separating the two halves get the highest ranks. Contracting the nodes in that order without witness
+ * searches gives an undirected graph of upward edges, each of which has one weight per direction. This topology only
+ * depends on the network, so it is built once. {@link #customize(TravelDisutility, double, int, ForkJoinPool)} then computes the
+ * weights for a given travel disutility, separately for every time bin.</p>
+ *
+ * <p>All nodes are identified by their rank, i.e. the upward neighbours of a node have a larger index.</p>
+ *
+ * @see ContractionHierarchies
+ */
+final class ContractionHierarchy {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchy.class);
+
+	/** sub-networks with at most this many nodes are not dissected further */
+	private static final int LEAF_SIZE = 32;
+
+	final Node[] nodes;
+	private final int[] rankByNodeIndex;
+	final Link[] links;
+
+	/** upward edges of node r are upFirst[r] .. upFirst[r+1]-1, with the higher node upHead[e], sorted ascending */
+	final int[] upFirst;
+	final int[] upHead;
+	/** downward adjacency of node r: lower nodes downTail[i] and their edges downEdge[i], sorted ascending */
+	final int[] downFirst;
+	final int[] downTail;
+	final int[] downEdge;
+	/** original links from the lower to the higher node of edge e */
+	final int[] upLinkFirst;
+	final int[] upLinks;
+	/** original links from the higher to the lower node of edge e */
+	final int[] downLinkFirst;
+	final int[] downLinks;
+
+	ContractionHierarchy(final Network network) {
+		long start = System.currentTimeMillis();
+		Node[] localNodes = network.getNodes().values().toArray(new Node[0]);
+		int n = localNodes.length;
+		int maxIndex = -1;
+		for (Node node : localNodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+		int[] localByNodeIndex = new int[maxIndex + 1];
+		Arrays.fill(localByNodeIndex, -1);
+		for (int i = 0; i < n; i++) {
+			localByNodeIndex[localNodes[i].getId().index()] = i;
+		}
+
+		List<Link> linkList = new ArrayList<>(network.getLinks().size());
+		for (Link link : network.getLinks().values()) {
+			if (link.getFromNode() != link.getToNode()) {
+				linkList.add(link);
+			}
+		}
+		this.links = linkList.toArray(new Link[0]);
+
+		// undirected adjacency of the network
+		int[] adjFirst = new int[n + 1];
+		for (Link link : this.links) {
+			adjFirst[localByNodeIndex[link.getFromNode().getId().index()] + 1]++;
+			adjFirst[localByNodeIndex[link.getToNode().getId().index()] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			adjFirst[i + 1] += adjFirst[i];
+		}
+		int[] adj = new int[adjFirst[n]];
+		int[] fill = Arrays.copyOf(adjFirst, n);
+		for (Link link : this.links) {
+			int from = localByNodeIndex[link.getFromNode().getId().index()];
+			int to = localByNodeIndex[link.getToNode().getId().index()];
+			adj[fill[from]++] = to;
+			adj[fill[to]++] = from;
+		}
+
+		// node order
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = localNodes[i].getCoord().getX();
+			y[i] = localNodes[i].getCoord().getY();
+		}
+		int[] order = new int[n];
+		int[] subset = new int[n];
+		for (int i = 0; i < n; i++) {
+			subset[i] = i;
+		}
+		new NestedDissection(adjFirst, adj, x, y, order).dissect(subset, 0, n);
+
+		int[] rankOfLocal = new int[n];
+		this.nodes = new Node[n];
+		for (int r = 0; r < n; r++) {
+			rankOfLocal[order[r]] = r;
+			this.nodes[r] = localNodes[order[r]];
+		}
+		this.rankByNodeIndex = new int[maxIndex + 1];
+		Arrays.fill(this.rankByNodeIndex, -1);
+		for (int i = 0; i <= maxIndex; i++) {
+			if (localByNodeIndex[i] >= 0) {
+				this.rankByNodeIndex[i] = rankOfLocal[localByNodeIndex[i]];
+			}
+		}
+
+		// contraction: the upward neighbours of a node become a clique, which is passed on to the lowest of them
+		int[][] up = new int[n][];
+		int[][] pending = new int[n][];
+		int[] pendingSize = new int[n];
+		for (int r = 0; r < n; r++) {
+			int local = order[r];
+			int[] candidates = Arrays.copyOf(pending[r] == null ? new int[0] : pending[r], pendingSize[r] + adjFirst[local + 1] - adjFirst[local]);
+			int size = pendingSize[r];
+			for (int i = adjFirst[local]; i < adjFirst[local + 1]; i++) {
+				int neighbour = rankOfLocal[adj[i]];
+				if (neighbour > r) {
+					candidates[size++] = neighbour;
+				}
+			}
+			pending[r] = null;
+			Arrays.sort(candidates, 0, size);
+			int unique = 0;
+			for (int i = 0; i < size; i++) {
+				if (unique == 0 || candidates[unique - 1] != candidates[i]) {
+					candidates[unique++] = candidates[i];
+				}
+			}
+			up[r] = Arrays.copyOf(candidates, unique);
+			if (unique > 1) {
+				int parent = up[r][0];
+				int required = pendingSize[parent] + unique - 1;
+				if (pending[parent] == null) {
+					pending[parent] = new int[Math.max(required, 8)];
+				} else if (pending[parent].length < required) {
+					pending[parent] = Arrays.copyOf(pending[parent], Math.max(required, 2 * pending[parent].length));
+				}
+				System.arraycopy(up[r], 1, pending[parent], pendingSize[parent], unique - 1);
+				pendingSize[parent] = required;
+			}
+		}
+
+		this.upFirst = new int[n + 1];
+		for (int r = 0; r < n; r++) {
+			this.upFirst[r + 1] = this.upFirst[r] + up[r].length;
+		}
+		int edgeCount = this.upFirst[n];
+		this.upHead = new int[edgeCount];
+		this.downFirst = new int[n + 1];
+		for (int r = 0; r < n; r++) {
+			System.arraycopy(up[r], 0, this.upHead, this.upFirst[r], up[r].length);
+			for (int head : up[r]) {
+				this.downFirst[head + 1]++;
+			}
+			up[r] = null;
+		}
+		for (int r = 0; r < n; r++) {
+			this.downFirst[r + 1] += this.downFirst[r];
+		}
+		this.downTail = new int[edgeCount];
+		this.downEdge = new int[edgeCount];
+		fill = Arrays.copyOf(this.downFirst, n);
+		for (int r = 0; r < n; r++) {
+			for (int e = this.upFirst[r]; e < this.upFirst[r + 1]; e++) {
+				int head = this.upHead[e];
+				this.downTail[fill[head]] = r;
+				this.downEdge[fill[head]++] = e;
+			}
+		}
+
+		// original links of the edges
+		int[] linkEdge = new int[this.links.length];
+		boolean[] linkUp = new boolean[this.links.length];
+		this.upLinkFirst = new int[edgeCount + 1];
+		this.downLinkFirst = new int[edgeCount + 1];
+		for (int l = 0; l < this.links.length; l++) {
+			int from = getRank(this.links[l].getFromNode());
+			int to = getRank(this.links[l].getToNode());
+			linkUp[l] = from < to;
+			linkEdge[l] = linkUp[l] ? findEdge(from, to) : findEdge(to, from);
+			if (linkUp[l]) {
+				this.upLinkFirst[linkEdge[l] + 1]++;
+			} else {
+				this.downLinkFirst[linkEdge[l] + 1]++;
+			}
+		}
+		for (int e = 0; e < edgeCount; e++) {
+			this.upLinkFirst[e + 1] += this.upLinkFirst[e];
+			this.downLinkFirst[e + 1] += this.downLinkFirst[e];
+		}
+		this.upLinks = new int[this.upLinkFirst[edgeCount]];
+		this.downLinks = new int[this.downLinkFirst[edgeCount]];
+		int[] upFill = Arrays.copyOf(this.upLinkFirst, edgeCount);
+		int[] downFill = Arrays.copyOf(this.downLinkFirst, edgeCount);
+		for (int l = 0; l < this.links.length; l++) {
+			if (linkUp[l]) {
+				this.upLinks[upFill[linkEdge[l]]++] = l;
+			} else {
+				this.downLinks[downFill[linkEdge[l]]++] = l;
+			}
+		}
+
+		log.info("contraction hierarchy with " + n + " nodes, " + this.links.length + " links and " + edgeCount
+				+ " edges built in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+
+	/**
+	 * @return the rank of the node, or -1 if the node is not part of the network of this hierarchy
+	 */
+	int getRank(final Node node) {
+		int index = node.getId().index();
+		if (index >= this.rankByNodeIndex.length) {
+			return -1;
+		}
+		int rank = this.rankByNodeIndex[index];
+		return rank >= 0 && this.nodes[rank] == node ? rank : -1;
+	}
+
+	/**
+	 * @return the upward edge from <code>low</code> to <code>high</code>, or -1 if there is none
+	 */
+	int findEdge(final int low, final int high) {
+		int e = Arrays.binarySearch(this.upHead, this.upFirst[low], this.upFirst[low + 1], high);
+		return e >= 0 ? e : -1;
+	}
+
+	/**
+	 * Computes the edge weights for all time bins. The link weights are evaluated sequentially at the start of every
+	 * time bin, as the travel disutility is not necessarily thread-safe; the time bins are then customized in parallel
+	 * by the given pool. The travel disutility must not depend on the person or vehicle, as it is called without them.
+	 */
+	Metric customize(final TravelDisutility travelDisutility, final double timeBinSize, final int numberOfTimeBins, final ForkJoinPool pool) {
+		long start = System.currentTimeMillis();
+		Metric metric = new Metric(timeBinSize, numberOfTimeBins);
+		for (int bin = 0; bin < numberOfTimeBins; bin++) {
+			float[] weights = new float[this.links.length];
+			double time = bin * timeBinSize;
+			for (int l = 0; l < this.links.length; l++) {
+				weights[l] = (float) travelDisutility.getLinkTravelDisutility(this.links[l], time, null, null);
+			}
+			metric.linkWeights[bin] = weights;
+		}
+		try {
+			pool.submit(() -> IntStream.range(0, numberOfTimeBins).parallel().forEach(bin -> customizeTimeBin(metric, bin))).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		log.info("contraction hierarchy customized for " + numberOfTimeBins + " time bins in "
+				+ (System.currentTimeMillis() - start) + " ms.");
+		return metric;
+	}
+
+	private void customizeTimeBin(final Metric metric, final int bin) {
+		int edgeCount = this.upHead.length;
+		float[] linkWeights = metric.linkWeights[bin];
+		float[] up = new float[edgeCount];
+		float[] down = new float[edgeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			float u = Float.POSITIVE_INFINITY;
+			for (int i = this.upLinkFirst[e]; i < this.upLinkFirst[e + 1]; i++) {
+				u = Math.min(u, linkWeights[this.upLinks[i]]);
+			}
+			float d = Float.POSITIVE_INFINITY;
+			for (int i = this.downLinkFirst[e]; i < this.downLinkFirst[e + 1]; i++) {
+				d = Math.min(d, linkWeights[this.downLinks[i]]);
+			}
+			up[e] = u;
+			down[e] = d;
+		}
+		// lower triangles, ordered by their lowest node
+		for (int x = 0; x < this.nodes.length; x++) {
+			int last = this.upFirst[x + 1];
+			for (int i = this.upFirst[x]; i < last; i++) {
+				int u = this.upHead[i];
+				float ux = down[i];
+				float xu = up[i];
+				int k = this.upFirst[u];
+				for (int j = i + 1; j < last; j++) {
+					int v = this.upHead[j];
+					while (this.upHead[k] != v) {
+						k++;
+					}
+					float viaUp = ux + up[j];
+					if (viaUp < up[k]) {
+						up[k] = viaUp;
+					}
+					float viaDown = down[j] + xu;
+					if (viaDown < down[k]) {
+						down[k] = viaDown;
+					}
+				}
+			}
+		}
+		metric.up[bin] = up;
+		metric.down[bin] = down;
+		prune(metric, bin);
+	}
+
+	/**
+	 * Perfect customization: computes the exact distances along all edges using upper and intermediate triangles, and
+	 * marks the edges that are not needed by queries because a triangle is at least as good. Edges that are kept have
+	 * the same weight as after the basic customization, which is still used to unpack shortcuts.
+	 */
+	private void prune(final Metric metric, final int bin) {
+		int edgeCount = this.upHead.length;
+		float[] up = metric.up[bin];
+		float[] down = metric.down[bin];
+		float[] perfectUp = up.clone();
+		float[] perfectDown = down.clone();
+		for (int x = this.nodes.length - 1; x >= 0; x--) {
+			int last = this.upFirst[x + 1];
+			for (int i = this.upFirst[x]; i < last; i++) {
+				int k = this.upFirst[this.upHead[i]];
+				for (int j = i + 1; j < last; j++) {
+					int z = this.upHead[j];
+					while (this.upHead[k] != z) {
+						k++;
+					}
+					// edges (x,y)=i, (x,z)=j and (y,z)=k with x < y < z
+					perfectUp[i] = Math.min(perfectUp[i], perfectUp[j] + perfectDown[k]);
+					perfectDown[i] = Math.min(perfectDown[i], perfectUp[k] + perfectDown[j]);
+					perfectUp[j] = Math.min(perfectUp[j], perfectUp[i] + perfectUp[k]);
+					perfectDown[j] = Math.min(perfectDown[j], perfectDown[k] + perfectDown[i]);
+				}
+			}
+		}
+		long[] prunedUp = new long[(edgeCount + 63) >>> 6];
+		long[] prunedDown = new long[(edgeCount + 63) >>> 6];
+		for (int e = 0; e < edgeCount; e++) {
+			if (perfectUp[e] < up[e]) {
+				prunedUp[e >>> 6] |= 1L << e;
+			}
+			if (perfectDown[e] < down[e]) {
+				prunedDown[e >>> 6] |= 1L << e;
+			}
+		}
+		for (int x = 0; x < this.nodes.length; x++) {
+			int last = this.upFirst[x + 1];
+			for (int i = this.upFirst[x]; i < last; i++) {
+				int k = this.upFirst[this.upHead[i]];
+				for (int j = i + 1; j < last; j++) {
+					int z = this.upHead[j];
+					while (this.upHead[k] != z) {
+						k++;
+					}
+					// with positive weights, an edge that is as good as a triangle via a higher node can be removed
+					if (perfectUp[i] > 0 && perfectUp[j] + perfectDown[k] == perfectUp[i]) {
+						prunedUp[i >>> 6] |= 1L << i;
+					}
+					if (perfectDown[i] > 0 && perfectUp[k] + perfectDown[j] == perfectDown[i]) {
+						prunedDown[i >>> 6] |= 1L << i;
+					}
+					if (perfectUp[j] > 0 && perfectUp[i] + perfectUp[k] == perfectUp[j]) {
+						prunedUp[j >>> 6] |= 1L << j;
+					}
+					if (perfectDown[j] > 0 && perfectDown[k] + perfectDown[i] == perfectDown[j]) {
+						prunedDown[j >>> 6] |= 1L << j;
+					}
+				}
+			}
+		}
+		metric.prunedUp[bin] = prunedUp;
+		metric.prunedDown[bin] = prunedDown;
+	}
+
+	/**
+	 * Edge weights of a hierarchy for one travel disutility, with one set of weights per time bin.
+	 */
+	static final class Metric {
+
+		final double timeBinSize;
+		final float[][] linkWeights;
+		/** weight from the lower to the higher node of an edge */
+		final float[][] up;
+		/** weight from the higher to the lower node of an edge */
+		final float[][] down;
+		/** edges that need not be relaxed by queries in upward and downward direction, as bit sets */
+		final long[][] prunedUp;
+		final long[][] prunedDown;
+
+		Metric(final double timeBinSize, final int numberOfTimeBins) {
+			this.timeBinSize = timeBinSize;
+			this.linkWeights = new float[numberOfTimeBins][];
+			this.up = new float[numberOfTimeBins][];
+			this.down = new float[numberOfTimeBins][];
+			this.prunedUp = new long[numberOfTimeBins][];
+			this.prunedDown = new long[numberOfTimeBins][];
+		}
+
+		int getTimeBin(final double time) {
+			int bin = (int) (time / this.timeBinSize);
+			return Math.max(0, Math.min(bin, this.up.length - 1));
+		}
+
+	}
+
+	/**
+	 * Geometric nested dissection. The nodes of a sub-network are split at the median of x or y, whichever gives the
+	 * smaller separator; the separator consists of the nodes of one half that have neighbours in the other half.
+	 */
+	private static final class NestedDissection {
+
+		private final int[] adjFirst;
+		private final int[] adj;
+		private final double[] x;
+		private final double[] y;
+		private final int[] order;
+		private final int[] stamp;
+		private int currentStamp = 0;
+		private int nextRank = 0;
+
+		NestedDissection(final int[] adjFirst, final int[] adj, final double[] x, final double[] y, final int[] order) {
+			this.adjFirst = adjFirst;
+			this.adj = adj;
+			this.x = x;
+			this.y = y;
+			this.order = order;
+			this.stamp = new int[x.length];
+		}
+
+		void dissect(final int[] nodes, final int from, final int to) {
+			int size = to - from;
+			if (size <= LEAF_SIZE) {
+				for (int i = from; i < to; i++) {
+					this.order[this.nextRank++] = nodes[i];
+				}
+				return;
+			}
+			int mid = from + size / 2;
+			int[] alternative = Arrays.copyOfRange(nodes, from, to);
+			select(nodes, from, to, mid, this.x);
+			select(alternative, 0, size, size / 2, this.y);
+			int separatorX = separatorSize(nodes, from, mid, to);
+			int separatorY = separatorSize(alternative, 0, size / 2, size);
+			if (separatorY < separatorX) {
+				System.arraycopy(alternative, 0, nodes, from, size);
+			}
+
+			// move the separator, i.e. the lower half's nodes with neighbours in the upper half, to the end of the lower half
+			mark(nodes, mid, to);
+			int separatorStart = mid;
+			for (int i = mid - 1; i >= from; i--) {
+				if (hasMarkedNeighbour(nodes[i])) {
+					separatorStart--;
+					int tmp = nodes[i];
+					nodes[i] = nodes[separatorStart];
+					nodes[separatorStart] = tmp;
+				}
+			}
+			int[] separator = Arrays.copyOfRange(nodes, separatorStart, mid);
+
+			dissect(nodes, from, separatorStart);
+			dissect(nodes, mid, to);
+			for (int node : separator) {
+				this.order[this.nextRank++] = node;
+			}
+		}
+
+		private int separatorSize(final int[] nodes, final int from, final int mid, final int to) {
+			mark(nodes, mid, to);
+			int count = 0;
+			for (int i = from; i < mid; i++) {
+				if (hasMarkedNeighbour(nodes[i])) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private void mark(final int[] nodes, final int from, final int to) {
+			this.currentStamp++;
+			for (int i = from; i < to; i++) {
+				this.stamp[nodes[i]] = this.currentStamp;
+			}
+		}
+
+		private boolean hasMarkedNeighbour(final int node) {
+			for (int i = this.adjFirst[node]; i < this.adjFirst[node + 1]; i++) {
+				if (this.stamp[this.adj[i]] == this.currentStamp) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Partially sorts <code>nodes[from..to)</code> by the key such that the element at <code>k</code> is at its
+		 * sorted position, with no larger key before and no smaller key after it.
+		 */
+		private static void select(final int[] nodes, int from, int to, final int k, final double[] key) {
+			while (to - from > 1) {
+				double pivot = key[nodes[(from + to) >>> 1]];
+				int i = from;
+				int j = to - 1;
+				while (i <= j) {
+					while (key[nodes[i]] < pivot) {
+						i++;
+					}
+					while (key[nodes[j]] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						int tmp = nodes[i];
+						nodes[i] = nodes[j];
+						nodes[j] = tmp;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					to = j + 1;
+				} else if (k >= i) {
+					from = i;
+				} else {
+					return;
+				}
+			}
+		}
+
+	}
+
+}
@@ -19,7 +19,7 @@ import org.matsim.facilities.Facility;
 import java.util.Collections;
 import java.util.List;
 
-class FallbackRoutingModuleDefaultImpl implements  FallbackRoutingModule {
+class FallbackRoutingModuleDefaultImpl implements  FallbackRoutingModule, ConcurrentRoutingModule {
 
 	@Deprecated // #deleteBeforeRelease : only used to retrofit plans created since the merge of fallback routing module (sep'-dec'19)
 	public static final String _fallback = "_fallback";
@@ -44,4 +44,8 @@ class FallbackRoutingModuleDefaultImpl implements  FallbackRoutingModule {
 				pcrCfg.getModeRoutingParams().get(TransportMode.walk) ) ;
 		return Collections.singletonList( leg ) ;
 	}
+
+	@Override public boolean isThreadSafe() {
+		return true;
+	}
 }
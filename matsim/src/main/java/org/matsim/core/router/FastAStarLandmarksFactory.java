@@ -20,6 +20,7 @@
 
 package org.matsim.core.router;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -49,18 +50,26 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 	private final Map<Network, PreProcessLandmarks> preProcessData = new HashMap<>();
 
 	private final int nThreads;
+	private final File cacheDirectory;
 
 	@Inject
 	public FastAStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup) {
-		this(FastRouterType.ARRAY, globalConfigGroup.getNumberOfThreads());
+		this(FastRouterType.ARRAY, globalConfigGroup.getNumberOfThreads(), toFile(globalConfigGroup.getLandmarksCacheDirectory()));
 	}
 
 	public FastAStarLandmarksFactory(int nThreads) {
-		this(FastRouterType.ARRAY, nThreads);
+		this(FastRouterType.ARRAY, nThreads, null);
+	}
+
+	/**
+	 * @param cacheDirectory where the landmark travel times are cached between runs, may be <code>null</code>
+	 */
+	public FastAStarLandmarksFactory(int nThreads, File cacheDirectory) {
+		this(FastRouterType.ARRAY, nThreads, cacheDirectory);
 	}
 
 	// hide this constructor, as only one router type is allowed anyway...
-	private FastAStarLandmarksFactory(final FastRouterType fastRouterType, int numberOfThreads) {
+	private FastAStarLandmarksFactory(final FastRouterType fastRouterType, int numberOfThreads, File cacheDirectory) {
 		switch (fastRouterType) {
 			case ARRAY:
 				this.routingNetworkFactory = new ArrayRoutingNetworkFactory();
@@ -73,6 +82,11 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 		}
 
 		this.nThreads = numberOfThreads;
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	static File toFile(final String directory) {
+		return directory == null ? null : new File(directory);
 	}
 
 	@Override
@@ -86,6 +100,7 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 
 			preProcessLandmarks = new PreProcessLandmarks(travelCosts);
 			preProcessLandmarks.setNumberOfThreads(nThreads);
+			preProcessLandmarks.setCacheDirectory(cacheDirectory);
 			preProcessLandmarks.run(network);
 			this.preProcessData.put(network, preProcessLandmarks);
 
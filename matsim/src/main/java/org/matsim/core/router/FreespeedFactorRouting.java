@@ -32,6 +32,7 @@ import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PooledLeastCostPathCalculator;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.vehicles.Vehicle;
@@ -76,8 +77,8 @@ class FreespeedFactorRouting implements Provider<RoutingModule> {
 			}
 		} ;
 		Gbl.assertNotNull(leastCostPathCalculatorFactory);
-		LeastCostPathCalculator routeAlgoPtFreeFlow = leastCostPathCalculatorFactory.createPathCalculator(
-						network, travelDisutility, travelTime);
+		LeastCostPathCalculator routeAlgoPtFreeFlow = new PooledLeastCostPathCalculator(() -> leastCostPathCalculatorFactory.createPathCalculator(
+						network, travelDisutility, travelTime));
 		return DefaultRoutingModules.createPseudoTransitRouter(params.getMode(), populationFactory,
 				network, routeAlgoPtFreeFlow, params);
 	}
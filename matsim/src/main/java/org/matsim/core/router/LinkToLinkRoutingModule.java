@@ -41,8 +41,8 @@ import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PooledLeastCostPathCalculator;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
-import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.facilities.Facility;
 import org.matsim.vehicles.Vehicle;
@@ -58,7 +58,7 @@ import org.matsim.vehicles.Vehicle;
  * @author dgrether
  * @author michalm
  */
-class LinkToLinkRoutingModule implements RoutingModule
+class LinkToLinkRoutingModule implements ConcurrentRoutingModule
 {
     private final Network invertedNetwork;
     private final Network network;
@@ -82,9 +82,8 @@ class LinkToLinkRoutingModule implements RoutingModule
         // (method that takes a getLinkTravelTime( link , ...) with a link from the inverted network, converts it into links on the 
         // original network, and looks up the link2link tttime in the l2ltravelTimes data structure)
 
-        TravelDisutility travelCost = travelCostCalculatorFactory.createTravelDisutility(invertedTravelTimes);
-
-        leastCostPathCalculator = leastCostPathCalcFactory.createPathCalculator(invertedNetwork, travelCost, invertedTravelTimes);
+        leastCostPathCalculator = new PooledLeastCostPathCalculator(() ->
+                leastCostPathCalcFactory.createPathCalculator(invertedNetwork, travelCostCalculatorFactory, invertedTravelTimes));
     }
 
     @Override
@@ -128,6 +127,11 @@ class LinkToLinkRoutingModule implements RoutingModule
 		newLeg.setDepartureTime(departureTime);
 		return Arrays.asList( newLeg );
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
     
     private Path invertPath(Path invPath)
     {
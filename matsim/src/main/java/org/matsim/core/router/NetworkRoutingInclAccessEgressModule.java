@@ -59,7 +59,7 @@ import org.matsim.vehicles.VehicleUtils;
  * 
  * @author thibautd, nagel
  */
-public final class NetworkRoutingInclAccessEgressModule implements RoutingModule {
+public final class NetworkRoutingInclAccessEgressModule implements ConcurrentRoutingModule {
 	private static final Logger log = Logger.getLogger( NetworkRoutingInclAccessEgressModule.class );
 
 	private final String mode;
@@ -281,6 +281,12 @@ public final class NetworkRoutingInclAccessEgressModule implements RoutingModule
 		return travTime;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		// (calcRoute is synchronized)
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return "[NetworkRoutingModule: mode="+this.mode+"]";
@@ -33,6 +33,7 @@ import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.population.routes.RouteUtils;
 import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.PooledLeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.facilities.Facility;
 
@@ -42,7 +43,7 @@ import org.matsim.facilities.Facility;
  * 
  * @author thibautd
  */
-public final class NetworkRoutingModule implements RoutingModule {
+public final class NetworkRoutingModule implements ConcurrentRoutingModule {
 	// I think it makes sense to NOT add the bushwhacking mode directly into here ...
 	// ... since it makes sense be able to to route from facility.getLinkId() to facility.getLinkId(). kai, dec'15
 
@@ -116,6 +117,11 @@ public final class NetworkRoutingModule implements RoutingModule {
 		return Arrays.asList( newLeg );
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return this.routeAlgo instanceof PooledLeastCostPathCalculator;
+	}
+
 	@Override
 	public String toString() {
 		return "[NetworkRoutingModule: mode="+this.mode+"]";
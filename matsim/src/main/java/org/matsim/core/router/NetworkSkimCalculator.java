@@ -0,0 +1,334 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkSkimCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkLink;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Computes {@link NetworkSkims}, i.e. travel times, travel disutilities and distances from many origin nodes to many
+ * destination nodes, with one least-cost path tree per origin.
+ *
+ * <p>The trees are time-dependent like {@link Dijkstra}: a link is entered at the departure time plus the travel time
+ * to its from node, and its travel time and disutility are evaluated at that time, without person and vehicle. A tree
+ * search stops as soon as all destinations are settled. The origins are distributed among several threads, each of
+ * which searches on the same compressed sparse row copy of an {@link ArrayRoutingNetwork}, with its own primitive
+ * arrays and heap.</p>
+ *
+ * <p>The travel time and disutility are called from all threads concurrently, so they must be thread-safe if more
+ * than one thread is used. This is the case for the usual person-independent implementations, but not e.g. for
+ * disutilities with routing randomness.</p>
+ */
+public final class NetworkSkimCalculator {
+
+	private static final Logger log = Logger.getLogger(NetworkSkimCalculator.class);
+
+	private final ArrayRoutingNetwork routingNetwork;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final int numberOfThreads;
+
+	private final int nodeCount;
+	private final int[] outFirst;
+	private final int[] outHead;
+	private final Link[] outLink;
+	private final double[] outLength;
+
+	public NetworkSkimCalculator(final Network network, final TravelTime travelTime, final TravelDisutility travelDisutility,
+			final int numberOfThreads) {
+		this(new ArrayRoutingNetworkFactory().createRoutingNetwork(network), travelTime, travelDisutility, numberOfThreads);
+	}
+
+	public NetworkSkimCalculator(final ArrayRoutingNetwork routingNetwork, final TravelTime travelTime,
+			final TravelDisutility travelDisutility, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.routingNetwork = routingNetwork;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.numberOfThreads = numberOfThreads;
+
+		this.nodeCount = routingNetwork.getNodes().size();
+		RoutingNetworkNode[] nodes = new RoutingNetworkNode[this.nodeCount];
+		int linkCount = 0;
+		for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+			nodes[getArrayIndex(node)] = node;
+			linkCount += node.getOutLinksArray().length;
+		}
+		this.outFirst = new int[this.nodeCount + 1];
+		this.outHead = new int[linkCount];
+		this.outLink = new Link[linkCount];
+		this.outLength = new double[linkCount];
+		int e = 0;
+		for (int n = 0; n < this.nodeCount; n++) {
+			this.outFirst[n] = e;
+			for (RoutingNetworkLink link : nodes[n].getOutLinksArray()) {
+				this.outHead[e] = getArrayIndex(link.getToNode());
+				this.outLink[e] = link.getLink();
+				this.outLength[e] = link.getLength();
+				e++;
+			}
+		}
+		this.outFirst[this.nodeCount] = e;
+	}
+
+	private static int getArrayIndex(final RoutingNetworkNode node) {
+		return ((ArrayRoutingNetworkNode) node).getArrayIndex();
+	}
+
+	private int getIndex(final Node node) {
+		RoutingNetworkNode routingNode = this.routingNetwork.getNodes().get(node.getId());
+		if (routingNode == null) {
+			throw new IllegalArgumentException("node " + node.getId() + " is not part of the network.");
+		}
+		return getArrayIndex(routingNode);
+	}
+
+	/**
+	 * @return the skims from all origins to all destinations for the given departure time. The nodes must not be
+	 * given more than once per list.
+	 */
+	public NetworkSkims calcSkims(final List<? extends Node> origins, final List<? extends Node> destinations,
+			final double departureTime) {
+		Node[] originNodes = origins.toArray(new Node[0]);
+		Node[] destinationNodes = destinations.toArray(new Node[0]);
+		int[] originIndices = new int[originNodes.length];
+		for (int i = 0; i < originNodes.length; i++) {
+			originIndices[i] = getIndex(originNodes[i]);
+		}
+		int[] destinationByNode = new int[this.nodeCount];
+		Arrays.fill(destinationByNode, -1);
+		for (int i = 0; i < destinationNodes.length; i++) {
+			int index = getIndex(destinationNodes[i]);
+			if (destinationByNode[index] != -1) {
+				throw new IllegalArgumentException("node " + destinationNodes[i].getId() + " is given more than once.");
+			}
+			destinationByNode[index] = i;
+		}
+
+		int size = NetworkSkims.getMatrixSize(originNodes.length, destinationNodes.length);
+		float[] travelTimes = new float[size];
+		float[] travelDisutilities = new float[size];
+		float[] distances = new float[size];
+
+		int nOfThreads = Math.max(1, Math.min(this.numberOfThreads, originNodes.length));
+		log.info("calculating network skims from " + originNodes.length + " origins to " + destinationNodes.length
+				+ " destinations at " + departureTime + " with " + nOfThreads + " threads...");
+		long start = System.currentTimeMillis();
+		AtomicInteger nextOrigin = new AtomicInteger(0);
+		AtomicReference<Throwable> exception = new AtomicReference<>();
+		Thread[] threads = new Thread[nOfThreads];
+		for (int t = 0; t < nOfThreads; t++) {
+			threads[t] = new Thread(() -> {
+				Tree tree = new Tree(this.nodeCount);
+				int origin;
+				while ((origin = nextOrigin.getAndIncrement()) < originIndices.length && exception.get() == null) {
+					calcTree(tree, originIndices[origin], departureTime, destinationByNode, destinationNodes.length);
+					int row = origin * destinationNodes.length;
+					for (int d = 0; d < destinationNodes.length; d++) {
+						travelTimes[row + d] = Float.POSITIVE_INFINITY;
+						travelDisutilities[row + d] = Float.POSITIVE_INFINITY;
+						distances[row + d] = Float.POSITIVE_INFINITY;
+					}
+					for (int i = 0; i < tree.reachedCount; i++) {
+						int node = tree.reached[i];
+						int d = destinationByNode[node];
+						if (d >= 0) {
+							travelTimes[row + d] = (float) tree.time[node];
+							travelDisutilities[row + d] = (float) tree.cost[node];
+							distances[row + d] = (float) tree.distance[node];
+						}
+					}
+				}
+			}, "NetworkSkims-" + t);
+			threads[t].setUncaughtExceptionHandler((thread, throwable) -> exception.compareAndSet(null, throwable));
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		if (exception.get() != null) {
+			throw new RuntimeException("Exception while calculating network skims.", exception.get());
+		}
+		log.info("network skims calculated in " + (System.currentTimeMillis() - start) + " ms.");
+
+		return new NetworkSkims(originNodes, destinationNodes, departureTime, FloatBuffer.wrap(travelTimes),
+				FloatBuffer.wrap(travelDisutilities), FloatBuffer.wrap(distances));
+	}
+
+	/**
+	 * Grows the least-cost path tree from the origin until all destinations are settled, or no node is left.
+	 */
+	private void calcTree(final Tree tree, final int origin, final double departureTime, final int[] destinationByNode,
+			final int destinationCount) {
+		tree.reset();
+		tree.reach(origin, 0, 0, 0);
+		int remaining = destinationCount;
+		while (remaining > 0 && !tree.isEmpty()) {
+			int node = tree.poll();
+			if (destinationByNode[node] >= 0) {
+				remaining--;
+			}
+			double time = tree.time[node];
+			double cost = tree.cost[node];
+			double distance = tree.distance[node];
+			double now = departureTime + time;
+			for (int e = this.outFirst[node], last = this.outFirst[node + 1]; e < last; e++) {
+				int head = this.outHead[e];
+				if (tree.isSettled(head)) {
+					continue;
+				}
+				Link link = this.outLink[e];
+				double newCost = cost + this.travelDisutility.getLinkTravelDisutility(link, now, null, null);
+				if (!tree.isReached(head) || newCost < tree.cost[head]) {
+					tree.reach(head, newCost, time + this.travelTime.getLinkTravelTime(link, now, null, null),
+							distance + this.outLength[e]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Costs, travel times and distances of one tree search, with an indexed binary heap of the reached, unsettled
+	 * nodes. Only the reached nodes are reset between searches.
+	 */
+	private static final class Tree {
+
+		final double[] cost;
+		final double[] time;
+		final double[] distance;
+		final int[] reached;
+		int reachedCount = 0;
+		private final int[] heap;
+		private final int[] heapPosition;
+		private int heapSize = 0;
+
+		Tree(final int n) {
+			this.cost = new double[n];
+			this.time = new double[n];
+			this.distance = new double[n];
+			this.reached = new int[n];
+			this.heap = new int[n];
+			this.heapPosition = new int[n];
+			Arrays.fill(this.heapPosition, -1);
+		}
+
+		void reset() {
+			for (int i = 0; i < this.reachedCount; i++) {
+				this.heapPosition[this.reached[i]] = -1;
+			}
+			this.reachedCount = 0;
+			this.heapSize = 0;
+		}
+
+		boolean isReached(final int node) {
+			return this.heapPosition[node] != -1;
+		}
+
+		boolean isSettled(final int node) {
+			return this.heapPosition[node] == -2;
+		}
+
+		boolean isEmpty() {
+			return this.heapSize == 0;
+		}
+
+		void reach(final int node, final double newCost, final double newTime, final double newDistance) {
+			int position = this.heapPosition[node];
+			if (position == -1) {
+				this.reached[this.reachedCount++] = node;
+				position = this.heapSize++;
+			}
+			this.cost[node] = newCost;
+			this.time[node] = newTime;
+			this.distance[node] = newDistance;
+			siftUp(position, node);
+		}
+
+		int poll() {
+			int node = this.heap[0];
+			this.heapPosition[node] = -2;
+			int lastNode = this.heap[--this.heapSize];
+			if (this.heapSize > 0) {
+				siftDown(0, lastNode);
+			}
+			return node;
+		}
+
+		private void siftUp(int position, final int node) {
+			double key = this.cost[node];
+			while (position > 0) {
+				int parentPosition = (position - 1) >>> 1;
+				int parentNode = this.heap[parentPosition];
+				if (this.cost[parentNode] <= key) {
+					break;
+				}
+				this.heap[position] = parentNode;
+				this.heapPosition[parentNode] = position;
+				position = parentPosition;
+			}
+			this.heap[position] = node;
+			this.heapPosition[node] = position;
+		}
+
+		private void siftDown(int position, final int node) {
+			double key = this.cost[node];
+			int half = this.heapSize >>> 1;
+			while (position < half) {
+				int child = 2 * position + 1;
+				int right = child + 1;
+				if (right < this.heapSize && this.cost[this.heap[right]] < this.cost[this.heap[child]]) {
+					child = right;
+				}
+				if (key <= this.cost[this.heap[child]]) {
+					break;
+				}
+				this.heap[position] = this.heap[child];
+				this.heapPosition[this.heap[child]] = position;
+				position = child;
+			}
+			this.heap[position] = node;
+			this.heapPosition[node] = position;
+		}
+
+	}
+
+}
@@ -0,0 +1,349 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkSkims.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Travel times, travel disutilities and distances from a list of origin nodes to a list of destination nodes, for
+ * one departure time, as computed by {@link NetworkSkimCalculator}.
+ *
+ * <p>The values are stored as floats, row by row per origin. For queries in hot loops, look up the indices of the
+ * origin and destination once with {@link #getOriginIndex(Node)} and {@link #getDestinationIndex(Node)}, and then
+ * use the getters with the indices, which only read from the matrices. Unreachable destinations have the value
+ * {@link Float#POSITIVE_INFINITY}.</p>
+ *
+ * <p>Skims can be written to a file with {@link #write(String)}. {@link #read(String, Network)} maps the matrices of
+ * such a file into memory instead of reading them, so large skims are loaded lazily by the operating system and
+ * shared between processes reading the same file. Each matrix is limited to 2 GB, i.e. about 536 million pairs.</p>
+ *
+ * <p>Instances are immutable and may be queried from several threads.</p>
+ */
+public final class NetworkSkims {
+
+	private static final int FILE_MAGIC = 0x534b494d; // "SKIM"
+	private static final int FILE_VERSION = 1;
+	private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final Node[] origins;
+	private final Node[] destinations;
+	private final int[] originIndexById;
+	private final int[] destinationIndexById;
+	private final double departureTime;
+	private final FloatBuffer travelTimes;
+	private final FloatBuffer travelDisutilities;
+	private final FloatBuffer distances;
+
+	NetworkSkims(final Node[] origins, final Node[] destinations, final double departureTime,
+			final FloatBuffer travelTimes, final FloatBuffer travelDisutilities, final FloatBuffer distances) {
+		this.origins = origins;
+		this.destinations = destinations;
+		this.originIndexById = createIndex(origins);
+		this.destinationIndexById = createIndex(destinations);
+		this.departureTime = departureTime;
+		this.travelTimes = travelTimes;
+		this.travelDisutilities = travelDisutilities;
+		this.distances = distances;
+	}
+
+	/**
+	 * @return the number of cells of a matrix for the given numbers of origins and destinations.
+	 * @throws IllegalArgumentException if a matrix would not fit into 2 GB.
+	 */
+	static int getMatrixSize(final int originCount, final int destinationCount) {
+		long size = (long) originCount * destinationCount;
+		if (size * Float.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many origin-destination pairs for a skim matrix: " + originCount
+					+ " origins x " + destinationCount + " destinations.");
+		}
+		return (int) size;
+	}
+
+	private static int[] createIndex(final Node[] nodes) {
+		int maxIndex = -1;
+		for (Node node : nodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+		int[] indexById = new int[maxIndex + 1];
+		Arrays.fill(indexById, -1);
+		for (int i = 0; i < nodes.length; i++) {
+			int index = nodes[i].getId().index();
+			if (indexById[index] != -1) {
+				throw new IllegalArgumentException("node " + nodes[i].getId() + " is given more than once.");
+			}
+			indexById[index] = i;
+		}
+		return indexById;
+	}
+
+	public int getOriginCount() {
+		return this.origins.length;
+	}
+
+	public int getDestinationCount() {
+		return this.destinations.length;
+	}
+
+	public Node getOrigin(final int originIndex) {
+		return this.origins[originIndex];
+	}
+
+	public Node getDestination(final int destinationIndex) {
+		return this.destinations[destinationIndex];
+	}
+
+	public List<Node> getOrigins() {
+		return Collections.unmodifiableList(Arrays.asList(this.origins));
+	}
+
+	public List<Node> getDestinations() {
+		return Collections.unmodifiableList(Arrays.asList(this.destinations));
+	}
+
+	public double getDepartureTime() {
+		return this.departureTime;
+	}
+
+	/**
+	 * @return the index of the node among the origins, or -1 if it is none.
+	 */
+	public int getOriginIndex(final Node node) {
+		return getIndex(this.originIndexById, node.getId());
+	}
+
+	/**
+	 * @return the index of the node among the destinations, or -1 if it is none.
+	 */
+	public int getDestinationIndex(final Node node) {
+		return getIndex(this.destinationIndexById, node.getId());
+	}
+
+	private static int getIndex(final int[] indexById, final Id<Node> nodeId) {
+		int index = nodeId.index();
+		return index < indexById.length ? indexById[index] : -1;
+	}
+
+	public float getTravelTime(final int originIndex, final int destinationIndex) {
+		return this.travelTimes.get(getCell(originIndex, destinationIndex));
+	}
+
+	public float getTravelDisutility(final int originIndex, final int destinationIndex) {
+		return this.travelDisutilities.get(getCell(originIndex, destinationIndex));
+	}
+
+	public float getDistance(final int originIndex, final int destinationIndex) {
+		return this.distances.get(getCell(originIndex, destinationIndex));
+	}
+
+	/**
+	 * Convenience method for occasional queries; prefer {@link #getTravelTime(int, int)} in loops.
+	 */
+	public float getTravelTime(final Node origin, final Node destination) {
+		return getTravelTime(getExistingOriginIndex(origin), getExistingDestinationIndex(destination));
+	}
+
+	/**
+	 * Convenience method for occasional queries; prefer {@link #getTravelDisutility(int, int)} in loops.
+	 */
+	public float getTravelDisutility(final Node origin, final Node destination) {
+		return getTravelDisutility(getExistingOriginIndex(origin), getExistingDestinationIndex(destination));
+	}
+
+	/**
+	 * Convenience method for occasional queries; prefer {@link #getDistance(int, int)} in loops.
+	 */
+	public float getDistance(final Node origin, final Node destination) {
+		return getDistance(getExistingOriginIndex(origin), getExistingDestinationIndex(destination));
+	}
+
+	private int getCell(final int originIndex, final int destinationIndex) {
+		if (destinationIndex < 0 || destinationIndex >= this.destinations.length) {
+			// the buffer only checks the cell, which may still be valid for an invalid destination
+			throw new IndexOutOfBoundsException("destination index " + destinationIndex);
+		}
+		return originIndex * this.destinations.length + destinationIndex;
+	}
+
+	private int getExistingOriginIndex(final Node origin) {
+		int index = getOriginIndex(origin);
+		if (index < 0) {
+			throw new IllegalArgumentException("node " + origin.getId() + " is not an origin of these skims.");
+		}
+		return index;
+	}
+
+	private int getExistingDestinationIndex(final Node destination) {
+		int index = getDestinationIndex(destination);
+		if (index < 0) {
+			throw new IllegalArgumentException("node " + destination.getId() + " is not a destination of these skims.");
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the skims to a temporary file first, and then moves it into place, so that concurrent runs never map an
+	 * incomplete file.
+	 */
+	public void write(final String filename) {
+		Path file = Paths.get(filename).toAbsolutePath();
+		Path tmpFile = null;
+		try {
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(BYTE_ORDER);
+				buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(this.origins.length).putInt(this.destinations.length);
+				buffer.putDouble(this.departureTime);
+				long position = buffer.position();
+				for (Node[] nodes : new Node[][] { this.origins, this.destinations }) {
+					for (Node node : nodes) {
+						byte[] id = node.getId().toString().getBytes(StandardCharsets.UTF_8);
+						if (buffer.remaining() < Integer.BYTES + id.length) {
+							writeFully(channel, buffer);
+						}
+						if (buffer.remaining() < Integer.BYTES + id.length) {
+							throw new IllegalArgumentException("node id too long: " + node.getId());
+						}
+						buffer.putInt(id.length).put(id);
+						position += Integer.BYTES + id.length;
+					}
+				}
+				if (buffer.remaining() < Long.BYTES) {
+					writeFully(channel, buffer);
+				}
+				for (long padding = getDataOffset(position) - position; padding > 0; padding--) {
+					buffer.put((byte) 0);
+				}
+				for (FloatBuffer matrix : new FloatBuffer[] { this.travelTimes, this.travelDisutilities, this.distances }) {
+					FloatBuffer source = matrix.duplicate();
+					source.clear();
+					while (source.hasRemaining()) {
+						FloatBuffer floats = buffer.asFloatBuffer();
+						int count = Math.min(source.remaining(), floats.remaining());
+						FloatBuffer chunk = source.duplicate();
+						chunk.limit(chunk.position() + count);
+						floats.put(chunk);
+						source.position(source.position() + count);
+						buffer.position(buffer.position() + count * Float.BYTES);
+						writeFully(channel, buffer);
+					}
+				}
+				writeFully(channel, buffer);
+			}
+			Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (tmpFile != null) {
+				tmpFile.toFile().delete();
+			}
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * The matrices start at a multiple of 8 bytes, so that the mapped floats are aligned.
+	 */
+	private static long getDataOffset(final long headerSize) {
+		return (headerSize + 7) & ~7L;
+	}
+
+	/**
+	 * Maps the matrices of a file written by {@link #write(String)} into memory. The origins and destinations are
+	 * looked up by their ids in the network.
+	 */
+	public static NetworkSkims read(final String filename, final Network network) {
+		Path file = Paths.get(filename);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// closed with the channel; the matrices are mapped with absolute positions, so reading ahead does not matter
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			byte[] header = new byte[24];
+			in.readFully(header);
+			ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(BYTE_ORDER);
+			if (headerBuffer.getInt() != FILE_MAGIC || headerBuffer.getInt() != FILE_VERSION) {
+				throw new RuntimeException(filename + " is not a skims file of version " + FILE_VERSION + ".");
+			}
+			int originCount = headerBuffer.getInt();
+			int destinationCount = headerBuffer.getInt();
+			double departureTime = headerBuffer.getDouble();
+			long position = header.length;
+			Node[] origins = new Node[originCount];
+			Node[] destinations = new Node[destinationCount];
+			for (Node[] nodes : new Node[][] { origins, destinations }) {
+				for (int i = 0; i < nodes.length; i++) {
+					byte[] id = new byte[readInt(in)];
+					in.readFully(id);
+					position += Integer.BYTES + id.length;
+					nodes[i] = network.getNodes().get(Id.createNodeId(new String(id, StandardCharsets.UTF_8)));
+					if (nodes[i] == null) {
+						throw new RuntimeException(filename + " contains node " + new String(id, StandardCharsets.UTF_8)
+								+ ", which is not part of the network.");
+					}
+				}
+			}
+
+			int size = getMatrixSize(originCount, destinationCount);
+			long offset = getDataOffset(position);
+			if (channel.size() != offset + 3L * size * Float.BYTES) {
+				throw new RuntimeException(filename + " is not a complete skims file.");
+			}
+			FloatBuffer[] matrices = new FloatBuffer[3];
+			for (int m = 0; m < matrices.length; m++) {
+				long start = offset + (long) m * size * Float.BYTES;
+				matrices[m] = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) size * Float.BYTES).order(BYTE_ORDER).asFloatBuffer();
+			}
+			return new NetworkSkims(origins, destinations, departureTime, matrices[0], matrices[1], matrices[2]);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static int readInt(final DataInputStream in) throws IOException {
+		return BYTE_ORDER == ByteOrder.BIG_ENDIAN ? in.readInt() : Integer.reverseBytes(in.readInt());
+	}
+
+}
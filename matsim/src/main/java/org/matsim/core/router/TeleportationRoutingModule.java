@@ -39,7 +39,7 @@ import org.matsim.facilities.Facility;
 /**
  * @author thibautd
  */
-public class TeleportationRoutingModule implements RoutingModule {
+public class TeleportationRoutingModule implements ConcurrentRoutingModule {
 
 	private final String mode;
 
@@ -80,6 +80,11 @@ public class TeleportationRoutingModule implements RoutingModule {
 		return Arrays.asList(newLeg);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return "[TeleportationRoutingModule: mode="+this.mode+"]";
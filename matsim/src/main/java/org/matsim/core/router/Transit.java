@@ -24,6 +24,7 @@
 import com.google.inject.name.Named;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.pt.router.PooledTransitRouter;
 import org.matsim.pt.router.TransitRouter;
 
 import javax.inject.Inject;
@@ -31,22 +32,23 @@ import javax.inject.Provider;
 
 public class Transit implements Provider<RoutingModule> {
 
-	private final TransitRouter transitRouter;
+	private final Provider<TransitRouter> transitRouterProvider;
 
 	private final Scenario scenario;
 
 	private final RoutingModule transitWalkRouter;
 
 	@Inject
-    Transit(TransitRouter transitRouter, Scenario scenario, @Named(TransportMode.walk) RoutingModule transitWalkRouter) {
-		this.transitRouter = transitRouter;
+    Transit(Provider<TransitRouter> transitRouterProvider, Scenario scenario, @Named(TransportMode.walk) RoutingModule transitWalkRouter) {
+		this.transitRouterProvider = transitRouterProvider;
 		this.scenario = scenario;
 		this.transitWalkRouter = transitWalkRouter;
 	}
 
 	@Override
 	public RoutingModule get() {
-		return new TransitRouterWrapper(transitRouter,
+		// the TripRouter may call the module from several threads, so every query borrows a transit router from a pool
+		return new TransitRouterWrapper(new PooledTransitRouter(transitRouterProvider),
 					scenario.getTransitSchedule(),
 					scenario.getNetwork(),
 					transitWalkRouter);
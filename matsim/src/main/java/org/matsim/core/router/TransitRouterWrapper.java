@@ -33,6 +33,7 @@ import org.matsim.api.core.v01.population.Route;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.RouteUtils;
 import org.matsim.facilities.Facility;
+import org.matsim.pt.router.PooledTransitRouter;
 import org.matsim.pt.router.TransitRouter;
 import org.matsim.pt.routes.TransitPassengerRoute;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
@@ -42,7 +43,7 @@ import org.matsim.pt.transitSchedule.api.TransitSchedule;
  *
  * @author thibautd
  */
-public class TransitRouterWrapper implements RoutingModule {
+public class TransitRouterWrapper implements ConcurrentRoutingModule {
 	private final TransitRouter router;
 	private final RoutingModule walkRouter;
 	private final TransitSchedule transitSchedule;
@@ -163,4 +164,9 @@ public class TransitRouterWrapper implements RoutingModule {
 		return route;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return this.router instanceof PooledTransitRouter && ConcurrentRoutingModule.isThreadSafe(this.walkRouter);
+	}
+
 } 
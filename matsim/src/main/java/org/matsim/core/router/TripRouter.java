@@ -21,11 +21,11 @@ package org.matsim.core.router;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -55,13 +55,20 @@ import com.google.common.base.Preconditions;
  * how to use this API from your own code.
  * See {@link tutorial.programming.example12PluggableTripRouter.RunPluggableTripRouterExample} and {@link tutorial.programming.example13MultiStageTripRouting.RunTeleportationMobsimWithCustomRoutingExample} for examples
  * how to extend or replace this behavior with your own.
+ * <p></p>
+ * A trip router can be used by several threads at the same time.  A routing module is called by one thread at a time,
+ * unless it declares itself thread-safe (see {@link ConcurrentRoutingModule}).  The default ones do: they keep the state
+ * of a query in pooled least cost path calculators or transit routers (see
+ * {@link org.matsim.core.router.util.PooledLeastCostPathCalculator} and {@link org.matsim.pt.router.PooledTransitRouter}),
+ * while the expensive read-only data, i.e. the routing networks, the landmarks and the
+ * {@link ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData}, is shared by the factories that create them.
  *
  * @author thibautd
  */
 public final class TripRouter implements MatsimExtensionPoint {
 	private static final Logger log = Logger.getLogger(TripRouter.class );
 
-	private final Map<String, RoutingModule> routingModules = new HashMap<>();
+	private final Map<String, RoutingModule> routingModules = new ConcurrentHashMap<>();
 	private final FallbackRoutingModule fallbackRoutingModule;
 
 	private Config config;
@@ -155,14 +162,15 @@ public final class TripRouter implements MatsimExtensionPoint {
 	 * @throws UnknownModeException if no RoutingModule is registered for the
 	 * given mode.
 	 */
-	public synchronized List<? extends PlanElement> calcRoute(
+	public List<? extends PlanElement> calcRoute(
 			final String mainMode,
 			final Facility fromFacility,
 			final Facility toFacility,
 			final double departureTime,
 			final Person person) {
-		// I need this "synchronized" since I want mobsim agents to be able to call this during the mobsim.  So when the
-		// mobsim is multi-threaded, multiple agents might call this here at the same time.  kai, nov'17
+		// Mobsim agents may call this during the mobsim, so when the mobsim is multi-threaded, multiple agents might call
+		// this here at the same time.  This used to be "synchronized"; now only the modules that are not thread-safe are
+		// locked.
 
 		Gbl.assertNotNull( fromFacility );
 		Gbl.assertNotNull( toFacility );
@@ -170,15 +178,23 @@ public final class TripRouter implements MatsimExtensionPoint {
 		RoutingModule module = routingModules.get( mainMode );
 
 		if (module != null) {
-			List<? extends PlanElement> trip =
-					module.calcRoute(
-						fromFacility,
-						toFacility,
-						departureTime,
-						person);
+			List<? extends PlanElement> trip;
+			if ( ConcurrentRoutingModule.isThreadSafe( module ) ) {
+				trip = module.calcRoute( fromFacility, toFacility, departureTime, person );
+			} else {
+				synchronized (module) {
+					trip = module.calcRoute( fromFacility, toFacility, departureTime, person );
+				}
+			}
 
 			if ( trip == null ) {
-				trip = fallbackRoutingModule.calcRoute( fromFacility, toFacility, departureTime, person ) ;
+				if ( ConcurrentRoutingModule.isThreadSafe( fallbackRoutingModule ) ) {
+					trip = fallbackRoutingModule.calcRoute( fromFacility, toFacility, departureTime, person ) ;
+				} else {
+					synchronized (fallbackRoutingModule) {
+						trip = fallbackRoutingModule.calcRoute( fromFacility, toFacility, departureTime, person ) ;
+					}
+				}
 			}
 			for (Leg leg: TripStructureUtils.getLegs(trip)) {
 				TripStructureUtils.setRoutingMode(leg, mainMode);
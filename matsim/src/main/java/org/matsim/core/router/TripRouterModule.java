@@ -40,7 +40,7 @@ public class TripRouterModule extends AbstractModule {
 	    // same Landmarks instance for all modes ... although one could do better by doing the preprocessing separately for the different modes.
 	    // kai/mm, jan'17
 
-        bind(TripRouter.class); // not thread-safe, not a singleton
+        bind(TripRouter.class); // thread-safe (see there), but not a singleton
         bind(MainModeIdentifier.class).to(MainModeIdentifierImpl.class);
         bind(AnalysisMainModeIdentifier.class).to(RoutingModeMainModeIdentifier.class);
 
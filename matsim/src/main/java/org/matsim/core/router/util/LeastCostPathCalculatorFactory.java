@@ -23,6 +23,7 @@ package org.matsim.core.router.util;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.internal.MatsimExtensionPoint;
 import org.matsim.core.api.internal.MatsimFactory;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 
 /**
  * Example(s):<ul>
@@ -38,4 +39,13 @@ public interface LeastCostPathCalculatorFactory extends MatsimFactory, MatsimExt
 	
 	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes);
 
+	/**
+	 * Creates a calculator with a new travel disutility of the given factory.  Factories that prepare data per travel
+	 * disutility, like the {@link org.matsim.core.router.ContractionHierarchiesFactory}, can share it between all
+	 * calculators with the same travel disutility factory.
+	 */
+	public default LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutilityFactory travelCostsFactory, final TravelTime travelTimes) {
+		return createPathCalculator(network, travelCostsFactory.createTravelDisutility(travelTimes), travelTimes);
+	}
+
 }
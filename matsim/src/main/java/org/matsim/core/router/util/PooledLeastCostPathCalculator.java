@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PooledLeastCostPathCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A least cost path calculator that may be called by several threads at the same time.  Every query borrows a
+ * calculator from a pool and returns it afterwards; a new one is created when all are in use.  So there are never more
+ * calculators than concurrent queries, and they are released together with this object.
+ * <p></p>
+ * The supplier should create everything that keeps state during a query, i.e. the travel disutility (e.g. with
+ * routing randomness) as well as the calculator.  The read-only routing data is shared anyway by the factories of the
+ * fast routers.
+ */
+public final class PooledLeastCostPathCalculator implements LeastCostPathCalculator {
+
+	private final Supplier<? extends LeastCostPathCalculator> calculatorFactory;
+	private final Queue<LeastCostPathCalculator> idleCalculators = new ConcurrentLinkedQueue<>();
+
+	public PooledLeastCostPathCalculator(final Supplier<? extends LeastCostPathCalculator> calculatorFactory) {
+		this.calculatorFactory = calculatorFactory;
+		// (creates the first calculator right away, so that configuration errors show up here)
+		this.idleCalculators.add(calculatorFactory.get());
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		LeastCostPathCalculator calculator = this.idleCalculators.poll();
+		if (calculator == null) {
+			calculator = this.calculatorFactory.get();
+		}
+		try {
+			return calculator.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+		} finally {
+			this.idleCalculators.add(calculator);
+		}
+	}
+
+}
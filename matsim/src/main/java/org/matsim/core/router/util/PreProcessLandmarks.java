@@ -21,18 +21,31 @@
 package org.matsim.core.router.util;
 
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
-import java.util.Map;
-import java.util.PriorityQueue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
-import org.matsim.core.api.internal.MatsimComparator;
 
 /**
  * Pre-processes a given network, gathering information which can be used by
@@ -41,10 +54,19 @@ import org.matsim.core.api.internal.MatsimComparator;
  * nodes in the network that act as landmarks and computes the last-cost-path
  * from and to each node in the network to each of the landmarks.
  *
+ * <p>The travel times are computed with one Dijkstra per landmark and direction, running in parallel, and are
+ * stored in two primitive arrays that are shared read-only by the {@link LandmarksData} of all nodes, and thus by all
+ * routers created from this object. If a cache directory is set, the arrays are written to a file named after a hash
+ * of the network, the minimal travel disutilities of its links and the landmarks, and read from there in later runs.</p>
+ *
  * @author lnicolas
  */
 public class PreProcessLandmarks extends PreProcessEuclidean {
 
+	private static final int CACHE_MAGIC = 0x4c4d4b53; // "LMKS"
+	private static final int CACHE_VERSION = 1;
+	private static final int CACHE_HEADER_SIZE = 16;
+
 	private final int landmarkCount;
 
 	private final Landmarker landmarker;
@@ -53,6 +75,8 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	
 	private int numberOfThreads = 8;
 
+	private File cacheDirectory = null;
+
 	private static final Logger log = Logger.getLogger(PreProcessLandmarks.class);
 
 	public PreProcessLandmarks(final TravelDisutility costFunction) {
@@ -82,6 +106,16 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	public void setNumberOfThreads(int numberOfThreads) {
 		this.numberOfThreads = numberOfThreads;
 	}
+
+	/**
+	 * Sets the directory in which the landmark travel times are cached between runs. Default is <code>null</code>,
+	 * i.e. the travel times are always computed.
+	 *
+	 * @param cacheDirectory
+	 */
+	public void setCacheDirectory(final File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
 	
 	/**
 	 * @param costFunction
@@ -114,124 +148,388 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		landmarks = landmarker.identifyLandmarks( landmarkCount , network );
 		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
 
-		log.info("Initializing landmarks data");
-		for (Node node : network.getNodes().values()) {
-			this.nodeData.put(node, new LandmarksData(this.landmarkCount));
+		now = System.currentTimeMillis();
+		Graph graph = new Graph(network, this.costFunction);
+		int[] landmarkIndices = new int[this.landmarks.length];
+		for (int i = 0; i < this.landmarks.length; i++) {
+			landmarkIndices[i] = graph.getIndex(this.landmarks[i]);
 		}
-		
-		int nOfThreads = this.numberOfThreads;
-		if (nOfThreads > this.landmarks.length) {
-			nOfThreads = this.landmarks.length;
+
+		File cacheFile = null;
+		double[] minTravelTimes = null;
+		double[] maxTravelTimes = null;
+		if (this.cacheDirectory != null) {
+			cacheFile = new File(this.cacheDirectory, "landmarks-" + graph.hash(landmarkIndices) + ".bin");
+			if (cacheFile.exists()) {
+				double[][] tables = readCache(cacheFile, graph.nodes.length, this.landmarks.length);
+				if (tables != null) {
+					minTravelTimes = tables[0];
+					maxTravelTimes = tables[1];
+					log.info("read landmark travel times from " + cacheFile);
+				}
+			}
+		}
+
+		if (minTravelTimes == null) {
+			int nOfThreads = this.numberOfThreads;
+			if (nOfThreads > this.landmarks.length) {
+				nOfThreads = this.landmarks.length;
+			}
+			if (nOfThreads < 2) {
+				nOfThreads = 2; // always use at least two threads
+			}
+			log.info("Calculating distance from each node to each of the " + this.landmarkCount + " landmarks using " + nOfThreads + " threads...");
+
+			minTravelTimes = new double[graph.nodes.length * this.landmarks.length];
+			maxTravelTimes = new double[graph.nodes.length * this.landmarks.length];
+			calculateTravelTimes(graph, landmarkIndices, nOfThreads, minTravelTimes, maxTravelTimes);
+
+			if (cacheFile != null) {
+				writeCache(cacheFile, minTravelTimes, maxTravelTimes, graph.nodes.length, this.landmarks.length);
+			}
 		}
-		if (nOfThreads < 2) {
-			nOfThreads = 2; // always use at least two threads
+
+		log.info("Initializing landmarks data");
+		for (int i = 0; i < graph.nodes.length; i++) {
+			// keep the existing data, it contains the dead ends found by super.run()
+			getNodeData(graph.nodes[i]).setTravelTimes(minTravelTimes, maxTravelTimes, i * this.landmarks.length);
 		}
- 		log.info("Calculating distance from each node to each of the " + this.landmarkCount + " landmarks using " + nOfThreads + " threads...");
-		now = System.currentTimeMillis();
 
-		
+		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
+	}
+
+	private static void calculateTravelTimes(final Graph graph, final int[] landmarkIndices, final int nOfThreads,
+			final double[] minTravelTimes, final double[] maxTravelTimes) {
 		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
-		for (int i = 0; i < this.landmarks.length; i++) {
-			executor.execute(new Calculator(i, this.landmarks[i], this.nodeData, this.costFunction));
+		try {
+			List<Future<double[]>> fromLandmark = new ArrayList<>();
+			List<Future<double[]>> toLandmark = new ArrayList<>();
+			for (int landmark : landmarkIndices) {
+				fromLandmark.add(executor.submit(() -> graph.calcTravelTimes(landmark, true)));
+				toLandmark.add(executor.submit(() -> graph.calcTravelTimes(landmark, false)));
+			}
+			int stride = landmarkIndices.length;
+			for (int l = 0; l < stride; l++) {
+				double[] from = fromLandmark.get(l).get();
+				double[] to = toLandmark.get(l).get();
+				for (int n = 0; n < from.length; n++) {
+					minTravelTimes[n * stride + l] = Math.min(from[n], to[n]);
+					maxTravelTimes[n * stride + l] = Math.max(from[n], to[n]);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Landmarks pre-processing failed.", e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-			log.info("wait for landmarks Calculator to finish...");
-			try {
-				if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
-					throw new RuntimeException("Landmarks pre-processing timeout.");
+	}
+
+	private static double[][] readCache(final File file, final int nodeCount, final int landmarkCount) {
+		int length = nodeCount * landmarkCount;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() != CACHE_HEADER_SIZE + 2L * length * Double.BYTES) {
+				log.warn("ignoring landmarks cache " + file + " of unexpected size " + channel.size());
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			buffer.limit(CACHE_HEADER_SIZE);
+			readFully(channel, buffer);
+			if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION || buffer.getInt() != nodeCount
+					|| buffer.getInt() != landmarkCount) {
+				log.warn("ignoring landmarks cache " + file + " with unexpected header");
+				return null;
+			}
+			double[][] tables = new double[][] { new double[length], new double[length] };
+			for (double[] table : tables) {
+				int offset = 0;
+				while (offset < length) {
+					int count = Math.min(length - offset, buffer.capacity() / Double.BYTES);
+					buffer.clear().limit(count * Double.BYTES);
+					readFully(channel, buffer);
+					buffer.asDoubleBuffer().get(table, offset, count);
+					offset += count;
 				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
 			}
+			return tables;
+		} catch (IOException e) {
+			log.warn("could not read landmarks cache " + file + ", the travel times are computed instead.", e);
+			return null;
 		}
+	}
 
-		for (Node node : network.getNodes().values()) {
-			LandmarksData r = getNodeData(node);
-			r.updateMinMaxTravelTimes();
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("unexpected end of file");
+			}
 		}
+		buffer.flip();
+	}
 
-		for (Node node : network.getNodes().values()) {
-			LandmarksData r = getNodeData(node);
-			for (int i = 0; i < this.landmarks.length; i++) {
-				if (r.getMinLandmarkTravelTime(i) > r.getMaxLandmarkTravelTime(i)) {
-					log.info("Min > max for node " + node.getId() + " and landmark " + i);
+	/**
+	 * Writes to a temporary file first, so that concurrent runs never read an incomplete cache.
+	 */
+	private static void writeCache(final File file, final double[] minTravelTimes, final double[] maxTravelTimes,
+			final int nodeCount, final int landmarkCount) {
+		Path tmpFile = null;
+		try {
+			Files.createDirectories(file.toPath().getParent());
+			tmpFile = Files.createTempFile(file.toPath().getParent(), file.getName(), ".tmp");
+			try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+				buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putInt(nodeCount).putInt(landmarkCount);
+				for (double[] table : new double[][] { minTravelTimes, maxTravelTimes }) {
+					int offset = 0;
+					while (offset < table.length) {
+						DoubleBuffer doubles = buffer.asDoubleBuffer();
+						int count = Math.min(table.length - offset, doubles.remaining());
+						doubles.put(table, offset, count);
+						buffer.position(buffer.position() + count * Double.BYTES);
+						offset += count;
+						writeFully(channel, buffer);
+					}
 				}
+				writeFully(channel, buffer);
+			}
+			Files.move(tmpFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.info("wrote landmark travel times to " + file);
+		} catch (IOException e) {
+			log.warn("could not write landmarks cache " + file, e);
+			if (tmpFile != null) {
+				tmpFile.toFile().delete();
 			}
 		}
+	}
 
-		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
 	}
 
-	private static class Calculator implements Runnable {
-		
-		private final int landmarkIdx;
-		private final Node landmark;
-		private final Map<Node, DeadEndData> nodeData;
-		private final TravelDisutility costFunction;
-		
-		public Calculator(final int landmarkIdx, final Node landmark, final Map<Node, DeadEndData> nodeData, final TravelDisutility costFunction) {
-			this.landmarkIdx = landmarkIdx;
-			this.landmark = landmark;
-			this.nodeData = nodeData;
-			this.costFunction = costFunction;
+	/**
+	 * The network in compressed sparse row format, with the minimal travel disutility of each link. The
+	 * disutilities are computed once up front, so the cost function is not called concurrently.
+	 */
+	private static final class Graph {
+
+		final Node[] nodes;
+		private final int[] nodeIndexById;
+		private final int[] outFirst;
+		private final int[] outHead;
+		private final double[] outCost;
+		private final int[] inFirst;
+		private final int[] inTail;
+		private final double[] inCost;
+
+		Graph(final Network network, final TravelDisutility costFunction) {
+			this.nodes = network.getNodes().values().toArray(new Node[0]);
+			this.nodeIndexById = new int[Id.getNumberOfIds(Node.class)];
+			Arrays.fill(this.nodeIndexById, -1);
+			for (int i = 0; i < this.nodes.length; i++) {
+				this.nodeIndexById[this.nodes[i].getId().index()] = i;
+			}
+
+			int linkCount = network.getLinks().size();
+			int[] from = new int[linkCount];
+			int[] to = new int[linkCount];
+			double[] cost = new double[linkCount];
+			this.outFirst = new int[this.nodes.length + 1];
+			this.inFirst = new int[this.nodes.length + 1];
+			int l = 0;
+			for (Link link : network.getLinks().values()) {
+				from[l] = getIndex(link.getFromNode());
+				to[l] = getIndex(link.getToNode());
+				cost[l] = costFunction.getLinkMinimumTravelDisutility(link);
+				this.outFirst[from[l] + 1]++;
+				this.inFirst[to[l] + 1]++;
+				l++;
+			}
+			for (int i = 0; i < this.nodes.length; i++) {
+				this.outFirst[i + 1] += this.outFirst[i];
+				this.inFirst[i + 1] += this.inFirst[i];
+			}
+			this.outHead = new int[linkCount];
+			this.outCost = new double[linkCount];
+			this.inTail = new int[linkCount];
+			this.inCost = new double[linkCount];
+			int[] outPos = Arrays.copyOf(this.outFirst, this.nodes.length);
+			int[] inPos = Arrays.copyOf(this.inFirst, this.nodes.length);
+			for (l = 0; l < linkCount; l++) {
+				int o = outPos[from[l]]++;
+				this.outHead[o] = to[l];
+				this.outCost[o] = cost[l];
+				int i = inPos[to[l]]++;
+				this.inTail[i] = from[l];
+				this.inCost[i] = cost[l];
+			}
 		}
-		
-		@Override
-		public void run() {
-			expandLandmarkFrom();
-			expandLandmarkTo();
+
+		int getIndex(final Node node) {
+			int index = node.getId().index();
+			if (index >= this.nodeIndexById.length || this.nodeIndexById[index] < 0) {
+				throw new IllegalArgumentException("node " + node.getId() + " is not part of the network.");
+			}
+			return this.nodeIndexById[index];
 		}
-	
-		private void expandLandmarkFrom() {
-			LandmarksFromTravelTimeComparator comparator = new LandmarksFromTravelTimeComparator(this.nodeData, this.landmarkIdx);
-			PriorityQueue<Node> pendingNodes = new PriorityQueue<>(100, comparator);
-			LandmarksData role = (LandmarksData) this.nodeData.get(this.landmark);
-			role.setToLandmarkTravelTime(this.landmarkIdx, 0.0);
-			role.setFromLandmarkTravelTime(this.landmarkIdx, 0.0);
-			pendingNodes.add(this.landmark);
+
+		/**
+		 * @return the least travel disutility from (<code>forward</code>) or to the landmark for every node,
+		 * {@link Double#POSITIVE_INFINITY} if there is none.
+		 */
+		double[] calcTravelTimes(final int landmark, final boolean forward) {
+			int[] first = forward ? this.outFirst : this.inFirst;
+			int[] adjacent = forward ? this.outHead : this.inTail;
+			double[] cost = forward ? this.outCost : this.inCost;
+
+			double[] travelTimes = new double[this.nodes.length];
+			Arrays.fill(travelTimes, Double.POSITIVE_INFINITY);
+			NodeHeap pendingNodes = new NodeHeap(travelTimes);
+			travelTimes[landmark] = 0.0;
+			pendingNodes.decreaseKey(landmark);
 			while (!pendingNodes.isEmpty()) {
-				Node node = pendingNodes.poll();
-				double fromTravTime = ((LandmarksData) this.nodeData.get(node)).getFromLandmarkTravelTime(this.landmarkIdx);
-				LandmarksData role2;
-				for (Link l : node.getOutLinks().values()) {
-					Node n;
-					n = l.getToNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
-					role2 = (LandmarksData) this.nodeData.get(n);
-					double totalTravelTime = fromTravTime + linkTravTime;
-					if (role2.getFromLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
-						role2.setFromLandmarkTravelTime(this.landmarkIdx, totalTravelTime);
-						pendingNodes.add(n);
+				int node = pendingNodes.poll();
+				double travelTime = travelTimes[node];
+				for (int e = first[node]; e < first[node + 1]; e++) {
+					int n = adjacent[e];
+					double totalTravelTime = travelTime + cost[e];
+					if (totalTravelTime < travelTimes[n]) {
+						travelTimes[n] = totalTravelTime;
+						pendingNodes.decreaseKey(n);
 					}
 				}
 			}
+			return travelTimes;
 		}
 
-		private void expandLandmarkTo() {
-			LandmarksToTravelTimeComparator comparator = new LandmarksToTravelTimeComparator(this.nodeData, this.landmarkIdx);
-			PriorityQueue<Node> pendingNodes = new PriorityQueue<>(100, comparator);
-			LandmarksData role = (LandmarksData) this.nodeData.get(this.landmark);
-			role.setToLandmarkTravelTime(this.landmarkIdx, 0.0);
-			role.setFromLandmarkTravelTime(this.landmarkIdx, 0.0);
-			pendingNodes.add(this.landmark);
-			while (!pendingNodes.isEmpty()) {
-				Node node = pendingNodes.poll();
-				double toTravTime = ((LandmarksData) this.nodeData.get(node)).getToLandmarkTravelTime(this.landmarkIdx);
-				LandmarksData role2;
-				for (Link l : node.getInLinks().values()) {
-					Node n = l.getFromNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
-					role2 = (LandmarksData) this.nodeData.get(n);
-					double totalTravelTime = toTravTime + linkTravTime;
-					if (role2.getToLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
-						role2.setToLandmarkTravelTime(this.landmarkIdx, totalTravelTime);
-						pendingNodes.add(n);
+		/**
+		 * @return a hex encoded hash of everything the landmark travel times depend on: the node ids in their
+		 * order, the links with their minimal travel disutilities, and the landmarks.
+		 */
+		String hash(final int[] landmarkIndices) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+				buffer.putInt(CACHE_VERSION).putInt(this.nodes.length).putInt(this.outHead.length);
+				for (Node node : this.nodes) {
+					byte[] id = node.getId().toString().getBytes(StandardCharsets.UTF_8);
+					if (buffer.remaining() < id.length + Integer.BYTES) {
+						update(digest, buffer);
+					}
+					if (id.length + Integer.BYTES > buffer.capacity()) {
+						digest.update(id);
+					} else {
+						buffer.putInt(id.length).put(id);
+					}
+				}
+				for (int n = 0; n < this.nodes.length; n++) {
+					for (int e = this.outFirst[n]; e < this.outFirst[n + 1]; e++) {
+						if (buffer.remaining() < 2 * Integer.BYTES + Double.BYTES) {
+							update(digest, buffer);
+						}
+						buffer.putInt(n).putInt(this.outHead[e]).putDouble(this.outCost[e]);
+					}
+				}
+				for (int landmark : landmarkIndices) {
+					if (buffer.remaining() < Integer.BYTES) {
+						update(digest, buffer);
 					}
+					buffer.putInt(landmark);
 				}
+				update(digest, buffer);
+				StringBuilder hex = new StringBuilder();
+				for (byte b : digest.digest()) {
+					hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+				}
+				return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
 			}
 		}
-	
+
+		private static void update(final MessageDigest digest, final ByteBuffer buffer) {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+
+	}
+
+	/**
+	 * Binary min-heap of node indices, ordered by the travel times they are currently assigned.
+	 */
+	private static final class NodeHeap {
+
+		private final double[] keys;
+		private final int[] heap;
+		private final int[] position;
+		private int size = 0;
+
+		NodeHeap(final double[] keys) {
+			this.keys = keys;
+			this.heap = new int[keys.length];
+			this.position = new int[keys.length];
+			Arrays.fill(this.position, -1);
+		}
+
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		/**
+		 * Adds the node, or moves it up after its key was decreased.
+		 */
+		void decreaseKey(final int node) {
+			int pos = this.position[node];
+			if (pos < 0) {
+				pos = this.size++;
+			}
+			double key = this.keys[node];
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+				if (this.keys[this.heap[parent]] <= key) {
+					break;
+				}
+				this.heap[pos] = this.heap[parent];
+				this.position[this.heap[pos]] = pos;
+				pos = parent;
+			}
+			this.heap[pos] = node;
+			this.position[node] = pos;
+		}
+
+		int poll() {
+			int min = this.heap[0];
+			int last = this.heap[--this.size];
+			double key = this.keys[last];
+			int pos = 0;
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= this.size) {
+					break;
+				}
+				if (child + 1 < this.size && this.keys[this.heap[child + 1]] < this.keys[this.heap[child]]) {
+					child++;
+				}
+				if (key <= this.keys[this.heap[child]]) {
+					break;
+				}
+				this.heap[pos] = this.heap[child];
+				this.position[this.heap[pos]] = pos;
+				pos = child;
+			}
+			if (this.size > 0) {
+				this.heap[pos] = last;
+				this.position[last] = pos;
+			}
+			this.position[min] = -1;
+			return min;
+		}
+
 	}
 
 	public Node[] getLandmarks() {
@@ -253,122 +551,36 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		return (LandmarksData) r;
 	}
 
+	/**
+	 * The landmark travel times of one node, as a view on the tables shared by all nodes.
+	 */
 	public static class LandmarksData extends DeadEndData {
 
-		private final double[] landmarkTravelTime1;
-		private final double[] landmarkTravelTime2;
+		private double[] minTravelTimes;
+		private double[] maxTravelTimes;
+		private int offset;
 
 		LandmarksData(final int landmarkCount) {
-			this.landmarkTravelTime2 = new double[landmarkCount];
-			this.landmarkTravelTime1 = new double[landmarkCount];
-			for (int i = 0; i < this.landmarkTravelTime2.length; i++) {
-				this.landmarkTravelTime2[i] = Double.POSITIVE_INFINITY;
-				this.landmarkTravelTime1[i] = Double.POSITIVE_INFINITY;
-			}
-		}
-
-		void setToLandmarkTravelTime(final int landmarkIndex, final double travelTime) {
-			this.landmarkTravelTime2[landmarkIndex] = travelTime;
+			this.minTravelTimes = new double[landmarkCount];
+			this.maxTravelTimes = new double[landmarkCount];
+			Arrays.fill(this.minTravelTimes, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.maxTravelTimes, Double.POSITIVE_INFINITY);
+			this.offset = 0;
 		}
 
-		void setFromLandmarkTravelTime(final int landmarkIndex, final double travelTime) {
-			this.landmarkTravelTime1[landmarkIndex] = travelTime;
-		}
-
-		double getToLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime2[landmarkIndex];
-		}
-
-		double getFromLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime1[landmarkIndex];
-		}
-
-		void updateMinMaxTravelTimes() {
-			for (int i = 0; i < this.landmarkTravelTime1.length; i++) {
-				setTravelTimes(i, this.landmarkTravelTime2[i], this.landmarkTravelTime1[i]);
-			}
-		}
-
-		private void setTravelTimes(final int landmarkIndex, final double travelTime1,
-				final double travelTime2) {
-			if (travelTime1 > travelTime2) {
-				this.landmarkTravelTime2[landmarkIndex] = travelTime1;
-				this.landmarkTravelTime1[landmarkIndex] = travelTime2;
-			} else {
-				this.landmarkTravelTime1[landmarkIndex] = travelTime1;
-				this.landmarkTravelTime2[landmarkIndex] = travelTime2;
-			}
+		void setTravelTimes(final double[] minTravelTimes, final double[] maxTravelTimes, final int offset) {
+			this.minTravelTimes = minTravelTimes;
+			this.maxTravelTimes = maxTravelTimes;
+			this.offset = offset;
 		}
 
 		public double getMinLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime1[landmarkIndex];
+			return this.minTravelTimes[this.offset + landmarkIndex];
 		}
 
 		public double getMaxLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime2[landmarkIndex];
+			return this.maxTravelTimes[this.offset + landmarkIndex];
 		}
 	}
 
-    /**
-	 * Sorts the Nodes ascending according to their ToLandmarkTravelTime.
-	 *
-	 * @author lnicolas
-	 * @author mrieser
-	 */
-	private static class LandmarksToTravelTimeComparator implements Comparator<Node>, MatsimComparator {
-		private final Map<Node, DeadEndData> roleData;
-		private final int landmarkIndex;
-
-		protected LandmarksToTravelTimeComparator(final Map<Node, DeadEndData> roleData, final int landmarkIndex) {
-			this.roleData = roleData;
-			this.landmarkIndex = landmarkIndex;
-		}
-
-		@Override
-		public int compare(final Node n1, final Node n2) {
-
-			double c1 = ((LandmarksData) this.roleData.get(n1)).getToLandmarkTravelTime(this.landmarkIndex);
-			double c2 = ((LandmarksData) this.roleData.get(n2)).getToLandmarkTravelTime(this.landmarkIndex);
-
-			if (c1 < c2) {
-				return -1;
-			}
-			if (c1 > c2) {
-				return +1;
-			}
-			return n1.getId().compareTo(n2.getId());
-		}
-	}
-
-	/**
-	 * Sorts the Nodes ascending according to their FromLandmarkTravelTime.
-	 *
-	 * @author lnicolas
-	 * @author mrieser
-	 */
-	private static class LandmarksFromTravelTimeComparator implements Comparator<Node>, MatsimComparator {
-		private final Map<Node, DeadEndData> roleData;
-		private final int landmarkIndex;
-		
-		protected LandmarksFromTravelTimeComparator(final Map<Node, DeadEndData> roleData, final int landmarkIndex) {
-			this.roleData = roleData;
-			this.landmarkIndex = landmarkIndex;
-		}
-		
-		@Override
-		public int compare(final Node n1, final Node n2) {
-			
-			double c1 = ((LandmarksData) this.roleData.get(n1)).getFromLandmarkTravelTime(this.landmarkIndex);
-			double c2 = ((LandmarksData) this.roleData.get(n2)).getFromLandmarkTravelTime(this.landmarkIndex);
-			
-			if (c1 < c2) {
-				return -1;
-			}
-			if (c1 > c2) {
-				return +1;
-			}
-			return n1.getId().compareTo(n2.getId());
-		}
-	}
-	
 }
@@ -49,6 +49,7 @@ import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.vehicles.MatsimVehicleReader;
 
 
+import java.io.File;
 import java.net.URL;
 import java.util.*;
 
@@ -110,14 +111,35 @@ class ScenarioLoaderImpl {
 //		log.info("loading scenario from base directory: " + currentDir);
 		// the above is not used and thus only causing confusion in the log output.  kai, sep'18
 
-		this.loadNetwork();
-		this.loadActivityFacilities();
-		this.loadPopulation();
-		this.loadHouseholds(); // tests internally if the file is there
-		this.loadTransit(); // tests internally if the file is there
-		this.loadTransitVehicles(); // tests internally if the file is there
-		if (this.config.vehicles().getVehiclesFile()!=null ) {
-			this.loadVehicles() ;
+		File snapshot = ScenarioSnapshot.getSnapshotFile(this.config);
+		if (snapshot == null && this.config.global().getScenarioSnapshotFile() != null) {
+			log.warn("scenario snapshot " + this.config.global().getScenarioSnapshotFile() + " is not a local file, it will not be used.");
+		}
+		String inputs = snapshot == null ? null : ScenarioSnapshot.describeInputs(this.config);
+		if (snapshot != null && snapshot.isFile() && inputs.equals(ScenarioSnapshotReader.readInputs(snapshot.toPath()))) {
+			// the snapshot contains the content of the attribute files, but the config must still allow them:
+			this.checkDeprecatedAttributeFiles();
+			ScenarioSnapshotReader reader = new ScenarioSnapshotReader(this.scenario);
+			reader.putAttributeConverters(this.attributeConverters);
+			reader.read(snapshot.toPath());
+			this.loadNetworkChangeEvents();
+			this.loadHouseholds(); // not part of the snapshot
+		} else {
+			if (snapshot != null && snapshot.isFile()) {
+				log.info("scenario snapshot " + snapshot + " was not created from the current input files, loading the input files instead.");
+			}
+			this.loadNetwork();
+			this.loadActivityFacilities();
+			this.loadPopulation();
+			this.loadHouseholds(); // tests internally if the file is there
+			this.loadTransit(); // tests internally if the file is there
+			this.loadTransitVehicles(); // tests internally if the file is there
+			if (this.config.vehicles().getVehiclesFile()!=null ) {
+				this.loadVehicles() ;
+			}
+			if (snapshot != null) {
+				this.writeSnapshot(snapshot, inputs);
+			}
 		}
 		if (this.config.network().getLaneDefinitionsFile()!=null ) {
 			this.loadLanes();
@@ -142,6 +164,12 @@ class ScenarioLoaderImpl {
             reader.putAttributeConverters( attributeConverters );
             reader.parse(networkUrl);
 
+			this.loadNetworkChangeEvents();
+		}
+	}
+
+	private void loadNetworkChangeEvents() {
+		if ((this.config.network() != null) && (this.config.network().getInputFile() != null)) {
 			if ((this.config.network().getChangeEventsInputFile()!= null) && this.config.network().isTimeVariantNetwork()) {
 				log.info("loading network change events from " + this.config.network().getChangeEventsInputFileUrl(this.config.getContext()).getFile());
 				Network network = this.scenario.getNetwork();
@@ -153,6 +181,35 @@ class ScenarioLoaderImpl {
 		}
 	}
 
+	/**
+	 * Fails like the load methods if one of the deprecated attribute files read into the snapshot is set, but the
+	 * config does not insist on using it.
+	 */
+	@SuppressWarnings("deprecation") // reads the deprecated settings on purpose
+	private void checkDeprecatedAttributeFiles() {
+		if (this.config.plans().getInputPersonAttributeFile() != null && !this.config.plans().isInsistingOnUsingDeprecatedPersonAttributeFile()) {
+			throw new RuntimeException(PERSON_ATTRIBUTES_DEPRECATION_MESSAGE);
+		}
+		if (this.config.facilities().getInputFacilitiesAttributesFile() != null && !this.config.facilities().isInsistingOnUsingDeprecatedFacilitiesAttributeFile()) {
+			throw new RuntimeException(FacilitiesConfigGroup.FACILITIES_ATTRIBUTES_DEPRECATION_MESSAGE);
+		}
+		if ((this.config.transit().getTransitLinesAttributesFile() != null || this.config.transit().getTransitStopsAttributesFile() != null)
+				&& !this.config.transit().isInsistingOnUsingDeprecatedAttributeFiles()) {
+			throw new RuntimeException(TransitConfigGroup.TRANSIT_ATTRIBUTES_DEPRECATION_MESSAGE);
+		}
+	}
+
+	private void writeSnapshot(final File snapshot, final String inputs) {
+		ScenarioSnapshotWriter writer = new ScenarioSnapshotWriter(this.scenario);
+		writer.putAttributeConverters(this.attributeConverters);
+		try {
+			writer.write(snapshot.toPath(), inputs);
+		} catch (UncheckedIOException e) {
+			// the snapshot only speeds up the next start, so do not fail here
+			log.warn("could not write scenario snapshot " + snapshot + ", continuing without.", e);
+		}
+	}
+
 	private void loadActivityFacilities() {
 		if ((this.config.facilities() != null) && (this.config.facilities().getInputFile() != null)) {
 			URL facilitiesFileName = this.config.facilities().getInputFileURL(config.getContext());
@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Constants describing the binary scenario snapshot written by {@link ScenarioSnapshotWriter} and read by
+ * {@link ScenarioSnapshotReader}. A snapshot contains the network, the population, the activity facilities,
+ * the transit schedule, the vehicles and the transit vehicles of a scenario including all their attributes.
+ *
+ * <p>All numbers are stored big-endian. Counts, string references and id references are stored as unsigned
+ * variable-length integers (7 bits per byte, least significant group first). The file has the following layout:</p>
+ * <pre>
+ * header:   int MAGIC, int VERSION, long tablesOffset, long payloadLength, long checksum (CRC32C of the payload)
+ * payload:  varint length, byte[] utf-8 inputs (description of the files the snapshot was created from)
+ *           section*: byte SECTION_*, section data
+ *           byte SECTION_END
+ *           tables: int stringCount, per string: varint length, byte[] utf-8
+ *                   per id type in ID_TYPES: varint idCount, varint[idCount] string reference
+ * </pre>
+ *
+ * <p>A string reference is the index of the string in the string table plus one, an id reference the index of
+ * the id in the table of its type plus one; zero stands for <code>null</code>. Undefined times are stored as
+ * <code>NaN</code>. Every string and every id is stored only once, so a reader creates all ids of a type in one
+ * pass and resolves references by array lookups.</p>
+ */
+final class ScenarioSnapshot {
+
+	static final int MAGIC = 0x4d534e50; // "MSNP"
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 32;
+
+	static final byte SECTION_END = 0;
+	static final byte SECTION_NETWORK = 1;
+	static final byte SECTION_FACILITIES = 2;
+	static final byte SECTION_POPULATION = 3;
+	static final byte SECTION_TRANSIT_SCHEDULE = 4;
+	static final byte SECTION_VEHICLES = 5;
+	static final byte SECTION_TRANSIT_VEHICLES = 6;
+
+	static final byte ELEMENT_ACTIVITY = 1;
+	static final byte ELEMENT_LEG = 2;
+
+	static final byte ROUTE_NONE = 0;
+	static final byte ROUTE_NETWORK = 1;
+	static final byte ROUTE_GENERIC = 2;
+
+	static final byte ATTRIBUTE_CONVERTED = 0;
+	static final byte ATTRIBUTE_STRING = 1;
+	static final byte ATTRIBUTE_DOUBLE = 2;
+	static final byte ATTRIBUTE_INTEGER = 3;
+	static final byte ATTRIBUTE_LONG = 4;
+	static final byte ATTRIBUTE_BOOLEAN = 5;
+
+	static final int ID_NODE = 0;
+	static final int ID_LINK = 1;
+	static final int ID_PERSON = 2;
+	static final int ID_FACILITY = 3;
+	static final int ID_STOP = 4;
+	static final int ID_STOP_AREA = 5;
+	static final int ID_LINE = 6;
+	static final int ID_TRANSIT_ROUTE = 7;
+	static final int ID_DEPARTURE = 8;
+	static final int ID_VEHICLE = 9;
+	static final int ID_VEHICLE_TYPE = 10;
+
+	static final Class<?>[] ID_TYPES = {
+			Node.class, Link.class, Person.class, ActivityFacility.class, TransitStopFacility.class, TransitStopArea.class,
+			TransitLine.class, TransitRoute.class, Departure.class, Vehicle.class, VehicleType.class
+	};
+
+	private ScenarioSnapshot() {
+	}
+
+	/**
+	 * Describes the input files named in the config, including size and modification time of local files, and the
+	 * coordinate systems they are read in. A snapshot is only used instead of the input files if it was created
+	 * from inputs with the same description.
+	 */
+	@SuppressWarnings("deprecation") // the deprecated attribute files are still read into the scenario
+	static String describeInputs(final Config config) {
+		StringBuilder inputs = new StringBuilder();
+		inputs.append("crs=").append(config.global().getCoordinateSystem()).append('\n');
+		describe(inputs, "network", config.network().getInputFile(), config);
+		inputs.append("networkCrs=").append(config.network().getInputCRS()).append('\n');
+		describe(inputs, "plans", config.plans().getInputFile(), config);
+		describe(inputs, "personAttributes", config.plans().getInputPersonAttributeFile(), config);
+		describe(inputs, "facilities", config.facilities().getInputFile(), config);
+		describe(inputs, "facilityAttributes", config.facilities().getInputFacilitiesAttributesFile(), config);
+		inputs.append("facilitiesCrs=").append(config.facilities().getInputCRS()).append('\n');
+		describe(inputs, "transitSchedule", config.transit().getTransitScheduleFile(), config);
+		describe(inputs, "transitLinesAttributes", config.transit().getTransitLinesAttributesFile(), config);
+		describe(inputs, "transitStopsAttributes", config.transit().getTransitStopsAttributesFile(), config);
+		inputs.append("transitScheduleCrs=").append(config.transit().getInputScheduleCRS()).append('\n');
+		describe(inputs, "transitVehicles", config.transit().getVehiclesFile(), config);
+		describe(inputs, "vehicles", config.vehicles().getVehiclesFile(), config);
+		return inputs.toString();
+	}
+
+	private static void describe(final StringBuilder inputs, final String name, final String filename, final Config config) {
+		if (filename == null) {
+			return;
+		}
+		URL url = ConfigGroup.getInputFileURL(config.getContext(), filename);
+		inputs.append(name).append('=').append(url);
+		File file = toFile(url);
+		if (file != null) {
+			inputs.append(' ').append(file.length()).append(' ').append(file.lastModified());
+		}
+		inputs.append('\n');
+	}
+
+	/**
+	 * @return the snapshot file named in the config, or <code>null</code> if no snapshot is configured or it is not a
+	 * 		local file.
+	 */
+	static File getSnapshotFile(final Config config) {
+		String filename = config.global().getScenarioSnapshotFile();
+		if (filename == null) {
+			return null;
+		}
+		return toFile(ConfigGroup.getInputFileURL(config.getContext(), filename));
+	}
+
+	private static File toFile(final URL url) {
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return new File(url.getPath());
+		}
+	}
+
+}
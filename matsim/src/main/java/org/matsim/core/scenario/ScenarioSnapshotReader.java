@@ -0,0 +1,788 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityFacilityImpl;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.facilities.OpeningTimeImpl;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+import org.matsim.vehicles.CostInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+import org.matsim.vehicles.VehiclesFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads a binary snapshot written by {@link ScenarioSnapshotWriter} into the (empty) containers of a scenario.
+ *
+ * The file is read with bulk reads into a direct buffer. Before anything is added to the scenario, the checksum
+ * of the complete payload is verified, so a corrupt or truncated snapshot leaves the scenario unchanged. Then the
+ * string table is read and all ids are created, one type after the other, before the actual data is read.
+ */
+final class ScenarioSnapshotReader {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotReader.class);
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final Scenario scenario;
+	private final ObjectAttributesConverter attributesConverter = new ObjectAttributesConverter();
+
+	private Input in;
+	private String[] strings;
+	private boolean[] interned;
+	private Id<?>[][] ids;
+
+	ScenarioSnapshotReader(final Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.attributesConverter.putAttributeConverters(converters);
+	}
+
+	/**
+	 * @return the description of the input files the snapshot was created from, or <code>null</code> if the file
+	 * 		is not a complete snapshot of the supported version.
+	 */
+	static String readInputs(final Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Input in = new Input(channel);
+			if (!in.readHeader(file, false)) {
+				return null;
+			}
+			return in.readUtf8(in.readVarInt());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	void read(final Path file) {
+		log.info("reading scenario snapshot from " + file);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			this.in = new Input(channel);
+			this.in.readHeader(file, true);
+			this.in.verifyChecksum(file);
+
+			this.in.seek(this.in.tablesOffset);
+			readTables();
+
+			this.in.seek(ScenarioSnapshot.HEADER_SIZE);
+			this.in.skip(this.in.readVarInt()); // description of the inputs
+			byte section;
+			while ((section = this.in.readByte()) != ScenarioSnapshot.SECTION_END) {
+				switch (section) {
+					case ScenarioSnapshot.SECTION_NETWORK:
+						readNetwork(this.scenario.getNetwork());
+						break;
+					case ScenarioSnapshot.SECTION_FACILITIES:
+						readFacilities(this.scenario.getActivityFacilities());
+						break;
+					case ScenarioSnapshot.SECTION_POPULATION:
+						readPopulation(this.scenario.getPopulation());
+						break;
+					case ScenarioSnapshot.SECTION_TRANSIT_SCHEDULE:
+						readTransitSchedule(this.scenario.getTransitSchedule());
+						break;
+					case ScenarioSnapshot.SECTION_VEHICLES:
+						readVehicles(this.scenario.getVehicles());
+						break;
+					case ScenarioSnapshot.SECTION_TRANSIT_VEHICLES:
+						readVehicles(this.scenario.getTransitVehicles());
+						break;
+					default:
+						throw new UncheckedIOException("Unknown section " + section + " in scenario snapshot " + file);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read scenario snapshot " + file, e);
+		} finally {
+			this.in = null;
+			this.strings = null;
+			this.interned = null;
+			this.ids = null;
+		}
+		log.info("read " + this.scenario.getNetwork().getLinks().size() + " links and " + this.scenario.getPopulation().getPersons().size()
+				+ " persons from scenario snapshot.");
+	}
+
+	private void readTables() throws IOException {
+		int stringCount = this.in.readInt();
+		this.strings = new String[stringCount];
+		this.interned = new boolean[stringCount];
+		for (int i = 0; i < stringCount; i++) {
+			this.strings[i] = this.in.readUtf8(this.in.readVarInt());
+		}
+		this.ids = new Id<?>[ScenarioSnapshot.ID_TYPES.length][];
+		for (int type = 0; type < ScenarioSnapshot.ID_TYPES.length; type++) {
+			Class<?> idClass = ScenarioSnapshot.ID_TYPES[type];
+			Id<?>[] typeIds = new Id<?>[this.in.readVarInt()];
+			for (int i = 0; i < typeIds.length; i++) {
+				typeIds[i] = Id.create(this.strings[this.in.readVarInt() - 1], idClass);
+			}
+			this.ids[type] = typeIds;
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------ */
+
+	private void readNetwork(final Network network) throws IOException {
+		network.setName(readString());
+		network.setCapacityPeriod(this.in.readDouble());
+		network.setEffectiveCellSize(this.in.readDouble());
+		network.setEffectiveLaneWidth(this.in.readDouble());
+		readAttributes(network.getAttributes());
+
+		NetworkFactory factory = network.getFactory();
+		Node[] nodes = new Node[this.ids[ScenarioSnapshot.ID_NODE].length];
+		int nodeCount = this.in.readVarInt();
+		for (int i = 0; i < nodeCount; i++) {
+			int index = this.in.readVarInt() - 1;
+			Node node = factory.createNode(getId(ScenarioSnapshot.ID_NODE, index), readCoord());
+			network.addNode(node);
+			readNodeTypeAndOrigId(node);
+			readAttributes(node.getAttributes());
+			nodes[index] = node;
+		}
+
+		List<Set<String>> modeSets = new ArrayList<>();
+		int modeSetCount = this.in.readVarInt();
+		for (int i = 0; i < modeSetCount; i++) {
+			int size = this.in.readVarInt();
+			Set<String> modes = new HashSet<>();
+			for (int j = 0; j < size; j++) {
+				modes.add(readInternedString());
+			}
+			modeSets.add(modes);
+		}
+
+		int linkCount = this.in.readVarInt();
+		for (int i = 0; i < linkCount; i++) {
+			Id<Link> linkId = readId(ScenarioSnapshot.ID_LINK);
+			Node fromNode = nodes[this.in.readVarInt() - 1];
+			Node toNode = nodes[this.in.readVarInt() - 1];
+			Link link = factory.createLink(linkId, fromNode, toNode);
+			link.setLength(this.in.readDouble());
+			link.setFreespeed(this.in.readDouble());
+			link.setCapacity(this.in.readDouble());
+			link.setNumberOfLanes(this.in.readDouble());
+			link.setAllowedModes(modeSets.get(this.in.readVarInt()));
+			network.addLink(link);
+			readAttributes(link.getAttributes());
+		}
+	}
+
+	@SuppressWarnings("deprecation") // nodes have no other place for these, the network reader sets them the same way
+	private void readNodeTypeAndOrigId(final Node node) throws IOException {
+		NetworkUtils.setType(node, readString());
+		String origId = readString();
+		if (origId != null) {
+			NetworkUtils.setOrigId(node, origId);
+		}
+	}
+
+	private void readFacilities(final ActivityFacilities facilities) throws IOException {
+		facilities.setName(readString());
+		readAttributes(facilities.getAttributes());
+		ActivityFacilitiesFactory factory = facilities.getFactory();
+		int count = this.in.readVarInt();
+		for (int i = 0; i < count; i++) {
+			Id<ActivityFacility> id = readId(ScenarioSnapshot.ID_FACILITY);
+			Coord coord = readCoord();
+			Id<Link> linkId = readId(ScenarioSnapshot.ID_LINK);
+			ActivityFacility facility;
+			if (linkId == null) {
+				facility = factory.createActivityFacility(id, coord);
+			} else if (coord == null) {
+				facility = factory.createActivityFacility(id, linkId);
+			} else {
+				facility = factory.createActivityFacility(id, coord, linkId);
+			}
+			String desc = readString();
+			if (desc != null && facility instanceof ActivityFacilityImpl) {
+				((ActivityFacilityImpl) facility).setDesc(desc);
+			}
+			int optionCount = this.in.readVarInt();
+			for (int j = 0; j < optionCount; j++) {
+				ActivityOption option = factory.createActivityOption(readInternedString());
+				option.setCapacity(this.in.readDouble());
+				int openingTimeCount = this.in.readVarInt();
+				for (int k = 0; k < openingTimeCount; k++) {
+					option.addOpeningTime(new OpeningTimeImpl(this.in.readDouble(), this.in.readDouble()));
+				}
+				facility.addActivityOption(option);
+			}
+			readAttributes(facility.getAttributes());
+			facilities.addActivityFacility(facility);
+		}
+	}
+
+	private void readPopulation(final Population population) throws IOException {
+		population.setName(readString());
+		readAttributes(population.getAttributes());
+		PopulationFactory factory = population.getFactory();
+		RouteFactories routeFactories = factory.getRouteFactories();
+		int count = this.in.readVarInt();
+		for (int i = 0; i < count; i++) {
+			Person person = factory.createPerson(readId(ScenarioSnapshot.ID_PERSON));
+			readAttributes(person.getAttributes());
+			int planCount = this.in.readVarInt();
+			int selected = this.in.readVarInt() - 1;
+			for (int p = 0; p < planCount; p++) {
+				Plan plan = readPlan(factory, routeFactories);
+				person.addPlan(plan);
+				if (p == selected) {
+					person.setSelectedPlan(plan);
+				}
+			}
+			population.addPerson(person);
+		}
+	}
+
+	private Plan readPlan(final PopulationFactory factory, final RouteFactories routeFactories) throws IOException {
+		Plan plan = factory.createPlan();
+		if (this.in.readBoolean()) {
+			plan.setScore(this.in.readDouble());
+		}
+		String type = readString();
+		if (type != null) {
+			plan.setType(type);
+		}
+		readAttributes(plan.getAttributes());
+		int elementCount = this.in.readVarInt();
+		for (int i = 0; i < elementCount; i++) {
+			byte element = this.in.readByte();
+			if (element == ScenarioSnapshot.ELEMENT_ACTIVITY) {
+				String actType = readInternedString();
+				Coord coord = readCoord();
+				Id<Link> linkId = readId(ScenarioSnapshot.ID_LINK);
+				Id<ActivityFacility> facilityId = readId(ScenarioSnapshot.ID_FACILITY);
+				Activity act;
+				if (linkId != null) {
+					act = factory.createActivityFromLinkId(actType, linkId);
+					if (coord != null) {
+						act.setCoord(coord);
+					}
+				} else if (coord != null) {
+					act = factory.createActivityFromCoord(actType, coord);
+				} else {
+					act = factory.createActivityFromActivityFacilityId(actType, facilityId);
+				}
+				if (facilityId != null) {
+					act.setFacilityId(facilityId);
+				}
+				double startTime = this.in.readDouble();
+				if (!Double.isNaN(startTime)) {
+					act.setStartTime(startTime);
+				}
+				double endTime = this.in.readDouble();
+				if (!Double.isNaN(endTime)) {
+					act.setEndTime(endTime);
+				}
+				double maxDuration = this.in.readDouble();
+				if (!Double.isNaN(maxDuration)) {
+					act.setMaximumDuration(maxDuration);
+				}
+				readAttributes(act.getAttributes());
+				plan.addActivity(act);
+			} else if (element == ScenarioSnapshot.ELEMENT_LEG) {
+				Leg leg = factory.createLeg(readInternedString());
+				double departureTime = this.in.readDouble();
+				if (!Double.isNaN(departureTime)) {
+					leg.setDepartureTime(departureTime);
+				}
+				double travelTime = this.in.readDouble();
+				if (!Double.isNaN(travelTime)) {
+					leg.setTravelTime(travelTime);
+				}
+				readAttributes(leg.getAttributes());
+				leg.setRoute(readRoute(routeFactories));
+				plan.addLeg(leg);
+			} else {
+				throw new UncheckedIOException("Unknown plan element " + element + " in scenario snapshot.");
+			}
+		}
+		return plan;
+	}
+
+	private Route readRoute(final RouteFactories routeFactories) throws IOException {
+		byte kind = this.in.readByte();
+		if (kind == ScenarioSnapshot.ROUTE_NONE) {
+			return null;
+		}
+		String routeType = readInternedString();
+		Id<Link> startLinkId = readId(ScenarioSnapshot.ID_LINK);
+		Id<Link> endLinkId = readId(ScenarioSnapshot.ID_LINK);
+		Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), startLinkId, endLinkId);
+		route.setDistance(this.in.readDouble());
+		double travelTime = this.in.readDouble();
+		if (!Double.isNaN(travelTime)) {
+			route.setTravelTime(travelTime);
+		}
+		if (kind == ScenarioSnapshot.ROUTE_NETWORK) {
+			Id<Vehicle> vehicleId = readId(ScenarioSnapshot.ID_VEHICLE);
+			List<Id<Link>> linkIds = readLinkIds();
+			if (route instanceof NetworkRoute) {
+				((NetworkRoute) route).setLinkIds(startLinkId, linkIds, endLinkId);
+				((NetworkRoute) route).setVehicleId(vehicleId);
+			} else {
+				// the route factories of this scenario do not create network routes for this type, fall back to the description
+				StringBuilder description = new StringBuilder();
+				description.append(startLinkId);
+				for (Id<Link> linkId : linkIds) {
+					description.append(' ').append(linkId);
+				}
+				description.append(' ').append(endLinkId);
+				route.setRouteDescription(description.toString());
+			}
+		} else {
+			String description = readString();
+			if (description != null) {
+				route.setRouteDescription(description);
+			}
+		}
+		return route;
+	}
+
+	private List<Id<Link>> readLinkIds() throws IOException {
+		int count = this.in.readVarInt();
+		List<Id<Link>> linkIds = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			linkIds.add(readId(ScenarioSnapshot.ID_LINK));
+		}
+		return linkIds;
+	}
+
+	private void readTransitSchedule(final TransitSchedule schedule) throws IOException {
+		readAttributes(schedule.getAttributes());
+		TransitScheduleFactory factory = schedule.getFactory();
+
+		TransitStopFacility[] stops = new TransitStopFacility[this.ids[ScenarioSnapshot.ID_STOP].length];
+		int stopCount = this.in.readVarInt();
+		for (int i = 0; i < stopCount; i++) {
+			int index = this.in.readVarInt() - 1;
+			Coord coord = readCoord();
+			TransitStopFacility stop = factory.createTransitStopFacility(getId(ScenarioSnapshot.ID_STOP, index), coord, this.in.readBoolean());
+			Id<Link> linkId = readId(ScenarioSnapshot.ID_LINK);
+			if (linkId != null) {
+				stop.setLinkId(linkId);
+			}
+			stop.setName(readString());
+			stop.setStopAreaId(readId(ScenarioSnapshot.ID_STOP_AREA));
+			readAttributes(stop.getAttributes());
+			schedule.addStopFacility(stop);
+			stops[index] = stop;
+		}
+
+		int transferTimeCount = this.in.readVarInt();
+		for (int i = 0; i < transferTimeCount; i++) {
+			Id<TransitStopFacility> fromStop = readId(ScenarioSnapshot.ID_STOP);
+			Id<TransitStopFacility> toStop = readId(ScenarioSnapshot.ID_STOP);
+			schedule.getMinimalTransferTimes().set(fromStop, toStop, this.in.readDouble());
+		}
+
+		RouteFactories routeFactories = this.scenario.getPopulation().getFactory().getRouteFactories();
+		int lineCount = this.in.readVarInt();
+		for (int i = 0; i < lineCount; i++) {
+			TransitLine line = factory.createTransitLine(readId(ScenarioSnapshot.ID_LINE));
+			line.setName(readString());
+			readAttributes(line.getAttributes());
+			int routeCount = this.in.readVarInt();
+			for (int r = 0; r < routeCount; r++) {
+				line.addRoute(readTransitRoute(factory, routeFactories, stops));
+			}
+			schedule.addTransitLine(line);
+		}
+	}
+
+	private TransitRoute readTransitRoute(final TransitScheduleFactory factory, final RouteFactories routeFactories,
+			final TransitStopFacility[] stops) throws IOException {
+		Id<TransitRoute> id = readId(ScenarioSnapshot.ID_TRANSIT_ROUTE);
+		String mode = readInternedString();
+		String description = readString();
+		Attributes attributes = new Attributes();
+		readAttributes(attributes);
+		NetworkRoute networkRoute = null;
+		if (this.in.readBoolean()) {
+			Id<Link> startLinkId = readId(ScenarioSnapshot.ID_LINK);
+			Id<Link> endLinkId = readId(ScenarioSnapshot.ID_LINK);
+			networkRoute = routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+			networkRoute.setLinkIds(startLinkId, readLinkIds(), endLinkId);
+		}
+		int stopCount = this.in.readVarInt();
+		List<TransitRouteStop> routeStops = new ArrayList<>(stopCount);
+		for (int i = 0; i < stopCount; i++) {
+			TransitRouteStop.Builder<?> builder = factory.createTransitRouteStopBuilder(stops[this.in.readVarInt() - 1]);
+			double arrivalOffset = this.in.readDouble();
+			if (!Double.isNaN(arrivalOffset)) {
+				builder.arrivalOffset(arrivalOffset);
+			}
+			double departureOffset = this.in.readDouble();
+			if (!Double.isNaN(departureOffset)) {
+				builder.departureOffset(departureOffset);
+			}
+			builder.awaitDepartureTime(this.in.readBoolean());
+			routeStops.add(builder.build());
+		}
+		TransitRoute route = factory.createTransitRoute(id, networkRoute, routeStops, mode);
+		route.setDescription(description);
+		AttributesUtils.copyTo(attributes, route.getAttributes());
+		int departureCount = this.in.readVarInt();
+		for (int i = 0; i < departureCount; i++) {
+			Id<Departure> departureId = readId(ScenarioSnapshot.ID_DEPARTURE);
+			Departure departure = factory.createDeparture(departureId, this.in.readDouble());
+			departure.setVehicleId(readId(ScenarioSnapshot.ID_VEHICLE));
+			readAttributes(departure.getAttributes());
+			route.addDeparture(departure);
+		}
+		return route;
+	}
+
+	private void readVehicles(final Vehicles vehicles) throws IOException {
+		VehiclesFactory factory = vehicles.getFactory();
+		VehicleType[] types = new VehicleType[this.ids[ScenarioSnapshot.ID_VEHICLE_TYPE].length];
+		int typeCount = this.in.readVarInt();
+		for (int i = 0; i < typeCount; i++) {
+			int index = this.in.readVarInt() - 1;
+			VehicleType type = factory.createVehicleType(getId(ScenarioSnapshot.ID_VEHICLE_TYPE, index));
+			type.setDescription(readString());
+			readAttributes(type.getAttributes());
+
+			VehicleCapacity capacity = type.getCapacity();
+			capacity.setSeats(readNullableInt());
+			capacity.setStandingRoom(readNullableInt());
+			Double volume = readNullableDouble();
+			if (volume != null) {
+				capacity.setVolumeInCubicMeters(volume);
+			}
+			Double weight = readNullableDouble();
+			if (weight != null) {
+				capacity.setWeightInTons(weight);
+			}
+			Double other = readNullableDouble();
+			if (other != null) {
+				capacity.setOther(other);
+			}
+			readAttributes(capacity.getAttributes());
+
+			type.setLength(this.in.readDouble());
+			type.setWidth(this.in.readDouble());
+			type.setMaximumVelocity(this.in.readDouble());
+			type.setPcuEquivalents(this.in.readDouble());
+			type.setFlowEfficiencyFactor(this.in.readDouble());
+			type.setNetworkMode(readInternedString());
+			readAttributes(type.getEngineInformation().getAttributes());
+
+			CostInformation costs = type.getCostInformation();
+			costs.setFixedCost(readNullableDouble());
+			costs.setCostsPerMeter(readNullableDouble());
+			costs.setCostsPerSecond(readNullableDouble());
+			readAttributes(costs.getAttributes());
+
+			vehicles.addVehicleType(type);
+			types[index] = type;
+		}
+		int vehicleCount = this.in.readVarInt();
+		for (int i = 0; i < vehicleCount; i++) {
+			Id<Vehicle> vehicleId = readId(ScenarioSnapshot.ID_VEHICLE);
+			vehicles.addVehicle(factory.createVehicle(vehicleId, types[this.in.readVarInt() - 1]));
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------ */
+
+	private void readAttributes(final Attributes attributes) throws IOException {
+		int count = this.in.readVarInt();
+		for (int i = 0; i < count; i++) {
+			String key = readString();
+			byte kind = this.in.readByte();
+			Object value;
+			switch (kind) {
+				case ScenarioSnapshot.ATTRIBUTE_STRING:
+					value = readString();
+					break;
+				case ScenarioSnapshot.ATTRIBUTE_DOUBLE:
+					value = this.in.readDouble();
+					break;
+				case ScenarioSnapshot.ATTRIBUTE_INTEGER:
+					value = this.in.readInt();
+					break;
+				case ScenarioSnapshot.ATTRIBUTE_LONG:
+					value = this.in.readLong();
+					break;
+				case ScenarioSnapshot.ATTRIBUTE_BOOLEAN:
+					value = this.in.readBoolean();
+					break;
+				case ScenarioSnapshot.ATTRIBUTE_CONVERTED:
+					String className = readString();
+					value = this.attributesConverter.convert(className, readString());
+					break;
+				default:
+					throw new UncheckedIOException("Unknown attribute kind " + kind + " in scenario snapshot.");
+			}
+			if (value != null) {
+				attributes.putAttribute(key, value);
+			}
+		}
+	}
+
+	private Coord readCoord() throws IOException {
+		byte dimensions = this.in.readByte();
+		if (dimensions == 0) {
+			return null;
+		}
+		double x = this.in.readDouble();
+		double y = this.in.readDouble();
+		return dimensions == 3 ? new Coord(x, y, this.in.readDouble()) : new Coord(x, y);
+	}
+
+	private Integer readNullableInt() throws IOException {
+		return this.in.readBoolean() ? this.in.readInt() : null;
+	}
+
+	private Double readNullableDouble() throws IOException {
+		return this.in.readBoolean() ? this.in.readDouble() : null;
+	}
+
+	private String readString() throws IOException {
+		int ref = this.in.readVarInt();
+		return ref == 0 ? null : this.strings[ref - 1];
+	}
+
+	/**
+	 * For strings like modes and activity types, which the xml readers intern as well.
+	 */
+	private String readInternedString() throws IOException {
+		int ref = this.in.readVarInt();
+		if (ref == 0) {
+			return null;
+		}
+		if (!this.interned[ref - 1]) {
+			this.strings[ref - 1] = this.strings[ref - 1].intern();
+			this.interned[ref - 1] = true;
+		}
+		return this.strings[ref - 1];
+	}
+
+	private <T> Id<T> readId(final int type) throws IOException {
+		int ref = this.in.readVarInt();
+		return ref == 0 ? null : getId(type, ref - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Id<T> getId(final int type, final int index) {
+		return (Id<T>) this.ids[type][index];
+	}
+
+	/**
+	 * Reads from a file channel with bulk reads into a direct buffer.
+	 */
+	private static final class Input {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long tablesOffset;
+		long payloadLength;
+		long checksum;
+
+		Input(final FileChannel channel) {
+			this.channel = channel;
+			this.buffer.limit(0);
+		}
+
+		/**
+		 * @param strict if <code>true</code>, an exception is thrown if the header is not valid, otherwise <code>false</code> is returned.
+		 */
+		boolean readHeader(final Path file, final boolean strict) throws IOException {
+			long size = this.channel.size();
+			if (size < ScenarioSnapshot.HEADER_SIZE) {
+				return fail(strict, "File is too short to be a scenario snapshot: " + file);
+			}
+			seek(0);
+			if (readInt() != ScenarioSnapshot.MAGIC) {
+				return fail(strict, "File is not a scenario snapshot: " + file);
+			}
+			int version = readInt();
+			if (version != ScenarioSnapshot.VERSION) {
+				return fail(strict, "Unsupported version " + version + " of scenario snapshot " + file);
+			}
+			this.tablesOffset = readLong();
+			this.payloadLength = readLong();
+			this.checksum = readLong();
+			if (this.payloadLength == 0 || ScenarioSnapshot.HEADER_SIZE + this.payloadLength != size) {
+				return fail(strict, "Scenario snapshot is incomplete, it was probably not written completely: " + file);
+			}
+			return true;
+		}
+
+		private static boolean fail(final boolean strict, final String message) {
+			if (strict) {
+				throw new UncheckedIOException(message);
+			}
+			return false;
+		}
+
+		void verifyChecksum(final Path file) throws IOException {
+			CRC32C crc = new CRC32C();
+			long position = ScenarioSnapshot.HEADER_SIZE;
+			long end = position + this.payloadLength;
+			this.buffer.clear();
+			while (position < end) {
+				int read = this.channel.read(this.buffer, position);
+				if (read < 0) {
+					throw new EOFException();
+				}
+				position += read;
+				this.buffer.flip();
+				crc.update(this.buffer);
+				this.buffer.clear();
+			}
+			this.buffer.limit(0);
+			if (crc.getValue() != this.checksum) {
+				throw new UncheckedIOException("Checksum of scenario snapshot does not match, the file is corrupt: " + file);
+			}
+		}
+
+		void seek(final long position) throws IOException {
+			this.channel.position(position);
+			this.buffer.clear();
+			this.buffer.limit(0);
+		}
+
+		void skip(final int bytes) throws IOException {
+			int remaining = bytes;
+			while (remaining > 0) {
+				require(1);
+				int n = Math.min(remaining, this.buffer.remaining());
+				this.buffer.position(this.buffer.position() + n);
+				remaining -= n;
+			}
+		}
+
+		private void require(final int bytes) throws IOException {
+			if (this.buffer.remaining() >= bytes) {
+				return;
+			}
+			this.buffer.compact();
+			while (this.buffer.position() < bytes) {
+				if (this.channel.read(this.buffer) < 0) {
+					throw new EOFException("unexpected end of scenario snapshot");
+				}
+			}
+			this.buffer.flip();
+		}
+
+		byte readByte() throws IOException {
+			require(1);
+			return this.buffer.get();
+		}
+
+		boolean readBoolean() throws IOException {
+			return readByte() != 0;
+		}
+
+		int readInt() throws IOException {
+			require(4);
+			return this.buffer.getInt();
+		}
+
+		long readLong() throws IOException {
+			require(8);
+			return this.buffer.getLong();
+		}
+
+		double readDouble() throws IOException {
+			require(8);
+			return this.buffer.getDouble();
+		}
+
+		int readVarInt() throws IOException {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = readByte();
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		String readUtf8(final int length) throws IOException {
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				require(1);
+				int n = Math.min(length - offset, this.buffer.remaining());
+				this.buffer.get(bytes, offset, n);
+				offset += n;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+}
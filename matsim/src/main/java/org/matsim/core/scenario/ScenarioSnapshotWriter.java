@@ -0,0 +1,674 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityFacilityImpl;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.facilities.OpeningTime;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.CostInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes the network, population, facilities, transit schedule and vehicles of a scenario into one binary
+ * snapshot file, see {@link ScenarioSnapshot} for the format. Coordinates are written in the internal coordinate
+ * system of the scenario.
+ */
+final class ScenarioSnapshotWriter {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotWriter.class);
+
+	private final Scenario scenario;
+	private final ObjectAttributesConverter attributesConverter = new ObjectAttributesConverter();
+
+	private Output out;
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final IdTable[] idTables = new IdTable[ScenarioSnapshot.ID_TYPES.length];
+	private final List<String> attributeKeys = new ArrayList<>();
+	private final List<Object> attributeValues = new ArrayList<>();
+
+	ScenarioSnapshotWriter(final Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.attributesConverter.putAttributeConverters(converters);
+	}
+
+	/**
+	 * @param inputs description of the input files the scenario was loaded from, see {@link ScenarioSnapshot#describeInputs}.
+	 */
+	void write(final Path file, final String inputs) {
+		log.info("writing scenario snapshot to " + file);
+		this.stringIndices.clear();
+		this.strings.clear();
+		for (int i = 0; i < this.idTables.length; i++) {
+			this.idTables[i] = new IdTable();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.out = new Output(channel);
+			byte[] inputBytes = inputs.getBytes(StandardCharsets.UTF_8);
+			this.out.writeVarInt(inputBytes.length);
+			this.out.writeBytes(inputBytes);
+
+			this.out.writeByte(ScenarioSnapshot.SECTION_NETWORK);
+			writeNetwork(this.scenario.getNetwork());
+			this.out.writeByte(ScenarioSnapshot.SECTION_FACILITIES);
+			writeFacilities(this.scenario.getActivityFacilities());
+			this.out.writeByte(ScenarioSnapshot.SECTION_POPULATION);
+			writePopulation(this.scenario.getPopulation());
+			if (this.scenario.getTransitSchedule() != null) {
+				this.out.writeByte(ScenarioSnapshot.SECTION_TRANSIT_SCHEDULE);
+				writeTransitSchedule(this.scenario.getTransitSchedule());
+			}
+			if (this.scenario.getVehicles() != null) {
+				this.out.writeByte(ScenarioSnapshot.SECTION_VEHICLES);
+				writeVehicles(this.scenario.getVehicles());
+			}
+			if (this.scenario.getTransitVehicles() != null) {
+				this.out.writeByte(ScenarioSnapshot.SECTION_TRANSIT_VEHICLES);
+				writeVehicles(this.scenario.getTransitVehicles());
+			}
+			this.out.writeByte(ScenarioSnapshot.SECTION_END);
+
+			long tablesOffset = this.out.position();
+			writeTables();
+			this.out.finish(tablesOffset);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write scenario snapshot " + file, e);
+		} finally {
+			this.out = null;
+		}
+		log.info("wrote " + this.strings.size() + " strings to scenario snapshot.");
+	}
+
+	private void writeTables() throws IOException {
+		this.out.writeInt(this.strings.size());
+		for (String s : this.strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			this.out.writeVarInt(bytes.length);
+			this.out.writeBytes(bytes);
+		}
+		for (IdTable table : this.idTables) {
+			this.out.writeVarInt(table.ids.size());
+			for (Id<?> id : table.ids) {
+				// the strings of all ids were added to the string table when the ids were first written
+				this.out.writeVarInt(this.stringIndices.get(id.toString()) + 1);
+			}
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------ */
+
+	private void writeNetwork(final Network network) throws IOException {
+		writeString(network.getName());
+		this.out.writeDouble(network.getCapacityPeriod());
+		this.out.writeDouble(network.getEffectiveCellSize());
+		this.out.writeDouble(network.getEffectiveLaneWidth());
+		writeAttributes(network.getAttributes());
+
+		this.out.writeVarInt(network.getNodes().size());
+		for (Node node : network.getNodes().values()) {
+			writeId(node.getId(), ScenarioSnapshot.ID_NODE);
+			writeCoord(node.getCoord());
+			writeNodeTypeAndOrigId(node);
+			writeAttributes(node.getAttributes());
+		}
+
+		// most links share one of very few sets of allowed modes, store each set only once
+		Map<Set<String>, Integer> modeSets = new IdentityHashMap<>();
+		List<Set<String>> modeSetList = new ArrayList<>();
+		int[] linkModeSets = new int[network.getLinks().size()];
+		int linkIndex = 0;
+		for (Link link : network.getLinks().values()) {
+			Set<String> modes = link.getAllowedModes();
+			Integer index = modeSets.get(modes);
+			if (index == null) {
+				index = modeSetList.indexOf(modes);
+				if (index < 0) {
+					index = modeSetList.size();
+					modeSetList.add(modes);
+				}
+				modeSets.put(modes, index);
+			}
+			linkModeSets[linkIndex++] = index;
+		}
+		this.out.writeVarInt(modeSetList.size());
+		for (Set<String> modes : modeSetList) {
+			this.out.writeVarInt(modes.size());
+			for (String mode : modes) {
+				writeString(mode);
+			}
+		}
+
+		this.out.writeVarInt(network.getLinks().size());
+		linkIndex = 0;
+		for (Link link : network.getLinks().values()) {
+			writeId(link.getId(), ScenarioSnapshot.ID_LINK);
+			writeId(link.getFromNode().getId(), ScenarioSnapshot.ID_NODE);
+			writeId(link.getToNode().getId(), ScenarioSnapshot.ID_NODE);
+			this.out.writeDouble(link.getLength());
+			this.out.writeDouble(link.getFreespeed());
+			this.out.writeDouble(link.getCapacity());
+			this.out.writeDouble(link.getNumberOfLanes());
+			this.out.writeVarInt(linkModeSets[linkIndex++]);
+			writeAttributes(link.getAttributes());
+		}
+	}
+
+	@SuppressWarnings("deprecation") // nodes have no other place for these, the network writer reads them the same way
+	private void writeNodeTypeAndOrigId(final Node node) throws IOException {
+		writeString(NetworkUtils.getType(node));
+		writeString(NetworkUtils.getOrigId(node));
+	}
+
+	private void writeFacilities(final ActivityFacilities facilities) throws IOException {
+		writeString(facilities.getName());
+		writeAttributes(facilities.getAttributes());
+		this.out.writeVarInt(facilities.getFacilities().size());
+		for (ActivityFacility facility : facilities.getFacilities().values()) {
+			writeId(facility.getId(), ScenarioSnapshot.ID_FACILITY);
+			writeCoord(facility.getCoord());
+			writeId(facility.getLinkId(), ScenarioSnapshot.ID_LINK);
+			writeString(facility instanceof ActivityFacilityImpl ? ((ActivityFacilityImpl) facility).getDesc() : null);
+			this.out.writeVarInt(facility.getActivityOptions().size());
+			for (ActivityOption option : facility.getActivityOptions().values()) {
+				writeString(option.getType());
+				this.out.writeDouble(option.getCapacity());
+				this.out.writeVarInt(option.getOpeningTimes().size());
+				for (OpeningTime openingTime : option.getOpeningTimes()) {
+					this.out.writeDouble(openingTime.getStartTime());
+					this.out.writeDouble(openingTime.getEndTime());
+				}
+			}
+			writeAttributes(facility.getAttributes());
+		}
+	}
+
+	private void writePopulation(final Population population) throws IOException {
+		writeString(population.getName());
+		writeAttributes(population.getAttributes());
+		this.out.writeVarInt(population.getPersons().size());
+		for (Person person : population.getPersons().values()) {
+			writeId(person.getId(), ScenarioSnapshot.ID_PERSON);
+			writeAttributes(person.getAttributes());
+			List<? extends Plan> plans = person.getPlans();
+			this.out.writeVarInt(plans.size());
+			this.out.writeVarInt(plans.indexOf(person.getSelectedPlan()) + 1);
+			for (Plan plan : plans) {
+				writePlan(plan);
+			}
+		}
+	}
+
+	private void writePlan(final Plan plan) throws IOException {
+		Double score = plan.getScore();
+		this.out.writeBoolean(score != null);
+		if (score != null) {
+			this.out.writeDouble(score);
+		}
+		writeString(plan.getType());
+		writeAttributes(plan.getAttributes());
+		List<PlanElement> elements = plan.getPlanElements();
+		this.out.writeVarInt(elements.size());
+		for (PlanElement pe : elements) {
+			if (pe instanceof Activity) {
+				Activity act = (Activity) pe;
+				this.out.writeByte(ScenarioSnapshot.ELEMENT_ACTIVITY);
+				writeString(act.getType());
+				writeCoord(act.getCoord());
+				writeId(act.getLinkId(), ScenarioSnapshot.ID_LINK);
+				writeId(act.getFacilityId(), ScenarioSnapshot.ID_FACILITY);
+				writeTime(act.getStartTime());
+				writeTime(act.getEndTime());
+				writeTime(act.getMaximumDuration());
+				writeAttributes(act.getAttributes());
+			} else if (pe instanceof Leg) {
+				Leg leg = (Leg) pe;
+				this.out.writeByte(ScenarioSnapshot.ELEMENT_LEG);
+				writeString(leg.getMode());
+				writeTime(leg.getDepartureTime());
+				writeTime(leg.getTravelTime());
+				writeAttributes(leg.getAttributes());
+				writeRoute(leg.getRoute());
+			} else {
+				throw new IllegalArgumentException("Unsupported plan element " + pe.getClass().getName() + " in plan of person " + plan.getPerson().getId());
+			}
+		}
+	}
+
+	private void writeRoute(final Route route) throws IOException {
+		if (route == null) {
+			this.out.writeByte(ScenarioSnapshot.ROUTE_NONE);
+			return;
+		}
+		this.out.writeByte(route instanceof NetworkRoute ? ScenarioSnapshot.ROUTE_NETWORK : ScenarioSnapshot.ROUTE_GENERIC);
+		writeString(route.getRouteType());
+		writeId(route.getStartLinkId(), ScenarioSnapshot.ID_LINK);
+		writeId(route.getEndLinkId(), ScenarioSnapshot.ID_LINK);
+		this.out.writeDouble(route.getDistance());
+		writeTime(route.getTravelTime());
+		if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			writeId(networkRoute.getVehicleId(), ScenarioSnapshot.ID_VEHICLE);
+			writeLinkIds(networkRoute.getLinkIds());
+		} else {
+			writeString(route.getRouteDescription());
+		}
+	}
+
+	private void writeLinkIds(final List<Id<Link>> linkIds) throws IOException {
+		this.out.writeVarInt(linkIds.size());
+		for (Id<Link> linkId : linkIds) {
+			writeId(linkId, ScenarioSnapshot.ID_LINK);
+		}
+	}
+
+	private void writeTransitSchedule(final TransitSchedule schedule) throws IOException {
+		writeAttributes(schedule.getAttributes());
+
+		this.out.writeVarInt(schedule.getFacilities().size());
+		for (TransitStopFacility stop : schedule.getFacilities().values()) {
+			writeId(stop.getId(), ScenarioSnapshot.ID_STOP);
+			writeCoord(stop.getCoord());
+			this.out.writeBoolean(stop.getIsBlockingLane());
+			writeId(stop.getLinkId(), ScenarioSnapshot.ID_LINK);
+			writeString(stop.getName());
+			writeId(stop.getStopAreaId(), ScenarioSnapshot.ID_STOP_AREA);
+			writeAttributes(stop.getAttributes());
+		}
+
+		int transferTimes = 0;
+		MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+		while (iter.hasNext()) {
+			iter.next();
+			transferTimes++;
+		}
+		this.out.writeVarInt(transferTimes);
+		iter = schedule.getMinimalTransferTimes().iterator();
+		while (iter.hasNext()) {
+			iter.next();
+			writeId(iter.getFromStopId(), ScenarioSnapshot.ID_STOP);
+			writeId(iter.getToStopId(), ScenarioSnapshot.ID_STOP);
+			this.out.writeDouble(iter.getSeconds());
+		}
+
+		this.out.writeVarInt(schedule.getTransitLines().size());
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			writeId(line.getId(), ScenarioSnapshot.ID_LINE);
+			writeString(line.getName());
+			writeAttributes(line.getAttributes());
+			this.out.writeVarInt(line.getRoutes().size());
+			for (TransitRoute route : line.getRoutes().values()) {
+				writeTransitRoute(route);
+			}
+		}
+	}
+
+	private void writeTransitRoute(final TransitRoute route) throws IOException {
+		writeId(route.getId(), ScenarioSnapshot.ID_TRANSIT_ROUTE);
+		writeString(route.getTransportMode());
+		writeString(route.getDescription());
+		writeAttributes(route.getAttributes());
+		NetworkRoute networkRoute = route.getRoute();
+		this.out.writeBoolean(networkRoute != null);
+		if (networkRoute != null) {
+			writeId(networkRoute.getStartLinkId(), ScenarioSnapshot.ID_LINK);
+			writeId(networkRoute.getEndLinkId(), ScenarioSnapshot.ID_LINK);
+			writeLinkIds(networkRoute.getLinkIds());
+		}
+		this.out.writeVarInt(route.getStops().size());
+		for (TransitRouteStop stop : route.getStops()) {
+			writeId(stop.getStopFacility().getId(), ScenarioSnapshot.ID_STOP);
+			writeTime(stop.getArrivalOffset());
+			writeTime(stop.getDepartureOffset());
+			this.out.writeBoolean(stop.isAwaitDepartureTime());
+		}
+		this.out.writeVarInt(route.getDepartures().size());
+		for (Departure departure : route.getDepartures().values()) {
+			writeId(departure.getId(), ScenarioSnapshot.ID_DEPARTURE);
+			this.out.writeDouble(departure.getDepartureTime());
+			writeId(departure.getVehicleId(), ScenarioSnapshot.ID_VEHICLE);
+			writeAttributes(departure.getAttributes());
+		}
+	}
+
+	private void writeVehicles(final Vehicles vehicles) throws IOException {
+		this.out.writeVarInt(vehicles.getVehicleTypes().size());
+		for (VehicleType type : vehicles.getVehicleTypes().values()) {
+			writeId(type.getId(), ScenarioSnapshot.ID_VEHICLE_TYPE);
+			writeString(type.getDescription());
+			writeAttributes(type.getAttributes());
+
+			VehicleCapacity capacity = type.getCapacity();
+			writeNullableInt(capacity.getSeats());
+			writeNullableInt(capacity.getStandingRoom());
+			writeNullableDouble(capacity.getVolumeInCubicMeters());
+			writeNullableDouble(capacity.getWeightInTons());
+			writeNullableDouble(capacity.getOther());
+			writeAttributes(capacity.getAttributes());
+
+			this.out.writeDouble(type.getLength());
+			this.out.writeDouble(type.getWidth());
+			this.out.writeDouble(type.getMaximumVelocity());
+			this.out.writeDouble(type.getPcuEquivalents());
+			this.out.writeDouble(type.getFlowEfficiencyFactor());
+			writeString(type.getNetworkMode());
+			writeAttributes(type.getEngineInformation().getAttributes());
+
+			CostInformation costs = type.getCostInformation();
+			writeNullableDouble(costs.getFixedCosts());
+			writeNullableDouble(costs.getCostsPerMeter());
+			writeNullableDouble(costs.getCostsPerSecond());
+			writeAttributes(costs.getAttributes());
+		}
+		this.out.writeVarInt(vehicles.getVehicles().size());
+		for (Vehicle vehicle : vehicles.getVehicles().values()) {
+			writeId(vehicle.getId(), ScenarioSnapshot.ID_VEHICLE);
+			writeId(vehicle.getType().getId(), ScenarioSnapshot.ID_VEHICLE_TYPE);
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------ */
+
+	private void writeAttributes(final Attributes attributes) throws IOException {
+		if (attributes.isEmpty()) {
+			this.out.writeVarInt(0);
+			return;
+		}
+		// like the xml writers, skip attributes that cannot be converted
+		this.attributeKeys.clear();
+		this.attributeValues.clear();
+		for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+			Object value = e.getValue();
+			if (!(value instanceof String || value instanceof Double || value instanceof Integer || value instanceof Long || value instanceof Boolean)) {
+				String converted = this.attributesConverter.convertToString(value);
+				if (converted == null) {
+					continue;
+				}
+				value = new ConvertedValue(value.getClass().getName(), converted);
+			}
+			this.attributeKeys.add(e.getKey());
+			this.attributeValues.add(value);
+		}
+		this.out.writeVarInt(this.attributeKeys.size());
+		for (int i = 0; i < this.attributeKeys.size(); i++) {
+			writeString(this.attributeKeys.get(i));
+			Object value = this.attributeValues.get(i);
+			if (value instanceof String) {
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_STRING);
+				writeString((String) value);
+			} else if (value instanceof Double) {
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_DOUBLE);
+				this.out.writeDouble((Double) value);
+			} else if (value instanceof Integer) {
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_INTEGER);
+				this.out.writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_LONG);
+				this.out.writeLong((Long) value);
+			} else if (value instanceof Boolean) {
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_BOOLEAN);
+				this.out.writeBoolean((Boolean) value);
+			} else {
+				ConvertedValue converted = (ConvertedValue) value;
+				this.out.writeByte(ScenarioSnapshot.ATTRIBUTE_CONVERTED);
+				writeString(converted.className);
+				writeString(converted.value);
+			}
+		}
+	}
+
+	private void writeCoord(final Coord coord) throws IOException {
+		if (coord == null) {
+			this.out.writeByte(0);
+		} else if (coord.hasZ()) {
+			this.out.writeByte(3);
+			this.out.writeDouble(coord.getX());
+			this.out.writeDouble(coord.getY());
+			this.out.writeDouble(coord.getZ());
+		} else {
+			this.out.writeByte(2);
+			this.out.writeDouble(coord.getX());
+			this.out.writeDouble(coord.getY());
+		}
+	}
+
+	private void writeTime(final OptionalTime time) throws IOException {
+		this.out.writeDouble(time.isDefined() ? time.seconds() : Double.NaN);
+	}
+
+	private void writeNullableInt(final Integer value) throws IOException {
+		this.out.writeBoolean(value != null);
+		if (value != null) {
+			this.out.writeInt(value);
+		}
+	}
+
+	private void writeNullableDouble(final Double value) throws IOException {
+		this.out.writeBoolean(value != null);
+		if (value != null) {
+			this.out.writeDouble(value);
+		}
+	}
+
+	private void writeString(final String s) throws IOException {
+		this.out.writeVarInt(s == null ? 0 : getStringIndex(s) + 1);
+	}
+
+	private int getStringIndex(final String s) {
+		Integer index = this.stringIndices.get(s);
+		if (index == null) {
+			index = this.strings.size();
+			this.strings.add(s);
+			this.stringIndices.put(s, index);
+		}
+		return index;
+	}
+
+	private void writeId(final Id<?> id, final int type) throws IOException {
+		if (id == null) {
+			this.out.writeVarInt(0);
+			return;
+		}
+		IdTable table = this.idTables[type];
+		int count = table.ids.size();
+		int index = table.getIndex(id);
+		if (index == count) {
+			getStringIndex(id.toString());
+		}
+		this.out.writeVarInt(index + 1);
+	}
+
+	private static final class ConvertedValue {
+		final String className;
+		final String value;
+
+		ConvertedValue(final String className, final String value) {
+			this.className = className;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Maps ids of one type to consecutive indices, using the global index of the ids instead of hashing.
+	 */
+	private static final class IdTable {
+		private int[] indices = new int[1024];
+		final List<Id<?>> ids = new ArrayList<>();
+
+		int getIndex(final Id<?> id) {
+			int globalIndex = id.index();
+			if (globalIndex >= this.indices.length) {
+				this.indices = Arrays.copyOf(this.indices, Math.max(globalIndex + 1, this.indices.length * 2));
+			}
+			int index = this.indices[globalIndex] - 1;
+			if (index < 0) {
+				index = this.ids.size();
+				this.ids.add(id);
+				this.indices[globalIndex] = index + 1;
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Buffers the payload and computes its checksum, and writes the header once the payload is complete.
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+		private final CRC32C checksum = new CRC32C();
+		private long written = 0;
+
+		Output(final FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.channel.position(ScenarioSnapshot.HEADER_SIZE);
+		}
+
+		long position() {
+			return ScenarioSnapshot.HEADER_SIZE + this.written + this.buffer.position();
+		}
+
+		void writeByte(final int b) throws IOException {
+			ensure(1);
+			this.buffer.put((byte) b);
+		}
+
+		void writeBoolean(final boolean b) throws IOException {
+			writeByte(b ? 1 : 0);
+		}
+
+		void writeInt(final int i) throws IOException {
+			ensure(4);
+			this.buffer.putInt(i);
+		}
+
+		void writeLong(final long l) throws IOException {
+			ensure(8);
+			this.buffer.putLong(l);
+		}
+
+		void writeDouble(final double d) throws IOException {
+			ensure(8);
+			this.buffer.putDouble(d);
+		}
+
+		void writeVarInt(int i) throws IOException {
+			ensure(5);
+			while ((i & ~0x7f) != 0) {
+				this.buffer.put((byte) ((i & 0x7f) | 0x80));
+				i >>>= 7;
+			}
+			this.buffer.put((byte) i);
+		}
+
+		void writeBytes(final byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				ensure(1);
+				int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+				this.buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private void ensure(final int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			this.buffer.flip();
+			this.checksum.update(this.buffer.array(), 0, this.buffer.limit());
+			this.written += this.buffer.limit();
+			while (this.buffer.hasRemaining()) {
+				this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+
+		void finish(final long tablesOffset) throws IOException {
+			flush();
+			ByteBuffer header = ByteBuffer.allocate(ScenarioSnapshot.HEADER_SIZE);
+			header.putInt(ScenarioSnapshot.MAGIC);
+			header.putInt(ScenarioSnapshot.VERSION);
+			header.putLong(tablesOffset);
+			header.putLong(this.written);
+			header.putLong(this.checksum.getValue());
+			header.flip();
+			long position = 0;
+			while (header.hasRemaining()) {
+				position += this.channel.write(header, position);
+			}
+		}
+	}
+
+}
@@ -31,6 +31,8 @@ import org.matsim.lanes.Lanes;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.vehicles.Vehicles;
 
+import java.nio.file.Paths;
+
 
 /**
  * Provides ways to get a Scenario from the implementation in this package.
@@ -91,6 +93,23 @@ public final class ScenarioUtils {
 		scenarioLoader.loadScenario();
 	}
 	
+	/**
+	 * Writes the network, population, facilities, transit schedule, vehicles and transit vehicles of the scenario
+	 * into a binary snapshot, which loads much faster than the xml files.
+	 *
+	 * @see org.matsim.core.config.groups.GlobalConfigGroup#getScenarioSnapshotFile()
+	 */
+	public static void writeScenarioSnapshot(final Scenario scenario, final String filename) {
+		new ScenarioSnapshotWriter(scenario).write(Paths.get(filename), ScenarioSnapshot.describeInputs(scenario.getConfig()));
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #writeScenarioSnapshot(Scenario, String)} into the given, empty scenario.
+	 */
+	public static void readScenarioSnapshot(final Scenario scenario, final String filename) {
+		new ScenarioSnapshotReader(scenario).read(Paths.get(filename));
+	}
+
 	public final static class ScenarioBuilder {
 		private MutableScenario scenario;
 		public ScenarioBuilder( Config config ) {
@@ -0,0 +1,261 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringShards.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Distributes the scoring of {@link ScoringFunctionsForPopulation} among several threads.  Each person belongs to
+ * one shard (by {@link Id#index()}), and each shard has a thread that passes the events, legs and activities of its
+ * persons on to their scoring functions.  So no scoring function is ever called from two threads, and no lock is
+ * needed.
+ * <p></p>
+ * This object is the only events handler: it builds the legs and activities itself, with its own {@link EventsToLegs}
+ * and {@link EventsToActivities}, instead of getting them from the ones which are bound in the injector.  Those run
+ * in a different events handling thread in general, and the order in which events and legs/activities of a person would
+ * arrive in a shard were random then.  Here, an event is passed on first, then the legs and activities that it
+ * completes.  The scoring functions thus see the same things in the same order in every run, and since each person
+ * is scored by one thread only, the scores are exactly the same as with scoring in the events handling thread.
+ * <p></p>
+ * Items are passed to the shards in batches, and the events handling thread waits if a shard falls too far behind.
+ *
+ * @see org.matsim.core.config.groups.PlanCalcScoreConfigGroup#getNumberOfScoringThreads()
+ */
+final class ScoringShards implements BasicEventHandler {
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 32;
+	private static final Batch END_OF_ITERATION = new Batch(0);
+
+	private final ScoringFunctionsForPopulation scoringFunctions;
+	private final AtomicReference<Throwable> exception;
+	private final EventsToLegs eventsToLegs;
+	private final EventsToActivities eventsToActivities = new EventsToActivities();
+	private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+	private final Shard[] shards;
+
+	ScoringShards(ScoringFunctionsForPopulation scoringFunctions, int numberOfShards, Network network, AtomicReference<Throwable> exception) {
+		this.scoringFunctions = scoringFunctions;
+		this.exception = exception;
+		this.eventsToLegs = new EventsToLegs(network);
+		this.eventsToLegs.addLegHandler(leg -> submit(leg.getAgentId(), leg));
+		this.eventsToActivities.addActivityHandler(activity -> submit(activity.getAgentId(), activity));
+		this.shards = new Shard[numberOfShards];
+	}
+
+	void setTransitSchedule(TransitSchedule transitSchedule) {
+		this.eventsToLegs.setTransitSchedule(transitSchedule);
+	}
+
+	/**
+	 * Starts the threads of the shards.  To be called after the scoring functions of the iteration are created.
+	 */
+	void start() {
+		finish(); // in case the last iteration was not finished, e.g. because of an exception
+		this.eventsToLegs.reset(0);
+		this.eventsToActivities.reset(0);
+		this.vehicles2Drivers.reset(0);
+		for (int i = 0; i < this.shards.length; i++) {
+			this.shards[i] = new Shard("ScoringShard-" + i);
+			this.shards[i].thread.start();
+		}
+	}
+
+	/**
+	 * Passes on what is left and waits until all shards are done.  To be called after the last event of the iteration.
+	 */
+	void finish() {
+		if (this.shards[0] == null) {
+			return;
+		}
+		// (the activities that were not ended, i.e. usually the last activity of each person)
+		this.eventsToActivities.finish();
+		for (Shard shard : this.shards) {
+			shard.flush();
+			shard.put(END_OF_ITERATION);
+		}
+		for (int i = 0; i < this.shards.length; i++) {
+			try {
+				this.shards[i].thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.shards[i] = null;
+		}
+	}
+
+	@Override
+	public void handleEvent(Event o) {
+		// see ScoringFunctionsForPopulation.handleEvent(...) for the comments
+		if (o instanceof HasPersonId) {
+			submit(((HasPersonId) o).getPersonId(), o);
+		}
+
+		if (o instanceof VehicleEntersTrafficEvent) {
+			this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+		}
+		if (o instanceof VehicleLeavesTrafficEvent) {
+			this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+		}
+		if (o instanceof LinkEnterEvent) {
+			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(((LinkEnterEvent) o).getVehicleId());
+			if (driverId != null) {
+				submit(driverId, o);
+			}
+		}
+
+		// same as EventsToLegsAndActivities:
+		if (o instanceof ActivityEndEvent) {
+			this.eventsToActivities.handleEvent((ActivityEndEvent) o);
+		} else if (o instanceof ActivityStartEvent) {
+			this.eventsToActivities.handleEvent((ActivityStartEvent) o);
+		} else if (o instanceof LinkEnterEvent) {
+			this.eventsToLegs.handleEvent((LinkEnterEvent) o);
+		} else if (o instanceof PersonArrivalEvent) {
+			this.eventsToLegs.handleEvent((PersonArrivalEvent) o);
+		} else if (o instanceof PersonDepartureEvent) {
+			this.eventsToLegs.handleEvent((PersonDepartureEvent) o);
+		} else if (o instanceof PersonEntersVehicleEvent) {
+			this.eventsToLegs.handleEvent((PersonEntersVehicleEvent) o);
+		} else if (o instanceof TransitDriverStartsEvent) {
+			this.eventsToLegs.handleEvent((TransitDriverStartsEvent) o);
+		} else if (o instanceof VehicleEntersTrafficEvent) {
+			this.eventsToLegs.handleEvent((VehicleEntersTrafficEvent) o);
+		} else if (o instanceof VehicleLeavesTrafficEvent) {
+			this.eventsToLegs.handleEvent((VehicleLeavesTrafficEvent) o);
+		} else if (o instanceof TeleportationArrivalEvent) {
+			this.eventsToLegs.handleEvent((TeleportationArrivalEvent) o);
+		} else if (o instanceof VehicleArrivesAtFacilityEvent) {
+			this.eventsToLegs.handleEvent((VehicleArrivesAtFacilityEvent) o);
+		}
+	}
+
+	private void submit(Id<Person> personId, Object item) {
+		if (this.scoringFunctions.getScoringFunctionForAgent(personId) == null) {
+			return;
+		}
+		this.shards[personId.index() % this.shards.length].add(personId, item);
+	}
+
+	private static final class Batch {
+		private final Id<Person>[] persons;
+		private final Object[] items;
+		private int size = 0;
+
+		@SuppressWarnings("unchecked")
+		Batch(int capacity) {
+			this.persons = (Id<Person>[]) new Id<?>[capacity];
+			this.items = new Object[capacity];
+		}
+	}
+
+	private final class Shard implements Runnable {
+		private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private final Thread thread;
+		private Batch batch = new Batch(BATCH_SIZE);
+
+		Shard(String name) {
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		void add(Id<Person> personId, Object item) {
+			this.batch.persons[this.batch.size] = personId;
+			this.batch.items[this.batch.size] = item;
+			this.batch.size++;
+			if (this.batch.size == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (this.batch.size > 0) {
+				put(this.batch);
+				this.batch = new Batch(BATCH_SIZE);
+			}
+		}
+
+		void put(Batch batch) {
+			try {
+				this.queue.put(batch);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Batch batch = this.queue.take();
+					if (batch == END_OF_ITERATION) {
+						return;
+					}
+					if (exception.get() != null) {
+						continue; // keep on taking the batches, so that the events handling thread does not block
+					}
+					try {
+						for (int i = 0; i < batch.size; i++) {
+							handleItem(batch.persons[i], batch.items[i]);
+						}
+					} catch (Throwable t) {
+						exception.compareAndSet(null, t);
+					}
+				}
+			} catch (InterruptedException e) {
+				exception.compareAndSet(null, e);
+			}
+		}
+
+		private void handleItem(Id<Person> personId, Object item) {
+			if (item instanceof PersonExperiencedLeg) {
+				scoringFunctions.handleLegForAgent(personId, ((PersonExperiencedLeg) item).getLeg());
+			} else if (item instanceof PersonExperiencedActivity) {
+				scoringFunctions.handleActivityForAgent(personId, ((PersonExperiencedActivity) item).getActivity());
+			} else {
+				scoringFunctions.handleEventForAgent(personId, (Event) item);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,505 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PrimitiveArrayTravelTimeCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import com.google.inject.Inject;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleAbortsEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.events.LinkEventRecord;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.router.util.LinkToLinkTravelTime;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.collections.CollectionUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Calculates the same travel times as the {@link TravelTimeCalculator}, but keeps all data in flat primitive arrays:
+ * <ul>
+ * <li> sums and counts of the travel times per link and time slot, at <code>linkIndex * numSlots + slot</code>, using
+ * {@link Id#index()} of the links;</li>
+ * <li> link enter times and links per vehicle, using {@link Id#index()} of the vehicles;</li>
+ * <li> link-to-link travel times per turn, where the turns of a link are the out-links of its to-node.</li>
+ * </ul>
+ * So neither handling an event nor looking up a travel time hashes or boxes anything.  Events are handled without
+ * any locks, since an event handler gets its events from one thread at a time.  The smoothing of the travel times
+ * (see the consolidation in {@link TravelTimeCalculator}) is done for a link the first time its travel time is looked
+ * up after it got new data; that is guarded by striped locks, so that routers in several threads can share one instance.
+ * <p></p>
+ * Selected with {@link TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorPrimitiveArray}.
+ * Results are the same as those of the {@link TravelTimeCalculator} up to rounding, with one exception on time-variant
+ * networks: time slots without data return the free speed travel time at the requested time, not at the time of the
+ * first request within the slot.
+ */
+public final class PrimitiveArrayTravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEventHandler,
+		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler,
+		VehicleAbortsEventHandler, LinkEventRecordHandler {
+	private static final Logger log = Logger.getLogger(PrimitiveArrayTravelTimeCalculator.class);
+
+	private static final String ERROR_STUCK_AND_LINKTOLINK = "Using the stuck feature with turning move travel times is not available. As the next link of a stucked" +
+			"agent is not known the turning move travel time cannot be calculated!";
+
+	/* states of the rows, i.e. of the time slots of one link or one turn */
+	private static final int EMPTY = 0;
+	private static final int NEEDS_CONSOLIDATION = 1;
+	private static final int CONSOLIDATED = 2;
+
+	private static final int NUMBER_OF_LOCKS = 64;
+
+	private final Network network;
+	private final int timeSlice;
+	private final int numSlots;
+	private final TimeSlotComputation aggregator;
+	private final boolean linearInterpolation;
+
+	private final boolean calculateLinkTravelTimes;
+	private final boolean calculateLinkToLinkTravelTimes;
+	private final boolean filterAnalyzedModes;
+	private final Set<String> analyzedModes;
+	private final double endTime;
+
+	private final Object[] locks = new Object[NUMBER_OF_LOCKS];
+
+	private int numberOfLinks;
+	private double[] linkSums;
+	private int[] linkCounts;
+	private AtomicIntegerArray linkStates;
+
+	/* the turns of link l are turnToLinks[turnOffsets[l] .. turnOffsets[l+1]-1] */
+	private final int[] turnOffsets;
+	private final int[] turnToLinks;
+	private final double[] turnSums;
+	private final int[] turnCounts;
+	private final AtomicIntegerArray turnStates;
+
+	/* per vehicle index; NaN if the vehicle is not on a link that is observed */
+	private double[] enterTimes;
+	private int[] enterLinks;
+	private boolean[] vehiclesToIgnore;
+
+	@Inject
+	PrimitiveArrayTravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, QSimConfigGroup qsimConfig, EventsManager eventsManager,
+			Network network) {
+		this(network, ttconfigGroup, qsimConfig, ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString()));
+		eventsManager.addHandler(this);
+	}
+
+	/**
+	 * @param qsimConfig may be null; only used to tell aborts at the end of the mobsim from others
+	 */
+	public PrimitiveArrayTravelTimeCalculator(final Network network, TravelTimeCalculatorConfigGroup ttconfigGroup, QSimConfigGroup qsimConfig,
+			boolean filterModes, Set<String> analyzedModes) {
+		this.network = network;
+		this.timeSlice = ttconfigGroup.getTraveltimeBinSize();
+		this.numSlots = TimeBinUtils.getTimeBinCount(ttconfigGroup.getMaxTime(), this.timeSlice);
+		this.aggregator = new TimeSlotComputation(this.numSlots, this.timeSlice);
+		switch (ttconfigGroup.getTravelTimeGetterType()) {
+			case "average":
+				this.linearInterpolation = false;
+				break;
+			case "linearinterpolation":
+				this.linearInterpolation = true;
+				break;
+			default:
+				throw new RuntimeException(ttconfigGroup.getTravelTimeGetterType() + " is unknown!");
+		}
+		this.calculateLinkTravelTimes = ttconfigGroup.isCalculateLinkTravelTimes();
+		this.calculateLinkToLinkTravelTimes = ttconfigGroup.isCalculateLinkToLinkTravelTimes();
+		this.filterAnalyzedModes = filterModes;
+		this.analyzedModes = analyzedModes;
+		this.endTime = qsimConfig == null || qsimConfig.getEndTime().isUndefined() ? Double.POSITIVE_INFINITY : qsimConfig.getEndTime().seconds();
+
+		for (int i = 0; i < NUMBER_OF_LOCKS; i++) {
+			this.locks[i] = new Object();
+		}
+
+		this.numberOfLinks = Id.getNumberOfIds(Link.class);
+		if (this.calculateLinkTravelTimes) {
+			this.linkSums = new double[this.numberOfLinks * this.numSlots];
+			this.linkCounts = new int[this.numberOfLinks * this.numSlots];
+			this.linkStates = new AtomicIntegerArray(this.numberOfLinks);
+		}
+
+		if (this.calculateLinkToLinkTravelTimes) {
+			this.turnOffsets = new int[this.numberOfLinks + 1];
+			int numberOfTurns = 0;
+			for (Link link : network.getLinks().values()) {
+				numberOfTurns += link.getToNode().getOutLinks().size();
+			}
+			this.turnToLinks = new int[numberOfTurns];
+			int turn = 0;
+			for (int l = 0; l < this.numberOfLinks; l++) {
+				this.turnOffsets[l] = turn;
+				Link link = network.getLinks().get(Id.get(l, Link.class));
+				if (link != null) {
+					for (Link toLink : link.getToNode().getOutLinks().values()) {
+						this.turnToLinks[turn++] = toLink.getId().index();
+					}
+				}
+			}
+			this.turnOffsets[this.numberOfLinks] = turn;
+			this.turnSums = new double[numberOfTurns * this.numSlots];
+			this.turnCounts = new int[numberOfTurns * this.numSlots];
+			this.turnStates = new AtomicIntegerArray(numberOfTurns);
+		} else {
+			this.turnOffsets = null;
+			this.turnToLinks = null;
+			this.turnSums = null;
+			this.turnCounts = null;
+			this.turnStates = null;
+		}
+
+		int numberOfVehicles = Math.max(Id.getNumberOfIds(Vehicle.class), 16);
+		this.enterTimes = new double[numberOfVehicles];
+		this.enterLinks = new int[numberOfVehicles];
+		this.vehiclesToIgnore = new boolean[numberOfVehicles];
+
+		this.reset(0);
+	}
+
+	// === event handling ===
+
+	@Override
+	public void handleEvent(final LinkEnterEvent e) {
+		enterLink(e.getTime(), e.getVehicleId(), e.getLinkId());
+	}
+
+	@Override
+	public void handleEvent(final LinkLeaveEvent e) {
+		leaveLink(e.getTime(), e.getVehicleId(), e.getLinkId());
+	}
+
+	@Override
+	public void handleRecord(final LinkEventRecord record) {
+		if (record.getType() == LinkEventRecord.Type.LINK_ENTER) {
+			enterLink(record.getTime(), record.getVehicleId(), record.getLinkId());
+		} else {
+			leaveLink(record.getTime(), record.getVehicleId(), record.getLinkId());
+		}
+	}
+
+	private void enterLink(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		int vehicle = vehicleId.index();
+		ensureVehicleCapacity(vehicle);
+		if (this.filterAnalyzedModes && this.vehiclesToIgnore[vehicle]) return;
+
+		double oldEnterTime = this.enterTimes[vehicle];
+		int oldLink = this.enterLinks[vehicle];
+		this.enterTimes[vehicle] = time;
+		this.enterLinks[vehicle] = linkId.index();
+
+		if (!Double.isNaN(oldEnterTime) && this.calculateLinkToLinkTravelTimes) {
+			int turn = getTurnIndex(oldLink, linkId.index());
+			if (turn >= 0) {
+				int timeSlot = this.aggregator.getTimeSlotIndex(oldEnterTime);
+				int i = turn * this.numSlots + timeSlot;
+				this.turnSums[i] += time - oldEnterTime;
+				this.turnCounts[i]++;
+				markForConsolidation(this.turnStates, turn);
+			}
+		}
+	}
+
+	private void leaveLink(final double time, final Id<Vehicle> vehicleId, final Id<Link> linkId) {
+		if (this.calculateLinkTravelTimes) {
+			int vehicle = vehicleId.index();
+			if (vehicle < this.enterTimes.length && !Double.isNaN(this.enterTimes[vehicle])) {
+				double enterTime = this.enterTimes[vehicle];
+				int link = linkId.index();
+				ensureLinkCapacity(link);
+				int i = link * this.numSlots + this.aggregator.getTimeSlotIndex(enterTime);
+				this.linkSums[i] += time - enterTime;
+				this.linkCounts[i]++;
+				markForConsolidation(this.linkStates, link);
+			}
+		}
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		if (this.filterAnalyzedModes && !this.analyzedModes.contains(event.getNetworkMode())) {
+			int vehicle = event.getVehicleId().index();
+			ensureVehicleCapacity(vehicle);
+			this.vehiclesToIgnore[vehicle] = true;
+		}
+	}
+
+	@Override
+	public void handleEvent(final VehicleLeavesTrafficEvent event) {
+		// see TravelTimeCalculator for why the enter time needs to be forgotten here
+		int vehicle = event.getVehicleId().index();
+		if (vehicle < this.enterTimes.length) {
+			this.enterTimes[vehicle] = Double.NaN;
+			this.vehiclesToIgnore[vehicle] = false;
+		}
+	}
+
+	@Override
+	public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+		int vehicle = event.getVehicleId().index();
+		if (vehicle < this.enterTimes.length) {
+			this.enterTimes[vehicle] = Double.NaN;
+		}
+	}
+
+	@Override
+	public void handleEvent(VehicleAbortsEvent event) {
+		int vehicle = event.getVehicleId().index();
+		if (vehicle < this.enterTimes.length) {
+			if (!Double.isNaN(this.enterTimes[vehicle]) && this.calculateLinkToLinkTravelTimes && event.getTime() < this.endTime) {
+				log.error(ERROR_STUCK_AND_LINKTOLINK);
+				throw new IllegalStateException(ERROR_STUCK_AND_LINKTOLINK);
+			}
+			this.enterTimes[vehicle] = Double.NaN;
+			this.vehiclesToIgnore[vehicle] = false;
+		}
+	}
+
+	@Override
+	public void reset(int iteration) {
+		if (this.calculateLinkTravelTimes) {
+			Arrays.fill(this.linkSums, 0.);
+			Arrays.fill(this.linkCounts, 0);
+			for (int l = 0; l < this.linkStates.length(); l++) {
+				this.linkStates.set(l, EMPTY);
+			}
+		}
+		if (this.calculateLinkToLinkTravelTimes) {
+			Arrays.fill(this.turnSums, 0.);
+			Arrays.fill(this.turnCounts, 0);
+			for (int t = 0; t < this.turnStates.length(); t++) {
+				this.turnStates.set(t, EMPTY);
+			}
+		}
+		Arrays.fill(this.enterTimes, Double.NaN);
+		Arrays.fill(this.vehiclesToIgnore, false);
+	}
+
+	private static void markForConsolidation(AtomicIntegerArray states, int row) {
+		if (states.get(row) != NEEDS_CONSOLIDATION) {
+			states.set(row, NEEDS_CONSOLIDATION);
+		}
+	}
+
+	private void ensureVehicleCapacity(int vehicle) {
+		if (vehicle >= this.enterTimes.length) {
+			int oldLength = this.enterTimes.length;
+			int newLength = Math.max(2 * oldLength, vehicle + 1);
+			this.enterTimes = Arrays.copyOf(this.enterTimes, newLength);
+			Arrays.fill(this.enterTimes, oldLength, newLength, Double.NaN);
+			this.enterLinks = Arrays.copyOf(this.enterLinks, newLength);
+			this.vehiclesToIgnore = Arrays.copyOf(this.vehiclesToIgnore, newLength);
+		}
+	}
+
+	/*
+	 * Only needed if link ids are created after this object, which should not happen in a normal run.  Not safe against
+	 * concurrent lookups, as the rest of the event handling.
+	 */
+	private void ensureLinkCapacity(int link) {
+		if (link >= this.numberOfLinks) {
+			int newNumberOfLinks = Math.max(Id.getNumberOfIds(Link.class), link + 1);
+			this.linkSums = Arrays.copyOf(this.linkSums, newNumberOfLinks * this.numSlots);
+			this.linkCounts = Arrays.copyOf(this.linkCounts, newNumberOfLinks * this.numSlots);
+			AtomicIntegerArray newStates = new AtomicIntegerArray(newNumberOfLinks);
+			for (int l = 0; l < this.numberOfLinks; l++) {
+				newStates.set(l, this.linkStates.get(l));
+			}
+			this.linkStates = newStates;
+			this.numberOfLinks = newNumberOfLinks;
+		}
+	}
+
+	private int getTurnIndex(int fromLink, int toLink) {
+		if (fromLink >= this.turnOffsets.length - 1) {
+			return -1;
+		}
+		for (int turn = this.turnOffsets[fromLink]; turn < this.turnOffsets[fromLink + 1]; turn++) {
+			if (this.turnToLinks[turn] == toLink) {
+				return turn;
+			}
+		}
+		return -1;
+	}
+
+	// === travel time lookup ===
+
+	private double getLinkTravelTime(final Link link, final double time) {
+		if (!this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		int l = link.getId().index();
+		if (l >= this.numberOfLinks || this.linkStates.get(l) == EMPTY) {
+			return getFreespeedTravelTime(link, time);
+		}
+		if (this.linkStates.get(l) == NEEDS_CONSOLIDATION) {
+			consolidate(this.linkStates, l, this.linkSums, this.linkCounts, link);
+		}
+		return getTravelTime(this.linkSums, this.linkCounts, l * this.numSlots, link, time);
+	}
+
+	private double getLinkToLinkTravelTime(final Link fromLink, final Link toLink, final double time) {
+		if (!this.calculateLinkToLinkTravelTimes) {
+			throw new IllegalStateException("No link to link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		int turn = getTurnIndex(fromLink.getId().index(), toLink.getId().index());
+		if (turn < 0 || this.turnStates.get(turn) == EMPTY) {
+			return getFreespeedTravelTime(fromLink, time);
+		}
+		if (this.turnStates.get(turn) == NEEDS_CONSOLIDATION) {
+			consolidate(this.turnStates, turn, this.turnSums, this.turnCounts, fromLink);
+		}
+		return getTravelTime(this.turnSums, this.turnCounts, turn * this.numSlots, fromLink, time);
+	}
+
+	private double getTravelTime(double[] sums, int[] counts, int offset, Link link, double time) {
+		final int timeSlot = this.aggregator.getTimeSlotIndex(time);
+		if (!this.linearInterpolation) {
+			return getSlotTravelTime(sums, counts, offset, timeSlot, link, time);
+		}
+
+		// same as LinearInterpolatingTravelTimeGetter:
+		double halfBinSize = this.timeSlice / 2.;
+		if (time <= halfBinSize || time >= this.numSlots * this.timeSlice - halfBinSize) {
+			return getSlotTravelTime(sums, counts, offset, timeSlot, link, time);
+		}
+		int firstSlot;
+		int secondSlot;
+		if (timeSlot * this.timeSlice + halfBinSize > time) {
+			firstSlot = timeSlot - 1;
+			secondSlot = timeSlot;
+		} else {
+			firstSlot = timeSlot;
+			secondSlot = timeSlot + 1;
+		}
+		double firstTravelTime = getSlotTravelTime(sums, counts, offset, firstSlot, link, time);
+		double secondTravelTime = getSlotTravelTime(sums, counts, offset, secondSlot, link, time);
+		double dx = time - (firstSlot * this.timeSlice + halfBinSize);
+		double dy = (secondTravelTime - firstTravelTime) * dx / this.timeSlice;
+		return firstTravelTime + dy;
+	}
+
+	private static double getSlotTravelTime(double[] sums, int[] counts, int offset, int timeSlot, Link link, double time) {
+		int cnt = counts[offset + timeSlot];
+		if (cnt > 0) {
+			return sums[offset + timeSlot] / cnt;
+		}
+		return getFreespeedTravelTime(link, time);
+	}
+
+	private static double getFreespeedTravelTime(Link link, double time) {
+		return link.getLength() / link.getFreespeed(time);
+	}
+
+	/**
+	 * Same as the consolidation in {@link TravelTimeCalculator}: the travel time in a time slot may not be smaller than
+	 * the one in the slot before minus the slot length.  A raised slot is stored as one observation of the raised travel
+	 * time, as there.
+	 */
+	private void consolidate(AtomicIntegerArray states, int row, double[] sums, int[] counts, Link link) {
+		synchronized (this.locks[row % NUMBER_OF_LOCKS]) {
+			if (states.get(row) != NEEDS_CONSOLIDATION) {
+				return;
+			}
+			int offset = row * this.numSlots;
+			double prevTravelTime = getSlotTravelTime(sums, counts, offset, 0, link, 0.);
+			for (int i = 1; i < this.numSlots; i++) {
+				double travelTime = getSlotTravelTime(sums, counts, offset, i, link, i * this.timeSlice);
+				double minTravelTime = prevTravelTime - this.timeSlice;
+				if (travelTime < minTravelTime) {
+					travelTime = minTravelTime;
+					sums[offset + i] = travelTime;
+					counts[offset + i] = 1;
+				}
+				prevTravelTime = travelTime;
+			}
+			// (the volatile write publishes the row to readers in other threads)
+			states.set(row, CONSOLIDATED);
+		}
+	}
+
+	private static int cnt = 0 ;
+
+	public TravelTime getLinkTravelTimes() {
+		return new TravelTime() {
+
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+				double linkTTimeFromObservation = PrimitiveArrayTravelTimeCalculator.this.getLinkTravelTime(link, time);
+				return Math.max(getTravelTimeFromVehicle(link, vehicle), linkTTimeFromObservation);
+				// (see TravelTimeCalculator for why this is max)
+			}
+
+		};
+	}
+
+	public LinkToLinkTravelTime getLinkToLinkTravelTimes() {
+		return new LinkToLinkTravelTime() {
+
+			@Override
+			public double getLinkToLinkTravelTime(Link fromLink, Link toLink, double time, Person person, Vehicle vehicle) {
+				double linkTTimeFromObservation = PrimitiveArrayTravelTimeCalculator.this.getLinkToLinkTravelTime(fromLink, toLink, time);
+				return Math.max(linkTTimeFromObservation, getTravelTimeFromVehicle(fromLink, vehicle));
+			}
+		};
+	}
+
+	private static double getTravelTimeFromVehicle(Link link, Vehicle vehicle) {
+		if (vehicle == null) {
+			return 0.;
+		}
+		final VehicleType vehicleType = vehicle.getType();
+		if (vehicleType == null) {
+			if (cnt < 1) {
+				cnt++;
+				log.warn("encountered vehicle where vehicle.getType() returns null.  That should be repaired (whereever it comes from).");
+				log.warn(Gbl.ONLYONCE);
+			}
+			return 0.;
+		}
+		return link.getLength() / vehicleType.getMaximumVelocity();
+	}
+
+}
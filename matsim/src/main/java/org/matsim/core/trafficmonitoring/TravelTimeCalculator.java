@@ -122,6 +122,11 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			case TravelTimeCalculatorHashMap:
 				calculator.ttDataFactory = new TravelTimeDataHashMapFactory(network);
 				break;
+			case TravelTimeCalculatorPrimitiveArray:
+				// (this type is served by PrimitiveArrayTravelTimeCalculator, see TravelTimeCalculatorModule.  If this class is
+				// configured with it nevertheless, it falls back to its own array storage.)
+				calculator.ttDataFactory = new TravelTimeDataArrayFactory(network, calculator.numSlots);
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -29,6 +29,7 @@ import com.google.inject.name.Names;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
@@ -51,6 +52,10 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 
 	@Override
 	public void install() {
+		if (getConfig().travelTimeCalculator().getTravelTimeCalculatorType() == TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorPrimitiveArray) {
+			installPrimitiveArrayTravelTimeCalculator();
+			return;
+		}
 		if (getConfig().travelTimeCalculator().getSeparateModes()) {
 			// (this is the default)
 
@@ -100,6 +105,36 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 
 	}
 
+	/**
+	 * Same bindings as above, but with {@link PrimitiveArrayTravelTimeCalculator} as observer.
+	 */
+	private void installPrimitiveArrayTravelTimeCalculator() {
+		if (getConfig().travelTimeCalculator().getSeparateModes()) {
+			if (getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
+				throw new RuntimeException("separate modes together with link2link routing currently not implemented.") ;
+			}
+			for (final String mode : getConfig().plansCalcRoute().getNetworkModes() ) {
+				bind(PrimitiveArrayTravelTimeCalculator.class).annotatedWith(Names.named(mode)).toProvider(new SingleModePrimitiveArrayTravelTimeCalculatorProvider(mode)).in(Singleton.class);
+				addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
+					@Inject Injector injector;
+					@Override public TravelTime get() {
+						return injector.getInstance( Key.get( PrimitiveArrayTravelTimeCalculator.class, Names.named( mode ) ) ).getLinkTravelTimes();
+					}
+				}).in( Singleton.class );
+			}
+		} else {
+			bind(PrimitiveArrayTravelTimeCalculator.class).in(Singleton.class);
+			if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+				for ( String mode : getConfig().plansCalcRoute().getNetworkModes() ) {
+					addTravelTimeBinding(mode).toProvider(ObservedPrimitiveArrayLinkTravelTimes.class);
+				}
+			}
+			if (getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
+				bind(LinkToLinkTravelTime.class).toProvider(ObservedPrimitiveArrayLinkToLinkTravelTimes.class);
+			}
+		}
+	}
+
 	private static class SingleModeTravelTimeCalculatorProvider implements Provider<TravelTimeCalculator> {
 
 		@Inject TravelTimeCalculatorConfigGroup config;
@@ -155,4 +190,50 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 		}
 
 	}
+
+	private static class SingleModePrimitiveArrayTravelTimeCalculatorProvider implements Provider<PrimitiveArrayTravelTimeCalculator> {
+
+		@Inject TravelTimeCalculatorConfigGroup config;
+		@Inject QSimConfigGroup qsimConfig;
+		@Inject EventsManager eventsManager;
+		@Inject Network network;
+
+		private final String mode;
+
+		SingleModePrimitiveArrayTravelTimeCalculatorProvider(String mode) {
+			this.mode = mode;
+		}
+
+		@Override
+		public PrimitiveArrayTravelTimeCalculator get() {
+			PrimitiveArrayTravelTimeCalculator calculator = new PrimitiveArrayTravelTimeCalculator(network, config, qsimConfig, true,
+					CollectionUtils.stringToSet(mode));
+			eventsManager.addHandler(calculator);
+			return calculator;
+		}
+	}
+
+	private static class ObservedPrimitiveArrayLinkTravelTimes implements Provider<TravelTime> {
+
+		@Inject
+		PrimitiveArrayTravelTimeCalculator travelTimeCalculator;
+
+		@Override
+		public TravelTime get() {
+			return travelTimeCalculator.getLinkTravelTimes();
+		}
+
+	}
+
+	private static class ObservedPrimitiveArrayLinkToLinkTravelTimes implements Provider<LinkToLinkTravelTime> {
+
+		@Inject
+		PrimitiveArrayTravelTimeCalculator travelTimeCalculator;
+
+		@Override
+		public LinkToLinkTravelTime get() {
+			return travelTimeCalculator.getLinkToLinkTravelTimes();
+		}
+
+	}
 }
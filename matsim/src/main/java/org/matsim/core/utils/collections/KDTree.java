@@ -0,0 +1,243 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * KDTree.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * A static k-d tree to store data assigned to geometric points.  All objects are given to the constructor, the tree
+ * cannot be changed afterwards.
+ * <p></p>
+ * Unlike {@link QuadTree}, the tree consists of arrays only, without any node or leaf objects: the coordinates and
+ * values are ordered such that the median of each range [lo, hi) is at (lo + hi) / 2, with the objects having
+ * smaller coordinates on the left and the ones having larger coordinates on the right.  A range is split along the
+ * axis in which its points spread the most.  The queries thus need no allocations except for their results, and
+ * several threads can query the tree at the same time.
+ *
+ * @param <T> The type of data to be stored in the KDTree.
+ */
+public final class KDTree<T> implements SpatialIndex<T> {
+
+	private final double[] xs;
+	private final double[] ys;
+	private final Object[] values;
+	/** Whether the range with its median at index i is split along x (or along y). */
+	private final boolean[] splitAlongX;
+
+	public KDTree(final Collection<T> values, final Function<T, Coord> coordFunction) {
+		int size = values.size();
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.values = new Object[size];
+		this.splitAlongX = new boolean[size];
+		int i = 0;
+		for (T value : values) {
+			Coord coord = coordFunction.apply(value);
+			this.xs[i] = coord.getX();
+			this.ys[i] = coord.getY();
+			this.values[i] = value;
+			i++;
+		}
+		build(0, size);
+	}
+
+	public static <E extends BasicLocation> KDTree<E> create(final Collection<E> elements) {
+		return new KDTree<>(elements, BasicLocation::getCoord);
+	}
+
+	private void build(final int lo, final int hi) {
+		if (hi - lo < 2) {
+			return;
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = lo; i < hi; i++) {
+			minX = Math.min(minX, this.xs[i]);
+			maxX = Math.max(maxX, this.xs[i]);
+			minY = Math.min(minY, this.ys[i]);
+			maxY = Math.max(maxY, this.ys[i]);
+		}
+		boolean alongX = maxX - minX >= maxY - minY;
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, alongX ? this.xs : this.ys);
+		this.splitAlongX[mid] = alongX;
+		build(lo, mid);
+		build(mid + 1, hi);
+	}
+
+	/**
+	 * Reorders the range [left, right] such that the element at index k is the one which belongs there if the
+	 * range were sorted by keys, with no larger keys before and no smaller keys after it.
+	 */
+	private void select(int left, int right, final int k, final double[] keys) {
+		while (right > left) {
+			double pivot = keys[(left + right) >>> 1];
+			// three-way partitioning, so that many equal keys (e.g. several objects at the same location) are fast, too
+			int lt = left;
+			int gt = right;
+			int i = left;
+			while (i <= gt) {
+				if (keys[i] < pivot) {
+					swap(lt++, i++);
+				} else if (keys[i] > pivot) {
+					swap(i, gt--);
+				} else {
+					i++;
+				}
+			}
+			// now [left, lt) < pivot, [lt, gt] == pivot, (gt, right] > pivot
+			if (k < lt) {
+				right = lt - 1;
+			} else if (k > gt) {
+				left = gt + 1;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(final int i, final int j) {
+		double x = this.xs[i];
+		this.xs[i] = this.xs[j];
+		this.xs[j] = x;
+		double y = this.ys[i];
+		this.ys[i] = this.ys[j];
+		this.ys[j] = y;
+		Object value = this.values[i];
+		this.values[i] = this.values[j];
+		this.values[j] = value;
+	}
+
+	@Override
+	public int size() {
+		return this.values.length;
+	}
+
+	@Override
+	public T getClosest(final double x, final double y) {
+		int index = getClosest(x, y, 0, this.values.length, -1);
+		return index < 0 ? null : getValue(index);
+	}
+
+	/** @return the index of the closest object in the range, or best if that one is closer. */
+	private int getClosest(final double x, final double y, final int lo, final int hi, int best) {
+		if (lo >= hi) {
+			return best;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (best < 0 || calcDistance2(mid, x, y) < calcDistance2(best, x, y)) {
+			best = mid;
+		}
+		double diff = this.splitAlongX[mid] ? x - this.xs[mid] : y - this.ys[mid];
+		if (diff < 0) {
+			best = getClosest(x, y, lo, mid, best);
+			if (diff * diff < calcDistance2(best, x, y)) {
+				best = getClosest(x, y, mid + 1, hi, best);
+			}
+		} else {
+			best = getClosest(x, y, mid + 1, hi, best);
+			if (diff * diff < calcDistance2(best, x, y)) {
+				best = getClosest(x, y, lo, mid, best);
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public Collection<T> getDisk(final double x, final double y, final double distance) {
+		List<T> result = new ArrayList<>();
+		executeDisk(x, y, distance, (vx, vy, value) -> result.add(value));
+		return result;
+	}
+
+	@Override
+	public int executeDisk(final double x, final double y, final double distance, final QuadTree.Executor<T> executor) {
+		return executeDisk(x, y, distance, distance * distance, 0, this.values.length, executor);
+	}
+
+	private int executeDisk(final double x, final double y, final double distance, final double distance2,
+			final int lo, final int hi, final QuadTree.Executor<T> executor) {
+		if (lo >= hi) {
+			return 0;
+		}
+		int count = 0;
+		int mid = (lo + hi) >>> 1;
+		if (calcDistance2(mid, x, y) <= distance2) {
+			executor.execute(this.xs[mid], this.ys[mid], getValue(mid));
+			count++;
+		}
+		double diff = this.splitAlongX[mid] ? x - this.xs[mid] : y - this.ys[mid];
+		if (diff <= distance) {
+			count += executeDisk(x, y, distance, distance2, lo, mid, executor);
+		}
+		if (diff >= -distance) {
+			count += executeDisk(x, y, distance, distance2, mid + 1, hi, executor);
+		}
+		return count;
+	}
+
+	@Override
+	public List<T> getKNearest(final double x, final double y, final int k, final double maxDistance) {
+		KNearestHeap<T> heap = new KNearestHeap<>(k, maxDistance * maxDistance);
+		getKNearest(x, y, 0, this.values.length, heap);
+		return heap.toSortedList();
+	}
+
+	private void getKNearest(final double x, final double y, final int lo, final int hi, final KNearestHeap<T> heap) {
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		heap.offer(getValue(mid), calcDistance2(mid, x, y));
+		double diff = this.splitAlongX[mid] ? x - this.xs[mid] : y - this.ys[mid];
+		if (diff < 0) {
+			getKNearest(x, y, lo, mid, heap);
+			if (diff * diff <= heap.getBound()) {
+				getKNearest(x, y, mid + 1, hi, heap);
+			}
+		} else {
+			getKNearest(x, y, mid + 1, hi, heap);
+			if (diff * diff <= heap.getBound()) {
+				getKNearest(x, y, lo, mid, heap);
+			}
+		}
+	}
+
+	private double calcDistance2(final int index, final double x, final double y) {
+		double dx = this.xs[index] - x;
+		double dy = this.ys[index] - y;
+		return dx * dx + dy * dy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T getValue(final int index) {
+		return (T) this.values[index];
+	}
+
+}
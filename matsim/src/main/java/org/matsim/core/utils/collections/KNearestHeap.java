@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * KNearestHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The candidates of a k-nearest-neighbour search in a {@link SpatialIndex}.  They are kept in a max-heap on their
+ * distance, so the candidate that is furthest away can be replaced quickly by a closer one.  The distances may be
+ * squared or not, as long as the search uses them consistently.
+ *
+ * @param <T> The type of the candidates.
+ */
+final class KNearestHeap<T> {
+
+	private final int k;
+	private final double maxDistance;
+	private final Object[] values;
+	private final double[] distances;
+	private int size = 0;
+
+	KNearestHeap(int k, double maxDistance) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be at least 1, but is " + k);
+		}
+		this.k = k;
+		this.maxDistance = maxDistance;
+		this.values = new Object[k];
+		this.distances = new double[k];
+	}
+
+	/**
+	 * @return the distance up to which objects can still become a candidate; parts of the index which are further
+	 * away need not be searched.
+	 */
+	double getBound() {
+		return this.size < this.k ? this.maxDistance : this.distances[0];
+	}
+
+	void offer(T value, double distance) {
+		if (this.size < this.k) {
+			if (distance <= this.maxDistance) {
+				int i = this.size++;
+				// sift up
+				while (i > 0) {
+					int parent = (i - 1) / 2;
+					if (this.distances[parent] >= distance) {
+						break;
+					}
+					this.values[i] = this.values[parent];
+					this.distances[i] = this.distances[parent];
+					i = parent;
+				}
+				this.values[i] = value;
+				this.distances[i] = distance;
+			}
+		} else if (distance < this.distances[0]) {
+			siftDown(value, distance, this.size);
+		}
+	}
+
+	/** Puts the value at the root of the first heapSize entries and sifts it down to its place. */
+	private void siftDown(Object value, double distance, int heapSize) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && this.distances[child + 1] > this.distances[child]) {
+				child++;
+			}
+			if (this.distances[child] <= distance) {
+				break;
+			}
+			this.values[i] = this.values[child];
+			this.distances[i] = this.distances[child];
+			i = child;
+		}
+		this.values[i] = value;
+		this.distances[i] = distance;
+	}
+
+	/**
+	 * @return the candidates sorted by their distance, the closest first.  The heap cannot be used anymore afterwards.
+	 */
+	List<T> toSortedList() {
+		// heap sort: move the furthest candidate to the end, one after the other
+		for (int heapSize = this.size - 1; heapSize > 0; heapSize--) {
+			Object value = this.values[heapSize];
+			double distance = this.distances[heapSize];
+			this.values[heapSize] = this.values[0];
+			this.distances[heapSize] = this.distances[0];
+			siftDown(value, distance, heapSize);
+		}
+		List<T> list = new ArrayList<>(this.size);
+		for (int i = 0; i < this.size; i++) {
+			@SuppressWarnings("unchecked")
+			T value = (T) this.values[i];
+			list.add(value);
+		}
+		return list;
+	}
+
+}
@@ -35,7 +35,7 @@ import java.util.*;
  * @author mrieser
  * @param <T> The type of data to be stored in the QuadTree.
  */
-public class QuadTree<T> implements Serializable {
+public class QuadTree<T> implements SpatialIndex<T>, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -143,6 +143,36 @@ public class QuadTree<T> implements Serializable {
 		return this.top.get(x, y, distance, new ArrayList<>());
 	}
 
+	/**
+	 * Executes executor on all objects within a certain distance around x/y
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param distance the maximal distance the objects can be away from x/y
+	 * @param executor is executed on the fitting objects
+	 * @return the count of objects found within distance to x/y
+	 */
+	@Override
+	public int executeDisk(final double x, final double y, final double distance, final Executor<T> executor) {
+		return this.top.executeDisk(x, y, distance, executor);
+	}
+
+	/**
+	 * Gets the k objects closest to x/y which are at most maxDistance away
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param k the maximal number of objects returned
+	 * @param maxDistance the maximal distance returned objects can be away from x/y
+	 * @return the objects found, sorted by their distance to x/y, the closest first
+	 */
+	@Override
+	public List<T> getKNearest(final double x, final double y, final int k, final double maxDistance) {
+		KNearestHeap<T> heap = new KNearestHeap<>(k, maxDistance);
+		this.top.getKNearest(x, y, heap);
+		return heap.toSortedList();
+	}
+
 	/**
 	 * Gets all objects within a linear ring (including borders).
 	 *
@@ -841,6 +871,77 @@ public class QuadTree<T> implements Serializable {
 			return values;
 		}
 
+		/* default */ int executeDisk(final double x, final double y, final double maxDistance, final Executor<T> executor) {
+			int count = 0;
+			if (this.hasChilds) {
+				if (this.northwest.bounds.calcDistance(x, y) <= maxDistance) {
+					count += this.northwest.executeDisk(x, y, maxDistance, executor);
+				}
+				if (this.northeast.bounds.calcDistance(x, y) <= maxDistance) {
+					count += this.northeast.executeDisk(x, y, maxDistance, executor);
+				}
+				if (this.southeast.bounds.calcDistance(x, y) <= maxDistance) {
+					count += this.southeast.executeDisk(x, y, maxDistance, executor);
+				}
+				if (this.southwest.bounds.calcDistance(x, y) <= maxDistance) {
+					count += this.southwest.executeDisk(x, y, maxDistance, executor);
+				}
+				return count;
+			}
+			if (this.leaves != null) {
+				for (Leaf<T> leaf : this.leaves) {
+					double distance = Math.sqrt(
+							(leaf.x - x) * (leaf.x - x)
+									+ (leaf.y - y) * (leaf.y - y));
+					if (distance <= maxDistance) {
+						if (leaf.value != null) {
+							executor.execute(leaf.x, leaf.y, leaf.value);
+							count++;
+						} else {
+							for (T value : leaf.values) {
+								executor.execute(leaf.x, leaf.y, value);
+								count++;
+							}
+						}
+					}
+				}
+			}
+			return count;
+		}
+
+		/* default */ void getKNearest(final double x, final double y, final KNearestHeap<T> heap) {
+			if (this.hasChilds) {
+				// the bound gets smaller while searching, so it is checked again for every child
+				if (this.northwest.bounds.calcDistance(x, y) <= heap.getBound()) {
+					this.northwest.getKNearest(x, y, heap);
+				}
+				if (this.northeast.bounds.calcDistance(x, y) <= heap.getBound()) {
+					this.northeast.getKNearest(x, y, heap);
+				}
+				if (this.southeast.bounds.calcDistance(x, y) <= heap.getBound()) {
+					this.southeast.getKNearest(x, y, heap);
+				}
+				if (this.southwest.bounds.calcDistance(x, y) <= heap.getBound()) {
+					this.southwest.getKNearest(x, y, heap);
+				}
+				return;
+			}
+			if (this.leaves != null) {
+				for (Leaf<T> leaf : this.leaves) {
+					double distance = Math.sqrt(
+							(leaf.x - x) * (leaf.x - x)
+									+ (leaf.y - y) * (leaf.y - y));
+					if (leaf.value != null) {
+						heap.offer(leaf.value, distance);
+					} else {
+						for (T value : leaf.values) {
+							heap.offer(value, distance);
+						}
+					}
+				}
+			}
+		}
+
 		/* default */ Collection<T> get(final double x, final double y, final double r_min, final double r_max,
 										Collection<T> values) {
 			if (this.hasChilds) {
@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpatialIndex.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * The queries of a spatial index that stores objects at points, e.g. {@link QuadTree} or {@link KDTree}.  Code that
+ * only queries an index can use this interface, and thus switch between the implementations.
+ * <p></p>
+ * The queries do not change the index, so several threads can query it at the same time, as long as it is not
+ * modified.
+ *
+ * @param <T> The type of data to be stored in the index.
+ */
+public interface SpatialIndex<T> {
+
+	/**
+	 * @return the number of objects in the index.
+	 */
+	int size();
+
+	/**
+	 * @return the object closest to x/y, or <code>null</code> if the index is empty.
+	 */
+	T getClosest(double x, double y);
+
+	/**
+	 * @return all objects within a certain distance around x/y, including the border.
+	 */
+	Collection<T> getDisk(double x, double y, double distance);
+
+	/**
+	 * Executes executor on all objects within a certain distance around x/y, including the border, without
+	 * collecting them in a collection first.
+	 *
+	 * @return the number of objects passed to the executor.
+	 */
+	int executeDisk(double x, double y, double distance, QuadTree.Executor<T> executor);
+
+	/**
+	 * @return the k objects closest to x/y, sorted by their distance to x/y, the closest first.  If the index
+	 * contains less than k objects, all of them.
+	 */
+	default List<T> getKNearest(double x, double y, int k) {
+		return getKNearest(x, y, k, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @return the k objects closest to x/y which are at most maxDistance away, sorted by their distance to x/y,
+	 * the closest first.  If there are less than k objects within maxDistance, all of them.
+	 */
+	List<T> getKNearest(double x, double y, int k, double maxDistance);
+
+	/**
+	 * Finds the closest object for each of the coordinates, with several threads.
+	 *
+	 * @return the closest objects, in the order of the coordinates.
+	 */
+	default List<T> getClosest(List<Coord> coords, int numberOfThreads) {
+		Object[] results = new Object[coords.size()];
+		runInParallel(coords.size(), numberOfThreads, i -> {
+			Coord coord = coords.get(i);
+			results[i] = getClosest(coord.getX(), coord.getY());
+		});
+		@SuppressWarnings("unchecked")
+		List<T> list = (List<T>) Arrays.asList(results);
+		return list;
+	}
+
+	/**
+	 * Finds the k objects closest to each of the coordinates (see {@link #getKNearest(double, double, int, double)}),
+	 * with several threads.
+	 *
+	 * @return the closest objects, in the order of the coordinates.
+	 */
+	default List<List<T>> getKNearest(List<Coord> coords, int k, double maxDistance, int numberOfThreads) {
+		Object[] results = new Object[coords.size()];
+		runInParallel(coords.size(), numberOfThreads, i -> {
+			Coord coord = coords.get(i);
+			results[i] = getKNearest(coord.getX(), coord.getY(), k, maxDistance);
+		});
+		@SuppressWarnings("unchecked")
+		List<List<T>> list = (List<List<T>>) (List<?>) Arrays.asList(results);
+		return list;
+	}
+
+	private static void runInParallel(int count, int numberOfThreads, IntConsumer query) {
+		// the threads take batches of points, so that they do not compete for the counter after every point
+		int batchSize = 256;
+		AtomicInteger nextIndex = new AtomicInteger(0);
+		AtomicReference<Throwable> exception = new AtomicReference<>();
+		Runnable worker = () -> {
+			for (int start = nextIndex.getAndAdd(batchSize); start < count && exception.get() == null; start = nextIndex.getAndAdd(batchSize)) {
+				int end = Math.min(count, start + batchSize);
+				for (int i = start; i < end; i++) {
+					query.accept(i);
+				}
+			}
+		};
+		if (numberOfThreads <= 1 || count <= batchSize) {
+			worker.run();
+			return;
+		}
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int t = 0; t < numberOfThreads; t++) {
+			threads[t] = new Thread(worker, "SpatialIndex-" + t);
+			threads[t].setUncaughtExceptionHandler((thread, e) -> exception.compareAndSet(null, e));
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		if (exception.get() != null) {
+			throw new RuntimeException("Exception while querying the spatial index.", exception.get());
+		}
+	}
+
+}
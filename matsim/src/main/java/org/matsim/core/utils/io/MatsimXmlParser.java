@@ -65,6 +65,8 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	
 	private boolean preferLocalDtds = false;
 
+	private boolean parallelParsing = false;
+
 	private String doctype = null;
 	/**
 	 * As the mechanism implemented in InputSource is not really working for error handling
@@ -123,6 +125,24 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		this.isNamespaceAware = awareness;
 	}
 
+	/**
+	 * Parses the xml in a pipeline of three threads, one reading and decompressing the input, one running the SAX parser,
+	 * and the calling thread which creates the objects in {@link #startTag} and {@link #endTag}. The tags are passed to
+	 * these methods in the same order as when parsing serially, so the result is exactly the same.
+	 * <p></p>
+	 * {@link #characters} and {@link #setDoctype} are called by the SAX parser's thread. Delegates created in
+	 * {@link #setDoctype} are fine, as the doctype is known before the first tag is handed over to the calling thread.
+	 * Only enable this for parsers that do not otherwise share state between these methods and the other ones.
+	 * Parallel parsing is disabled by default, and has to be enabled for each reader.
+	 */
+	public final void setParallelParsing(final boolean parallelParsing) {
+		this.parallelParsing = parallelParsing;
+	}
+
+	public final boolean isParallelParsing() {
+		return this.parallelParsing;
+	}
+
 	/**
 	 * Sets the directory where to look for DTD and XSD files if they are not found
 	 * at the location specified in the XML.
@@ -176,6 +196,14 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	}
 
 	public final void parse(final InputSource input) throws UncheckedIOException {
+		if (this.parallelParsing) {
+			new XmlParsingPipeline(this, this.theSource).parse(input);
+		} else {
+			parse(input, this);
+		}
+	}
+
+	/* package */ final void parse(final InputSource input, final DefaultHandler handler) throws UncheckedIOException {
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -185,15 +213,15 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 				factory.setFeature("http://apache.org/xml/features/validation/schema", true);
 				SAXParser parser = factory.newSAXParser();
 				XMLReader reader = parser.getXMLReader();
-				reader.setContentHandler(this);
+				reader.setContentHandler(handler);
 //				reader.setErrorHandler(getErrorHandler());      // (**)
 //				reader.setEntityResolver(getEntityResolver()); // (**)
-				reader.setErrorHandler(this);
-				reader.setEntityResolver(this);
+				reader.setErrorHandler(handler);
+				reader.setEntityResolver(handler);
 				reader.parse(input);
 			} else {
 				SAXParser parser = factory.newSAXParser();
-				parser.parse(input, this);
+				parser.parse(input, handler);
 			}
 		} catch (SAXException | ParserConfigurationException | IOException e) {
 			throw new UncheckedIOException(e);
@@ -347,6 +375,23 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		this.theContext.push(tag);
 	}
 
+	/**
+	 * Keeps track of the content of the tags like {@link #startElement}, but without calling {@link #startTag}.
+	 * Used by the tokenizer of the {@link XmlParsingPipeline}.
+	 */
+	/* package */ final void openElement(final String tag) {
+		this.buffers.push(new StringBuffer());
+		this.theContext.push(tag);
+	}
+
+	/**
+	 * @return the content of the tag that is closed, see {@link #openElement(String)}.
+	 */
+	/* package */ final String closeElement() {
+		this.theContext.pop();
+		return this.buffers.pop().toString();
+	}
+
 	@Override
 	public final void endElement(final String uri, final String localName, final String qName) throws SAXException {
 		// I have not good intuition if making this one non-final might be ok.  kai, jul'16
@@ -0,0 +1,580 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * XmlParsingPipeline.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import org.apache.log4j.Logger;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link MatsimXmlParser} as a pipeline of three threads:
+ * <ol>
+ * <li><b>inflate:</b> reads the input, decompressing and decoding it, into blocks of characters (or bytes),</li>
+ * <li><b>tokenize:</b> runs the SAX parser on these blocks and records every tag with a copy of its attributes
+ * and its content into batches,</li>
+ * <li><b>construct:</b> the calling thread replays the recorded tags to {@link MatsimXmlParser#startTag} and
+ * {@link MatsimXmlParser#endTag}.</li>
+ * </ol>
+ * As all objects are still created by a single thread, in the same order as when parsing serially, the resulting
+ * object graph is exactly the same. Only the parser's {@link MatsimXmlParser#characters} and
+ * {@link MatsimXmlParser#setDoctype} are called from the tokenizer thread, so parsers that keep state between
+ * these methods and the tag callbacks must not be parsed in a pipeline.
+ *
+ * At the end, the throughput of each stage is logged. The stage with the least idle time is the bottleneck.
+ *
+ * @see MatsimXmlParser#setParallelParsing(boolean)
+ */
+final class XmlParsingPipeline {
+
+	private static final Logger log = Logger.getLogger(XmlParsingPipeline.class);
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final byte START_TAG = 1;
+	private static final byte END_TAG = 2;
+	private static final byte START_DOCUMENT = 3;
+	private static final byte END_DOCUMENT = 4;
+
+	private final MatsimXmlParser parser;
+	private final String source;
+	private final BlockingQueue<TagBatch> tags = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private volatile boolean aborted = false;
+	private volatile Throwable tokenizerException = null;
+
+	private final Stage inflateStage = new Stage("inflate", "characters");
+	private final Stage tokenizeStage = new Stage("tokenize", "tags");
+	private final Stage constructStage = new Stage("construct", "tags");
+
+	XmlParsingPipeline(final MatsimXmlParser parser, final String source) {
+		this.parser = parser;
+		this.source = source;
+	}
+
+	void parse(final InputSource input) {
+		ReadAhead readAhead = null;
+		if (input.getCharacterStream() != null) {
+			ReadAheadReader reader = new ReadAheadReader(input.getCharacterStream(), this.inflateStage);
+			readAhead = reader.readAhead;
+			input.setCharacterStream(reader);
+		} else if (input.getByteStream() != null) {
+			this.inflateStage.unit = "bytes";
+			ReadAheadInputStream stream = new ReadAheadInputStream(input.getByteStream(), this.inflateStage);
+			readAhead = stream.readAhead;
+			input.setByteStream(stream);
+		}
+		final InputSource tokenizerInput = input;
+		Thread tokenizer = new Thread(() -> tokenize(tokenizerInput), "XmlParsingPipeline-tokenize");
+		tokenizer.setDaemon(true);
+
+		long start = System.nanoTime();
+		if (readAhead != null) {
+			readAhead.start();
+		}
+		tokenizer.start();
+		try {
+			construct();
+		} catch (RuntimeException | Error e) {
+			this.aborted = true;
+			throw e;
+		} finally {
+			try {
+				tokenizer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (readAhead != null) {
+				readAhead.stop();
+			}
+		}
+		Throwable t = this.tokenizerException;
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		if (t != null) {
+			throw new UncheckedIOException(t);
+		}
+		logStatistics((System.nanoTime() - start) / 1e9);
+	}
+
+	private void tokenize(final InputSource input) {
+		TokenizerHandler handler = new TokenizerHandler();
+		try {
+			this.parser.parse(input, handler);
+		} catch (Throwable t) {
+			if (!this.aborted) {
+				this.tokenizerException = t;
+			}
+		} finally {
+			handler.finish();
+		}
+	}
+
+	private void construct() {
+		Stack<String> context = new Stack<>();
+		while (true) {
+			TagBatch batch;
+			long waitStart = System.nanoTime();
+			try {
+				batch = this.tags.take();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			long busyStart = System.nanoTime();
+			this.constructStage.waitNanos += busyStart - waitStart;
+			for (int i = 0; i < batch.size; i++) {
+				switch (batch.kinds[i]) {
+					case START_TAG:
+						this.parser.startTag(batch.names[i], batch.attributes[i], context);
+						context.push(batch.names[i]);
+						this.constructStage.amount++;
+						break;
+					case END_TAG:
+						context.pop();
+						this.parser.endTag(batch.names[i], batch.contents[i], context);
+						break;
+					case START_DOCUMENT:
+						callDocumentHandler(true);
+						break;
+					case END_DOCUMENT:
+						if (this.tokenizerException == null) {
+							callDocumentHandler(false);
+						}
+						this.constructStage.busyNanos += System.nanoTime() - busyStart;
+						return;
+					default:
+						throw new IllegalStateException("unknown tag kind " + batch.kinds[i]);
+				}
+			}
+			this.constructStage.busyNanos += System.nanoTime() - busyStart;
+		}
+	}
+
+	private void callDocumentHandler(final boolean start) {
+		try {
+			if (start) {
+				this.parser.startDocument();
+			} else {
+				this.parser.endDocument();
+			}
+		} catch (SAXException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void logStatistics(final double seconds) {
+		log.info(String.format("parsed %s in %.1f s using a pipeline of three threads:", this.source, seconds));
+		this.inflateStage.log(seconds);
+		this.tokenizeStage.log(seconds);
+		this.constructStage.log(seconds);
+	}
+
+	private static final class TagBatch {
+		final byte[] kinds = new byte[BATCH_SIZE];
+		final String[] names = new String[BATCH_SIZE];
+		final Attributes[] attributes = new Attributes[BATCH_SIZE];
+		final String[] contents = new String[BATCH_SIZE];
+		int size = 0;
+
+		void add(final byte kind, final String name, final Attributes atts, final String content) {
+			this.kinds[this.size] = kind;
+			this.names[this.size] = name;
+			this.attributes[this.size] = atts;
+			this.contents[this.size] = content;
+			this.size++;
+		}
+
+		boolean isFull() {
+			return this.size == BATCH_SIZE;
+		}
+	}
+
+	/**
+	 * The SAX handler of the tokenizer thread. Keeps track of the character content of tags the same way as
+	 * {@link MatsimXmlParser} does when parsing serially, and forwards entity resolution and errors to the parser.
+	 */
+	private final class TokenizerHandler extends DefaultHandler {
+
+		TagBatch batch = new TagBatch();
+		private final long start = System.nanoTime();
+		private long waitNanos = 0;
+
+		@Override
+		public void startDocument() throws SAXException {
+			add(START_DOCUMENT, null, null, null);
+		}
+
+		@Override
+		public void endDocument() {
+			// the end of the document is published once the parser returns, also if it fails
+		}
+
+		@Override
+		public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+			String tag = (uri.length() == 0) ? qName : localName;
+			XmlParsingPipeline.this.parser.openElement(tag);
+			// the attributes object is re-used by the SAX parser, so it has to be copied
+			add(START_TAG, tag, new AttributesImpl(atts), null);
+		}
+
+		@Override
+		public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+			String tag = (uri.length() == 0) ? qName : localName;
+			add(END_TAG, tag, null, XmlParsingPipeline.this.parser.closeElement());
+		}
+
+		@Override
+		public void characters(final char[] ch, final int start, final int length) throws SAXException {
+			XmlParsingPipeline.this.parser.characters(ch, start, length);
+		}
+
+		@Override
+		public InputSource resolveEntity(final String publicId, final String systemId) {
+			return XmlParsingPipeline.this.parser.resolveEntity(publicId, systemId);
+		}
+
+		@Override
+		public void error(final SAXParseException ex) throws SAXException {
+			XmlParsingPipeline.this.parser.error(ex);
+		}
+
+		@Override
+		public void fatalError(final SAXParseException ex) throws SAXException {
+			XmlParsingPipeline.this.parser.fatalError(ex);
+		}
+
+		@Override
+		public void warning(final SAXParseException ex) throws SAXException {
+			XmlParsingPipeline.this.parser.warning(ex);
+		}
+
+		private void add(final byte kind, final String name, final Attributes atts, final String content) throws SAXException {
+			if (XmlParsingPipeline.this.aborted) {
+				throw new SAXException("parsing was aborted");
+			}
+			this.batch.add(kind, name, atts, content);
+			if (kind == START_TAG) {
+				XmlParsingPipeline.this.tokenizeStage.amount++;
+			}
+			if (this.batch.isFull()) {
+				publish(false);
+			}
+		}
+
+		/**
+		 * Publishes the end of the document, also if parsing failed, so the construction stage terminates.
+		 */
+		void finish() {
+			if (XmlParsingPipeline.this.aborted) {
+				return;
+			}
+			if (this.batch.isFull()) {
+				this.batch = new TagBatch();
+			}
+			this.batch.add(END_DOCUMENT, null, null, null);
+			try {
+				publish(true);
+			} catch (SAXException e) {
+				// only happens when the pipeline was aborted
+			}
+		}
+
+		private void publish(final boolean last) throws SAXException {
+			long waitStart = System.nanoTime();
+			try {
+				while (!XmlParsingPipeline.this.tags.offer(this.batch, 100, TimeUnit.MILLISECONDS)) {
+					if (XmlParsingPipeline.this.aborted) {
+						throw new SAXException("parsing was aborted");
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new SAXException(e);
+			}
+			long now = System.nanoTime();
+			this.waitNanos += now - waitStart;
+			if (last) {
+				Stage stage = XmlParsingPipeline.this.tokenizeStage;
+				stage.waitNanos = this.waitNanos + XmlParsingPipeline.this.inflateStage.consumerWaitNanos;
+				stage.busyNanos = now - this.start - stage.waitNanos;
+			} else {
+				this.batch = new TagBatch();
+			}
+		}
+	}
+
+	private static final class Stage {
+		final String name;
+		String unit;
+		long amount = 0;
+		long busyNanos = 0;
+		long waitNanos = 0;
+		/** time the next stage had to wait for this stage */
+		volatile long consumerWaitNanos = 0;
+
+		Stage(final String name, final String unit) {
+			this.name = name;
+			this.unit = unit;
+		}
+
+		void log(final double totalSeconds) {
+			if (this.amount == 0) {
+				return;
+			}
+			double busy = this.busyNanos / 1e9;
+			log.info(String.format("  %-9s %,d %s, busy %.1f s (%,.0f %s/s), idle %.1f%%",
+					this.name, this.amount, this.unit, busy, this.amount / Math.max(busy, 1e-9), this.unit,
+					totalSeconds > 0 ? 100.0 * (1.0 - busy / totalSeconds) : 0.0));
+		}
+	}
+
+	/**
+	 * Reads the underlying input in a separate thread, so the inflation and decoding of the input happens
+	 * concurrently to the tokenizing.
+	 */
+	private abstract static class ReadAhead implements Runnable {
+		private final BlockingQueue<Object> blocks = new ArrayBlockingQueue<>(16);
+		private final Stage stage;
+		private final Thread thread;
+		private volatile boolean stopped = false;
+		private Object current = null;
+		private int currentLength = 0;
+		int position = 0;
+
+		private static final Object EOF = new Object();
+
+		ReadAhead(final Stage stage) {
+			this.stage = stage;
+			this.thread = new Thread(this, "XmlParsingPipeline-inflate");
+			this.thread.setDaemon(true);
+		}
+
+		void start() {
+			this.thread.start();
+		}
+
+		void stop() {
+			this.stopped = true;
+			this.blocks.clear();
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/** reads into a block from the underlying input, returns the number of units read or -1 at the end of the input */
+		abstract int readBlock(Object block, int offset) throws IOException;
+
+		abstract Object newBlock();
+
+		abstract void closeInput() throws IOException;
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			long waitNanos = 0;
+			try {
+				while (!this.stopped) {
+					Object block = newBlock();
+					int length = 0;
+					while (length < BLOCK_SIZE) {
+						int n = readBlock(block, length);
+						if (n < 0) {
+							break;
+						}
+						length += n;
+					}
+					if (length == 0) {
+						break;
+					}
+					this.stage.amount += length;
+					long waitStart = System.nanoTime();
+					put(new Object[] {block, length});
+					waitNanos += System.nanoTime() - waitStart;
+				}
+			} catch (IOException | RuntimeException e) {
+				put(e);
+			} finally {
+				this.stage.waitNanos = waitNanos;
+				this.stage.busyNanos = System.nanoTime() - start - waitNanos;
+				put(EOF);
+				try {
+					closeInput();
+				} catch (IOException e) {
+					log.warn("could not close input", e);
+				}
+			}
+		}
+
+		private void put(final Object o) {
+			try {
+				while (!this.stopped && !this.blocks.offer(o, 100, TimeUnit.MILLISECONDS)) {
+					// wait until the tokenizer has consumed some blocks or the pipeline is stopped
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/** @return the current block, or <code>null</code> at the end of the input */
+		Object currentBlock() throws IOException {
+			if (this.current == EOF) {
+				return null;
+			}
+			if (this.current == null || this.position == this.currentLength) {
+				Object o;
+				long waitStart = System.nanoTime();
+				try {
+					o = this.blocks.take();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				this.stage.consumerWaitNanos += System.nanoTime() - waitStart;
+				if (o == EOF) {
+					this.current = EOF;
+					return null;
+				}
+				if (o instanceof Exception) {
+					this.current = EOF;
+					throw o instanceof IOException ? (IOException) o : new IOException((Exception) o);
+				}
+				Object[] entry = (Object[]) o;
+				this.current = entry[0];
+				this.currentLength = (Integer) entry[1];
+				this.position = 0;
+			}
+			return this.current;
+		}
+
+		int available() {
+			return this.currentLength - this.position;
+		}
+	}
+
+	private static final class ReadAheadReader extends Reader {
+		private final ReadAhead readAhead;
+
+		ReadAheadReader(final Reader in, final Stage stage) {
+			this.readAhead = new ReadAhead(stage) {
+				@Override
+				int readBlock(final Object block, final int offset) throws IOException {
+					return in.read((char[]) block, offset, BLOCK_SIZE - offset);
+				}
+
+				@Override
+				Object newBlock() {
+					return new char[BLOCK_SIZE];
+				}
+
+				@Override
+				void closeInput() throws IOException {
+					in.close();
+				}
+			};
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+			char[] block = (char[]) this.readAhead.currentBlock();
+			if (block == null) {
+				return -1;
+			}
+			int n = Math.min(len, this.readAhead.available());
+			System.arraycopy(block, this.readAhead.position, cbuf, off, n);
+			this.readAhead.position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+			// the input is closed by the read-ahead thread
+		}
+	}
+
+	private static final class ReadAheadInputStream extends InputStream {
+		private final ReadAhead readAhead;
+
+		ReadAheadInputStream(final InputStream in, final Stage stage) {
+			this.readAhead = new ReadAhead(stage) {
+				@Override
+				int readBlock(final Object block, final int offset) throws IOException {
+					return in.read((byte[]) block, offset, BLOCK_SIZE - offset);
+				}
+
+				@Override
+				Object newBlock() {
+					return new byte[BLOCK_SIZE];
+				}
+
+				@Override
+				void closeInput() throws IOException {
+					in.close();
+				}
+			};
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] block = (byte[]) this.readAhead.currentBlock();
+			if (block == null) {
+				return -1;
+			}
+			return block[this.readAhead.position++] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			byte[] block = (byte[]) this.readAhead.currentBlock();
+			if (block == null) {
+				return -1;
+			}
+			int n = Math.min(len, this.readAhead.available());
+			System.arraycopy(block, this.readAhead.position, b, off, n);
+			this.readAhead.position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+			// the input is closed by the read-ahead thread
+		}
+	}
+
+}
@@ -105,22 +105,19 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
             if (createCountsInIteration(event.getIteration())) {
                 iterationStopwatch.beginOperation(OPERATION_COMPARECOUNTS);
-                IdMap<Link, double[]> averages;
-                if (this.iterationsUsed > 1) {
-                    averages = new IdMap<>(Link.class);
-                    for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-                        Id<Link> linkId = e.getKey();
-                        double[] totalVolumesPerHour = e.getValue();
-                        double[] averageVolumesPerHour = new double[totalVolumesPerHour.length];
-                        for (int i = 0; i < totalVolumesPerHour.length; i++) {
-                            averageVolumesPerHour[i] = totalVolumesPerHour[i] / this.iterationsUsed;
-                        }
-                        averages.put(linkId, averageVolumesPerHour);
+                // the averages are calculated when they are needed, so there is no copy of the volumes of all counted links
+                final int iterationsUsed = this.iterationsUsed;
+                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(stopId -> {
+                    double[] totalVolumesPerHour = this.linkStats.get(Id.create(stopId, Link.class));
+                    if (totalVolumesPerHour == null || iterationsUsed <= 1) {
+                        return totalVolumesPerHour;
                     }
-                } else {
-                    averages = this.linkStats;
-                }
-                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(averages, counts, network, config.getCountsScaleFactor());
+                    double[] averageVolumesPerHour = new double[totalVolumesPerHour.length];
+                    for (int i = 0; i < totalVolumesPerHour.length; i++) {
+                        averageVolumesPerHour[i] = totalVolumesPerHour[i] / iterationsUsed;
+                    }
+                    return averageVolumesPerHour;
+                }, counts, network, config.getCountsScaleFactor());
                 if ((this.config.getDistanceFilter() != null) && (this.config.getDistanceFilterCenterNode() != null)) {
                     cca.setDistanceFilter(this.config.getDistanceFilter(), this.config.getDistanceFilterCenterNode());
                 }
@@ -191,27 +188,23 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 		this.iterationsUsed++;
 		for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
 			Id<Link> linkId = e.getKey();
-			double[] volumesPerHour = e.getValue(); 
-			double[] newVolume = getVolumesPerHourForLink(volumes, linkId); 
-			for (int i = 0; i < 24; i++) {
-				volumesPerHour[i] += newVolume[i];
+			double[] volumesPerHour = e.getValue();
+			if (this.config.isFilterModes()) {
+				for (String mode : this.analyzedModes) {
+					addVolumes(volumesPerHour, volumes.getVolumesPerHourForLink(linkId, mode));
+				}
+			} else {
+				addVolumes(volumesPerHour, volumes.getVolumesPerHourForLink(linkId));
 			}
 		}
 	}
-	
-	private double[] getVolumesPerHourForLink(final VolumesAnalyzer volumes, final Id<Link> linkId) {
-		if (this.config.isFilterModes()) {
-			double[] newVolume = new double[24];
-			for (String mode : this.analyzedModes) {
-				double[] volumesForMode = volumes.getVolumesPerHourForLink(linkId, mode);
-				if (volumesForMode == null) continue;
-				for (int i = 0; i < 24; i++) {
-					newVolume[i] += volumesForMode[i];
-				}
-			}
-			return newVolume;
-		} else {
-			return volumes.getVolumesPerHourForLink(linkId);
+
+	private static void addVolumes(final double[] volumesPerHour, final double[] newVolumes) {
+		if (newVolumes == null) {
+			return;
+		}
+		for (int i = 0; i < 24; i++) {
+			volumesPerHour[i] += newVolumes[i];
 		}
 	}
 	
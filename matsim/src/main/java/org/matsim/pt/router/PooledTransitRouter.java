@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PooledTransitRouter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.Facility;
+
+/**
+ * A transit router that may be called by several threads at the same time.  Every query borrows a router from a
+ * pool and returns it afterwards; a new one is created by the provider when all are in use.  The routers of the bound
+ * factories share their schedule data, so a pooled router only holds the state of one query.
+ *
+ * @see org.matsim.core.router.util.PooledLeastCostPathCalculator
+ */
+public final class PooledTransitRouter implements TransitRouter {
+
+	private final Provider<? extends TransitRouter> routerProvider;
+	private final Queue<TransitRouter> idleRouters = new ConcurrentLinkedQueue<>();
+
+	public PooledTransitRouter(final Provider<? extends TransitRouter> routerProvider) {
+		this.routerProvider = routerProvider;
+		// (creates the first router right away, so that configuration errors show up here)
+		this.idleRouters.add(routerProvider.get());
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility fromFacility, final Facility toFacility, final double departureTime, final Person person) {
+		TransitRouter router = this.idleRouters.poll();
+		if (router == null) {
+			router = this.routerProvider.get();
+		}
+		try {
+			return router.calcRoute(fromFacility, toFacility, departureTime, person);
+		} finally {
+			this.idleRouters.add(router);
+		}
+	}
+
+}
@@ -47,8 +47,10 @@ public class TransitRouterImplFactory implements Provider<TransitRouter> {
 				config.transitRouter(),
 				config.vspExperimental()));
 		events.addHandler((TransitScheduleChangedEventHandler) event -> {
-			routerNetwork = null;
-			preparedTransitSchedule = null;
+			synchronized (this) {
+				routerNetwork = null;
+				preparedTransitSchedule = null;
+			}
 		});
 	}
 
@@ -59,15 +61,22 @@ public class TransitRouterImplFactory implements Provider<TransitRouter> {
 
 	@Override
 	public TransitRouter get() {
-		if (this.routerNetwork == null) {
-			this.routerNetwork = TransitRouterNetwork.createFromSchedule(transitSchedule, this.config.getBeelineWalkConnectionDistance());
-		}
-		if (this.preparedTransitSchedule == null) {
-			this.preparedTransitSchedule = new PreparedTransitSchedule(transitSchedule);
+		TransitRouterNetwork routerNetwork;
+		PreparedTransitSchedule preparedTransitSchedule;
+		// the routers of all threads share the network, so make sure it is only built once
+		synchronized (this) {
+			if (this.routerNetwork == null) {
+				this.routerNetwork = TransitRouterNetwork.createFromSchedule(transitSchedule, this.config.getBeelineWalkConnectionDistance());
+			}
+			if (this.preparedTransitSchedule == null) {
+				this.preparedTransitSchedule = new PreparedTransitSchedule(transitSchedule);
+			}
+			routerNetwork = this.routerNetwork;
+			preparedTransitSchedule = this.preparedTransitSchedule;
 		}
 
-		TransitRouterNetworkTravelTimeAndDisutility ttCalculator = new TransitRouterNetworkTravelTimeAndDisutility(this.config, this.preparedTransitSchedule);
-		return new TransitRouterImpl(this.config, this.preparedTransitSchedule, this.routerNetwork, ttCalculator, ttCalculator);
+		TransitRouterNetworkTravelTimeAndDisutility ttCalculator = new TransitRouterNetworkTravelTimeAndDisutility(this.config, preparedTransitSchedule);
+		return new TransitRouterImpl(this.config, preparedTransitSchedule, routerNetwork, ttCalculator, ttCalculator);
 	}
 	
 }
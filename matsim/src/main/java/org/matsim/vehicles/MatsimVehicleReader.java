@@ -57,6 +57,13 @@ public final class MatsimVehicleReader implements MatsimReader{
 		reader.parse( inputStream ) ;
 	}
 
+	/**
+	 * @see MatsimXmlParser#setParallelParsing(boolean)
+	 */
+	public void setParallelParsing( boolean parallelParsing ){
+		reader.setParallelParsing( parallelParsing ) ;
+	}
+
 	public static final class VehicleReader extends MatsimXmlParser {
 		private final Vehicles vehicles;
 
@@ -0,0 +1,143 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RangeRaptorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class RangeRaptorTest {
+
+    private static final double EARLIEST = 7 * 3600 + 30 * 60;
+    private static final double LATEST = 8 * 3600 + 30 * 60;
+    private static final double STEP = 60;
+
+    @Test
+    public void testSingleDeparture() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork());
+        RangeRaptor raptor = new RangeRaptor(data, 20);
+
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+        double depTime = 7 * 3600 + 40 * 60;
+        List<double[]> results = calcProfile(raptor, fromStop, depTime, depTime);
+        Assert.assertEquals(1, results.size());
+        double[] arrivalTimes = results.get(0);
+
+        Assert.assertEquals("start stop", depTime, arrivalTimes[stopIndex(raptor, f, 23)], 0.0);
+        Assert.assertEquals("directly reachable", Time.parseTime("07:50:00"), arrivalTimes[stopIndex(raptor, f, 18)], 0.0);
+        // transfer at C, 7:50/7:51 green (the least cost tree finds the same)
+        Assert.assertEquals(Time.parseTime("08:01:00"), arrivalTimes[stopIndex(raptor, f, 19)], 0.0);
+    }
+
+    /**
+     * The labels are re-used from one departure time to the next, this must give the same results as separate searches.
+     */
+    @Test
+    public void testProfileSameAsSingleDepartures() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork());
+        RangeRaptor raptor = new RangeRaptor(data, 20);
+
+        for (TransitStopFacility fromStop : f.schedule.getFacilities().values()) {
+            if (raptor.getStopIndex(fromStop) < 0) {
+                continue;
+            }
+            List<double[]> profile = calcProfile(raptor, fromStop, EARLIEST, LATEST);
+            Assert.assertEquals(61, profile.size());
+            for (int i = 0; i < profile.size(); i++) {
+                double depTime = LATEST - i * STEP;
+                double[] expected = calcProfile(raptor, fromStop, depTime, depTime).get(0);
+                Assert.assertArrayEquals("from stop " + fromStop.getId() + " at " + Time.writeTime(depTime), expected, profile.get(i), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testTravelTimeMatrix() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork());
+        List<TransitStopFacility> origins = new ArrayList<>(f.schedule.getFacilities().values());
+
+        RaptorTravelTimeMatrix matrix = RaptorTravelTimeMatrix.calculate(data, origins, EARLIEST, LATEST, STEP, 20, 2);
+
+        RangeRaptor raptor = new RangeRaptor(data, 20);
+        for (TransitStopFacility origin : origins) {
+            if (raptor.getStopIndex(origin) < 0) {
+                continue;
+            }
+            List<double[]> profile = calcProfile(raptor, origin, EARLIEST, LATEST);
+            for (int stop = 0; stop < raptor.getStopCount(); stop++) {
+                double sum = 0;
+                int count = 0;
+                double min = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < profile.size(); i++) {
+                    double arrivalTime = profile.get(i)[stop];
+                    if (arrivalTime < Double.POSITIVE_INFINITY) {
+                        double travelTime = arrivalTime - (LATEST - i * STEP);
+                        sum += travelTime;
+                        count++;
+                        min = Math.min(min, travelTime);
+                    }
+                }
+                TransitStopFacility toStop = raptor.getStop(stop);
+                double expectedAverage = count == 0 ? Double.POSITIVE_INFINITY : sum / count;
+                Assert.assertEquals(expectedAverage, matrix.getAverageTravelTime(origin, toStop), 0.01);
+                Assert.assertEquals(min, matrix.getMinTravelTime(origin, toStop), 0.01);
+            }
+            Assert.assertEquals("no travel time at the origin itself", 0.0, matrix.getMinTravelTime(origin, origin), 0.0);
+        }
+    }
+
+    @Test
+    public void testTravelTimeMatrixSize() {
+        Assert.assertEquals(50_000 * 40_000, RaptorTravelTimeMatrix.getMatrixSize(50_000, 40_000));
+        try {
+            RaptorTravelTimeMatrix.getMatrixSize(60_000, 40_000);
+            Assert.fail("expected an exception, as the matrix does not fit into an array");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static int stopIndex(RangeRaptor raptor, Fixture f, int stopId) {
+        return raptor.getStopIndex(f.schedule.getFacilities().get(Id.create(stopId, TransitStopFacility.class)));
+    }
+
+    private static List<double[]> calcProfile(RangeRaptor raptor, TransitStopFacility fromStop, double earliestDepTime, double latestDepTime) {
+        List<double[]> results = new ArrayList<>();
+        InitialStop startStop = new InitialStop(fromStop, 0, 0, 0, TransportMode.walk);
+        raptor.calcProfile(Collections.singletonList(startStop), earliestDepTime, latestDepTime, STEP,
+                (depTime, arrivalTimes, transferCounts) -> results.add(arrivalTimes.clone()));
+        return results;
+    }
+
+}
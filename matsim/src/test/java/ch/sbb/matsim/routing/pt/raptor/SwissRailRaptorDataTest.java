@@ -4,16 +4,28 @@
 
 package ch.sbb.matsim.routing.pt.raptor;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
 
 /**
  * @author mrieser / SBB
  */
 public class SwissRailRaptorDataTest {
 
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
     @Test
     public void testTransfersFromSchedule() {
         Fixture f = new Fixture();
@@ -82,4 +94,89 @@ public class SwissRailRaptorDataTest {
         Assert.assertEquals("number of transfers should have stayed the same.", data2.transfers.length, data4.transfers.length);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCreateWithSeveralThreads() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        raptorConfig.setNumberOfThreads(1);
+        SwissRailRaptorData data1 = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        raptorConfig.setNumberOfThreads(4);
+        SwissRailRaptorData data4 = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+
+        assertSameTransfers(data1, data4);
+    }
+
+    @Test
+    public void testUpdate() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+
+        // remove a route, remove a departure of another one, and add a new route
+        TransitScheduleFactory factory = f.schedule.getFactory();
+        TransitRoute redRoute = f.redLine.getRoutes().get(Id.create("red C > G", TransitRoute.class));
+        f.redLine.removeRoute(redRoute);
+        TransitRoute blueRoute = f.blueLine.getRoutes().get(Id.create("blue A > I", TransitRoute.class));
+        blueRoute.removeDeparture(blueRoute.getDepartures().get(Id.create("b>01", Departure.class)));
+        TransitRoute newRoute = factory.createTransitRoute(Id.create("red C > G new", TransitRoute.class), redRoute.getRoute(), new ArrayList<>(redRoute.getStops()), "train");
+        newRoute.addDeparture(factory.createDeparture(Id.create("rn>01", Departure.class), 7.5 * 3600));
+        f.greenLine.addRoute(newRoute);
+
+        SwissRailRaptorData updatedData = SwissRailRaptorData.update(data, f.schedule, f.network);
+        SwissRailRaptorData newData = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        assertSameTransfers(newData, updatedData);
+
+        // a changed minimal transfer time is taken into account as well
+        f.schedule.getMinimalTransferTimes().set(Id.create(19, TransitStopFacility.class), Id.create(9, TransitStopFacility.class), 345);
+        updatedData = SwissRailRaptorData.update(updatedData, f.schedule, f.network);
+        newData = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        assertSameTransfers(newData, updatedData);
+    }
+
+    @Test
+    public void testWriteRead() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        String filename = this.utils.getOutputDirectory() + "raptorData.bin.gz";
+        data.write(filename);
+
+        SwissRailRaptorData readData = SwissRailRaptorData.read(filename, f.schedule, raptorConfig, f.network);
+        assertSameTransfers(data, readData);
+
+        f.schedule.getMinimalTransferTimes().set(Id.create(19, TransitStopFacility.class), Id.create(9, TransitStopFacility.class), 345);
+        try {
+            SwissRailRaptorData.read(filename, f.schedule, raptorConfig, f.network);
+            Assert.fail("the file does not match the changed schedule.");
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    private static void assertSameTransfers(SwissRailRaptorData expected, SwissRailRaptorData actual) {
+        Assert.assertEquals(expected.countRouteStops, actual.countRouteStops);
+        Assert.assertEquals(expected.transfers.length, actual.transfers.length);
+        for (int routeStopIndex = 0; routeStopIndex < expected.countRouteStops; routeStopIndex++) {
+            Assert.assertSame(expected.routeStops[routeStopIndex].routeStop, actual.routeStops[routeStopIndex].routeStop);
+            // the order of the transfers does not matter
+            Assert.assertEquals("transfers from route stop " + routeStopIndex, getTransfers(expected, routeStopIndex), getTransfers(actual, routeStopIndex));
+        }
+    }
+
+    private static Set<String> getTransfers(SwissRailRaptorData data, int routeStopIndex) {
+        SwissRailRaptorData.RRouteStop routeStop = data.routeStops[routeStopIndex];
+        Set<String> transfers = new HashSet<>();
+        for (int i = 0; i < routeStop.countTransfers; i++) {
+            SwissRailRaptorData.RTransfer t = data.transfers[routeStop.indexFirstTransfer + i];
+            Assert.assertEquals(routeStopIndex, t.fromRouteStop);
+            transfers.add(t.toRouteStop + " " + t.transferTime + " " + t.transferDistance);
+        }
+        return transfers;
+    }
+
+}
@@ -22,9 +22,19 @@ package org.matsim.core.events;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.core.events.handler.SingleThreadedEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author mrieser
@@ -63,6 +73,79 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	@Test
+	public void testProcessEvent_ReflectiveDispatch() {
+		EventsManager manager = new EventsManagerImpl(EventsManagerImpl.DispatchMode.REFLECTIVE);
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		manager.addHandler(handler);
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(234.56));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+	}
+
+	@Test
+	public void testProcessEvent_SingleThreadedEventHandler() {
+		EventsManager manager = new EventsManagerImpl(EventsManagerImpl.DispatchMode.GENERATED);
+		SingleThreadedMyEventHandler handler = new SingleThreadedMyEventHandler();
+		CountingMyEventHandler handler2 = new CountingMyEventHandler();
+		manager.addHandler(handler);
+		manager.addHandler(handler2);
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(234.56));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+		Assert.assertEquals("EventHandler was not called.", 2, handler2.counter);
+		Assert.assertFalse("single threaded handler should not be locked.", handler.wasLocked);
+	}
+
+	@Test
+	public void testProcessEvent_ExceptionInEventHandler_ReflectiveDispatch() {
+		EventsManager manager = new EventsManagerImpl(EventsManagerImpl.DispatchMode.REFLECTIVE);
+		CrashingMyEventHandler handler = new CrashingMyEventHandler();
+		manager.addHandler(handler);
+		try {
+			manager.processEvent(new MyEvent(123.45));
+			Assert.fail("expected exception, but got none.");
+		} catch (final RuntimeException e) {
+			log.info("Catched expected exception.", e);
+			Assert.assertEquals(1, handler.counter);
+			Assert.assertTrue(e.getCause() instanceof ArithmeticException);
+		}
+	}
+
+	@Test
+	public void testProcessLinkEvents_RecordHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		RecordingLinkEventRecordHandler recordHandler = new RecordingLinkEventRecordHandler();
+		EventsCollector collector = new EventsCollector();
+		manager.addHandler(recordHandler);
+		manager.addHandler(collector);
+
+		manager.processLinkEnter(10.0, Id.createVehicleId("v1"), Id.createLinkId("l1"));
+		manager.processLinkLeave(20.0, Id.createVehicleId("v1"), Id.createLinkId("l1"));
+		manager.processEvent(new LinkEnterEvent(20.0, Id.createVehicleId("v1"), Id.createLinkId("l2")));
+
+		Assert.assertEquals(3, recordHandler.records.size());
+		Assert.assertEquals("record handler should get link events as records only.", 0, recordHandler.eventCounter);
+		Assert.assertEquals(3, collector.getEvents().size());
+		Assert.assertEquals(new LinkEnterEvent(10.0, Id.createVehicleId("v1"), Id.createLinkId("l1")), collector.getEvents().get(0));
+		Assert.assertEquals(new LinkLeaveEvent(20.0, Id.createVehicleId("v1"), Id.createLinkId("l1")), collector.getEvents().get(1));
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(collector.getEvents().get(i), recordHandler.records.get(i));
+		}
+	}
+
+	@Test
+	public void testProcessLinkEvents_WithoutRecordHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		manager.addHandler(collector);
+		manager.processLinkEnter(10.0, Id.createVehicleId("v1"), Id.createLinkId("l1"));
+		manager.processLinkLeave(20.0, Id.createVehicleId("v1"), Id.createLinkId("l1"));
+		Assert.assertEquals(2, collector.getEvents().size());
+		Assert.assertEquals(new LinkEnterEvent(10.0, Id.createVehicleId("v1"), Id.createLinkId("l1")), collector.getEvents().get(0));
+		Assert.assertEquals(new LinkLeaveEvent(20.0, Id.createVehicleId("v1"), Id.createLinkId("l1")), collector.getEvents().get(1));
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
@@ -102,4 +185,33 @@ public class EventsManagerImplTest {
 			System.out.println(i);
 		}
 	}
+
+	/*package*/ static class SingleThreadedMyEventHandler implements MyEventHandler, SingleThreadedEventHandler {
+		/*package*/ int counter = 0;
+		/*package*/ boolean wasLocked = false;
+		@Override
+		public void handleEvent(final MyEvent e) {
+			this.counter++;
+			this.wasLocked |= Thread.holdsLock(this);
+		}
+	}
+
+	/*package*/ static class RecordingLinkEventRecordHandler implements LinkEventRecordHandler, LinkEnterEventHandler {
+		/*package*/ final List<Event> records = new ArrayList<>();
+		/*package*/ int eventCounter = 0;
+		@Override
+		public void handleRecord(final LinkEventRecord record) {
+			// the record itself is re-used, so keep the equivalent event
+			this.records.add(record.toEvent());
+		}
+		@Override
+		public void handleEvent(final LinkEnterEvent event) {
+			this.eventCounter++;
+		}
+		@Override
+		public void reset(final int iteration) {
+			this.records.clear();
+			this.eventCounter = 0;
+		}
+	}
 }
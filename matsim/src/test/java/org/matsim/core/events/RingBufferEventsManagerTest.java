@@ -0,0 +1,155 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.events.handler.LinkEventRecordHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class RingBufferEventsManagerTest {
+
+	@Test
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final RingBufferEventsManager events = new RingBufferEventsManager(2, 1024, true);
+		final AtomicReference<Throwable> exception = new AtomicReference<>();
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					exception.compareAndSet(null, e);
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+
+		assertNull("the handler was interrupted", exception.get());
+		assertThat(collector.getEvents(),
+			contains(
+					new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+					new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
+	}
+
+	@Test
+	public void testMultipleProducers() throws InterruptedException {
+		// a small buffer forces the producers to wait for the consumers
+		final RingBufferEventsManager events = new RingBufferEventsManager(3, 16, true);
+		final AtomicInteger[] counters = new AtomicInteger[3];
+		for (int i = 0; i < counters.length; i++) {
+			final AtomicInteger counter = new AtomicInteger();
+			counters[i] = counter;
+			events.addHandler((LinkEnterEventHandler) event -> counter.incrementAndGet());
+		}
+		events.initProcessing();
+		final AtomicReference<Throwable> exception = new AtomicReference<>();
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			producers[p] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(i), Id.createLinkId(0)));
+				}
+			});
+			producers[p].setUncaughtExceptionHandler((thread, e) -> exception.compareAndSet(null, e));
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		if (exception.get() != null) {
+			throw new AssertionError("a producer failed", exception.get());
+		}
+		events.afterSimStep(0.0);
+		for (AtomicInteger counter : counters) {
+			assertEquals(4000, counter.get());
+		}
+		events.finishProcessing();
+	}
+
+	@Test
+	public void testLinkEventRecords() {
+		// a small buffer, so that the records are re-used several times
+		final RingBufferEventsManager events = new RingBufferEventsManager(2, 16, true);
+		final AtomicInteger enterRecords = new AtomicInteger();
+		final AtomicInteger leaveRecords = new AtomicInteger();
+		events.addHandler(new LinkEventRecordHandler() {
+			@Override
+			public void handleRecord(LinkEventRecord record) {
+				if (record.getType() == LinkEventRecord.Type.LINK_ENTER) {
+					enterRecords.incrementAndGet();
+				} else {
+					leaveRecords.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processLinkEnter(i, Id.createVehicleId(i), Id.createLinkId(0));
+			events.processLinkLeave(i + 1, Id.createVehicleId(i), Id.createLinkId(0));
+		}
+		events.afterSimStep(100.0);
+		events.finishProcessing();
+
+		assertEquals(100, enterRecords.get());
+		assertEquals(100, leaveRecords.get());
+		assertEquals(200, collector.getEvents().size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(new LinkEnterEvent(i, Id.createVehicleId(i), Id.createLinkId(0)), collector.getEvents().get(2 * i));
+			assertEquals(new LinkLeaveEvent(i + 1, Id.createVehicleId(i), Id.createLinkId(0)), collector.getEvents().get(2 * i + 1));
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventWriterBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() throws FileNotFoundException {
+		List<Event> expected = createEvents();
+		String filename = this.utils.getOutputDirectory() + "testEvents.bin";
+		// small chunks, so the events are spread over multiple chunks
+		EventWriterBinary writer = new EventWriterBinary(new BufferedOutputStream(new FileOutputStream(filename)), 7);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals(expected.size(), collector.getEvents().size());
+		for (int i = 0; i < expected.size(); i++) {
+			Event event = collector.getEvents().get(i);
+			Assert.assertEquals(expected.get(i).getClass(), event.getClass());
+			Assert.assertEquals(expected.get(i).getAttributes(), event.getAttributes());
+		}
+	}
+
+	@Test
+	public void testReadFiltered() {
+		List<Event> expected = createEvents();
+		String filename = this.utils.getOutputDirectory() + "testEvents.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		EventsUtils.readEvents(events, filename, 10.0, 20.0, LinkEnterEvent.EVENT_TYPE, ActivityEndEvent.EVENT_TYPE);
+
+		List<Event> filtered = new ArrayList<>();
+		for (Event event : expected) {
+			boolean matchingType = event instanceof LinkEnterEvent || event instanceof ActivityEndEvent;
+			if (matchingType && event.getTime() >= 10.0 && event.getTime() <= 20.0) {
+				filtered.add(event);
+			}
+		}
+		Assert.assertEquals(filtered.size(), collector.getEvents().size());
+		for (int i = 0; i < filtered.size(); i++) {
+			Assert.assertEquals(filtered.get(i).getAttributes(), collector.getEvents().get(i).getAttributes());
+		}
+	}
+
+	/**
+	 * Some people use the ids as names, including special characters in there... so make sure attribute
+	 * values are correctly encoded when written to a file.
+	 */
+	@Test
+	public void testSpecialCharacters() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+
+		writer.handleEvent(new LinkLeaveEvent(3600.0, Id.create("vehicle>3", Vehicle.class), Id.create("link<2", Link.class)));
+		writer.handleEvent(new LinkLeaveEvent(3601.0, Id.create("vehicle\"4 ä", Vehicle.class), Id.create("link'3", Link.class)));
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals("there must be 2 events.", 2, collector.getEvents().size());
+		LinkLeaveEvent event1 = (LinkLeaveEvent) collector.getEvents().get(0);
+		LinkLeaveEvent event2 = (LinkLeaveEvent) collector.getEvents().get(1);
+
+		Assert.assertEquals("link<2", event1.getLinkId().toString());
+		Assert.assertEquals("vehicle>3", event1.getVehicleId().toString());
+
+		Assert.assertEquals("link'3", event2.getLinkId().toString());
+		Assert.assertEquals("vehicle\"4 ä", event2.getVehicleId().toString());
+	}
+
+	@Test
+	public void testNullAttribute() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+
+		GenericEvent event = new GenericEvent("TEST", 3600.0);
+		event.getAttributes().put("dummy", null);
+		writer.handleEvent(event);
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
+
+		GenericEvent event1 = (GenericEvent) collector.getEvents().get(0);
+		Assert.assertTrue(event1.getAttributes().containsKey("dummy"));
+		Assert.assertNull(event1.getAttributes().get("dummy"));
+	}
+
+	private static List<Event> createEvents() {
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			double time = i * 3.0;
+			Id<Link> linkId = Id.createLinkId(i % 3);
+			Id<Vehicle> vehicleId = Id.createVehicleId(i % 4);
+			events.add(new ActivityEndEvent(time, Id.createPersonId(i), linkId, null, "home"));
+			events.add(new PersonDepartureEvent(time, Id.createPersonId(i), linkId, "car"));
+			events.add(new PersonEntersVehicleEvent(time, Id.createPersonId(i), vehicleId));
+			events.add(new VehicleEntersTrafficEvent(time, Id.createPersonId(i), linkId, vehicleId, "car", 1.0));
+			events.add(new LinkLeaveEvent(time + 1, vehicleId, linkId));
+			events.add(new LinkEnterEvent(time + 1, vehicleId, Id.createLinkId("x" + i)));
+			events.add(new VehicleLeavesTrafficEvent(time + 2, Id.createPersonId(i), linkId, i % 2 == 0 ? null : vehicleId, "car", 1.0));
+			events.add(new PersonLeavesVehicleEvent(time + 2, Id.createPersonId(i), vehicleId));
+			events.add(new PersonArrivalEvent(time + 2, Id.createPersonId(i), linkId, "car"));
+			// only some events with coordinates, so the coordinates have to be written as strings
+			Coord coord = i % 2 == 0 ? new Coord(i * 100.5, -i) : null;
+			events.add(new ActivityStartEvent(time + 2, Id.createPersonId(i), linkId, Id.create("f" + i, ActivityFacility.class), "work", coord));
+			GenericEvent generic = new GenericEvent("generic", time + 2);
+			generic.getAttributes().put("amount", Double.toString(i * 0.5));
+			if (i % 3 == 0) {
+				generic.getAttributes().put("note", "every third event");
+			}
+			events.add(generic);
+		}
+		return events;
+	}
+
+}
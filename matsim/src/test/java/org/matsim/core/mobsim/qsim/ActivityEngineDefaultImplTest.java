@@ -0,0 +1,163 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEngineDefaultImplTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ActivityEngineDefaultImplTest {
+
+	private static final int NUMBER_OF_AGENTS = 300;
+
+	/**
+	 * Reschedules activity ends during the mobsim, including to infinity and back, and checks that the indexed queue
+	 * produces exactly the same events as the default queue.
+	 */
+	@Test
+	public void testIndexedQueue_sameEventsAsDefaultQueue() {
+		List<Event> defaultEvents = runWithRescheduling(false);
+		List<Event> indexedEvents = runWithRescheduling(true);
+
+		int activityEnds = 0;
+		for (Event event : defaultEvents) {
+			if (event instanceof ActivityEndEvent) {
+				activityEnds++;
+			}
+		}
+		Assert.assertTrue("too few activity ends: " + activityEnds, activityEnds > NUMBER_OF_AGENTS);
+		Assert.assertEquals(defaultEvents.size(), indexedEvents.size());
+		for (int i = 0; i < defaultEvents.size(); i++) {
+			Assert.assertEquals("different event at position " + i, defaultEvents.get(i), indexedEvents.get(i));
+		}
+	}
+
+	private static List<Event> runWithRescheduling(final boolean usingIndexedQueue) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingIndexedActivityEndsQueue(usingIndexedQueue);
+		config.qsim().setEndTime(24 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(1), node1, node2, 1000, 10, 3600, 1);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < NUMBER_OF_AGENTS; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link.getId());
+			home.setEndTime(6 * 3600 + (i % 50) * 60); // several agents end at the same time
+			plan.addActivity(home);
+			plan.addLeg(createLeg(pf, link));
+			Activity work = pf.createActivityFromLinkId("w", link.getId());
+			work.setEndTime(15 * 3600 + (i % 70) * 60);
+			plan.addActivity(work);
+			plan.addLeg(createLeg(pf, link));
+			plan.addActivity(pf.createActivityFromLinkId("h", link.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		qsim.addQueueSimulationListeners(new Rescheduler());
+		qsim.run();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static Leg createLeg(final PopulationFactory pf, final Link link) {
+		Leg leg = pf.createLeg("other");
+		Route route = pf.getRouteFactories().createRoute(Route.class, link.getId(), link.getId());
+		route.setTravelTime(600);
+		route.setDistance(1000);
+		leg.setRoute(route);
+		return leg;
+	}
+
+	/**
+	 * Every ten minutes until the evening, moves the activity end of every third agent that is at an activity to
+	 * somewhere in the next 40 minutes, and sometimes to infinity.
+	 */
+	private static class Rescheduler implements MobsimBeforeSimStepListener {
+
+		@Override
+		public void notifyMobsimBeforeSimStep(final MobsimBeforeSimStepEvent e) {
+			double now = e.getSimulationTime();
+			int step = (int) now / 600;
+			if (now % 600 != 0 || now > 20 * 3600) {
+				return;
+			}
+			QSim qsim = (QSim) e.getQueueSimulation();
+			for (MobsimAgent agent : qsim.getAgents().values()) {
+				int i = Integer.parseInt(agent.getId().toString());
+				if ((i + step) % 3 != 0 || agent.getState() != MobsimAgent.State.ACTIVITY) {
+					continue;
+				}
+				if (WithinDayAgentUtils.getCurrentPlanElementIndex(agent) == WithinDayAgentUtils.getModifiablePlan(agent).getPlanElements().size() - 1) {
+					continue;
+				}
+				Activity activity = (Activity) WithinDayAgentUtils.getCurrentPlanElement(agent);
+				if ((i + step) % 27 == 0) {
+					activity.setEndTime(Double.POSITIVE_INFINITY);
+				} else {
+					activity.setEndTime(now + ((i * 37 + step * 11) % 41) * 60);
+				}
+				WithinDayAgentUtils.resetCaches(agent);
+				WithinDayAgentUtils.rescheduleActivityEnd(agent, qsim);
+			}
+		}
+
+	}
+
+}
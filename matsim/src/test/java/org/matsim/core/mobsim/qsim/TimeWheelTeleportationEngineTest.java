@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TimeWheelTeleportationEngineTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class TimeWheelTeleportationEngineTest {
+
+	private static final int NUMBER_OF_AGENTS = 500;
+
+	/**
+	 * Agents with several teleported legs of very different durations, including legs of zero and of fractional
+	 * seconds, legs longer than the lowest level of the wheel, and legs that do not end before the end of the
+	 * simulation.
+	 */
+	@Test
+	public void testSameEventsAsDefaultTeleportationEngine() {
+		List<Event> defaultEvents = run(false);
+		List<Event> timeWheelEvents = run(true);
+
+		int arrivals = 0;
+		int stuck = 0;
+		for (Event event : defaultEvents) {
+			if (event instanceof TeleportationArrivalEvent) {
+				arrivals++;
+			} else if (event instanceof PersonStuckEvent) {
+				stuck++;
+			}
+		}
+		Assert.assertTrue("too few arrivals: " + arrivals, arrivals > 2 * NUMBER_OF_AGENTS);
+		Assert.assertTrue("no stuck agents", stuck > 0);
+
+		Assert.assertEquals(defaultEvents.size(), timeWheelEvents.size());
+		int firstStuck = defaultEvents.size() - stuck;
+		for (int i = 0; i < firstStuck; i++) {
+			Assert.assertEquals("different event at position " + i, defaultEvents.get(i), timeWheelEvents.get(i));
+		}
+		// the stuck events at the end of the simulation may come in a different order
+		Assert.assertTrue(timeWheelEvents.subList(firstStuck, timeWheelEvents.size())
+				.containsAll(defaultEvents.subList(firstStuck, defaultEvents.size())));
+	}
+
+	private static List<Event> run(final boolean usingTimeWheel) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingTimeWheelInTeleportation(usingTimeWheel);
+		config.qsim().setEndTime(30 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(1), node1, node2, 1000, 10, 3600, 1);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < NUMBER_OF_AGENTS; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link.getId());
+			home.setEndTime(6 * 3600 + (i % 20) * 60); // several agents depart at the same time
+			plan.addActivity(home);
+			for (int trip = 0; trip < 3; trip++) {
+				plan.addLeg(createLeg(pf, link, ((i * 7919 + trip * 104729) % 1000) * (trip + 1) * 1.5));
+				Activity activity = pf.createActivityFromLinkId("a", link.getId());
+				activity.setMaximumDuration(i % 4 == 0 ? 0 : 600);
+				plan.addActivity(activity);
+			}
+			plan.addLeg(createLeg(pf, link, i % 10 == 0 ? 40 * 3600 : 300));
+			plan.addActivity(pf.createActivityFromLinkId("h", link.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static Leg createLeg(final PopulationFactory pf, final Link link, final double travelTime) {
+		Leg leg = pf.createLeg("other");
+		Route route = pf.getRouteFactories().createRoute(Route.class, link.getId(), link.getId());
+		route.setTravelTime(travelTime);
+		route.setDistance(1000);
+		leg.setRoute(route);
+		return leg;
+	}
+
+}
@@ -0,0 +1,150 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkPartitioningTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class QNetworkPartitioningTest {
+
+	private static final int SIZE = 30;
+
+	@Test
+	public void testPartition_connectedAndBalanced() {
+		Scenario scenario = createGridScenario();
+		Network network = scenario.getNetwork();
+		int[] regions = new QNetworkPartitioning().partition(network, scenario.getPopulation(), 4, false);
+
+		int[] nodesPerRegion = new int[4];
+		for (Node node : network.getNodes().values()) {
+			nodesPerRegion[regions[node.getId().index()]]++;
+		}
+		for (int r = 0; r < 4; r++) {
+			Assert.assertEquals("unbalanced region " + r, SIZE * SIZE / 4.0, nodesPerRegion[r], 0.05 * SIZE * SIZE / 4.0);
+			Assert.assertEquals("region " + r + " is not connected", nodesPerRegion[r], countReachable(network, regions, r));
+		}
+
+		int cutLinks = 0;
+		for (Link link : network.getLinks().values()) {
+			if (regions[link.getFromNode().getId().index()] != regions[link.getToNode().getId().index()]) {
+				cutLinks++;
+			}
+		}
+		// four quadrants cut 4 * SIZE links, round robin cuts almost all of them
+		Assert.assertTrue("too many links between regions: " + cutLinks, cutLinks < 12 * SIZE);
+	}
+
+	@Test
+	public void testPartition_rebalance() {
+		Scenario scenario = createGridScenario();
+		Network network = scenario.getNetwork();
+		QNetworkPartitioning partitioning = new QNetworkPartitioning();
+		int[] regions = partitioning.partition(network, scenario.getPopulation(), 2, true);
+		int[] before = new int[2];
+		for (Node node : network.getNodes().values()) {
+			before[regions[node.getId().index()]]++;
+		}
+
+		// region 0 needed three times as long as region 1, so it should lose nodes
+		partitioning.setRunTimes(new long[] { 3000, 1000 });
+		Node someNodeOfRegion0 = null;
+		for (Node node : network.getNodes().values()) {
+			if (regions[node.getId().index()] == 0) {
+				someNodeOfRegion0 = node;
+				break;
+			}
+		}
+		regions = partitioning.partition(network, scenario.getPopulation(), 2, true);
+		int[] after = new int[2];
+		for (Node node : network.getNodes().values()) {
+			after[regions[node.getId().index()]]++;
+		}
+		int formerRegion0 = regions[someNodeOfRegion0.getId().index()];
+		Assert.assertTrue(after[formerRegion0] < before[0]);
+		Assert.assertEquals(SIZE * SIZE, after[0] + after[1]);
+	}
+
+	private static int countReachable(final Network network, final int[] regions, final int region) {
+		Node start = null;
+		for (Node node : network.getNodes().values()) {
+			if (regions[node.getId().index()] == region) {
+				start = node;
+				break;
+			}
+		}
+		Set<Node> reached = new HashSet<>();
+		Deque<Node> pending = new ArrayDeque<>();
+		reached.add(start);
+		pending.add(start);
+		while (!pending.isEmpty()) {
+			Node node = pending.poll();
+			for (Link link : node.getOutLinks().values()) {
+				Node next = link.getToNode();
+				if (regions[next.getId().index()] == region && reached.add(next)) {
+					pending.add(next);
+				}
+			}
+		}
+		return reached.size();
+	}
+
+	private static Scenario createGridScenario() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		Node[][] nodes = new Node[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100, y * 100));
+			}
+		}
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				if (x + 1 < SIZE) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y]);
+				}
+				if (y + 1 < SIZE) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1]);
+				}
+			}
+		}
+		return scenario;
+	}
+
+	private static void addLinks(final Network network, final Node a, final Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 100, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 100, 10, 1000, 1);
+	}
+
+}
@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SleepingLinksTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class SleepingLinksTest {
+
+	private static final int NUMBER_OF_LINKS = 12;
+	private static final int BOTTLENECK_LINK = 6;
+	private static final int NUMBER_OF_AGENTS = 600;
+
+	/**
+	 * Agents on a corridor with a bottleneck, so that there are both links with free flow and links with queues.  Agents
+	 * depart on links on which other vehicles are driving, and some of them depart at the same time.
+	 */
+	@Test
+	public void testSameEventsAsWithoutSleepingLinks() {
+		List<Event> expected = run(false, new long[2]);
+		List<Event> actual = run(true, new long[2]);
+
+		int arrivals = 0;
+		for (Event event : expected) {
+			if (event instanceof PersonArrivalEvent) {
+				arrivals++;
+			}
+		}
+		Assert.assertEquals(2 * NUMBER_OF_AGENTS, arrivals);
+
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals("different event at position " + i, expected.get(i), actual.get(i));
+		}
+	}
+
+	/**
+	 * Most links only hold vehicles that are still driving to their end, so most link visits should be skipped.
+	 */
+	@Test
+	public void testSkippedLinkVisits() {
+		long[] withoutSleeping = new long[2];
+		run(false, withoutSleeping);
+		long[] withSleeping = new long[2];
+		run(true, withSleeping);
+
+		Assert.assertEquals(0, withoutSleeping[1]);
+		Assert.assertTrue("no link visits skipped", withSleeping[1] > 0);
+		Assert.assertTrue(withSleeping[0] < withoutSleeping[0]);
+		Assert.assertTrue("less than half of the link visits skipped: " + withSleeping[1] + " of " + withoutSleeping[0],
+				2 * withSleeping[1] > withoutSleeping[0]);
+	}
+
+	/**
+	 * @param linkVisits is filled with the number of moved and skipped links
+	 */
+	private static List<Event> run(final boolean usingSleepingLinks, final long[] linkVisits) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingSleepingLinks(usingSleepingLinks);
+		config.qsim().setEndTime(30 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node previous = NetworkUtils.createAndAddNode(network, Id.createNodeId(0), new Coord(0, 0));
+		for (int i = 1; i <= NUMBER_OF_LINKS; i++) {
+			Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * 1000, 0));
+			double capacity = i == BOTTLENECK_LINK ? 900 : 3600;
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), previous, node, 1000 + 37 * i, 13.89, capacity, 1);
+			previous = node;
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < NUMBER_OF_AGENTS; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			int startLink = 1 + i % 4;
+			int middleLink = Math.min(startLink + 2 + i % 7, NUMBER_OF_LINKS - 1);
+			Activity home = pf.createActivityFromLinkId("h", Id.createLinkId(startLink));
+			// bursts of departures every ten minutes, which jam the bottleneck, and single departures in between
+			home.setEndTime(6 * 3600 + (i % 5 == 0 ? (i / 50) * 600 : i * 13.7));
+			plan.addActivity(home);
+			plan.addLeg(createLeg(pf, startLink, middleLink));
+			Activity work = pf.createActivityFromLinkId("w", Id.createLinkId(middleLink));
+			work.setMaximumDuration(i % 3 == 0 ? 0 : 300 + i);
+			plan.addActivity(work);
+			plan.addLeg(createLeg(pf, middleLink, NUMBER_OF_LINKS));
+			plan.addActivity(pf.createActivityFromLinkId("h", Id.createLinkId(NUMBER_OF_LINKS)));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		qsim.run();
+		AbstractQNetsimEngine<?> engine = (AbstractQNetsimEngine<?>) qsim.getChildInjector().getInstance(QNetsimEngineI.class);
+		linkVisits[0] = engine.getNumberOfMovedLinks();
+		linkVisits[1] = engine.getNumberOfSkippedLinks();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static Leg createLeg(final PopulationFactory pf, final int fromLink, final int toLink) {
+		List<Id<Link>> routeLinks = new ArrayList<>();
+		for (int i = fromLink + 1; i < toLink; i++) {
+			routeLinks.add(Id.createLinkId(i));
+		}
+		Leg leg = pf.createLeg(TransportMode.car);
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId(fromLink), routeLinks, Id.createLinkId(toLink)));
+		return leg;
+	}
+
+}
@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferVehicleQTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBufferVehicleQTest {
+
+	/**
+	 * Applies the same random operations to a ring buffer and a linked list, starting with a very small ring buffer
+	 * so that it wraps around and grows often.
+	 */
+	@Test
+	public void testSameBehaviourAsLinkedList() {
+		RingBufferVehicleQ<Integer> queue = new RingBufferVehicleQ<>(2);
+		LinkedList<Integer> expected = new LinkedList<>();
+		Random random = new Random(4711);
+		for (int i = 0; i < 10000; i++) {
+			int operation = random.nextInt(10);
+			if (operation < 4) {
+				Assert.assertTrue(queue.offer(i));
+				expected.offer(i);
+			} else if (operation < 7) {
+				Assert.assertEquals(expected.poll(), queue.poll());
+			} else if (operation == 7) {
+				queue.addFirst(i);
+				expected.addFirst(i);
+			} else if (operation == 8 && !expected.isEmpty()) {
+				Integer element = expected.get(random.nextInt(expected.size()));
+				Assert.assertTrue(queue.remove(element));
+				expected.remove(element);
+			} else if (operation == 9 && random.nextInt(20) == 0) {
+				queue.clear();
+				expected.clear();
+			}
+			Assert.assertEquals(expected.size(), queue.size());
+			Assert.assertEquals(expected.peek(), queue.peek());
+		}
+		Assert.assertEquals(expected, new ArrayList<>(queue));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		RingBufferVehicleQ<Integer> queue = new RingBufferVehicleQ<>(4);
+		queue.add(1);
+		queue.add(2);
+		Assert.assertEquals(Integer.valueOf(1), queue.poll());
+		queue.add(3);
+		queue.add(4);
+		queue.add(5); // wraps around
+
+		Iterator<Integer> it = queue.iterator();
+		while (it.hasNext()) {
+			if (it.next() % 2 == 0) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(Integer.valueOf(3), queue.poll());
+		Assert.assertEquals(Integer.valueOf(5), queue.poll());
+		Assert.assertNull(queue.poll());
+		Assert.assertNull(queue.peek());
+	}
+
+}
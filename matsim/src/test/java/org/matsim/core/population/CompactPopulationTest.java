@@ -0,0 +1,264 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+public class CompactPopulationTest {
+
+	@Test
+	public void testReadPopulation() {
+		URL equil = ExamplesUtils.getTestScenarioURL("equil");
+		Scenario objects = readScenario(equil, PlansConfigGroup.PopulationStorage.objects);
+		Scenario compact = readScenario(equil, PlansConfigGroup.PopulationStorage.compact);
+
+		Assert.assertTrue(compact.getPopulation() instanceof CompactPopulation);
+		Assert.assertEquals(100, compact.getPopulation().getPersons().size());
+		Assert.assertTrue(PopulationUtils.equalPopulation(objects.getPopulation(), compact.getPopulation()));
+		for (Person person : compact.getPopulation().getPersons().values()) {
+			Assert.assertTrue(person instanceof CompactPerson);
+			Assert.assertSame(person.getPlans().get(0), person.getSelectedPlan());
+			for (Plan plan : person.getPlans()) {
+				Assert.assertTrue(plan instanceof CompactPlan);
+				Assert.assertSame(person, plan.getPerson());
+				for (Leg leg : TripStructureUtils.getLegs(plan)) {
+					if (leg.getRoute() instanceof NetworkRoute) {
+						Assert.assertTrue(leg.getRoute() instanceof CompactNetworkRoute);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAddElements() {
+		Population population = createPopulation();
+		PopulationFactory factory = population.getFactory();
+		Person person = factory.createPerson(Id.create(1, Person.class));
+		Plan plan = factory.createPlan();
+		person.addPlan(plan);
+
+		Activity home = factory.createActivityFromCoord("home", new Coord(1.0, 2.0));
+		home.setEndTime(8 * 3600);
+		plan.addActivity(home);
+		Leg leg = factory.createLeg(TransportMode.car);
+		plan.addLeg(leg);
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("a"),
+				Arrays.asList(Id.createLinkId("b"), Id.createLinkId("c")), Id.createLinkId("d"));
+		route.setDistance(1200.0);
+		leg.setRoute(route);
+		TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+		Activity work = PopulationUtils.createActivityFromLinkId("work", Id.createLinkId("d"));
+		plan.addActivity(work);
+		work.setStartTime(9 * 3600);
+		population.addPerson(person);
+
+		Assert.assertEquals(3, plan.getPlanElements().size());
+		// detached elements become views of the plan
+		Assert.assertSame(home, plan.getPlanElements().get(0));
+		Assert.assertEquals("home", home.getType());
+		Assert.assertEquals(new Coord(1.0, 2.0), home.getCoord());
+		Assert.assertEquals(8 * 3600, home.getEndTime().seconds(), 0.0);
+		Assert.assertTrue(home.getStartTime().isUndefined());
+		Assert.assertNull(home.getLinkId());
+
+		Leg planLeg = (Leg) plan.getPlanElements().get(1);
+		Assert.assertEquals(TransportMode.car, planLeg.getMode());
+		Assert.assertEquals(TransportMode.car, TripStructureUtils.getRoutingMode(planLeg));
+		Assert.assertTrue(planLeg.getRoute() instanceof CompactNetworkRoute);
+		NetworkRoute planRoute = (NetworkRoute) planLeg.getRoute();
+		Assert.assertEquals("a b c d", planRoute.getRouteDescription());
+		Assert.assertEquals(1200.0, planRoute.getDistance(), 0.0);
+		Assert.assertTrue(planRoute.getTravelTime().isUndefined());
+
+		// foreign elements are packed when the person is added
+		Activity planWork = (Activity) plan.getPlanElements().get(2);
+		Assert.assertTrue(planWork instanceof CompactActivity);
+		Assert.assertEquals("work", planWork.getType());
+		Assert.assertEquals(Id.createLinkId("d"), planWork.getLinkId());
+		Assert.assertEquals(9 * 3600, planWork.getStartTime().seconds(), 0.0);
+	}
+
+	@Test
+	public void testInsertAndRemove() {
+		Plan plan = createPlan();
+		Activity home = (Activity) plan.getPlanElements().get(0);
+		Activity work = (Activity) plan.getPlanElements().get(2);
+
+		Activity shop = PopulationUtils.createActivityFromCoord("shop", new Coord(5.0, 5.0));
+		Leg walk = PopulationUtils.createLeg(TransportMode.walk);
+		plan.getPlanElements().add(1, walk);
+		plan.getPlanElements().add(1, shop);
+		Assert.assertEquals(5, plan.getPlanElements().size());
+		Assert.assertEquals("shop", ((Activity) plan.getPlanElements().get(1)).getType());
+		Assert.assertEquals(TransportMode.walk, ((Leg) plan.getPlanElements().get(2)).getMode());
+
+		plan.getPlanElements().remove(0);
+		plan.getPlanElements().remove(0);
+		Assert.assertEquals(3, plan.getPlanElements().size());
+		Assert.assertSame(work, plan.getPlanElements().get(2));
+		Assert.assertEquals("work", work.getType());
+		Assert.assertFalse(plan.getPlanElements().contains(home));
+	}
+
+	@Test
+	public void testViewsAreIdentical() {
+		Plan plan = createPlan();
+		List<PlanElement> elements = plan.getPlanElements();
+		Leg leg = (Leg) elements.get(1);
+		Assert.assertSame(leg, elements.get(1));
+		Assert.assertSame(leg.getRoute(), leg.getRoute());
+		Assert.assertEquals(1, elements.indexOf(leg));
+
+		Map<PlanElement, Integer> positions = new IdentityHashMap<>();
+		for (int i = 0; i < elements.size(); i++) {
+			positions.put(elements.get(i), i);
+		}
+		elements.add(0, PopulationUtils.createActivityFromLinkId("start", Id.createLinkId("a")));
+		Assert.assertEquals(Integer.valueOf(1), positions.get(elements.get(2)));
+		Assert.assertSame(leg, elements.remove(2));
+	}
+
+	@Test
+	public void testAddElementOfAnotherPlan() {
+		Plan plan = createPlan();
+		Activity home = (Activity) plan.getPlanElements().get(0);
+		Plan other = createPopulation().getFactory().createPlan();
+		other.addActivity(home);
+		// the same element is in both plans, as with any other plan implementation
+		Assert.assertSame(home, other.getPlanElements().get(0));
+		Assert.assertEquals(home, plan.getPlanElements().get(0));
+		home.setType("other");
+		Assert.assertEquals("other", ((Activity) plan.getPlanElements().get(0)).getType());
+		Assert.assertEquals("other", ((Activity) other.getPlanElements().get(0)).getType());
+
+		plan.getPlanElements().add(home);
+		Assert.assertSame(home, plan.getPlanElements().get(3));
+
+		Plan copy = CompactPlan.copyOf(other);
+		Assert.assertEquals("other", ((Activity) copy.getPlanElements().get(0)).getType());
+		Assert.assertNotSame(home, copy.getPlanElements().get(0));
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		Plan plan = createPlan();
+		Person person = plan.getPerson();
+		Plan copy = person.createCopyOfSelectedPlanAndMakeSelected();
+
+		Assert.assertTrue(copy instanceof CompactPlan);
+		Assert.assertSame(copy, person.getSelectedPlan());
+		Assert.assertEquals(2, person.getPlans().size());
+
+		Activity copiedHome = (Activity) copy.getPlanElements().get(0);
+		copiedHome.setType("other");
+		NetworkRoute copiedRoute = (NetworkRoute) ((Leg) copy.getPlanElements().get(1)).getRoute();
+		// the link sequence is immutable, so the copy shares it
+		Assert.assertSame(((NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute()).getLinkIds(), copiedRoute.getLinkIds());
+		copiedRoute.setLinkIds(Id.createLinkId("a"), Arrays.asList(Id.createLinkId("x")), Id.createLinkId("d"));
+
+		Assert.assertEquals("home", ((Activity) plan.getPlanElements().get(0)).getType());
+		NetworkRoute route = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+		Assert.assertEquals("a b c d", route.getRouteDescription());
+		Assert.assertEquals("a x d", copiedRoute.getRouteDescription());
+	}
+
+	@Test
+	public void testNetworkRoute() {
+		Plan plan = createPlan();
+		NetworkRoute route = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+
+		route.setLinkIds(Id.createLinkId("a"),
+				Arrays.asList(Id.createLinkId("q"), Id.createLinkId("r"), Id.createLinkId("s")), Id.createLinkId("d"));
+		Assert.assertEquals("a q r s d", route.getRouteDescription());
+		Assert.assertEquals(Arrays.asList(Id.<Link>createLinkId("r")),
+				route.getSubRoute(Id.createLinkId("q"), Id.createLinkId("s")).getLinkIds());
+
+		NetworkRoute clone = route.clone();
+		Assert.assertFalse(clone instanceof CompactNetworkRoute);
+		Assert.assertEquals(route.getRouteDescription(), clone.getRouteDescription());
+
+		route.setRouteDescription("a d");
+		Assert.assertEquals(0, route.getLinkIds().size());
+		Assert.assertEquals("a q r s d", clone.getRouteDescription());
+	}
+
+	private static Scenario readScenario(final URL context, final PlansConfigGroup.PopulationStorage storage) {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setPopulationStorage(storage);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).parse(IOUtils.extendUrl(context, "network.xml"));
+		new PopulationReader(scenario).parse(IOUtils.extendUrl(context, "plans100.xml"));
+		return scenario;
+	}
+
+	private static Population createPopulation() {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setPopulationStorage(PlansConfigGroup.PopulationStorage.compact);
+		return PopulationUtils.createPopulation(config);
+	}
+
+	private static Plan createPlan() {
+		Population population = createPopulation();
+		PopulationFactory factory = population.getFactory();
+		Person person = factory.createPerson(Id.create(1, Person.class));
+		Plan plan = factory.createPlan();
+		person.addPlan(plan);
+		plan.addActivity(factory.createActivityFromLinkId("home", Id.createLinkId("a")));
+		Leg leg = factory.createLeg(TransportMode.car);
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("a"),
+				Arrays.asList(Id.createLinkId("b"), Id.createLinkId("c")), Id.createLinkId("d")));
+		plan.addLeg(leg);
+		plan.addActivity(factory.createActivityFromLinkId("work", Id.createLinkId("d")));
+		population.addPerson(person);
+		return plan;
+	}
+
+}
@@ -19,6 +19,7 @@
 
 package org.matsim.core.population.io;
 
+import java.net.URL;
 import java.util.List;
 
 import org.junit.Assert;
@@ -32,9 +33,13 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
 
 /**
  * @author mrieser
@@ -50,6 +55,26 @@ public class MatsimPopulationReaderTest {
 		Assert.assertEquals(1, s.getPopulation().getPersons().size());
 	}
 
+	@Test
+	public void testReadFile_parallelParsing() {
+		URL context = ExamplesUtils.getTestScenarioURL("equil");
+		Scenario serial = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(serial.getNetwork()).parse(IOUtils.extendUrl(context, "network.xml"));
+		new PopulationReader(serial).parse(IOUtils.extendUrl(context, "plans100.xml"));
+
+		Scenario parallel = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		MatsimNetworkReader networkReader = new MatsimNetworkReader(parallel.getNetwork());
+		networkReader.setParallelParsing(true);
+		networkReader.parse(IOUtils.extendUrl(context, "network.xml"));
+		PopulationReader populationReader = new PopulationReader(parallel);
+		populationReader.setParallelParsing(true);
+		populationReader.parse(IOUtils.extendUrl(context, "plans100.xml"));
+
+		Assert.assertEquals(100, parallel.getPopulation().getPersons().size());
+		Assert.assertTrue(NetworkUtils.compare(serial.getNetwork(), parallel.getNetwork()));
+		Assert.assertTrue(PopulationUtils.equalPopulation(serial.getPopulation(), parallel.getPopulation()));
+	}
+
 	@Test
 	public void testReadFile_v5() {
 		Scenario s = ScenarioUtils.createScenario(ConfigUtils.createConfig());
@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedNetworkRouteTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+public class PackedNetworkRouteTest extends AbstractNetworkRouteTest {
+
+	@Override
+	public NetworkRoute getNetworkRouteInstance(final Id<Link> fromLinkId, final Id<Link> toLinkId, final Network network) {
+		return (NetworkRoute) new PackedNetworkRouteFactory(true).createRoute(fromLinkId, toLinkId);
+	}
+
+	@Test
+	public void testClone() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		List<Id<Link>> srcRoute = new ArrayList<>();
+		srcRoute.add(Id.create(3, Link.class));
+		srcRoute.add(Id.create(4, Link.class));
+		NetworkRoute route1 = (NetworkRoute) new PackedNetworkRouteFactory().createRoute(id1, id2);
+		route1.setLinkIds(id1, srcRoute, id2);
+		Assert.assertEquals(2, route1.getLinkIds().size());
+
+		NetworkRoute route2 = route1.clone();
+
+		srcRoute.add(Id.create(5, Link.class));
+		route1.setLinkIds(id1, srcRoute, id2);
+
+		Assert.assertEquals(3, route1.getLinkIds().size());
+		Assert.assertEquals(2, route2.getLinkIds().size());
+		Assert.assertEquals(srcRoute, route1.getLinkIds());
+	}
+
+	@Test
+	public void testInternedLinkSequences() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		List<Id<Link>> links = Arrays.asList(Id.create(3, Link.class), Id.create(4, Link.class));
+
+		PackedNetworkRouteFactory interning = new PackedNetworkRouteFactory(true);
+		NetworkRoute route1 = (NetworkRoute) interning.createRoute(id1, id2);
+		route1.setLinkIds(id1, new ArrayList<>(links), id2);
+		NetworkRoute route2 = (NetworkRoute) interning.createRoute(id1, id2);
+		route2.setLinkIds(id1, new ArrayList<>(links), id2);
+		Assert.assertSame(route1.getLinkIds(), route2.getLinkIds());
+		Assert.assertEquals(links, route2.getLinkIds());
+
+		PackedNetworkRouteFactory plain = new PackedNetworkRouteFactory(false);
+		NetworkRoute route3 = (NetworkRoute) plain.createRoute(id1, id2);
+		route3.setLinkIds(id1, new ArrayList<>(links), id2);
+		NetworkRoute route4 = (NetworkRoute) plain.createRoute(id1, id2);
+		route4.setLinkIds(id1, new ArrayList<>(links), id2);
+		Assert.assertNotSame(route3.getLinkIds(), route4.getLinkIds());
+		Assert.assertEquals(route3.getLinkIds(), route4.getLinkIds());
+	}
+
+	@Test
+	public void testLinkSequenceEqualsOtherLists() {
+		List<Id<Link>> links = Arrays.asList(Id.create(3, Link.class), Id.create(4, Link.class), Id.create(5, Link.class));
+		PackedLinkSequence sequence = PackedLinkSequence.of(links);
+
+		Assert.assertEquals(links, sequence);
+		Assert.assertEquals(sequence, links);
+		Assert.assertEquals(links.hashCode(), sequence.hashCode());
+		Assert.assertEquals(links.subList(1, 3), sequence.subList(1, 3));
+		Assert.assertEquals(links.subList(1, 3).hashCode(), sequence.subList(1, 3).hashCode());
+		Assert.assertEquals(new ArrayList<Id<Link>>().hashCode(), PackedLinkSequence.EMPTY.hashCode());
+
+		try {
+			sequence.subList(2, 1);
+			Assert.fail("expected IndexOutOfBoundsException.");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		try {
+			sequence.subList(1, 4);
+			Assert.fail("expected IndexOutOfBoundsException.");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testLinkIdsAreUnmodifiable() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		NetworkRoute route = (NetworkRoute) new PackedNetworkRouteFactory().createRoute(id1, id2);
+		route.setLinkIds(id1, Arrays.asList(Id.create(3, Link.class)), id2);
+		try {
+			route.getLinkIds().add(Id.create(4, Link.class));
+			Assert.fail("expected UnsupportedOperationException.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		Assert.assertEquals("1 3 2", route.getRouteDescription());
+	}
+
+}
@@ -20,12 +20,20 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -60,6 +68,74 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testCrashingThread_workStealing() {
+		try {
+			DummyCrashingModule testee = new DummyCrashingModule(2, true);
+			testee.prepareReplanning(null);
+			for (int i = 0; i < 100; i++) {
+				testee.handlePlan(null);
+			}
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (Exception e) {
+			log.info("Catched expected exception.", e);
+		}
+	}
+
+	@Test
+	public void testWorkStealing() throws InterruptedException {
+		CountingModule testee = new CountingModule(3);
+		for (int iteration = 0; iteration < 3; iteration++) {
+			List<Plan> plans = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				plans.add(PopulationUtils.createPlan());
+			}
+			testee.prepareReplanning(null);
+			for (Plan plan : plans) {
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+			for (Plan plan : plans) {
+				Assert.assertEquals("every plan must be handled exactly once", Double.valueOf(1.), plan.getScore());
+			}
+		}
+		Assert.assertNull("an instance was used by several threads at the same time", testee.error.get());
+		// the instances are used again in later iterations; only spare threads of the pool might need additional ones
+		Assert.assertTrue(testee.instances.get() < 2 * 3);
+
+		testee.shutdown();
+		for (Thread thread : testee.threads) {
+			thread.join(10000);
+			Assert.assertFalse(thread.isAlive());
+		}
+	}
+
+	private static class CountingModule extends AbstractMultithreadedModule {
+		private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		private final AtomicInteger instances = new AtomicInteger();
+		private final AtomicReference<String> error = new AtomicReference<>();
+
+		CountingModule(final int nOfThreads) {
+			super(nOfThreads, true);
+		}
+
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			this.instances.incrementAndGet();
+			AtomicReference<Thread> user = new AtomicReference<>();
+			return plan -> {
+				Thread thread = Thread.currentThread();
+				if (!user.compareAndSet(null, thread)) {
+					this.error.set(user.get().getName() + " and " + thread.getName());
+				}
+				this.threads.add(thread);
+				plan.setScore(plan.getScore() == null ? 1. : plan.getScore() + 1.);
+				user.set(null);
+			};
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -74,6 +150,9 @@ public class AbstractMultithreadedModuleTest {
 		public DummyCrashingModule(final int nOfThreads) {
 			super(nOfThreads);
 		}
+		public DummyCrashingModule(final int nOfThreads, final boolean usingWorkStealing) {
+			super(nOfThreads, usingWorkStealing);
+		}
 		@Override
 		public PlanAlgorithm getPlanAlgoInstance() {
 			return new CrashingPlanAlgo();
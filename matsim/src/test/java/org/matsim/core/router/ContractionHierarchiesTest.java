@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory(900, 30 * 3600, 1).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	/**
+	 * Compares the costs of the paths with those of Dijkstra on the berlin network, using a travel time that
+	 * differs between the morning and the evening, so that two sets of customized weights are used.
+	 */
+	public void testCalcLeastCostPath_SameCostsAsDijkstra() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+
+		TravelTime travelTime = (link, time, person, vehicle) -> {
+			double freespeedTime = link.getLength() / link.getFreespeed();
+			// make some links much slower in the evening, depending on their id:
+			return time >= 12 * 3600 && link.getId().toString().hashCode() % 3 == 0 ? 4 * freespeedTime : freespeedTime;
+		};
+		TravelDisutility travelDisutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				return travelTime.getLinkTravelTime(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return link.getLength() / link.getFreespeed();
+			}
+		};
+
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(12 * 3600, 24 * 3600, 2).createPathCalculator(network, travelDisutility, travelTime);
+
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Random random = new Random(4711);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes[random.nextInt(nodes.length)];
+			Node to = nodes[random.nextInt(nodes.length)];
+			double departureTime = (i % 2 == 0 ? 8 : 17) * 3600;
+			Path expected = dijkstra.calcLeastCostPath(from, to, departureTime, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, departureTime, null, null);
+			if (expected == null) {
+				assertNull(actual);
+				continue;
+			}
+			assertNotNull("no path from " + from.getId() + " to " + to.getId(), actual);
+			// float weights are used in the hierarchy, so paths of almost equal cost may differ:
+			assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, actual.travelCost, 1e-3 * Math.max(1.0, expected.travelCost));
+			assertEquals(actual.links.size() + 1, actual.nodes.size());
+			assertSame(from, actual.nodes.get(0));
+			assertSame(to, actual.nodes.get(actual.nodes.size() - 1));
+			for (int j = 0; j < actual.links.size(); j++) {
+				assertSame(actual.nodes.get(j), actual.links.get(j).getFromNode());
+				assertSame(actual.nodes.get(j + 1), actual.links.get(j).getToNode());
+			}
+		}
+	}
+
+	/**
+	 * Two instances of the same travel disutility class that prefer different links must not share their weights.
+	 */
+	public void testCalcLeastCostPath_DisutilityInstancesOfSameClass() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(24 * 3600, 24 * 3600, 1);
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		for (int penalizedLinks = 0; penalizedLinks < 2; penalizedLinks++) {
+			TravelDisutility travelDisutility = new PenalizingTravelDisutility(travelTime, penalizedLinks);
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+			LeastCostPathCalculator ch = factory.createPathCalculator(network, travelDisutility, travelTime);
+			Random random = new Random(4711);
+			for (int i = 0; i < 100; i++) {
+				Node from = nodes[random.nextInt(nodes.length)];
+				Node to = nodes[random.nextInt(nodes.length)];
+				Path expected = dijkstra.calcLeastCostPath(from, to, 8 * 3600, null, null);
+				Path actual = ch.calcLeastCostPath(from, to, 8 * 3600, null, null);
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+				assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, actual.travelCost, 1e-3 * Math.max(1.0, expected.travelCost));
+			}
+		}
+		factory.shutdown();
+	}
+
+	/**
+	 * A travel disutility that needs a person cannot be customized, so another router must be used for it.
+	 */
+	public void testCreatePathCalculator_PersonDependentDisutility() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+		TravelDisutility travelDisutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				if (person == null) {
+					throw new RuntimeException("this travel disutility needs a person");
+				}
+				return travelTime.getLinkTravelTime(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return link.getLength() / link.getFreespeed();
+			}
+		};
+
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(24 * 3600, 24 * 3600, 1);
+		LeastCostPathCalculator calculator = factory.createPathCalculator(network, travelDisutility, travelTime);
+		assertFalse(calculator instanceof ContractionHierarchies);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("1"));
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Path expected = new Dijkstra(network, travelDisutility, travelTime).calcLeastCostPath(nodes[0], nodes[nodes.length - 1], 8 * 3600, person, null);
+		Path actual = calculator.calcLeastCostPath(nodes[0], nodes[nodes.length - 1], 8 * 3600, person, null);
+		assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+		factory.shutdown();
+	}
+
+	/**
+	 * The calculators of a pool are created with the same travel disutility factory, so the weights must only be
+	 * customized once.
+	 */
+	public void testCreatePathCalculator_SharesWeightsOfDisutilityFactory() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+		TravelDisutilityFactory travelDisutilityFactory = timeCalculator -> new PenalizingTravelDisutility(timeCalculator, 0);
+
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(24 * 3600, 24 * 3600, 1);
+		LeastCostPathCalculator first = factory.createPathCalculator(network, travelDisutilityFactory, travelTime);
+		LeastCostPathCalculator second = factory.createPathCalculator(network, travelDisutilityFactory, travelTime);
+		assertEquals(1, factory.getNumberOfMetrics());
+
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Path expected = first.calcLeastCostPath(nodes[0], nodes[nodes.length - 1], 8 * 3600, null, null);
+		Path actual = second.calcLeastCostPath(nodes[0], nodes[nodes.length - 1], 8 * 3600, null, null);
+		assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+
+		factory.createPathCalculator(network, timeCalculator -> new PenalizingTravelDisutility(timeCalculator, 1), travelTime);
+		assertEquals(2, factory.getNumberOfMetrics());
+		factory.shutdown();
+	}
+
+	private static final class PenalizingTravelDisutility implements TravelDisutility {
+		private final TravelTime travelTime;
+		private final int penalizedLinks;
+
+		PenalizingTravelDisutility(final TravelTime travelTime, final int penalizedLinks) {
+			this.travelTime = travelTime;
+			this.penalizedLinks = penalizedLinks;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			double penalty = link.getId().index() % 2 == this.penalizedLinks ? 10 : 1;
+			return penalty * this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkSkimCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class NetworkSkimCalculatorTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static final int GRID_SIZE = 12;
+
+	/**
+	 * Compares all skims of a grid network with the paths found by {@link Dijkstra}, with a travel time that is longer
+	 * in the morning peak and a disutility that also depends on the distance, so that the least-cost paths are not the
+	 * fastest ones.
+	 */
+	@Test
+	public void testSameSkimsAsDijkstra() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = createTravelTime();
+		TravelDisutility travelDisutility = createTravelDisutility(travelTime);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Node isolated = NetworkUtils.createAndAddNode(network, Id.createNodeId("nsc-isolated"), new Coord(-1000, -1000));
+		List<Node> origins = new ArrayList<>(nodes.subList(0, nodes.size() / 2));
+		List<Node> destinations = new ArrayList<>(nodes.subList(nodes.size() / 3, nodes.size()));
+		destinations.add(isolated);
+
+		for (int numberOfThreads : new int[] {1, 3}) {
+			NetworkSkimCalculator calculator = new NetworkSkimCalculator(network, travelTime, travelDisutility, numberOfThreads);
+			for (double departureTime : new double[] {6 * 3600, 7.5 * 3600}) {
+				NetworkSkims skims = calculator.calcSkims(origins, destinations, departureTime);
+				Assert.assertEquals(origins.size(), skims.getOriginCount());
+				Assert.assertEquals(destinations.size(), skims.getDestinationCount());
+				for (Node origin : origins) {
+					int o = skims.getOriginIndex(origin);
+					Assert.assertSame(origin, skims.getOrigin(o));
+					for (Node destination : destinations) {
+						int d = skims.getDestinationIndex(destination);
+						Assert.assertSame(destination, skims.getDestination(d));
+						if (destination == isolated) {
+							Assert.assertEquals(Float.POSITIVE_INFINITY, skims.getTravelTime(o, d), 0.0);
+							Assert.assertEquals(Float.POSITIVE_INFINITY, skims.getTravelDisutility(o, d), 0.0);
+							Assert.assertEquals(Float.POSITIVE_INFINITY, skims.getDistance(o, d), 0.0);
+							continue;
+						}
+						Path path = dijkstra.calcLeastCostPath(origin, destination, departureTime, null, null);
+						double distance = 0;
+						for (Link link : path.links) {
+							distance += link.getLength();
+						}
+						String message = origin.getId() + " -> " + destination.getId() + " at " + departureTime;
+						Assert.assertEquals(message, path.travelCost, skims.getTravelDisutility(o, d), 1e-5 * Math.max(1.0, path.travelCost));
+						Assert.assertEquals(message, path.travelTime, skims.getTravelTime(o, d), 1e-5 * Math.max(1.0, path.travelTime));
+						Assert.assertEquals(message, distance, skims.getDistance(o, d), 1e-5 * Math.max(1.0, distance));
+						Assert.assertEquals(skims.getTravelTime(o, d), skims.getTravelTime(origin, destination), 0.0);
+					}
+				}
+			}
+		}
+		Assert.assertEquals(-1, new NetworkSkimCalculator(network, travelTime, travelDisutility, 1)
+				.calcSkims(origins, destinations, 0).getOriginIndex(isolated));
+	}
+
+	@Test
+	public void testWriteRead() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = createTravelTime();
+		NetworkSkimCalculator calculator = new NetworkSkimCalculator(network, travelTime, createTravelDisutility(travelTime), 2);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		NetworkSkims skims = calculator.calcSkims(nodes.subList(0, 50), nodes.subList(40, nodes.size()), 7.5 * 3600);
+
+		String filename = this.utils.getOutputDirectory() + "skims.bin";
+		skims.write(filename);
+		NetworkSkims read = NetworkSkims.read(filename, network);
+
+		Assert.assertEquals(skims.getDepartureTime(), read.getDepartureTime(), 0.0);
+		Assert.assertEquals(skims.getOrigins(), read.getOrigins());
+		Assert.assertEquals(skims.getDestinations(), read.getDestinations());
+		for (int o = 0; o < skims.getOriginCount(); o++) {
+			for (int d = 0; d < skims.getDestinationCount(); d++) {
+				Assert.assertEquals(skims.getTravelTime(o, d), read.getTravelTime(o, d), 0.0);
+				Assert.assertEquals(skims.getTravelDisutility(o, d), read.getTravelDisutility(o, d), 0.0);
+				Assert.assertEquals(skims.getDistance(o, d), read.getDistance(o, d), 0.0);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateDestination() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = createTravelTime();
+		NetworkSkimCalculator calculator = new NetworkSkimCalculator(network, travelTime, createTravelDisutility(travelTime), 1);
+		Node node = network.getNodes().values().iterator().next();
+		calculator.calcSkims(Arrays.asList(node), Arrays.asList(node, node), 0);
+	}
+
+	/**
+	 * A grid with links in both directions and random lengths, so that there are no paths of equal cost.
+	 */
+	private static Network createGridNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Random random = new Random(20200418);
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId("nsc-" + x + "-" + y), new Coord(x * 1000, y * 1000));
+			}
+		}
+		int l = 0;
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				for (Node to : new Node[] {x + 1 < GRID_SIZE ? nodes[x + 1][y] : null, y + 1 < GRID_SIZE ? nodes[x][y + 1] : null}) {
+					if (to != null) {
+						double freespeed = 10 + random.nextInt(20);
+						NetworkUtils.createAndAddLink(network, Id.createLinkId("nsc" + l++), nodes[x][y], to, 900 + random.nextDouble() * 200, freespeed, 1000, 1);
+						NetworkUtils.createAndAddLink(network, Id.createLinkId("nsc" + l++), to, nodes[x][y], 900 + random.nextDouble() * 200, freespeed, 1000, 1);
+					}
+				}
+			}
+		}
+		return network;
+	}
+
+	private static TravelTime createTravelTime() {
+		return (link, time, person, vehicle) -> {
+			double freespeedTime = link.getLength() / link.getFreespeed();
+			// congestion from 7 to 9 on every third link:
+			return time >= 7 * 3600 && time < 9 * 3600 && link.getId().index() % 3 == 0 ? 3 * freespeedTime : freespeedTime;
+		};
+	}
+
+	private static TravelDisutility createTravelDisutility(final TravelTime travelTime) {
+		return new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				return travelTime.getLinkTravelTime(link, time, person, vehicle) + 0.01 * link.getLength();
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return link.getLength() / link.getFreespeed() + 0.01 * link.getLength();
+			}
+		};
+	}
+
+}
@@ -20,23 +20,40 @@
 package org.matsim.core.router;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Provider;
 
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.PooledLeastCostPathCalculator;
 import org.matsim.core.utils.misc.OptionalTime;
 import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.facilities.Facility;
 import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author thibautd
@@ -164,6 +181,96 @@ public class TripRouterTest {
 				TripRouter.insertTrip( plan , o , trip , d ) );
 	}
 
+	@Test
+	public void testConcurrentCalcRoute() throws InterruptedException {
+		AtomicInteger createdModules = new AtomicInteger();
+		AtomicInteger createdCalculators = new AtomicInteger();
+		Map<String, Provider<RoutingModule>> providers = new LinkedHashMap<>();
+		providers.put("pooled", () -> {
+			createdModules.incrementAndGet();
+			return new PooledRoutingModule("pooled", new PooledLeastCostPathCalculator(() -> {
+				createdCalculators.incrementAndGet();
+				return new CheckingLeastCostPathCalculator();
+			}));
+		});
+		TripRouter tripRouter = new TripRouter(providers, ConfigUtils.createConfig(), new PooledRoutingModule("fallback", null));
+		RoutingModule module = tripRouter.getRoutingModule("pooled");
+		RoutingModule replacement = new PooledRoutingModule("replacement", new PooledLeastCostPathCalculator(CheckingLeastCostPathCalculator::new));
+		tripRouter.setRoutingModule("replacement", replacement);
+		// (not thread-safe, so the trip router must lock it)
+		tripRouter.setRoutingModule("unsafe", new PooledRoutingModule("unsafe", new CheckingLeastCostPathCalculator()));
+
+		Facility facility = FacilitiesUtils.wrapActivity(PopulationUtils.createActivityFromCoord("h", new Coord(0, 0)));
+		AtomicReference<Throwable> exception = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					String mode = i % 3 == 0 ? "pooled" : i % 3 == 1 ? "replacement" : "unsafe";
+					List<? extends PlanElement> trip = tripRouter.calcRoute(mode, facility, facility, i, null);
+					assertEquals(1, trip.size());
+					assertEquals(mode, ((Leg) trip.get(0)).getMode());
+				}
+				assertSame(module, tripRouter.getRoutingModule("pooled"));
+				assertSame(replacement, tripRouter.getRoutingModule("replacement"));
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.setUncaughtExceptionHandler((th, e) -> exception.compareAndSet(null, e));
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (exception.get() != null) {
+			throw new AssertionError("a routing thread failed", exception.get());
+		}
+		assertEquals("all threads should share the routing modules", 1, createdModules.get());
+		assertTrue("there should not be more calculators than threads", createdCalculators.get() <= 4);
+	}
+
+	/**
+	 * Routes a leg with the least cost path calculator; it is thread-safe if the calculator is pooled.
+	 */
+	private static class PooledRoutingModule implements FallbackRoutingModule, ConcurrentRoutingModule {
+		private final String mode;
+		private final LeastCostPathCalculator calculator;
+
+		PooledRoutingModule(String mode, LeastCostPathCalculator calculator) {
+			this.mode = mode;
+			this.calculator = calculator;
+		}
+
+		@Override
+		public List<? extends PlanElement> calcRoute(Facility fromFacility, Facility toFacility, double departureTime, Person person) {
+			if (this.calculator != null) {
+				this.calculator.calcLeastCostPath(null, null, departureTime, person, null);
+			}
+			return Collections.singletonList(PopulationUtils.createLeg(this.mode));
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return this.calculator == null || this.calculator instanceof PooledLeastCostPathCalculator;
+		}
+	}
+
+	/**
+	 * Fails if it is called by two threads at the same time, like the routers that keep the state of the query.
+	 */
+	private static class CheckingLeastCostPathCalculator implements LeastCostPathCalculator {
+		private final AtomicBoolean busy = new AtomicBoolean(false);
+
+		@Override
+		public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, Person person, Vehicle vehicle) {
+			assertTrue("a calculator was used by several threads at the same time", this.busy.compareAndSet(false, true));
+			Thread.yield();
+			this.busy.set(false);
+			return null;
+		}
+	}
+
 	private static class EqualsActivity implements Activity {
 		private final Activity delegate ;
 		@Override
@@ -0,0 +1,137 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PreProcessLandmarksTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class PreProcessLandmarksTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testLandmarkTravelTimes() {
+		Network network = loadNetwork();
+		FreespeedTravelTimeAndDisutility travelDisutility = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(travelDisutility, 8);
+		preProcessData.setNumberOfThreads(4);
+		preProcessData.run(network);
+
+		Node[] landmarks = preProcessData.getLandmarks();
+		Assert.assertEquals(8, landmarks.length);
+		for (int i = 0; i < landmarks.length; i++) {
+			PreProcessLandmarks.LandmarksData data = preProcessData.getNodeData(landmarks[i]);
+			Assert.assertEquals(0.0, data.getMinLandmarkTravelTime(i), 0.0);
+			Assert.assertEquals(0.0, data.getMaxLandmarkTravelTime(i), 0.0);
+		}
+		for (Node node : network.getNodes().values()) {
+			PreProcessLandmarks.LandmarksData data = preProcessData.getNodeData(node);
+			for (int i = 0; i < landmarks.length; i++) {
+				Assert.assertTrue(data.getMinLandmarkTravelTime(i) <= data.getMaxLandmarkTravelTime(i));
+			}
+		}
+	}
+
+	@Test
+	public void testCache() {
+		Network network = loadNetwork();
+		FreespeedTravelTimeAndDisutility travelDisutility = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		File cacheDirectory = new File(this.utils.getOutputDirectory(), "landmarks");
+
+		PreProcessLandmarks computed = new PreProcessLandmarks(travelDisutility);
+		computed.run(network);
+
+		PreProcessLandmarks written = new PreProcessLandmarks(travelDisutility);
+		written.setCacheDirectory(cacheDirectory);
+		written.run(network);
+		File[] files = cacheDirectory.listFiles();
+		Assert.assertNotNull(files);
+		Assert.assertEquals(1, files.length);
+		long lastModified = files[0].lastModified();
+
+		PreProcessLandmarks read = new PreProcessLandmarks(travelDisutility);
+		read.setCacheDirectory(cacheDirectory);
+		read.run(network);
+		Assert.assertEquals(1, cacheDirectory.listFiles().length);
+		Assert.assertEquals("cache file should not be rewritten", lastModified, files[0].lastModified());
+
+		for (Node node : network.getNodes().values()) {
+			for (int i = 0; i < computed.getLandmarks().length; i++) {
+				double min = computed.getNodeData(node).getMinLandmarkTravelTime(i);
+				double max = computed.getNodeData(node).getMaxLandmarkTravelTime(i);
+				Assert.assertEquals(min, written.getNodeData(node).getMinLandmarkTravelTime(i), 0.0);
+				Assert.assertEquals(max, written.getNodeData(node).getMaxLandmarkTravelTime(i), 0.0);
+				Assert.assertEquals(min, read.getNodeData(node).getMinLandmarkTravelTime(i), 0.0);
+				Assert.assertEquals(max, read.getNodeData(node).getMaxLandmarkTravelTime(i), 0.0);
+			}
+		}
+
+		// a different travel disutility must not use the cached travel times
+		PreProcessLandmarks other = new PreProcessLandmarks(new FreespeedTravelTimeAndDisutility(-12.0 / 3600, 6.0 / 3600, 0.0));
+		other.setCacheDirectory(cacheDirectory);
+		other.run(network);
+		Assert.assertEquals(2, cacheDirectory.listFiles().length);
+	}
+
+	/**
+	 * The landmark travel times are added to the data of each node, so the dead ends found before must still be
+	 * there, as they are used to prune the search.
+	 */
+	@Test
+	public void testDeadEndsArePreserved() {
+		Network network = loadNetwork();
+		FreespeedTravelTimeAndDisutility travelDisutility = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		PreProcessDijkstra deadEnds = new PreProcessDijkstra();
+		deadEnds.run(network);
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(travelDisutility);
+		preProcessData.run(network);
+
+		int deadEndNodeCount = 0;
+		for (Node node : network.getNodes().values()) {
+			Node expected = deadEnds.getNodeData(node).getDeadEndEntryNode();
+			Assert.assertSame("dead end entry node of " + node.getId(), expected, preProcessData.getNodeData(node).getDeadEndEntryNode());
+			if (expected != null) {
+				deadEndNodeCount++;
+			}
+		}
+		Assert.assertTrue("the network should contain dead ends", deadEndNodeCount > 0);
+	}
+
+	private static Network loadNetwork() {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		new MatsimNetworkReader(network).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		return network;
+	}
+
+}
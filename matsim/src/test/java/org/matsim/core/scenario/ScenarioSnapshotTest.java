@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.facilities.FacilitiesWriter;
+import org.matsim.facilities.OpeningTimeImpl;
+import org.matsim.pt.config.TransitConfigGroup;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.utils.objectattributes.ObjectAttributesXmlWriter;
+import org.matsim.vehicles.MatsimVehicleWriter;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class ScenarioSnapshotTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private Config createConfig() {
+		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("pt-tutorial"), "0.config.xml"));
+		config.transit().setUseTransit(true);
+		return config;
+	}
+
+	@Test
+	public void testWriteAndRead() {
+		Scenario scenario = ScenarioUtils.loadScenario(createConfig());
+		ActivityFacilitiesFactory factory = scenario.getActivityFacilities().getFactory();
+		ActivityFacility facility = factory.createActivityFacility(Id.create("f1", ActivityFacility.class), new Coord(100, 200));
+		ActivityOption option = factory.createActivityOption("work");
+		option.setCapacity(50);
+		option.addOpeningTime(new OpeningTimeImpl(8 * 3600, 17 * 3600));
+		facility.addActivityOption(option);
+		facility.getAttributes().putAttribute("floors", 3);
+		scenario.getActivityFacilities().addActivityFacility(facility);
+		scenario.getPopulation().getPersons().values().iterator().next().getAttributes().putAttribute("income", 4711.0);
+
+		String filename = this.utils.getOutputDirectory() + "scenario.snapshot";
+		ScenarioUtils.writeScenarioSnapshot(scenario, filename);
+
+		Scenario snapshot = ScenarioUtils.createScenario(createConfig());
+		ScenarioUtils.readScenarioSnapshot(snapshot, filename);
+
+		Assert.assertTrue(NetworkUtils.compare(scenario.getNetwork(), snapshot.getNetwork()));
+		Assert.assertTrue(PopulationUtils.equalPopulation(scenario.getPopulation(), snapshot.getPopulation()));
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			Person copy = snapshot.getPopulation().getPersons().get(person.getId());
+			Assert.assertEquals(person.getPlans().indexOf(person.getSelectedPlan()), copy.getPlans().indexOf(copy.getSelectedPlan()));
+		}
+
+		new FacilitiesWriter(scenario.getActivityFacilities()).write(this.utils.getOutputDirectory() + "facilities1.xml");
+		new FacilitiesWriter(snapshot.getActivityFacilities()).write(this.utils.getOutputDirectory() + "facilities2.xml");
+		MatsimTestUtils.compareFilesBasedOnCRC(this.utils.getOutputDirectory() + "facilities1.xml", this.utils.getOutputDirectory() + "facilities2.xml");
+
+		Assert.assertFalse(scenario.getTransitSchedule().getTransitLines().isEmpty());
+		new TransitScheduleWriter(scenario.getTransitSchedule()).writeFile(this.utils.getOutputDirectory() + "schedule1.xml");
+		new TransitScheduleWriter(snapshot.getTransitSchedule()).writeFile(this.utils.getOutputDirectory() + "schedule2.xml");
+		MatsimTestUtils.compareFilesBasedOnCRC(this.utils.getOutputDirectory() + "schedule1.xml", this.utils.getOutputDirectory() + "schedule2.xml");
+
+		Assert.assertFalse(scenario.getTransitVehicles().getVehicles().isEmpty());
+		new MatsimVehicleWriter(scenario.getTransitVehicles()).writeFile(this.utils.getOutputDirectory() + "vehicles1.xml");
+		new MatsimVehicleWriter(snapshot.getTransitVehicles()).writeFile(this.utils.getOutputDirectory() + "vehicles2.xml");
+		MatsimTestUtils.compareFilesBasedOnCRC(this.utils.getOutputDirectory() + "vehicles1.xml", this.utils.getOutputDirectory() + "vehicles2.xml");
+	}
+
+	@Test
+	public void testLoadScenario_usesSnapshotIfInputsUnchanged() {
+		String filename = this.utils.getOutputDirectory() + "scenario.snapshot";
+
+		Config config = createConfig();
+		config.global().setScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Assert.assertTrue("snapshot should be written after loading the input files.", new File(filename).isFile());
+
+		Config config2 = createConfig();
+		config2.global().setScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		Assert.assertEquals(ScenarioSnapshot.describeInputs(config2), ScenarioSnapshotReader.readInputs(new File(filename).toPath()));
+		Scenario scenario2 = ScenarioUtils.loadScenario(config2);
+		Assert.assertTrue(NetworkUtils.compare(scenario.getNetwork(), scenario2.getNetwork()));
+		Assert.assertTrue(PopulationUtils.equalPopulation(scenario.getPopulation(), scenario2.getPopulation()));
+		Assert.assertEquals(scenario.getTransitSchedule().getTransitLines().size(), scenario2.getTransitSchedule().getTransitLines().size());
+
+		// other inputs, the snapshot must not be used
+		Config config3 = createConfig();
+		config3.global().setScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		config3.plans().setInputFile(null);
+		Assert.assertNotEquals(ScenarioSnapshot.describeInputs(config3), ScenarioSnapshotReader.readInputs(new File(filename).toPath()));
+		Scenario scenario3 = ScenarioUtils.loadScenario(config3);
+		Assert.assertEquals(0, scenario3.getPopulation().getPersons().size());
+	}
+
+	@Test
+	public void testLoadScenario_checksDeprecatedAttributeFilesBeforeUsingSnapshot() {
+		String filename = this.utils.getOutputDirectory() + "scenario.snapshot";
+		String attributesFile = this.utils.getOutputDirectory() + "lineAttributes.xml";
+		new ObjectAttributesXmlWriter(new ObjectAttributes()).writeFile(attributesFile);
+
+		Config config = createConfig();
+		config.global().setScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		config.transit().setTransitLinesAttributesFile(new File(attributesFile).getAbsolutePath());
+		config.transit().setInsistingOnUsingDeprecatedAttributeFiles(true);
+		ScenarioUtils.loadScenario(config);
+		Assert.assertTrue(new File(filename).isFile());
+
+		Config config2 = createConfig();
+		config2.global().setScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		config2.transit().setTransitLinesAttributesFile(new File(attributesFile).getAbsolutePath());
+		Assert.assertEquals(ScenarioSnapshot.describeInputs(config2), ScenarioSnapshotReader.readInputs(new File(filename).toPath()));
+		try {
+			ScenarioUtils.loadScenario(config2);
+			Assert.fail("expected exception because the config does not insist on the deprecated attribute file.");
+		} catch (RuntimeException e) {
+			Assert.assertEquals(TransitConfigGroup.TRANSIT_ATTRIBUTES_DEPRECATION_MESSAGE, e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRead_corruptFile() throws Exception {
+		Scenario scenario = ScenarioUtils.loadScenario(createConfig());
+		String filename = this.utils.getOutputDirectory() + "scenario.snapshot";
+		ScenarioUtils.writeScenarioSnapshot(scenario, filename);
+
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.seek(file.length() / 2);
+			int b = file.read();
+			file.seek(file.length() / 2);
+			file.write(b ^ 0x01);
+		}
+
+		Scenario snapshot = ScenarioUtils.createScenario(createConfig());
+		try {
+			ScenarioUtils.readScenarioSnapshot(snapshot, filename);
+			Assert.fail("expected exception because of wrong checksum.");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+		Assert.assertEquals("nothing must be read from a corrupt snapshot.", 0, snapshot.getNetwork().getLinks().size());
+	}
+
+}
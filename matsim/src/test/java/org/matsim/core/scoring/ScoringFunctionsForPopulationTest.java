@@ -21,31 +21,54 @@
 
  package org.matsim.core.scoring;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManagerImpl;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.testcases.MatsimTestUtils;
 
 /**
  * @author mrieser / Simunto GmbH
  */
 public class ScoringFunctionsForPopulationTest {
 
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
 	@Test
 	public void testTripScoring() {
 		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
@@ -92,6 +115,82 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals("transit_walk", ((Leg) rs.lastTrip.getTripElements().get(4)).getMode());
 	}
 
+	/**
+	 * Scores the same events once in the events handling thread and once in several scoring threads, and checks that all
+	 * scores and partial scores are the same.
+	 */
+	@Test
+	public void testSameScoresWithScoringThreads() throws IOException {
+		List<Double> expectedScores = new ArrayList<>();
+		String expectedPartialScores = scoreSyntheticDay(0, expectedScores, "serial.txt");
+		List<Double> actualScores = new ArrayList<>();
+		String actualPartialScores = scoreSyntheticDay(3, actualScores, "parallel.txt");
+
+		Assert.assertEquals(expectedScores, actualScores);
+		Assert.assertEquals(expectedPartialScores, actualPartialScores);
+	}
+
+	private String scoreSyntheticDay(int numberOfScoringThreads, List<Double> scores, String partialScoresFilename) throws IOException {
+		Config config = ConfigUtils.createConfig();
+		PlanCalcScoreConfigGroup.ActivityParams home = new PlanCalcScoreConfigGroup.ActivityParams("home");
+		home.setTypicalDuration(12 * 3600.0);
+		config.planCalcScore().addActivityParams(home);
+		PlanCalcScoreConfigGroup.ActivityParams work = new PlanCalcScoreConfigGroup.ActivityParams("work");
+		work.setTypicalDuration(8 * 3600.0);
+		config.planCalcScore().addActivityParams(work);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Population population = scenario.getPopulation();
+		final int numberOfPersons = 1000;
+		for (int i = 0; i < numberOfPersons; i++) {
+			population.addPerson(population.getFactory().createPerson(Id.createPersonId(i)));
+		}
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsToActivities eventsToActivities = new EventsToActivities(controlerListenerManager);
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+		eventsManager.addHandler(new EventsToLegsAndActivities(eventsToLegs, eventsToActivities));
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, eventsToActivities,
+				eventsToLegs, population, new CharyparNagelScoringFunctionFactory(scenario), numberOfScoringThreads, scenario.getNetwork());
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+
+		Id<Link> linkId = Id.createLinkId("l");
+		Random random = new Random(4711);
+		eventsManager.initProcessing();
+		for (double time = 6 * 3600; time < 20 * 3600; time += 60) {
+			for (int i = 0; i < numberOfPersons; i++) {
+				if (random.nextInt(200) != 0) {
+					continue;
+				}
+				Id<Person> personId = Id.createPersonId(i);
+				String actType = random.nextBoolean() ? "home" : "work";
+				String mode = random.nextBoolean() ? TransportMode.walk : TransportMode.bike;
+				eventsManager.processEvent(new ActivityEndEvent(time, personId, linkId, null, actType));
+				eventsManager.processEvent(new PersonDepartureEvent(time, personId, linkId, mode));
+				if (random.nextInt(50) == 0) {
+					eventsManager.processEvent(new PersonStuckEvent(time + 30, personId, linkId, mode));
+					continue;
+				}
+				eventsManager.processEvent(new TeleportationArrivalEvent(time + 30, personId, random.nextInt(3000), mode));
+				eventsManager.processEvent(new PersonArrivalEvent(time + 30, personId, linkId, mode));
+				if (random.nextInt(10) == 0) {
+					eventsManager.processEvent(new PersonMoneyEvent(time + 30, personId, -random.nextInt(10)));
+				}
+				eventsManager.processEvent(new ActivityStartEvent(time + 30, personId, linkId, null, actType.equals("home") ? "work" : "home"));
+			}
+		}
+		eventsManager.finishProcessing();
+		controlerListenerManager.fireControlerAfterMobsimEvent(0);
+		sf.finishScoringFunctions();
+
+		for (int i = 0; i < numberOfPersons; i++) {
+			scores.add(sf.getScoringFunctionForAgent(Id.createPersonId(i)).getScore());
+		}
+		String filename = utils.getOutputDirectory() + partialScoresFilename;
+		sf.writePartialScores(filename);
+		return new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
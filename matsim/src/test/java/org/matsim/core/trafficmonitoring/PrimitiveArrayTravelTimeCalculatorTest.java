@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PrimitiveArrayTravelTimeCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LinkToLinkTravelTime;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class PrimitiveArrayTravelTimeCalculatorTest {
+
+	private static final double DELTA = 1e-8;
+
+	@Test
+	public void testSameLinkTravelTimes_average() {
+		testSameTravelTimes("average", false);
+	}
+
+	@Test
+	public void testSameLinkTravelTimes_linearInterpolation() {
+		testSameTravelTimes("linearinterpolation", false);
+	}
+
+	@Test
+	public void testSameLinkToLinkTravelTimes() {
+		testSameTravelTimes("average", true);
+	}
+
+	/**
+	 * Feeds the same random events to a {@link TravelTimeCalculator} and a {@link PrimitiveArrayTravelTimeCalculator} and
+	 * compares all travel times.  Some vehicles use a mode which is not analyzed; congestion is added in the morning so
+	 * that the consolidation of the time slots matters.
+	 */
+	private static void testSameTravelTimes(final String getterType, final boolean linkToLink) {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("ptt1"), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("ptt2"), new Coord(1000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("ptt3"), new Coord(2000, 0));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId("ptt4"), new Coord(2000, 1000));
+		Link l1 = NetworkUtils.createAndAddLink(network, Id.createLinkId("ptt1"), n1, n2, 1000, 10, 1000, 1);
+		Link l2 = NetworkUtils.createAndAddLink(network, Id.createLinkId("ptt2"), n2, n3, 1000, 10, 1000, 1);
+		Link l3 = NetworkUtils.createAndAddLink(network, Id.createLinkId("ptt3"), n2, n4, 1500, 15, 1000, 1);
+		Link l4 = NetworkUtils.createAndAddLink(network, Id.createLinkId("ptt4"), n3, n1, 2000, 20, 1000, 1);
+		Link[] links = {l1, l2, l3, l4};
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTraveltimeBinSize(900);
+		config.setTravelTimeGetterType(getterType);
+		config.setCalculateLinkTravelTimes(true);
+		config.setCalculateLinkToLinkTravelTimes(linkToLink);
+
+		TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+		builder.setTimeslice(config.getTraveltimeBinSize());
+		builder.setMaxTime(config.getMaxTime());
+		builder.setCalculateLinkToLinkTravelTimes(linkToLink);
+		builder.configure(config);
+		builder.setFilterModes(true);
+		builder.setAnalyzedModes(Collections.singleton(TransportMode.car));
+		TravelTimeCalculator expected = builder.build();
+		PrimitiveArrayTravelTimeCalculator actual = new PrimitiveArrayTravelTimeCalculator(network, config, null, true,
+				Collections.singleton(TransportMode.car));
+
+		BasicEventHandler both = event -> {
+			if (event instanceof LinkEnterEvent) {
+				expected.handleEvent((LinkEnterEvent) event);
+				actual.handleEvent((LinkEnterEvent) event);
+			} else if (event instanceof LinkLeaveEvent) {
+				expected.handleEvent((LinkLeaveEvent) event);
+				actual.handleEvent((LinkLeaveEvent) event);
+			} else if (event instanceof VehicleEntersTrafficEvent) {
+				expected.handleEvent((VehicleEntersTrafficEvent) event);
+				actual.handleEvent((VehicleEntersTrafficEvent) event);
+			} else if (event instanceof VehicleLeavesTrafficEvent) {
+				expected.handleEvent((VehicleLeavesTrafficEvent) event);
+				actual.handleEvent((VehicleLeavesTrafficEvent) event);
+			}
+		};
+
+		Random random = new Random(20200401);
+		for (int i = 0; i < 2000; i++) {
+			Id<Vehicle> vehicleId = Id.createVehicleId("ptt" + i);
+			Id<Person> personId = Id.createPersonId("ptt" + i);
+			String mode = i % 5 == 0 ? TransportMode.ride : TransportMode.car;
+			double time = random.nextInt(24 * 3600);
+			boolean congested = time > 7 * 3600 && time < 8 * 3600;
+			Link first = l1;
+			Link second = random.nextBoolean() ? l2 : l3;
+
+			both.handleEvent(new VehicleEntersTrafficEvent(time, personId, first.getId(), vehicleId, mode, 1.0));
+			both.handleEvent(new LinkLeaveEvent(time, vehicleId, first.getId()));
+			both.handleEvent(new LinkEnterEvent(time, vehicleId, second.getId()));
+			time += 100 + random.nextInt(200) + (congested ? 3000 : 0);
+			both.handleEvent(new LinkLeaveEvent(time, vehicleId, second.getId()));
+			if (second == l2) {
+				both.handleEvent(new LinkEnterEvent(time, vehicleId, l4.getId()));
+				time += 100 + random.nextInt(400);
+				both.handleEvent(new LinkLeaveEvent(time, vehicleId, l4.getId()));
+				both.handleEvent(new LinkEnterEvent(time, vehicleId, l1.getId()));
+				both.handleEvent(new VehicleLeavesTrafficEvent(time + 10, personId, l1.getId(), vehicleId, mode, 1.0));
+			} else {
+				both.handleEvent(new VehicleLeavesTrafficEvent(time, personId, second.getId(), vehicleId, mode, 1.0));
+			}
+		}
+
+		TravelTime expectedTravelTime = expected.getLinkTravelTimes();
+		TravelTime actualTravelTime = actual.getLinkTravelTimes();
+		for (Link link : links) {
+			for (double time = 0; time < 30 * 3600; time += 113) {
+				Assert.assertEquals("link " + link.getId() + " at " + time,
+						expectedTravelTime.getLinkTravelTime(link, time, null, null),
+						actualTravelTime.getLinkTravelTime(link, time, null, null), DELTA);
+			}
+		}
+
+		if (linkToLink) {
+			LinkToLinkTravelTime expectedLinkToLink = expected.getLinkToLinkTravelTimes();
+			LinkToLinkTravelTime actualLinkToLink = actual.getLinkToLinkTravelTimes();
+			for (Link fromLink : links) {
+				for (Link toLink : fromLink.getToNode().getOutLinks().values()) {
+					for (double time = 0; time < 30 * 3600; time += 113) {
+						Assert.assertEquals("turn " + fromLink.getId() + " -> " + toLink.getId() + " at " + time,
+								expectedLinkToLink.getLinkToLinkTravelTime(fromLink, toLink, time, null, null),
+								actualLinkToLink.getLinkToLinkTravelTime(fromLink, toLink, time, null, null), DELTA);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * KDTreeTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+/**
+ * Test for {@link KDTree}, which must answer all queries like {@link QuadTree}.
+ */
+public class KDTreeTest {
+
+	@Test
+	public void testSameResultsAsQuadTree() {
+		Random random = new Random(20200501);
+		// arrays, as they are only equal to themselves, and the QuadTree does not keep equal objects at the same location
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			points.add(new double[] {random.nextInt(1000), random.nextInt(1000)});
+		}
+		for (int i = 0; i < 100; i++) {
+			points.add(new double[] {500, 500}); // many objects at the same location
+		}
+		QuadTree<double[]> quadTree = new QuadTree<>(0, 0, 1000, 1000);
+		for (double[] point : points) {
+			quadTree.put(point[0], point[1], point);
+		}
+		KDTree<double[]> kdTree = new KDTree<>(points, point -> new Coord(point[0], point[1]));
+		Assert.assertEquals(points.size(), kdTree.size());
+
+		for (int i = 0; i < 1000; i++) {
+			Coord coord = new Coord(random.nextDouble() * 1100 - 50, random.nextDouble() * 1100 - 50);
+			double x = coord.getX();
+			double y = coord.getY();
+			Assert.assertEquals(calcDistance(coord, quadTree.getClosest(x, y)), calcDistance(coord, kdTree.getClosest(x, y)), 0.0);
+
+			double distance = random.nextDouble() * 50;
+			Assert.assertEquals(asSet(quadTree.getDisk(x, y, distance)), asSet(kdTree.getDisk(x, y, distance)));
+			int[] count = {0};
+			Assert.assertEquals(quadTree.getDisk(x, y, distance).size(), kdTree.executeDisk(x, y, distance, (vx, vy, value) -> count[0]++));
+			Assert.assertEquals(count[0], quadTree.executeDisk(x, y, distance, (vx, vy, value) -> count[0]--));
+			Assert.assertEquals(0, count[0]);
+
+			int k = 1 + random.nextInt(20);
+			double maxDistance = i % 2 == 0 ? Double.POSITIVE_INFINITY : distance;
+			assertSameDistances(coord, quadTree.getKNearest(x, y, k, maxDistance), kdTree.getKNearest(x, y, k, maxDistance));
+		}
+	}
+
+	@Test
+	public void testKNearest() {
+		List<Coord> points = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			points.add(new Coord(i * 10, 0));
+		}
+		KDTree<Coord> kdTree = new KDTree<>(points, point -> point);
+
+		Assert.assertEquals(List.of(points.get(3), points.get(4), points.get(2)), kdTree.getKNearest(31, 0, 3));
+		Assert.assertEquals("only two within the distance", List.of(points.get(3), points.get(2)), kdTree.getKNearest(28, 0, 3, 8));
+		Assert.assertEquals("not more than there are", points.size(), kdTree.getKNearest(0, 0, 100).size());
+		Assert.assertTrue(kdTree.getKNearest(-100, 0, 3, 10).isEmpty());
+		Assert.assertNull(new KDTree<Coord>(Collections.emptyList(), point -> point).getClosest(0, 0));
+	}
+
+	@Test
+	public void testManyPoints() {
+		Random random = new Random(20200502);
+		List<Coord> points = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			points.add(new Coord(random.nextDouble() * 1000, random.nextDouble() * 1000));
+		}
+		KDTree<Coord> kdTree = new KDTree<>(points, point -> point);
+		List<Coord> coords = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			coords.add(new Coord(random.nextDouble() * 1000, random.nextDouble() * 1000));
+		}
+
+		List<Coord> closest = kdTree.getClosest(coords, 4);
+		List<List<Coord>> kNearest = kdTree.getKNearest(coords, 5, 100, 4);
+		Assert.assertEquals(coords.size(), closest.size());
+		Assert.assertEquals(coords.size(), kNearest.size());
+		for (int i = 0; i < coords.size(); i++) {
+			Coord coord = coords.get(i);
+			Assert.assertSame(kdTree.getClosest(coord.getX(), coord.getY()), closest.get(i));
+			Assert.assertEquals(kdTree.getKNearest(coord.getX(), coord.getY(), 5, 100), kNearest.get(i));
+		}
+	}
+
+	private static void assertSameDistances(Coord coord, List<double[]> expected, List<double[]> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(calcDistance(coord, expected.get(i)), calcDistance(coord, actual.get(i)), 1e-9);
+		}
+	}
+
+	private static double calcDistance(Coord coord, double[] point) {
+		return CoordUtils.calcEuclideanDistance(coord, new Coord(point[0], point[1]));
+	}
+
+	private static Set<double[]> asSet(Iterable<double[]> points) {
+		Set<double[]> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (double[] point : points) {
+			set.add(point);
+		}
+		return set;
+	}
+
+}
@@ -20,6 +20,7 @@
 package org.matsim.core.utils.io;
 
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Stack;
 
 import org.junit.Assert;
@@ -131,4 +132,68 @@ public class MatsimXmlParserTest {
 		Assert.assertEquals("value+value", parser.lastAttributes.getValue("someAttribute"));
 	}
 
+	@Test
+	public void testParallelParsing_sameCallbacks() {
+		StringBuilder str = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<root version=\"1\">\n");
+		for (int i = 0; i < 5000; i++) {
+			str.append("<person id=\"").append(i).append("\"><plan score=\"").append(i * 0.5).append("\">");
+			str.append("<act type=\"h&amp;w\"/>text ").append(i).append("</plan></person>\n");
+		}
+		str.append("</root>");
+		byte[] bytes = str.toString().getBytes(StandardCharsets.UTF_8);
+
+		RecordingParser serial = new RecordingParser();
+		serial.setValidating(false);
+		serial.parse(new ByteArrayInputStream(bytes));
+
+		RecordingParser parallel = new RecordingParser();
+		parallel.setValidating(false);
+		parallel.setParallelParsing(true);
+		parallel.parse(new ByteArrayInputStream(bytes));
+
+		Assert.assertTrue(serial.log.length() > 0);
+		Assert.assertEquals(serial.log.toString(), parallel.log.toString());
+	}
+
+	@Test
+	public void testParallelParsing_invalidXml() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n<root><a></b></root>";
+
+		RecordingParser parser = new RecordingParser();
+		parser.setValidating(false);
+		parser.setParallelParsing(true);
+		try {
+			parser.parse(new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8)));
+			Assert.fail("expected exception.");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+		Assert.assertFalse("endDocument must not be called on invalid files.", parser.log.toString().endsWith("END"));
+	}
+
+	private static class RecordingParser extends MatsimXmlParser {
+
+		private final StringBuilder log = new StringBuilder();
+
+		@Override
+		public void startTag(String name, Attributes atts, Stack<String> context) {
+			this.log.append('S').append(name).append(context);
+			for (int i = 0; i < atts.getLength(); i++) {
+				this.log.append(' ').append(atts.getQName(i)).append('=').append(atts.getValue(i));
+			}
+			this.log.append('\n');
+		}
+
+		@Override
+		public void endTag(String name, String content, Stack<String> context) {
+			this.log.append('E').append(name).append(context).append('[').append(content).append("]\n");
+		}
+
+		@Override
+		public void endDocument() {
+			this.log.append("END");
+		}
+
+	}
+
 }